@@ -0,0 +1,78 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Measures the allocations of the add / match / cancel cycle of the matching engine, which must not allocate in steady state
+ * when orders are taken from an <code>OrderPool</code>.
+ * <br>
+ * Each cycle adds a passive bid and a passive ask, a crossing order which executes against the book and cancels
+ * the orders of an older cycle by their ID, such that the number of live orders stays bounded. The allocated bytes of the current thread are read from the
+ * <code>com.sun.management.ThreadMXBean</code> before and after the measured cycles, once for a book with red black
+ * trees and once for a book with a price ladder. All random numbers are drawn before the measurement
+ */
+public class AllocationBenchmark {
+    private static final int WARMUP_CYCLES = 2_000_000;
+    private static final int CYCLES = 1_000_000;
+    private static final int DEPTH = 1_000;
+
+    public static void main(String[] args) {
+        boolean allocationFree = true;
+        for (boolean ladder : new boolean[]{false, true}) {
+            double bytesPerCycle = run(ladder);
+            System.out.println((ladder ? "ladder" : "tree") + ", " + bytesPerCycle + " bytes / cycle");
+            // a single object per cycle would be at least 16 bytes, the remainder stems from pools and maps
+            // growing once to a new high water mark
+            allocationFree &= bytesPerCycle < 1;
+        }
+        if (!allocationFree)
+            throw new IllegalStateException("add / match / cancel cycle allocates in steady state");
+    }
+
+    private static double run(boolean ladder) {
+        Random rand = new Random(42);
+        int n = WARMUP_CYCLES + CYCLES;
+        int[] prices = new int[3 * n];
+        int[] volumes = new int[3 * n];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = rand.nextInt(DEPTH);
+            volumes[i] = 1 + rand.nextInt(1000);
+        }
+
+        MatchingEngine matcher = new MatchingEngine();
+        if (ladder)
+            matcher.openBook("1", FixedPoint.INTEGER, 0, 3 * DEPTH, 1);
+        else
+            matcher.openBook("1", FixedPoint.INTEGER);
+        OrderPool pool = new OrderPool(100_000);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long before = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == WARMUP_CYCLES)
+                before = threads.getThreadAllocatedBytes(thread);
+
+            int id = 3 * i;
+            // passive orders on both sides of the book
+            matcher.addOrder(pool.limitOrder("1", id, DEPTH + prices[id], volumes[id], OrderType.SELL, false));
+            matcher.addOrder(pool.limitOrder("1", id + 1, prices[id + 1], volumes[id + 1], OrderType.BUY, false));
+            // crossing order which is executed against the ask side
+            matcher.addOrder(pool.limitOrder("1", id + 2, DEPTH + prices[id + 2], volumes[id + 2], OrderType.BUY, false));
+            // cancel the orders of an older cycle, which might already have been executed
+            if (i >= 1_000) {
+                matcher.cancel(3 * (i - 1_000));
+                matcher.cancel(3 * (i - 1_000) + 1);
+                matcher.cancel(3 * (i - 1_000) + 2);
+            }
+        }
+        long after = threads.getThreadAllocatedBytes(thread);
+
+        return (after - before) / (double) CYCLES;
+    }
+}
@@ -0,0 +1,97 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+/**
+ * Measures amendments of resting orders in a book with 1,000 levels per side holding 200,000 orders.
+ * <br>
+ * <ul>
+ * <li>reduce - the volume of a random order is lowered at the same limit, which is done in place</li>
+ * <li>move - a random order is moved between two price levels of its side</li>
+ * </ul>
+ * Each flow is compared to the same changes done by cancelling the order and submitting a new one with the same ID,
+ * which was the cost of an amendment before orders were amended in the book. New orders are taken from an order pool.
+ * Before the measurement, an iceberg order amended across the spread is checked to execute its total volume
+ */
+public class AmendBenchmark {
+    private static final int DEPTH = 1_000;
+    private static final int ORDERS_PER_LEVEL = 100;
+    private static final int ORDERS = 2 * DEPTH * ORDERS_PER_LEVEL;
+    private static final long VOLUME = 10_000_000;
+    private static final int AMENDS = 5_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        checkCrossingIceberg();
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int round = 0; round < ROUNDS; round++) {
+            best[0] = Math.min(best[0], run(false, true));
+            best[1] = Math.min(best[1], run(false, false));
+            best[2] = Math.min(best[2], run(true, true));
+            best[3] = Math.min(best[3], run(true, false));
+        }
+        System.out.println("reduce, " + best[0] / (double) AMENDS + " ns / amend");
+        System.out.println("reduce by cancel and add, " + best[1] / (double) AMENDS + " ns / amend");
+        System.out.println("move, " + best[2] / (double) AMENDS + " ns / amend");
+        System.out.println("move by cancel and add, " + best[3] / (double) AMENDS + " ns / amend");
+    }
+
+    private static long run(boolean move, boolean amend) {
+        MatchingEngine matcher = new MatchingEngine();
+        OrderPool pool = new OrderPool(ORDERS);
+        // order i rests on the bids for even i and on the asks for odd i
+        long[] limits = new long[ORDERS];
+        long[] volumes = new long[ORDERS];
+        for (int id = 0; id < ORDERS; id++) {
+            long level = id / 2 % DEPTH;
+            boolean bid = (id & 1) == 0;
+            limits[id] = bid ? DEPTH - level : 2 * DEPTH + level;
+            volumes[id] = VOLUME;
+            matcher.addOrder(pool.limitOrder("1", id, limits[id], VOLUME, bid ? OrderType.BUY : OrderType.SELL, false));
+        }
+        int[] targets = new int[AMENDS];
+        java.util.Random random = new java.util.Random(1);
+        for (int i = 0; i < AMENDS; i++)
+            targets[i] = random.nextInt(ORDERS);
+
+        System.gc();
+        long t1 = System.nanoTime();
+        for (int i = 0; i < AMENDS; i++) {
+            int id = targets[i];
+            boolean bid = (id & 1) == 0;
+            // moves alternate between the original level and the level half the depth away from it
+            long limit = limits[id];
+            if (move)
+                limit = limits[id] = limit % DEPTH >= DEPTH / 2 ? limit - DEPTH / 2 : limit + DEPTH / 2;
+            long volume = move ? volumes[id] : --volumes[id];
+            if (amend) {
+                matcher.amend(id, volume, limit);
+            } else {
+                matcher.cancel(id);
+                matcher.addOrder(pool.limitOrder("1", id, limit, volume, bid ? OrderType.BUY : OrderType.SELL, false));
+            }
+        }
+        long time = System.nanoTime() - t1;
+        if (matcher.getDepth("1", OrderType.BUY, 1).get(0).getPrice() >= matcher.getDepth("1", OrderType.SELL, 1).get(0).getPrice())
+            throw new IllegalStateException("book is crossed");
+        return time;
+    }
+
+    // an iceberg amended to a crossing limit is executed with its hidden volume, not only its displayed slice
+    private static void checkCrossingIceberg() {
+        MatchingEngine matcher = new MatchingEngine();
+        long[] filled = new long[1];
+        matcher.setExecutionListener(new ExecutionListener() {
+            @Override
+            public void onFill(String product, int takerOrderID, int makerOrderID, OrderType takerSide, long price, long volume) {
+                filled[0] += volume;
+            }
+        });
+        matcher.addOrder(new LimitOrder("1", 1, 105, 1_000, OrderType.SELL, false));
+        matcher.addOrder(new IcebergOrder("1", 2, 100, 500, 100, OrderType.BUY, false));
+        matcher.amend(2, 500, 105);
+        if (filled[0] != 500 || matcher.getDepth("1", OrderType.SELL, 1).get(0).getVolume() != 500)
+            throw new IllegalStateException("crossing iceberg executed " + filled[0] + " instead of 500");
+    }
+}
@@ -0,0 +1,129 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+/**
+ * Measures the call phase and the uncross of an auction in a book with 200,000 bid and 200,000 ask levels,
+ * 100,000 of which cross, holding 2,000,000 orders.
+ * <br>
+ * <ul>
+ * <li>add - orders are added in the call phase, where both sides track their cumulative volume</li>
+ * <li>indicative price - the equilibrium of the full book is queried repeatedly</li>
+ * <li>level pass - the same equilibrium is computed by copying the levels of both sides with getDepth and merging
+ * them in a single pass, which is what the indicative price would cost without cumulative volumes</li>
+ * <li>uncross - the crossing orders are executed at the equilibrium, the fills are counted by a listener</li>
+ * </ul>
+ * All orders are created before the measurement
+ */
+public class AuctionBenchmark {
+    private static final int LEVELS = 200_000;
+    private static final int ORDERS_PER_LEVEL = 5;
+    private static final long FIRST_BID = 100_000;
+    private static final long FIRST_ASK = FIRST_BID + LEVELS / 2;
+    private static final int QUERIES = 1_000_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        long add = Long.MAX_VALUE;
+        long query = Long.MAX_VALUE;
+        long pass = Long.MAX_VALUE;
+        long uncross = Long.MAX_VALUE;
+        AuctionPrice equilibrium = null;
+        long[] fills = new long[1];
+        for (int round = 0; round < ROUNDS; round++) {
+            Order[] orders = orders();
+            MatchingEngine matcher = new MatchingEngine();
+            matcher.openBook("1", FixedPoint.INTEGER, FIRST_BID, FIRST_ASK + LEVELS, 1);
+            matcher.startAuction("1");
+            matcher.setExecutionListener(new ExecutionListener() {
+                @Override
+                public void onFill(String product, int takerOrderID, int makerOrderID, OrderType takerSide, long price, long volume) {
+                    fills[0]++;
+                }
+            });
+
+            System.gc();
+            long t1 = System.nanoTime();
+            for (Order order : orders)
+                matcher.addOrder(order);
+            add = Math.min(add, System.nanoTime() - t1);
+
+            AuctionPrice indicative = null;
+            t1 = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++)
+                indicative = matcher.getIndicativePrice("1");
+            query = Math.min(query, System.nanoTime() - t1);
+
+            t1 = System.nanoTime();
+            long passPrice = levelPass(matcher);
+            pass = Math.min(pass, System.nanoTime() - t1);
+            if (passPrice != indicative.getPrice())
+                throw new IllegalStateException("level pass found " + passPrice + " instead of " + indicative);
+
+            System.gc();
+            fills[0] = 0;
+            t1 = System.nanoTime();
+            equilibrium = matcher.uncross("1");
+            uncross = Math.min(uncross, System.nanoTime() - t1);
+            if (!equilibrium.equals(indicative))
+                throw new IllegalStateException("uncrossed at " + equilibrium + " instead of " + indicative);
+        }
+        System.out.println("equilibrium " + equilibrium);
+        System.out.println("add in call phase, " + add / (double) (2 * LEVELS * ORDERS_PER_LEVEL) + " ns / order");
+        System.out.println("indicative price, " + query / (double) QUERIES + " ns / query");
+        System.out.println("level pass, " + pass / 1e6 + " ms / query");
+        System.out.println("uncross, " + uncross / 1e6 + " ms, " + uncross / (double) fills[0] + " ns / fill");
+    }
+
+    // bids on [FIRST_BID, FIRST_BID + LEVELS), asks on [FIRST_ASK, FIRST_ASK + LEVELS), random arrival order
+    private static Order[] orders() {
+        Order[] orders = new Order[2 * LEVELS * ORDERS_PER_LEVEL];
+        java.util.Random random = new java.util.Random(1);
+        for (int i = 0; i < orders.length; i++) {
+            long level = random.nextInt(LEVELS);
+            orders[i] = (i & 1) == 0
+                    ? new LimitOrder("1", i, FIRST_BID + level, 1 + random.nextInt(10), OrderType.BUY, false)
+                    : new LimitOrder("1", i, FIRST_ASK + level, 1 + random.nextInt(10), OrderType.SELL, false);
+        }
+        return orders;
+    }
+
+    // price with the maximal executed volume and minimal surplus, found by merging the levels of both sides
+    private static long levelPass(MatchingEngine matcher) {
+        long[] bidPrices = new long[LEVELS];
+        long[] bidVolumes = new long[LEVELS];
+        long[] askPrices = new long[LEVELS];
+        long[] askVolumes = new long[LEVELS];
+        int bids = matcher.getDepth("1", OrderType.BUY, bidPrices, bidVolumes);
+        int asks = matcher.getDepth("1", OrderType.SELL, askPrices, askVolumes);
+
+        // demand at the ask prices from the highest bid down, supply accumulated from the lowest ask up
+        long demand = 0;
+        for (int i = 0; i < bids; i++)
+            demand += bidVolumes[i];
+        long supply = 0;
+        long bestVolume = -1;
+        long bestSurplus = 0;
+        long bestPrice = 0;
+        int bid = bids - 1;
+        int ask = 0;
+        // walk the limit prices of both sides upwards
+        while (bid >= 0 || ask < asks) {
+            long price = ask < asks && (bid < 0 || askPrices[ask] <= bidPrices[bid]) ? askPrices[ask] : bidPrices[bid];
+            while (ask < asks && askPrices[ask] == price)
+                supply += askVolumes[ask++];
+            long volume = Math.min(demand, supply);
+            long surplus = demand - supply;
+            if (volume > bestVolume || (volume == bestVolume && Math.abs(surplus) < Math.abs(bestSurplus))
+                    || (volume == bestVolume && Math.abs(surplus) == Math.abs(bestSurplus) && surplus > 0)) {
+                bestVolume = volume;
+                bestSurplus = surplus;
+                bestPrice = price;
+            }
+            while (bid >= 0 && bidPrices[bid] == price)
+                demand -= bidVolumes[bid--];
+        }
+        return bestPrice;
+    }
+}
@@ -0,0 +1,112 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.util.Random;
+
+/**
+ * Compares submitting orders one by one with submitting them in batches of different sizes.
+ * <br>
+ * The same random flow of limit orders and cancellations for many instruments is applied to new engines,
+ * once with <code>addOrder</code> and <code>cancel</code> and once per batch size with <code>submit</code>.
+ * Each mode runs several rounds after a full GC, the first rounds warm up the JIT and the best round is reported.
+ * Every mode must execute exactly the same volume
+ */
+public class BatchBenchmark {
+    private static final int COMMANDS = 2_000_000;
+    private static final int INSTRUMENTS = 16;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 8;
+    private static final int[] BATCH_SIZES = {16, 64, 256, 1024};
+
+    public static void main(String[] args) {
+        String[] products = new String[INSTRUMENTS];
+        for (int i = 0; i < INSTRUMENTS; i++)
+            products[i] = "instrument-" + i;
+
+        long expectedVolume = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            Order[] orders = createOrders(products);
+            System.gc();
+            VolumeListener listener = new VolumeListener();
+            MatchingEngine matcher = new MatchingEngine();
+            matcher.setExecutionListener(listener);
+            long t1 = System.nanoTime();
+            for (Order order : orders) {
+                if (order.getVolume() == 0)
+                    matcher.cancel(order.getOrderID() - 1);
+                else
+                    matcher.addOrder(order);
+            }
+            long t2 = System.nanoTime();
+            expectedVolume = listener.volume;
+            if (round >= WARMUP_ROUNDS)
+                best = Math.min(best, t2 - t1);
+        }
+        print("single orders", best);
+
+        for (int batchSize : BATCH_SIZES) {
+            CommandBatch batch = new CommandBatch(batchSize);
+            BatchResult result = new BatchResult(batchSize);
+            best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                Order[] orders = createOrders(products);
+                System.gc();
+                MatchingEngine matcher = new MatchingEngine();
+                long volume = 0;
+                long t1 = System.nanoTime();
+                for (int i = 0; i < orders.length; i += batchSize) {
+                    for (int j = i; j < Math.min(i + batchSize, orders.length); j++) {
+                        Order order = orders[j];
+                        if (order.getVolume() == 0)
+                            batch.cancel(order.getProduct(), order.getOrderID() - 1);
+                        else
+                            batch.add(order);
+                    }
+                    matcher.submit(batch, result);
+                    batch.clear();
+                    for (int f = 0; f < result.getFillCount(); f++)
+                        volume += result.getVolume(f);
+                }
+                long t2 = System.nanoTime();
+
+                if (volume != expectedVolume)
+                    throw new IllegalStateException("batches of " + batchSize + " executed " + volume
+                            + " instead of " + expectedVolume);
+                if (round >= WARMUP_ROUNDS)
+                    best = Math.min(best, t2 - t1);
+            }
+            print("batches of " + batchSize, best);
+        }
+    }
+
+    // every tenth command cancels the previous order, it is encoded as an order without volume
+    private static Order[] createOrders(String[] products) {
+        Random rand = new Random(42);
+        Order[] orders = new Order[COMMANDS];
+        for (int i = 0; i < COMMANDS; i++) {
+            String product = products[rand.nextInt(products.length)];
+            OrderType side = rand.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+            if (i % 10 == 9)
+                orders[i] = new LimitOrder(orders[i - 1].getProduct(), i, 0, 0, side, false);
+            else
+                orders[i] = new LimitOrder(product, i, rand.nextInt(1_000), 1 + rand.nextInt(1_000), side, false);
+        }
+        return orders;
+    }
+
+    private static void print(String name, long nanos) {
+        System.out.println(name + ", " + (long) (COMMANDS / (nanos / 1e9)) + " commands/s");
+    }
+
+    private static final class VolumeListener implements ExecutionListener {
+        private long volume;
+
+        @Override
+        public void onFill(String product, int takerOrderID, int makerOrderID, OrderType takerSide, long price, long volume) {
+            this.volume += volume;
+        }
+    }
+}
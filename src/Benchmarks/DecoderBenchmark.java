@@ -0,0 +1,125 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Compares submitting orders as objects with submitting them as binary messages.
+ * <br>
+ * The same random flow of limit orders and cancellations for many instruments is applied to new engines, once by
+ * creating a <code>LimitOrder</code> per order and calling <code>addOrder</code> / <code>cancel</code>, once by decoding
+ * pre-encoded messages with <code>onMessage</code>. The inputs of both modes (random numbers, respectively the message
+ * buffer) are created before the measurement. Besides the throughput, the bytes allocated by the engine thread per
+ * command are reported. Each mode runs several rounds after a full GC, the best round is reported and both
+ * modes must execute exactly the same volume
+ */
+public class DecoderBenchmark {
+    private static final int COMMANDS = 2_000_000;
+    private static final int INSTRUMENTS = 256;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 8;
+
+    public static void main(String[] args) {
+        String[] products = new String[INSTRUMENTS];
+        for (int i = 0; i < INSTRUMENTS; i++)
+            products[i] = "instrument-" + i;
+
+        Random rand = new Random(42);
+        int[] instruments = new int[COMMANDS];
+        int[] prices = new int[COMMANDS];
+        int[] volumes = new int[COMMANDS];
+        boolean[] buys = new boolean[COMMANDS];
+        for (int i = 0; i < COMMANDS; i++) {
+            // every tenth command cancels the previous order
+            instruments[i] = i % 10 == 9 ? instruments[i - 1] : rand.nextInt(INSTRUMENTS);
+            prices[i] = rand.nextInt(1_000);
+            volumes[i] = 1 + rand.nextInt(1_000);
+            buys[i] = rand.nextBoolean();
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long expectedVolume = 0;
+        long best = Long.MAX_VALUE;
+        long allocated = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            VolumeListener listener = new VolumeListener();
+            MatchingEngine matcher = newEngine(products, listener);
+            System.gc();
+            long bytes = threads.getThreadAllocatedBytes(thread);
+            long t1 = System.nanoTime();
+            for (int i = 0; i < COMMANDS; i++) {
+                if (i % 10 == 9)
+                    matcher.cancel(i - 1);
+                else
+                    matcher.addOrder(new LimitOrder(products[instruments[i]], i, prices[i], volumes[i],
+                            buys[i] ? OrderType.BUY : OrderType.SELL, false));
+            }
+            long t2 = System.nanoTime();
+            allocated = threads.getThreadAllocatedBytes(thread) - bytes;
+            expectedVolume = listener.volume;
+            if (round >= WARMUP_ROUNDS)
+                best = Math.min(best, t2 - t1);
+        }
+        print("order objects", best, allocated);
+
+        // instrument i is opened as the i-th book and therefore has product id i
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COMMANDS * 36);
+        MessageEncoder encoder = new MessageEncoder().wrap(buffer, 0);
+        for (int i = 0; i < COMMANDS; i++) {
+            if (i % 10 == 9)
+                encoder.cancel(instruments[i], i - 1);
+            else
+                encoder.newOrder(instruments[i], i, buys[i] ? OrderType.BUY : OrderType.SELL, MessageDecoder.LIMIT,
+                        prices[i], volumes[i], false);
+        }
+        int length = encoder.offset();
+
+        best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            VolumeListener listener = new VolumeListener();
+            MatchingEngine matcher = newEngine(products, listener);
+            System.gc();
+            long bytes = threads.getThreadAllocatedBytes(thread);
+            long t1 = System.nanoTime();
+            int offset = 0;
+            while (offset < length)
+                offset += matcher.onMessage(buffer, offset);
+            long t2 = System.nanoTime();
+            allocated = threads.getThreadAllocatedBytes(thread) - bytes;
+            if (listener.volume != expectedVolume)
+                throw new IllegalStateException("binary messages executed " + listener.volume
+                        + " instead of " + expectedVolume);
+            if (round >= WARMUP_ROUNDS)
+                best = Math.min(best, t2 - t1);
+        }
+        print("binary messages", best, allocated);
+    }
+
+    private static MatchingEngine newEngine(String[] products, VolumeListener listener) {
+        MatchingEngine matcher = new MatchingEngine();
+        for (String product : products)
+            matcher.openBook(product, FixedPoint.INTEGER);
+        matcher.setExecutionListener(listener);
+        return matcher;
+    }
+
+    private static void print(String name, long nanos, long allocated) {
+        System.out.println(name + ", " + (long) (COMMANDS / (nanos / 1e9)) + " commands/s, "
+                + allocated / COMMANDS + " bytes / command");
+    }
+
+    private static final class VolumeListener implements ExecutionListener {
+        private long volume;
+
+        @Override
+        public void onFill(String product, int takerOrderID, int makerOrderID, OrderType takerSide, long price, long volume) {
+            this.volume += volume;
+        }
+    }
+}
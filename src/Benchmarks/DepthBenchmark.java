@@ -0,0 +1,61 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.util.Random;
+
+/**
+ * Measures the cost of reading the top 10 levels of a book with <code>getDepth</code> after every command.
+ * <br>
+ * A book with 10,000 price levels per side receives passive orders and cancellations. In the first flow the prices
+ * are spread over the whole book, such that most changes are behind the top 10 levels and the cached depth stays
+ * valid. In the second flow every change hits the best bid, such that the cache is rebuilt for every request.
+ * All orders are created before the measurement
+ */
+public class DepthBenchmark {
+    private static final int COMMANDS = 2_000_000;
+    private static final int DEPTH = 10_000;
+    private static final int LEVELS = 10;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        for (boolean touch : new boolean[]{false, true}) {
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++)
+                best = Math.min(best, run(touch));
+            System.out.println((touch ? "changes at the best bid" : "changes spread over the book") + ", "
+                    + best / (double) COMMANDS + " ns / command and depth request");
+        }
+    }
+
+    private static long run(boolean touch) {
+        MatchingEngine matcher = new MatchingEngine();
+        int id = 0;
+        for (int price = 0; price < DEPTH; price++) {
+            matcher.addOrder(new LimitOrder("1", id++, price, 100, OrderType.BUY, false));
+            matcher.addOrder(new LimitOrder("1", id++, 2 * DEPTH - price, 100, OrderType.SELL, false));
+        }
+
+        // passive bids which are cancelled by the following command
+        Random rand = new Random(42);
+        Order[] orders = new Order[COMMANDS / 2];
+        for (int i = 0; i < orders.length; i++)
+            orders[i] = new LimitOrder("1", id++, touch ? DEPTH - 1 : rand.nextInt(DEPTH), 1 + rand.nextInt(100), OrderType.BUY, false);
+
+        long[] prices = new long[LEVELS];
+        long[] volumes = new long[LEVELS];
+        long checksum = 0;
+        long t1 = System.nanoTime();
+        for (Order order : orders) {
+            matcher.addOrder(order);
+            checksum += matcher.getDepth("1", OrderType.BUY, prices, volumes) + volumes[0];
+            matcher.cancel(order.getOrderID());
+            checksum += matcher.getDepth("1", OrderType.BUY, prices, volumes) + volumes[0];
+        }
+        long t2 = System.nanoTime();
+        if (checksum == 0)
+            throw new IllegalStateException("no depth was read");
+        return t2 - t1;
+    }
+}
@@ -0,0 +1,403 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark suite of the matching engine operations, replacing the timing loop of <code>Main</code>.
+ * <br>
+ * Every scenario starts from books in which each instrument has one resting order on each of depth price levels per
+ * side, bids in [0, depth) and asks in [depth, 2 * depth). Orders are submitted round robin to the instruments
+ * <ul>
+ * <li>add passive - limit orders inside the existing levels which do not cross the spread</li>
+ * <li>add crossing - limit orders across the spread which are (partially) executed</li>
+ * <li>delete - deletion of resting orders in random order</li>
+ * <li>amend - new volume and limit for resting orders</li>
+ * <li>market sweep - market orders which execute against the best 100 levels (or all levels of smaller books)</li>
+ * <li>fok reject - fill-or-kill orders with a limit behind the worst ask and more volume than the whole ask side,
+ * which are rejected by the liquidity check</li>
+ * <li>add passive tracked - like add passive, after cumulative volume tracking has been enabled</li>
+ * <li>fok first - the first fill-or-kill order per side and instrument, which enables the cumulative volume tracking of
+ * the opposite side by summing all of its levels</li>
+ * <li>fok first tracked - like fok first, after tracking has been enabled in advance</li>
+ * </ul>
+ * Scenarios can be selected by passing their names as arguments, e.g. <code>"market sweep"</code>.
+ * See <code>Harness</code> for how the scenarios are measured. Each scenario verifies its rounds with the counters of
+ * a <code>MetricsRegistry</code> and the depth of the books
+ */
+public class EngineBenchmark {
+    private static final int OPERATIONS = 200_000;
+    private static final int SWEEPS = 20_000;
+    private static final int SWEPT_LEVELS = 100;
+    private static final int RESTING_VOLUME = 1_000;
+    private static final int[] DEPTHS = new int[]{10, 1_000, 100_000};
+    private static final int[] INSTRUMENTS = new int[]{1, 16};
+    static final String[] SCENARIOS = {"add passive", "add crossing", "delete", "amend", "market sweep", "fok reject",
+            "add passive tracked", "fok first", "fok first tracked"};
+
+    public static void main(String[] args) {
+        Harness.printHeader();
+        for (int instruments : INSTRUMENTS) {
+            for (int depth : DEPTHS) {
+                for (String name : SCENARIOS) {
+                    if (args.length == 0 || Arrays.asList(args).contains(name))
+                        Harness.run(name, scenario(name), depth, instruments);
+                }
+            }
+        }
+    }
+
+    static Harness.Scenario scenario(String name) {
+        switch (name) {
+            case "add passive": return new AddPassive();
+            case "add crossing": return new AddCrossing();
+            case "delete": return new Delete();
+            case "amend": return new Amend();
+            case "market sweep": return new MarketSweep();
+            case "fok reject": return new FokReject();
+            case "add passive tracked": return new AddPassiveTracked();
+            case "fok first": return new FokFirst(false);
+            case "fok first tracked": return new FokFirst(true);
+            default: throw new IllegalArgumentException("unknown scenario " + name);
+        }
+    }
+
+    /**
+     * Books of all instruments with one resting order per level and side, shared by all scenarios
+     */
+    private abstract static class BookScenario extends Harness.Scenario {
+        MatchingEngine matcher;
+        MetricsRegistry metrics;
+        String[] products;
+        Random rand;
+        int nextOrderID;
+        int depth;
+
+        void createBooks(int depth, int instruments) {
+            matcher = new MatchingEngine();
+            metrics = new MetricsRegistry();
+            matcher.setMetricsRegistry(metrics);
+            this.depth = depth;
+            products = new String[instruments];
+            rand = new Random(42);
+            nextOrderID = 0;
+            for (int p = 0; p < instruments; p++) {
+                products[p] = "instrument-" + p;
+                for (int level = 0; level < depth; level++) {
+                    matcher.addOrder(new LimitOrder(products[p], nextOrderID++, level, RESTING_VOLUME, OrderType.BUY, false));
+                    matcher.addOrder(new LimitOrder(products[p], nextOrderID++, depth + level, RESTING_VOLUME, OrderType.SELL, false));
+                }
+            }
+        }
+
+        void trackCumulativeVolume() {
+            for (String product : products)
+                matcher.trackCumulativeVolume(product);
+        }
+
+        static void check(boolean condition, String message) {
+            if (!condition)
+                throw new IllegalStateException(message);
+        }
+
+        // total volume of a side, which has at most 2 * depth levels in all scenarios
+        long volume(String product, OrderType side) {
+            long volume = 0;
+            for (PriceLevel level : matcher.getDepth(product, side, 2 * depth))
+                volume += level.getVolume();
+            return volume;
+        }
+
+        void checkNotCrossed() {
+            for (String product : products) {
+                List<PriceLevel> bid = matcher.getDepth(product, OrderType.BUY, 1);
+                List<PriceLevel> ask = matcher.getDepth(product, OrderType.SELL, 1);
+                check(bid.isEmpty() || ask.isEmpty() || bid.get(0).getPrice() < ask.get(0).getPrice(), product + " is crossed");
+            }
+        }
+
+        // no order was executed and the books hold their initial orders plus the orders
+        void checkRested(Order[] orders) {
+            check(metrics.getTotal(BookMetrics.Counter.FILLS) == 0, "orders were executed");
+            for (String product : products) {
+                for (OrderType side : OrderType.values()) {
+                    long expected = (long) depth * RESTING_VOLUME;
+                    for (Order order : orders) {
+                        if (order.getProduct().equals(product) && order.getSide() == side)
+                            expected += order.getVolume();
+                    }
+                    check(volume(product, side) == expected, side + " volume of " + product);
+                }
+            }
+        }
+
+        // random limit order which rests on one of the existing levels without crossing the spread
+        Order passiveOrder(int i, int depth) {
+            OrderType side = rand.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+            long limit = side == OrderType.BUY ? rand.nextInt(depth) : depth + rand.nextInt(depth);
+            return new LimitOrder(products[i % products.length], nextOrderID++, limit, 1 + rand.nextInt(RESTING_VOLUME), side, false);
+        }
+    }
+
+    private static final class AddPassive extends BookScenario {
+        private Order[] orders;
+
+        @Override
+        int prepare(int depth, int instruments) {
+            createBooks(depth, instruments);
+            orders = new Order[OPERATIONS];
+            for (int i = 0; i < OPERATIONS; i++)
+                orders[i] = passiveOrder(i, depth);
+            return OPERATIONS;
+        }
+
+        @Override
+        void operation(int i) {
+            matcher.addOrder(orders[i]);
+        }
+
+        @Override
+        void verify() {
+            checkRested(orders);
+        }
+    }
+
+    private static final class AddPassiveTracked extends BookScenario {
+        private Order[] orders;
+
+        @Override
+        int prepare(int depth, int instruments) {
+            createBooks(depth, instruments);
+            trackCumulativeVolume();
+            orders = new Order[OPERATIONS];
+            for (int i = 0; i < OPERATIONS; i++)
+                orders[i] = passiveOrder(i, depth);
+            return OPERATIONS;
+        }
+
+        @Override
+        void operation(int i) {
+            matcher.addOrder(orders[i]);
+        }
+
+        @Override
+        void verify() {
+            checkRested(orders);
+        }
+    }
+
+    private static final class FokReject extends BookScenario {
+        private Order[] orders;
+
+        @Override
+        int prepare(int depth, int instruments) {
+            createBooks(depth, instruments);
+            trackCumulativeVolume();
+            orders = new Order[OPERATIONS];
+            long volume = (long) depth * RESTING_VOLUME + 1;
+            for (int i = 0; i < OPERATIONS; i++)
+                orders[i] = new KillOrFillOrder(products[i % instruments], 2 * depth, nextOrderID++, volume, OrderType.BUY, false);
+            return OPERATIONS;
+        }
+
+        @Override
+        void operation(int i) {
+            matcher.addOrder(orders[i]);
+        }
+
+        // all orders were killed without touching the books
+        @Override
+        void verify() {
+            checkRested(new Order[0]);
+        }
+    }
+
+    private static final class FokFirst extends BookScenario {
+        private final boolean tracked;
+        private Order[] orders;
+
+        FokFirst(boolean tracked) {
+            this.tracked = tracked;
+        }
+
+        @Override
+        int prepare(int depth, int instruments) {
+            createBooks(depth, instruments);
+            if (tracked)
+                trackCumulativeVolume();
+            // one buy and one sell order per instrument, which cannot be executed
+            orders = new Order[2 * instruments];
+            for (int p = 0; p < instruments; p++) {
+                orders[2 * p] = new KillOrFillOrder(products[p], 2 * depth, nextOrderID++, Long.MAX_VALUE, OrderType.BUY, false);
+                orders[2 * p + 1] = new KillOrFillOrder(products[p], 0, nextOrderID++, Long.MAX_VALUE, OrderType.SELL, false);
+            }
+            return orders.length;
+        }
+
+        @Override
+        void operation(int i) {
+            matcher.addOrder(orders[i]);
+        }
+
+        @Override
+        void verify() {
+            checkRested(new Order[0]);
+        }
+    }
+
+    private static final class AddCrossing extends BookScenario {
+        private Order[] orders;
+
+        @Override
+        int prepare(int depth, int instruments) {
+            createBooks(depth, instruments);
+            orders = new Order[OPERATIONS];
+            for (int i = 0; i < OPERATIONS; i++) {
+                OrderType side = rand.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                long limit = side == OrderType.BUY ? depth + rand.nextInt(depth) : rand.nextInt(depth);
+                orders[i] = new LimitOrder(products[i % instruments], nextOrderID++, limit, 1 + rand.nextInt(RESTING_VOLUME), side, false);
+            }
+            return OPERATIONS;
+        }
+
+        @Override
+        void operation(int i) {
+            matcher.addOrder(orders[i]);
+        }
+
+        // the orders were executed and no crossed book is left behind
+        @Override
+        void verify() {
+            check(metrics.getTotal(BookMetrics.Counter.FILLS) > 0, "crossing orders were not executed");
+            checkNotCrossed();
+        }
+    }
+
+    private static final class Delete extends BookScenario {
+        private Order[] orders;
+
+        @Override
+        int prepare(int depth, int instruments) {
+            createBooks(depth, instruments);
+            orders = new Order[OPERATIONS];
+            for (int i = 0; i < OPERATIONS; i++) {
+                orders[i] = passiveOrder(i, depth);
+                matcher.addOrder(orders[i]);
+            }
+            // delete in random order
+            for (int i = OPERATIONS - 1; i > 0; i--) {
+                int j = rand.nextInt(i + 1);
+                Order order = orders[i];
+                orders[i] = orders[j];
+                orders[j] = order;
+            }
+            return OPERATIONS;
+        }
+
+        @Override
+        void operation(int i) {
+            matcher.deleteOrder(orders[i]);
+        }
+
+        @Override
+        void verify() {
+            check(metrics.getTotal(BookMetrics.Counter.ORDERS_DELETED) == OPERATIONS, "orders were not deleted");
+            checkRested(new Order[0]);
+        }
+    }
+
+    private static final class Amend extends BookScenario {
+        private Order[] amended;
+        private int[] orderIDs;
+        private long[] volumes;
+        private long[] limits;
+
+        @Override
+        int prepare(int depth, int instruments) {
+            createBooks(depth, instruments);
+            Order[] orders = new Order[OPERATIONS];
+            for (int i = 0; i < OPERATIONS; i++) {
+                orders[i] = passiveOrder(i, depth);
+                matcher.addOrder(orders[i]);
+            }
+            amended = new Order[OPERATIONS];
+            orderIDs = new int[OPERATIONS];
+            volumes = new long[OPERATIONS];
+            limits = new long[OPERATIONS];
+            for (int i = 0; i < OPERATIONS; i++) {
+                Order order = orders[rand.nextInt(OPERATIONS)];
+                amended[i] = order;
+                orderIDs[i] = order.getOrderID();
+                volumes[i] = 1 + rand.nextInt(RESTING_VOLUME);
+                limits[i] = order.getSide() == OrderType.BUY ? rand.nextInt(depth) : depth + rand.nextInt(depth);
+            }
+            return OPERATIONS;
+        }
+
+        @Override
+        void operation(int i) {
+            matcher.amend(orderIDs[i], volumes[i], limits[i]);
+        }
+
+        // the resting orders are amended in place and hold the volume and limit of their last amendment
+        @Override
+        void verify() {
+            check(metrics.getTotal(BookMetrics.Counter.FILLS) == 0, "amended orders were executed");
+            check(metrics.getTotal(BookMetrics.Counter.AMENDS) == OPERATIONS, "orders were not amended");
+            IdentityHashMap<Order, Integer> last = new IdentityHashMap<>();
+            for (int i = 0; i < OPERATIONS; i++)
+                last.put(amended[i], i);
+            last.forEach((order, i) -> check(order.getVolume() == volumes[i] && order.getLimit() == limits[i],
+                    "order " + order.getOrderID() + " does not hold its last amendment"));
+        }
+    }
+
+    private static final class MarketSweep extends BookScenario {
+        private Order[] sweeps;
+        private String[] sweptProducts;
+        private int levels;
+
+        @Override
+        int prepare(int depth, int instruments) {
+            createBooks(depth, instruments);
+            levels = Math.min(depth, SWEPT_LEVELS);
+            sweeps = new Order[SWEEPS];
+            sweptProducts = new String[SWEEPS];
+            for (int i = 0; i < SWEEPS; i++) {
+                sweptProducts[i] = products[i % instruments];
+                sweeps[i] = new MarketOrder(sweptProducts[i], nextOrderID++, (long) levels * RESTING_VOLUME, OrderType.BUY, false);
+            }
+            return SWEEPS;
+        }
+
+        // restores the levels executed by the previous sweep of the instrument
+        @Override
+        void beforeOperation(int i) {
+            if (i < products.length)
+                return;
+            for (int level = 0; level < levels; level++)
+                matcher.addOrder(new LimitOrder(sweptProducts[i], nextOrderID++, depth + level, RESTING_VOLUME, OrderType.SELL, false));
+        }
+
+        @Override
+        void operation(int i) {
+            matcher.addOrder(sweeps[i]);
+        }
+
+        // every sweep executed one order on each of the swept levels, the last sweeps left the levels empty
+        @Override
+        void verify() {
+            check(metrics.getTotal(BookMetrics.Counter.FILLS) == (long) SWEEPS * levels, "sweeps did not execute all levels");
+            for (String product : products) {
+                List<PriceLevel> ask = matcher.getDepth(product, OrderType.SELL, 1);
+                check(depth > levels ? ask.get(0).getPrice() == depth + levels : ask.isEmpty(), "asks of " + product + " were not swept");
+                check(volume(product, OrderType.BUY) == (long) depth * RESTING_VOLUME, "bids of " + product + " changed");
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package Benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Minimal benchmark harness for the matching engine benchmarks.
+ * <br>
+ * Every scenario is run in several warmup rounds, which are discarded such that the measured rounds run compiled
+ * code, followed by the measured rounds. Before each round the scenario prepares its state and all inputs (e.g. the
+ * orders and their random prices), which is not measured. During a measured round each operation is timed
+ * individually with <code>System.nanoTime</code>, which yields the latency percentiles as well as the throughput.
+ * The timer overhead, which is included in all results, is printed by <code>printHeader</code>.
+ * After each round the scenario verifies that its operations did what is measured (e.g. that passive orders were not
+ * executed), such that a broken scenario fails with an <code>IllegalStateException</code> instead of reporting numbers
+ */
+final class Harness {
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final double[] PERCENTILES = new double[]{0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * A benchmarked operation, e.g. adding an order, and the state it operates on
+     */
+    abstract static class Scenario {
+        /**
+         * Creates the state of a round and all inputs of its operations, not measured
+         * @return number of operations of the round
+         */
+        abstract int prepare(int depth, int instruments);
+
+        /**
+         * Called before operation i, not measured
+         */
+        void beforeOperation(int i) {}
+
+        /**
+         * The measured operation
+         */
+        abstract void operation(int i);
+
+        /**
+         * Checks the state after all operations of a round, not measured
+         * @throws IllegalStateException if the operations did not have the effect the scenario measures
+         */
+        void verify() {}
+    }
+
+    private Harness() {}
+
+    static void printHeader() {
+        long overhead = timerOverhead();
+        System.out.println("timer overhead ~" + overhead + " ns, included in all results");
+        System.out.println("scenario, depth, instruments, ops/s, p50 [ns], p90 [ns], p99 [ns], p99.9 [ns], max [ns]");
+    }
+
+    /**
+     * Runs the warmup and measured rounds of the scenario and prints the results of all measured rounds
+     */
+    static void run(String name, Scenario scenario, int depth, int instruments) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++)
+            round(scenario, depth, instruments);
+
+        long[][] rounds = new long[MEASURED_ROUNDS][];
+        int operations = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            rounds[round] = round(scenario, depth, instruments);
+            operations += rounds[round].length;
+        }
+
+        long[] samples = new long[operations];
+        long total = 0;
+        int offset = 0;
+        for (long[] round : rounds) {
+            System.arraycopy(round, 0, samples, offset, round.length);
+            offset += round.length;
+        }
+        for (long sample : samples)
+            total += sample;
+        Arrays.sort(samples);
+
+        StringBuilder line = new StringBuilder()
+                .append(name).append(", ").append(depth).append(", ").append(instruments).append(", ")
+                .append((long) (operations / (total / 1e9)));
+        for (double percentile : PERCENTILES)
+            line.append(", ").append(percentile(samples, percentile));
+        line.append(", ").append(samples[samples.length - 1]);
+        System.out.println(line);
+    }
+
+    /**
+     * @return smallest sample such that at least the percentile (between 0 and 1) of all samples are not larger
+     */
+    static long percentile(long[] sortedSamples, double percentile) {
+        return sortedSamples[(int) Math.max(0, Math.min(sortedSamples.length - 1, Math.ceil(percentile * sortedSamples.length) - 1))];
+    }
+
+    /**
+     * Prepares and runs one round of the scenario and verifies its result
+     * @return latency of each operation
+     */
+    static long[] round(Scenario scenario, int depth, int instruments) {
+        int operations = scenario.prepare(depth, instruments);
+        long[] samples = new long[operations];
+        for (int i = 0; i < operations; i++) {
+            scenario.beforeOperation(i);
+            long t1 = System.nanoTime();
+            scenario.operation(i);
+            samples[i] = System.nanoTime() - t1;
+        }
+        scenario.verify();
+        return samples;
+    }
+
+    private static long timerOverhead() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 1_000_000; i++) {
+            long t1 = System.nanoTime();
+            min = Math.min(min, System.nanoTime() - t1);
+        }
+        return min;
+    }
+}
@@ -0,0 +1,57 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+/**
+ * Measures the cost of refilling the displayed slice of an iceberg order.
+ * <br>
+ * The best ask of a book with 1,000 levels per side holds a slice of 10 lots, which is executed by a market order.
+ * In the first flow the slice belongs to an iceberg order and is refilled by the book. In the second flow the iceberg
+ * is emulated outside the engine: the slice is a limit order and a new limit order is submitted once it has been
+ * executed, which doubles the number of commands. Market orders and emulated slices are taken from an order pool
+ */
+public class IcebergBenchmark {
+    private static final int SLICES = 5_000_000;
+    private static final int DEPTH = 1_000;
+    private static final long PEAK = 10;
+    private static final long BEST_ASK = 2 * DEPTH;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        long iceberg = Long.MAX_VALUE;
+        long emulated = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            iceberg = Math.min(iceberg, run(true));
+            emulated = Math.min(emulated, run(false));
+        }
+        System.out.println("iceberg order, " + iceberg / (double) SLICES + " ns / slice");
+        System.out.println("emulated iceberg, " + emulated / (double) SLICES + " ns / slice");
+    }
+
+    private static long run(boolean iceberg) {
+        MatchingEngine matcher = new MatchingEngine();
+        int id = 0;
+        for (int price = 1; price <= DEPTH; price++) {
+            matcher.addOrder(new LimitOrder("1", id++, DEPTH - price, 100, OrderType.BUY, false));
+            matcher.addOrder(new LimitOrder("1", id++, BEST_ASK + price, 100, OrderType.SELL, false));
+        }
+        OrderPool pool = new OrderPool(16);
+        if (iceberg)
+            matcher.addOrder(new IcebergOrder("1", id++, BEST_ASK, PEAK * (SLICES + 1), PEAK, OrderType.SELL, false));
+        else
+            matcher.addOrder(pool.limitOrder("1", id++, BEST_ASK, PEAK, OrderType.SELL, false));
+
+        System.gc();
+        long t1 = System.nanoTime();
+        for (int i = 0; i < SLICES; i++) {
+            matcher.addOrder(pool.marketOrder("1", id++, PEAK, OrderType.BUY, false));
+            if (!iceberg)
+                matcher.addOrder(pool.limitOrder("1", id++, BEST_ASK, PEAK, OrderType.SELL, false));
+        }
+        long time = System.nanoTime() - t1;
+        if (matcher.getDepth("1", OrderType.SELL, 1).get(0).getPrice() != BEST_ASK)
+            throw new IllegalStateException("slice was not refilled");
+        return time;
+    }
+}
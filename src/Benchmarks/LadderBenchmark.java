@@ -0,0 +1,54 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.util.Random;
+
+/**
+ * Compares the red black tree order books with order books which store their price levels in an
+ * array backed price ladder. The scenarios correspond to the timing plots in the README
+ * <ul>
+ * <li>insertion - bids in [0, depth), asks in [depth, 2 * depth), no order is executed</li>
+ * <li>insertion and execution - bids and asks in [0, depth), orders cross and are executed</li>
+ * </ul>
+ * Order volumes are drawn from [0, 1000). All random numbers are drawn before the timed section
+ */
+public class LadderBenchmark {
+    private static final int ORDERS_PER_SIDE = 2_000_000;
+    private static final int[] DEPTHS = new int[]{10, 100, 1_000, 10_000, 100_000};
+
+    public static void main(String[] args) {
+        System.out.println("scenario, depth, tree [ns/order], ladder [ns/order]");
+        for (int depth : DEPTHS) {
+            // warm up both modes once before measuring
+            run(depth, false, false);
+            run(depth, false, true);
+
+            System.out.println("insert, " + depth + ", " + run(depth, false, false) + ", " + run(depth, false, true));
+            System.out.println("insert & execute, " + depth + ", " + run(depth, true, false) + ", " + run(depth, true, true));
+        }
+    }
+
+    private static double run(int depth, boolean crossing, boolean ladder) {
+        Random rand = new Random(42);
+        Order[] orders = new Order[2 * ORDERS_PER_SIDE];
+        for (int i = 0; i < ORDERS_PER_SIDE; i++) {
+            int bid = rand.nextInt(depth);
+            int ask = crossing ? rand.nextInt(depth) : depth + rand.nextInt(depth);
+            orders[2 * i] = new LimitOrder("1", 2 * i, bid, rand.nextInt(1000), OrderType.BUY, false);
+            orders[2 * i + 1] = new LimitOrder("1", 2 * i + 1, ask, rand.nextInt(1000), OrderType.SELL, false);
+        }
+
+        MatchingEngine matcher = new MatchingEngine();
+        if (ladder)
+            matcher.openBook("1", FixedPoint.INTEGER, 0, 2 * depth, 1);
+
+        long t1 = System.nanoTime();
+        for (Order order : orders)
+            matcher.addOrder(order);
+        long t2 = System.nanoTime();
+
+        return (t2 - t1) / (double) orders.length;
+    }
+}
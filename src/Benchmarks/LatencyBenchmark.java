@@ -0,0 +1,78 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.util.Random;
+
+/**
+ * Measures the overhead of the latency instrumentation and prints the recorded latency distributions.
+ * <br>
+ * The same random flow of adds, cancels and amends over several instruments is processed by an engine without and
+ * an engine with a <code>LatencyRecorder</code>. In a third run, a monitoring thread continuously copies the histograms
+ * while the instrumented engine runs, as a metrics exporter would
+ */
+public class LatencyBenchmark {
+    private static final int COMMANDS = 4_000_000;
+    private static final String[] PRODUCTS = new String[]{"1", "2", "3", "4", "5"};
+
+    public static void main(String[] args) throws InterruptedException {
+        // warm up both modes once before measuring
+        run(null);
+        run(new LatencyRecorder());
+
+        long plain = run(null);
+        long recorded = run(new LatencyRecorder());
+        LatencyRecorder recorder = new LatencyRecorder();
+        Thread monitor = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                for (String product : recorder.getProducts())
+                    recorder.getLatency(product, LatencyRecorder.Operation.MATCH);
+            }
+        }, "monitor");
+        monitor.setDaemon(true);
+        monitor.start();
+        long instrumented = run(recorder);
+        monitor.interrupt();
+        monitor.join();
+
+        System.out.println("without recorder, " + plain / (double) COMMANDS + " ns/command");
+        System.out.println("with recorder, " + recorded / (double) COMMANDS + " ns/command");
+        System.out.println("with recorder and monitoring thread, " + instrumented / (double) COMMANDS + " ns/command");
+        for (LatencyRecorder.Operation operation : LatencyRecorder.Operation.values())
+            System.out.println(operation + " [ns] " + recorder.getLatency(PRODUCTS[0], operation));
+        System.out.println("fills per match " + recorder.getFillsPerMatch(PRODUCTS[0]));
+    }
+
+    private static long run(LatencyRecorder recorder) {
+        Random rand = new Random(42);
+        byte[] ops = new byte[COMMANDS];
+        Order[] orders = new Order[COMMANDS];
+        int[] targets = new int[COMMANDS];
+        int orderIDs = 0;
+        for (int i = 0; i < COMMANDS; i++) {
+            int op = rand.nextInt(10);
+            if (op < 6 || orderIDs == 0) {
+                OrderType side = rand.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                orders[i] = new LimitOrder(PRODUCTS[i % PRODUCTS.length], orderIDs++, rand.nextInt(1_000),
+                        1 + rand.nextInt(1_000), side, false);
+            } else {
+                ops[i] = (byte) (op < 8 ? 1 : 2);
+                targets[i] = rand.nextInt(orderIDs);
+            }
+        }
+
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.setLatencyRecorder(recorder);
+        long t1 = System.nanoTime();
+        for (int i = 0; i < COMMANDS; i++) {
+            if (ops[i] == 0)
+                matcher.addOrder(orders[i]);
+            else if (ops[i] == 1)
+                matcher.cancel(targets[i]);
+            else
+                matcher.amend(targets[i], 500, 500);
+        }
+        return System.nanoTime() - t1;
+    }
+}
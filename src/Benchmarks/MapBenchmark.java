@@ -0,0 +1,120 @@
+package Benchmarks;
+
+import MatchingEngine.IntObjectHashMap;
+import MatchingEngine.LongObjectHashMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the primitive open addressing maps used by the order trees and ticks with the JDK hash map.
+ * Each map is filled with the given number of live orders, afterwards the timed section replaces the oldest live
+ * order with a new one (remove + put) and looks up a random live order, which corresponds to the
+ * insert / cancel / locate pattern of the order book.
+ * All random numbers are drawn before the timed section
+ */
+public class MapBenchmark {
+    private static final int OPERATIONS = 5_000_000;
+    private static final int[] LIVE_ORDERS = new int[]{1_000, 100_000, 10_000_000};
+
+    public static void main(String[] args) {
+        System.out.println("live orders, HashMap<Long> [ns/op], LongObjectHashMap [ns/op], HashMap<Integer> [ns/op], IntObjectHashMap [ns/op]");
+        for (int live : LIVE_ORDERS) {
+            int[] lookups = lookups(live);
+
+            // warm up all maps once before measuring
+            jdkLong(live, lookups);
+            primitiveLong(live, lookups);
+            jdkInt(live, lookups);
+            primitiveInt(live, lookups);
+
+            System.out.println(live + ", " + jdkLong(live, lookups) + ", " + primitiveLong(live, lookups)
+                    + ", " + jdkInt(live, lookups) + ", " + primitiveInt(live, lookups));
+        }
+    }
+
+    // offsets (relative to the oldest live order) of the orders which are looked up
+    private static int[] lookups(int live) {
+        Random rand = new Random(42);
+        int[] lookups = new int[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++)
+            lookups[i] = rand.nextInt(live);
+        return lookups;
+    }
+
+    private static double jdkLong(int live, int[] lookups) {
+        Map<Long, Object> map = new HashMap<>();
+        for (int i = 0; i < live; i++)
+            map.put((long) i, Boolean.TRUE);
+
+        long found = 0;
+        long t1 = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            map.remove((long) i);
+            map.put((long) i + live, Boolean.TRUE);
+            if (map.get((long) i + 1 + lookups[i]) != null)
+                found++;
+        }
+        long t2 = System.nanoTime();
+        return result(t1, t2, found);
+    }
+
+    private static double primitiveLong(int live, int[] lookups) {
+        LongObjectHashMap<Object> map = new LongObjectHashMap<>();
+        for (int i = 0; i < live; i++)
+            map.put(i, Boolean.TRUE);
+
+        long found = 0;
+        long t1 = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            map.remove(i);
+            map.put((long) i + live, Boolean.TRUE);
+            if (map.get((long) i + 1 + lookups[i]) != null)
+                found++;
+        }
+        long t2 = System.nanoTime();
+        return result(t1, t2, found);
+    }
+
+    private static double jdkInt(int live, int[] lookups) {
+        Map<Integer, Object> map = new HashMap<>();
+        for (int i = 0; i < live; i++)
+            map.put(i, Boolean.TRUE);
+
+        long found = 0;
+        long t1 = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            map.remove(i);
+            map.put(i + live, Boolean.TRUE);
+            if (map.get(i + 1 + lookups[i]) != null)
+                found++;
+        }
+        long t2 = System.nanoTime();
+        return result(t1, t2, found);
+    }
+
+    private static double primitiveInt(int live, int[] lookups) {
+        IntObjectHashMap<Object> map = new IntObjectHashMap<>();
+        for (int i = 0; i < live; i++)
+            map.put(i, Boolean.TRUE);
+
+        long found = 0;
+        long t1 = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            map.remove(i);
+            map.put(i + live, Boolean.TRUE);
+            if (map.get(i + 1 + lookups[i]) != null)
+                found++;
+        }
+        long t2 = System.nanoTime();
+        return result(t1, t2, found);
+    }
+
+    // every lookup hits a live order, the check keeps the lookups from being optimized away
+    private static double result(long t1, long t2, long found) {
+        if (found != OPERATIONS)
+            throw new IllegalStateException("map lost live orders");
+        return (t2 - t1) / (double) OPERATIONS;
+    }
+}
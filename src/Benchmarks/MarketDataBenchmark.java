@@ -0,0 +1,83 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.util.Random;
+
+/**
+ * Measures the overhead of publishing incremental depth updates.
+ * <br>
+ * The same random flow of limit orders, market orders and cancellations is applied to new engines with and without
+ * a <code>MarketDataPublisher</code>. The orders are created before the measurement. Each mode runs several rounds
+ * after a full GC and the best round is reported, together with the number of published updates per command
+ */
+public class MarketDataBenchmark {
+    private static final int COMMANDS = 2_000_000;
+    private static final int INSTRUMENTS = 16;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 8;
+
+    public static void main(String[] args) {
+        String[] products = new String[INSTRUMENTS];
+        for (int i = 0; i < INSTRUMENTS; i++)
+            products[i] = "instrument-" + i;
+
+        for (boolean publish : new boolean[]{false, true}) {
+            long best = Long.MAX_VALUE;
+            long updates = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                Order[] orders = createOrders(products);
+                MatchingEngine matcher = new MatchingEngine();
+                UpdateCounter counter = new UpdateCounter();
+                MarketDataPublisher publisher = publish
+                        ? new MarketDataPublisher(1 << 16, TradeLogger.BackpressurePolicy.BLOCK, counter) : null;
+                matcher.setMarketDataPublisher(publisher);
+                System.gc();
+
+                long t1 = System.nanoTime();
+                for (Order order : orders) {
+                    if (order.getVolume() == 0)
+                        matcher.cancel(order.getOrderID() - 1);
+                    else
+                        matcher.addOrder(order);
+                }
+                long t2 = System.nanoTime();
+                if (publisher != null)
+                    publisher.shutdown();
+                updates = counter.updates;
+                if (round >= WARMUP_ROUNDS)
+                    best = Math.min(best, t2 - t1);
+            }
+            System.out.println((publish ? "with" : "without") + " market data, "
+                    + (long) (COMMANDS / (best / 1e9)) + " commands/s, "
+                    + String.format("%.2f", updates / (double) COMMANDS) + " updates / command");
+        }
+    }
+
+    // every tenth command cancels the previous order, it is encoded as an order without volume
+    private static Order[] createOrders(String[] products) {
+        Random rand = new Random(42);
+        Order[] orders = new Order[COMMANDS];
+        for (int i = 0; i < COMMANDS; i++) {
+            String product = products[rand.nextInt(products.length)];
+            OrderType side = rand.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+            if (i % 10 == 9)
+                orders[i] = new LimitOrder(orders[i - 1].getProduct(), i, 0, 0, side, false);
+            else if (i % 50 == 7)
+                orders[i] = new MarketOrder(product, i, 1 + rand.nextInt(5_000), side, false);
+            else
+                orders[i] = new LimitOrder(product, i, rand.nextInt(1_000), 1 + rand.nextInt(1_000), side, false);
+        }
+        return orders;
+    }
+
+    private static final class UpdateCounter implements DepthListener {
+        private long updates;
+
+        @Override
+        public void onUpdate(int productID, long sequence, OrderType side, byte action, long price, long volume, boolean endOfEvent) {
+            updates++;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Measures how fast the order books of a matching engine are rebuilt from its command journal.
+ * <br>
+ * A live engine processes random adds, cancels and amends for several instruments while journaling all commands.
+ * The live run is split into two sessions to also cover reopening an existing journal. Afterwards, a second
+ * engine replays the journal and both engines are compared by cancelling every order ID, which must succeed on
+ * both engines for exactly the same orders
+ */
+public class RecoveryBenchmark {
+    private static final int COMMANDS = 5_000_000;
+    private static final int SEGMENT_SIZE = 16 << 20;
+    private static final String DIRECTORY = "recoveryBenchmark";
+    private static final String[] PRODUCTS = new String[]{"1", "2", "3", "4", "5"};
+
+    public static void main(String[] args) throws IOException {
+        deleteJournal();
+        MatchingEngine live = new MatchingEngine();
+        live.openBook(PRODUCTS[0], FixedPoint.INTEGER, 0, 1_000, 1);
+        live.openBook(PRODUCTS[1], new FixedPoint(2, 0));
+
+        Random rand = new Random(42);
+        int orderIDs = 0;
+        long t1 = System.nanoTime();
+        for (int session = 0; session < 2; session++) {
+            CommandJournal journal = new CommandJournal(DIRECTORY, SEGMENT_SIZE);
+            live.setCommandJournal(journal);
+            if (session == 0) {
+                // books opened before the journal was registered are not journaled, open them again in the journal
+                live.closeAllBooks();
+                live.openBook(PRODUCTS[0], FixedPoint.INTEGER, 0, 1_000, 1);
+                live.openBook(PRODUCTS[1], new FixedPoint(2, 0));
+            }
+
+            for (int i = 0; i < COMMANDS / 2; i++) {
+                int op = rand.nextInt(10);
+                if (op < 6 || orderIDs == 0) {
+                    String product = PRODUCTS[rand.nextInt(PRODUCTS.length)];
+                    OrderType side = rand.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                    live.addOrder(new LimitOrder(product, orderIDs++, rand.nextInt(1_000), 1 + rand.nextInt(1_000), side, false));
+                } else if (op < 8) {
+                    live.cancel(rand.nextInt(orderIDs));
+                } else {
+                    live.amend(rand.nextInt(orderIDs), 1 + rand.nextInt(1_000), rand.nextInt(1_000));
+                }
+            }
+            journal.close();
+            live.setCommandJournal(null);
+        }
+        long t2 = System.nanoTime();
+
+        MatchingEngine recovered = new MatchingEngine();
+        long t3 = System.nanoTime();
+        long replayed = CommandJournal.replay(DIRECTORY, recovered);
+        long t4 = System.nanoTime();
+
+        for (int id = 0; id < orderIDs; id++) {
+            if (live.cancel(id) != recovered.cancel(id))
+                throw new IllegalStateException("recovered engine differs from live engine for order " + id);
+        }
+        deleteJournal();
+
+        System.out.println("live run, " + (long) (COMMANDS / ((t2 - t1) / 1e9)) + " commands/s");
+        System.out.println("replay, " + replayed + " commands in " + (t4 - t3) / 1e6 + " ms, "
+                + (long) (replayed / ((t4 - t3) / 1e9)) + " commands/s");
+    }
+
+    private static void deleteJournal() {
+        File[] files = new File(DIRECTORY).listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        new File(DIRECTORY).delete();
+    }
+}
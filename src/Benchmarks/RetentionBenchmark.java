@@ -0,0 +1,60 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.util.Random;
+
+/**
+ * Compares immediate removal of empty price levels with retained empty levels (see <code>RetentionPolicy</code>)
+ * in red black tree books with different limits of empty levels.
+ * <br>
+ * Each book holds one resting order on each of depth levels per side, bids in [0, depth) and asks in [depth, 2 * depth).
+ * The measured orders are crossing orders with prices within 16 ticks of the touch, such that the levels around the touch
+ * are emptied and recreated continuously. All random numbers are drawn before the timed section
+ */
+public class RetentionBenchmark {
+    private static final int ORDERS = 4_000_000;
+    private static final int BAND = 16;
+    private static final int[] DEPTHS = new int[]{100, 10_000, 1_000_000};
+    private static final int[] MAX_EMPTY_LEVELS = new int[]{0, 16, 64, 256};
+
+    public static void main(String[] args) {
+        System.out.println("depth, max empty levels, [ns/order]");
+        for (int depth : DEPTHS) {
+            // warm up once before measuring
+            run(depth, 16);
+            for (int maxEmptyLevels : MAX_EMPTY_LEVELS)
+                System.out.println(depth + ", " + maxEmptyLevels + ", " + run(depth, maxEmptyLevels));
+        }
+    }
+
+    // a limit of 0 empty levels removes levels immediately
+    private static double run(int depth, int maxEmptyLevels) {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.openBook("1", FixedPoint.INTEGER);
+        if (maxEmptyLevels > 0)
+            matcher.setRetentionPolicy("1", new RetentionPolicy(maxEmptyLevels, Long.MAX_VALUE, Long.MAX_VALUE));
+
+        int orderID = 0;
+        for (int level = 0; level < depth; level++) {
+            matcher.addOrder(new LimitOrder("1", orderID++, level, 1_000, OrderType.BUY, false));
+            matcher.addOrder(new LimitOrder("1", orderID++, depth + level, 1_000, OrderType.SELL, false));
+        }
+
+        Random rand = new Random(42);
+        Order[] orders = new Order[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            OrderType side = rand.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+            long price = depth - BAND + rand.nextInt(2 * BAND);
+            orders[i] = new LimitOrder("1", orderID++, price, 1 + rand.nextInt(1000), side, false);
+        }
+
+        long t1 = System.nanoTime();
+        for (Order order : orders)
+            matcher.addOrder(order);
+        long t2 = System.nanoTime();
+
+        return (t2 - t1) / (double) ORDERS;
+    }
+}
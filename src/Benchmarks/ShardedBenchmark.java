@@ -0,0 +1,78 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the throughput of the sharded matching engine for an order flow spread over many instruments.
+ * <br>
+ * The same random flow of limit orders is processed by a single threaded <code>MatchingEngine</code> and by
+ * <code>ShardedMatchingEngine</code>s with 1, 2, 4, ... shards up to the number of available processors.
+ * The orders are created up front such that only the matching is measured. Each run must report exactly the
+ * same executed volume as the single threaded engine
+ */
+public class ShardedBenchmark {
+    private static final int ORDERS = 4_000_000;
+    private static final int INSTRUMENTS = 64;
+
+    public static void main(String[] args) {
+        String[] products = new String[INSTRUMENTS];
+        for (int i = 0; i < INSTRUMENTS; i++)
+            products[i] = "instrument-" + i;
+
+        VolumeListener listener = new VolumeListener();
+        MatchingEngine single = new MatchingEngine();
+        single.setExecutionListener(listener);
+        Order[] orders = createOrders(products);
+        long t1 = System.nanoTime();
+        for (Order order : orders)
+            single.addOrder(order);
+        long t2 = System.nanoTime();
+        long expectedVolume = listener.volume.sum();
+        print("single threaded engine", t2 - t1);
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int shards = 1; shards <= Math.max(processors, 2); shards <<= 1) {
+            listener = new VolumeListener();
+            ShardedMatchingEngine sharded = new ShardedMatchingEngine(shards, 1 << 16, listener);
+            orders = createOrders(products);
+            t1 = System.nanoTime();
+            for (Order order : orders)
+                sharded.addOrder(order);
+            sharded.shutdown();
+            t2 = System.nanoTime();
+
+            if (listener.volume.sum() != expectedVolume)
+                throw new IllegalStateException("sharded engine executed " + listener.volume.sum()
+                        + " instead of " + expectedVolume);
+            print(shards + " shards", t2 - t1);
+        }
+    }
+
+    private static Order[] createOrders(String[] products) {
+        Random rand = new Random(42);
+        Order[] orders = new Order[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            OrderType side = rand.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+            orders[i] = new LimitOrder(products[rand.nextInt(products.length)], i, rand.nextInt(1_000),
+                    1 + rand.nextInt(1_000), side, false);
+        }
+        return orders;
+    }
+
+    private static void print(String name, long nanos) {
+        System.out.println(name + ", " + (long) (ORDERS / (nanos / 1e9)) + " orders/s");
+    }
+
+    private static final class VolumeListener implements ExecutionListener {
+        private final LongAdder volume = new LongAdder();
+
+        @Override
+        public void onFill(String product, int takerOrderID, int makerOrderID, OrderType takerSide, long price, long volume) {
+            this.volume.add(volume);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Measures how fast a matching engine starts from a snapshot of its order books and the tail of its command journal.
+ * <br>
+ * A live engine fills a book with resting orders (10M by default, can be set with the first argument) while journaling
+ * all commands, takes a snapshot and processes further random commands. The snapshot is taken three times, the third time
+ * into the buffer of the first, which shows the pause of periodic snapshots. A second engine restores the snapshot and replays
+ * the commands journaled after it. Both engines are compared by cancelling every order ID, which must succeed on
+ * both engines for exactly the same orders
+ */
+public class SnapshotBenchmark {
+    private static final int TAIL_COMMANDS = 1_000_000;
+    private static final int SEGMENT_SIZE = 64 << 20;
+    private static final String DIRECTORY = "snapshotBenchmark";
+    private static final String SNAPSHOT = DIRECTORY + "/books.snapshot";
+    private static final String PRODUCT = "1";
+
+    public static void main(String[] args) throws IOException {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        deleteDirectory();
+        MatchingEngine live = new MatchingEngine();
+        CommandJournal journal = new CommandJournal(DIRECTORY, SEGMENT_SIZE);
+        live.setCommandJournal(journal);
+        live.openBook(PRODUCT, FixedPoint.INTEGER, 0, 1_000, 1);
+
+        // bids below and asks above 500 such that all orders rest in the book
+        Random rand = new Random(42);
+        int orderIDs = 0;
+        for (int i = 0; i < orders; i++) {
+            OrderType side = rand.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+            long limit = side == OrderType.BUY ? rand.nextInt(500) : 500 + rand.nextInt(500);
+            live.addOrder(new LimitOrder(PRODUCT, orderIDs++, limit, 1 + rand.nextInt(1_000), side, false));
+        }
+
+        long t0 = System.nanoTime();
+        live.snapshot(SNAPSHOT).join();
+        // the first two snapshots allocate the buffer pair, the third reuses the buffer of the first
+        live.snapshot(SNAPSHOT).join();
+        long t1 = System.nanoTime();
+        CompletableFuture<Void> written = live.snapshot(SNAPSHOT);
+        long t2 = System.nanoTime();
+        written.join();
+        long t3 = System.nanoTime();
+
+        for (int i = 0; i < TAIL_COMMANDS; i++) {
+            int op = rand.nextInt(10);
+            if (op < 6) {
+                OrderType side = rand.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                live.addOrder(new LimitOrder(PRODUCT, orderIDs++, rand.nextInt(1_000), 1 + rand.nextInt(1_000), side, false));
+            } else if (op < 8) {
+                live.cancel(rand.nextInt(orderIDs));
+            } else {
+                live.amend(rand.nextInt(orderIDs), 1 + rand.nextInt(1_000), rand.nextInt(1_000));
+            }
+        }
+        journal.close();
+        live.setCommandJournal(null);
+
+        MatchingEngine recovered = new MatchingEngine();
+        long t4 = System.nanoTime();
+        long position = recovered.restore(SNAPSHOT);
+        long t5 = System.nanoTime();
+        long replayed = CommandJournal.replay(DIRECTORY, recovered, position);
+        long t6 = System.nanoTime();
+
+        for (int id = 0; id < orderIDs; id++) {
+            if (live.cancel(id) != recovered.cancel(id))
+                throw new IllegalStateException("recovered engine differs from live engine for order " + id);
+        }
+        deleteDirectory();
+
+        System.out.println("first two snapshots of " + orders + " orders, written after " + (t1 - t0) / 1e6 + " ms");
+        System.out.println("snapshot into a reused buffer, engine paused for " + (t2 - t1) / 1e6
+                + " ms, written after " + (t3 - t1) / 1e6 + " ms");
+        System.out.println("restore, " + (t5 - t4) / 1e6 + " ms");
+        System.out.println("replay of the journal tail, " + replayed + " commands in " + (t6 - t5) / 1e6 + " ms");
+    }
+
+    private static void deleteDirectory() {
+        File[] files = new File(DIRECTORY).listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        new File(DIRECTORY).delete();
+    }
+}
@@ -0,0 +1,133 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+/**
+ * Measures the cost of stop orders in a book holding 1,000,000 dormant stops.
+ * <br>
+ * <ul>
+ * <li>trades - market orders of alternating sides which trade without triggering any stop, without any other orders,
+ * with the dormant stops and with the same number of resting limit orders behind the best prices instead of the stops.
+ * The last two share the cost of the larger order index, their difference is the cost the trigger book adds to a trade</li>
+ * <li>add and cancel stop - a stop order is added to the trigger book and cancelled again</li>
+ * <li>release - a single trade triggers all stops, which are released and executed one after another</li>
+ * </ul>
+ * The stop prices are spread over 500,000 levels per side. Except for the market orders of the trades, which are
+ * taken from an order pool, all orders are created before the measurement
+ */
+public class StopBenchmark {
+    private static final int STOPS = 1_000_000;
+    private static final int STOP_LEVELS = 500_000;
+    private static final int OPERATIONS = 2_000_000;
+    private static final int ROUNDS = 5;
+    private static final long BID = 1_000_000;
+    private static final long ASK = BID + 2;
+    private static final long LIQUIDITY = 1L << 40;
+
+    public static void main(String[] args) {
+        long withoutStops = Long.MAX_VALUE;
+        long withStops = Long.MAX_VALUE;
+        long withResting = Long.MAX_VALUE;
+        long addCancel = Long.MAX_VALUE;
+        long release = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            withoutStops = Math.min(withoutStops, trades(false, false));
+            withStops = Math.min(withStops, trades(true, false));
+            withResting = Math.min(withResting, trades(false, true));
+            addCancel = Math.min(addCancel, addAndCancel());
+            release = Math.min(release, release());
+        }
+        System.out.println("trades without stops, " + withoutStops / (double) OPERATIONS + " ns / trade");
+        System.out.println("trades with " + STOPS + " dormant stops, " + withStops / (double) OPERATIONS + " ns / trade");
+        System.out.println("trades with " + STOPS + " resting orders, " + withResting / (double) OPERATIONS + " ns / trade");
+        System.out.println("add and cancel stop, " + addCancel / (double) OPERATIONS + " ns / stop");
+        System.out.println("release " + STOPS + " stops, " + release / (double) STOPS + " ns / released stop");
+    }
+
+    // deep resting liquidity at the best bid and ask, which is never depleted by the orders of the benchmark
+    private static MatchingEngine book(long bid, long ask) {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.addOrder(new LimitOrder("1", -1, bid, LIQUIDITY, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("1", -2, ask, LIQUIDITY, OrderType.SELL, false));
+        return matcher;
+    }
+
+    // buy stops above the ask and sell stops below the bid, none of which is triggered by trades inside the spread
+    private static void addDormantStops(MatchingEngine matcher) {
+        for (int i = 0; i < STOPS; i++) {
+            long offset = 1 + (i >> 1) % STOP_LEVELS;
+            if ((i & 1) == 0)
+                matcher.addOrder(new StopOrder("1", i, ASK + offset, 1, OrderType.BUY, false));
+            else
+                matcher.addOrder(new StopOrder("1", i, BID - offset, 1, OrderType.SELL, false));
+        }
+    }
+
+    // resting orders on the levels behind the best bid and ask
+    private static void addRestingOrders(MatchingEngine matcher) {
+        for (int i = 0; i < STOPS; i++) {
+            long offset = 1 + (i >> 1) % STOP_LEVELS;
+            if ((i & 1) == 0)
+                matcher.addOrder(new LimitOrder("1", i, BID - offset, 1, OrderType.BUY, false));
+            else
+                matcher.addOrder(new LimitOrder("1", i, ASK + offset, 1, OrderType.SELL, false));
+        }
+    }
+
+    private static long trades(boolean stops, boolean resting) {
+        MatchingEngine matcher = book(BID, ASK);
+        if (stops)
+            addDormantStops(matcher);
+        if (resting)
+            addRestingOrders(matcher);
+        // executed market orders are returned to the pool, such that the trades do not touch cold memory
+        OrderPool pool = new OrderPool(0);
+
+        System.gc();
+        long t1 = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++)
+            matcher.addOrder(pool.marketOrder("1", STOPS + i, 1, (i & 1) == 0 ? OrderType.BUY : OrderType.SELL, false));
+        return System.nanoTime() - t1;
+    }
+
+    private static long addAndCancel() {
+        MatchingEngine matcher = book(BID, ASK);
+        addDormantStops(matcher);
+        // establishes the last traded price, such that new stops are not triggered on arrival
+        matcher.addOrder(new MarketOrder("1", STOPS, 1, OrderType.BUY, false));
+        Order[] orders = new Order[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            long offset = 1 + (i * 7919L) % STOP_LEVELS;
+            orders[i] = (i & 1) == 0
+                    ? new StopOrder("1", STOPS + 1 + i, ASK + offset, 1, OrderType.BUY, false)
+                    : new StopOrder("1", STOPS + 1 + i, BID - offset, 1, OrderType.SELL, false);
+        }
+
+        System.gc();
+        long t1 = System.nanoTime();
+        for (Order order : orders) {
+            matcher.addOrder(order);
+            matcher.cancel(order.getOrderID());
+        }
+        return System.nanoTime() - t1;
+    }
+
+    private static long release() {
+        // wide spread, all buy stops lie between the last traded price (the bid) and the ask
+        long ask = BID + 2L * STOP_LEVELS + 1;
+        MatchingEngine matcher = book(BID, ask);
+        matcher.addOrder(new MarketOrder("1", STOPS, 1, OrderType.SELL, false));
+        for (int i = 0; i < STOPS; i++)
+            matcher.addOrder(new StopOrder("1", i, BID + 1 + i % (2 * STOP_LEVELS), 1, OrderType.BUY, false));
+        Order trigger = new MarketOrder("1", STOPS + 1, 1, OrderType.BUY, false);
+
+        System.gc();
+        long t1 = System.nanoTime();
+        matcher.addOrder(trigger);
+        long time = System.nanoTime() - t1;
+        if (matcher.cancel(0))
+            throw new IllegalStateException("stops were not released");
+        return time;
+    }
+}
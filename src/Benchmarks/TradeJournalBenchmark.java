@@ -0,0 +1,103 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Measures the append throughput of the memory mapped trade journal and the throughput of reading it back.
+ * <br>
+ * The first scenario appends FILLS fills directly to the journal, the second one runs crossing limit orders
+ * through the matching engine with a registered journal. Afterwards the journal is read back with the
+ * <code>TradeJournalReader</code> and the number of fills and the total volume are compared
+ */
+public class TradeJournalBenchmark {
+    private static final int FILLS = 20_000_000;
+    private static final int ORDERS = 4_000_000;
+    private static final int SEGMENT_SIZE = 64 << 20;
+    private static final String DIRECTORY = "tradeJournalBenchmark";
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("scenario, append [fills/s], read [fills/s]");
+        // warm up once before measuring
+        for (int run = 0; run < 2; run++) {
+            appendOnly(run == 1);
+            engine(run == 1);
+        }
+        deleteJournal();
+    }
+
+    private static void appendOnly(boolean print) throws IOException {
+        deleteJournal();
+        TradeJournal journal = new TradeJournal(DIRECTORY, SEGMENT_SIZE);
+        long volume = 0;
+        long t1 = System.nanoTime();
+        for (int i = 0; i < FILLS; i++) {
+            journal.append(0, i, i + 1, OrderType.BUY, 100 + (i & 127), i & 1023);
+            volume += i & 1023;
+        }
+        long t2 = System.nanoTime();
+        journal.close();
+
+        read(print, "append only", FILLS, volume, t1, t2);
+    }
+
+    private static void engine(boolean print) throws IOException {
+        deleteJournal();
+        Random rand = new Random(42);
+        Order[] orders = new Order[ORDERS];
+        long submitted = 0;
+        for (int i = 0; i < ORDERS; i++) {
+            orders[i] = new LimitOrder("1", i, rand.nextInt(100), 1 + rand.nextInt(1000), (i & 1) == 0 ? OrderType.BUY : OrderType.SELL, false);
+            submitted += orders[i].getVolume();
+        }
+
+        TradeJournal journal = new TradeJournal(DIRECTORY, SEGMENT_SIZE);
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.setTradeJournal(journal);
+
+        long t1 = System.nanoTime();
+        for (Order order : orders)
+            matcher.addOrder(order);
+        long t2 = System.nanoTime();
+        journal.close();
+
+        // every fill reduces the volume of the incoming and of the resting order
+        long remaining = 0;
+        for (Order order : orders)
+            remaining += order.getVolume();
+        read(print, "engine", journal.getSequence(), (submitted - remaining) / 2, t1, t2);
+    }
+
+    private static void read(boolean print, String scenario, long fills, long volume, long t1, long t2) throws IOException {
+        long count = 0;
+        long readVolume = 0;
+        long t3 = System.nanoTime();
+        try (TradeJournalReader reader = new TradeJournalReader(DIRECTORY)) {
+            while (reader.next()) {
+                count++;
+                readVolume += reader.getVolume();
+                if (reader.getSequence() != count)
+                    throw new IllegalStateException("fills are out of sequence");
+            }
+        }
+        long t4 = System.nanoTime();
+
+        if (count != fills || readVolume != volume)
+            throw new IllegalStateException("journal does not contain all fills");
+        if (print)
+            System.out.println(scenario + ", " + (long) (fills / ((t2 - t1) / 1e9)) + ", " + (long) (count / ((t4 - t3) / 1e9)));
+    }
+
+    private static void deleteJournal() {
+        File[] files = new File(DIRECTORY).listFiles();
+        if (files != null) {
+            for (File file : files)
+                file.delete();
+        }
+        new File(DIRECTORY).delete();
+    }
+}
@@ -0,0 +1,103 @@
+package Benchmarks;
+
+import MatchingEngine.TradeLogger;
+import MatchingEngine.TradeLogger.BackpressurePolicy;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ring buffer trade logger for all backpressure policies with the previous logger, which submitted
+ * one task per fill to a single thread executor and printed each fill to an unbuffered <code>PrintStream</code>.
+ * <br>
+ * For each logger, FILLS fills are logged from the main thread. The benchmark reports the throughput seen by the
+ * matching engine thread, the throughput including the time until all fills are written to the file, and
+ * percentiles of the latency of a single log call
+ */
+public class TradeLoggerBenchmark {
+    private static final int FILLS = 5_000_000;
+    private static final String FILE = "tradeLoggerBenchmark.log";
+
+    // previous implementation of the trade logger
+    static class ExecutorLogger {
+        PrintStream printStream;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        ExecutorLogger(String fileName) throws FileNotFoundException {
+            printStream = new PrintStream(new File(fileName));
+        }
+
+        void logTrade(String msg) {
+            executor.submit(() -> {
+                printStream.println(msg);
+            });
+        }
+
+        void shutdown() throws InterruptedException {
+            executor.shutdown();
+            executor.awaitTermination(600, TimeUnit.SECONDS);
+            printStream.close();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.out.println("logger, engine [fills/s], written [fills/s], p50 [ns], p99 [ns], p99.9 [ns], max [ns], dropped");
+        long[] latencies = new long[FILLS];
+
+        // warm up all loggers once before measuring
+        for (int run = 0; run < 2; run++) {
+            boolean print = run == 1;
+            runExecutor(latencies, print);
+            for (BackpressurePolicy policy : BackpressurePolicy.values())
+                runRingBuffer(policy, latencies, print);
+        }
+        new File(FILE).delete();
+    }
+
+    private static void runExecutor(long[] latencies, boolean print) throws IOException, InterruptedException {
+        ExecutorLogger logger = new ExecutorLogger(FILE);
+        long t1 = System.nanoTime();
+        for (int i = 0; i < FILLS; i++) {
+            long start = System.nanoTime();
+            logger.logTrade(i + ", " + (i & 1023));
+            latencies[i] = System.nanoTime() - start;
+        }
+        long t2 = System.nanoTime();
+        logger.shutdown();
+        long t3 = System.nanoTime();
+        if (print)
+            report("executor", t1, t2, t3, latencies, 0);
+    }
+
+    private static void runRingBuffer(BackpressurePolicy policy, long[] latencies, boolean print) throws IOException {
+        TradeLogger logger = new TradeLogger(FILE, 1 << 16, policy);
+        long t1 = System.nanoTime();
+        for (int i = 0; i < FILLS; i++) {
+            long start = System.nanoTime();
+            logger.logTrade(i, i & 1023);
+            latencies[i] = System.nanoTime() - start;
+        }
+        long t2 = System.nanoTime();
+        logger.shutdown();
+        long t3 = System.nanoTime();
+        if (print)
+            report("ring buffer " + policy, t1, t2, t3, latencies, logger.getDroppedTrades());
+    }
+
+    private static void report(String name, long t1, long t2, long t3, long[] latencies, long dropped) {
+        Arrays.sort(latencies);
+        System.out.println(name + ", " + (long) (FILLS / ((t2 - t1) / 1e9)) + ", " + (long) (FILLS / ((t3 - t1) / 1e9))
+                + ", " + percentile(latencies, 0.5) + ", " + percentile(latencies, 0.99) + ", " + percentile(latencies, 0.999)
+                + ", " + latencies[latencies.length - 1] + ", " + dropped);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))];
+    }
+}
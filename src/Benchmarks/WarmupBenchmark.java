@@ -0,0 +1,55 @@
+package Benchmarks;
+
+import MatchingEngine.*;
+import MatchingEngine.OrderTypes.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Compares the latencies of the first orders of a session in a cold engine with those in a pre-warmed engine
+ * (see <code>MatchingEngine.prewarm</code>). Since JIT compilation is global to the JVM, each mode is run in its own JVM.
+ * The first orders are random limit orders inside the price band, their latencies are recorded with a
+ * <code>LatencyRecorder</code>
+ */
+public class WarmupBenchmark {
+    private static final int SESSION_ORDERS = 20_000;
+    private static final int WARMUP_ORDERS = 500_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            for (String mode : new String[]{"cold", "prewarmed"}) {
+                String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+                Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        WarmupBenchmark.class.getName(), mode).inheritIO().start();
+                process.waitFor();
+            }
+            return;
+        }
+
+        boolean prewarm = args[0].equals("prewarmed");
+        FixedPoint fp = new FixedPoint(2, 0);
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.openBook("1", fp, fp.price(50), fp.price(150), fp.price(0.01));
+        if (prewarm)
+            matcher.prewarm("1", WARMUP_ORDERS).join();
+
+        Random rand = new Random(42);
+        Order[] orders = new Order[SESSION_ORDERS];
+        for (int i = 0; i < SESSION_ORDERS; i++) {
+            OrderType side = rand.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+            long price = fp.price(95) + rand.nextInt(1_000);
+            orders[i] = new LimitOrder("1", i, price, 1 + rand.nextInt(100), side, false);
+        }
+
+        LatencyRecorder recorder = new LatencyRecorder();
+        matcher.setLatencyRecorder(recorder);
+        for (Order order : orders)
+            matcher.addOrder(order);
+
+        System.out.println(args[0] + " (ready=" + matcher.isReady("1") + ")");
+        System.out.println("  add [ns] " + recorder.getLatency("1", LatencyRecorder.Operation.ADD));
+        System.out.println("  match [ns] " + recorder.getLatency("1", LatencyRecorder.Operation.MATCH));
+    }
+}
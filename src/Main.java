@@ -2,11 +2,11 @@
 import MatchingEngine.*;
 import MatchingEngine.OrderTypes.*;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.*;
 
 public class Main {
-    public static void main(String[] args) throws FileNotFoundException {
+    public static void main(String[] args) throws IOException {
 
         // register new trade logger
         TradeLogger tl = new TradeLogger("logFile.txt");
@@ -23,8 +23,8 @@ public class Main {
         int limit = 5_000_000;
         for (int i = 0; i < limit; i++){
 
-            Order o1 = new LimitOrder(inst[i%5], 1, rand.nextInt(1000), rand.nextInt(1000), OrderType.SELL, false);
-            Order o2 = new LimitOrder(inst[i%5], 1, rand.nextInt(1000), rand.nextInt(1000), OrderType.BUY, false);
+            Order o1 = new LimitOrder(inst[i%5], 2 * i, rand.nextInt(1000), rand.nextInt(1000), OrderType.SELL, false);
+            Order o2 = new LimitOrder(inst[i%5], 2 * i + 1, rand.nextInt(1000), rand.nextInt(1000), OrderType.BUY, false);
 
             matcher.addOrder(o2);
             matcher.addOrder(o1);
@@ -0,0 +1,51 @@
+package MatchingEngine;
+
+/**
+ * Equilibrium of an order book in the call phase of an auction, see <code>MatchingEngine.getIndicativePrice</code>
+ * and <code>MatchingEngine.uncross</code>. Price and volumes are scaled with the <code>FixedPoint</code> of the product
+ */
+public final class AuctionPrice {
+    private final long price;
+    private final long volume;
+    private final long surplus;
+
+    public AuctionPrice(long price, long volume, long surplus) {
+        this.price = price;
+        this.volume = volume;
+        this.surplus = surplus;
+    }
+
+    /**
+     * @return price at which all crossing orders are executed
+     */
+    public long getPrice() {return price;}
+
+    /**
+     * @return volume which is executed at the price
+     */
+    public long getVolume() {return volume;}
+
+    /**
+     * @return buy volume minus sell volume which is executable at the price, i.e. the volume which remains
+     * on the bid side (positive) or the ask side (negative) after the uncross
+     */
+    public long getSurplus() {return surplus;}
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof AuctionPrice))
+            return false;
+        AuctionPrice other = (AuctionPrice) o;
+        return price == other.price && volume == other.volume && surplus == other.surplus;
+    }
+
+    @Override
+    public int hashCode() {
+        return (Long.hashCode(price) * 31 + Long.hashCode(volume)) * 31 + Long.hashCode(surplus);
+    }
+
+    @Override
+    public String toString() {
+        return volume + "@" + price + " surplus " + surplus;
+    }
+}
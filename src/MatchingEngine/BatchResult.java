@@ -0,0 +1,90 @@
+package MatchingEngine;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer for the results of a <code>CommandBatch</code>: the status of every command and all fills.
+ * <br>
+ * Fills are stored in parallel arrays in the order in which they were executed, together with the index of the
+ * command of the incoming order. The buffer is cleared by <code>MatchingEngine.submit</code> and grows as needed
+ */
+public class BatchResult {
+    /** order was added, or the resting order was cancelled / amended */
+    public static final byte DONE = 0;
+    /** order was rejected, e.g. because an order with the same ID is already resting */
+    public static final byte REJECTED = 1;
+    /** order to be cancelled / amended was not resting in any book */
+    public static final byte NOT_FOUND = 2;
+
+    private byte[] status;
+    private int commands;
+
+    private int[] commandIndexes;
+    private int[] takerOrderIDs;
+    private int[] makerOrderIDs;
+    private long[] prices;
+    private long[] volumes;
+    private int fills;
+
+    /**
+     * @param fillCapacity initial number of fills
+     */
+    public BatchResult(int fillCapacity) {
+        if (fillCapacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        status = new byte[16];
+        commandIndexes = new int[fillCapacity];
+        takerOrderIDs = new int[fillCapacity];
+        makerOrderIDs = new int[fillCapacity];
+        prices = new long[fillCapacity];
+        volumes = new long[fillCapacity];
+    }
+
+    void clear(int commands) {
+        if (status.length < commands)
+            status = new byte[Math.max(commands, status.length << 1)];
+        this.commands = commands;
+        fills = 0;
+    }
+
+    void setStatus(int command, byte value) {
+        status[command] = value;
+    }
+
+    void addFill(int command, int takerOrderID, int makerOrderID, long price, long volume) {
+        if (fills == volumes.length)
+            grow();
+        commandIndexes[fills] = command;
+        takerOrderIDs[fills] = takerOrderID;
+        makerOrderIDs[fills] = makerOrderID;
+        prices[fills] = price;
+        volumes[fills] = volume;
+        fills++;
+    }
+
+    private void grow() {
+        int capacity = volumes.length << 1;
+        commandIndexes = Arrays.copyOf(commandIndexes, capacity);
+        takerOrderIDs = Arrays.copyOf(takerOrderIDs, capacity);
+        makerOrderIDs = Arrays.copyOf(makerOrderIDs, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        volumes = Arrays.copyOf(volumes, capacity);
+    }
+
+    /**
+     * @return status of the command with the specified index in the batch, see <code>DONE</code>,
+     * <code>REJECTED</code> and <code>NOT_FOUND</code>
+     */
+    public byte getStatus(int command) {
+        if (command < 0 || command >= commands)
+            throw new IndexOutOfBoundsException("command " + command + " is not part of the batch");
+        return status[command];
+    }
+
+    public int getFillCount() {return fills;}
+    public int getCommandIndex(int fill) {return commandIndexes[fill];}
+    public int getTakerOrderID(int fill) {return takerOrderIDs[fill];}
+    public int getMakerOrderID(int fill) {return makerOrderIDs[fill];}
+    public long getPrice(int fill) {return prices[fill];}
+    public long getVolume(int fill) {return volumes[fill];}
+}
@@ -0,0 +1,89 @@
+package MatchingEngine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters of the operations which drive the cost of an order book, e.g. price levels which are created and
+ * removed again (tick churn) or inserts into the red black trees.
+ * <br>
+ * Every order book owns its counters, which are only incremented by the thread running the book. The counters of
+ * all books thus form the stripes of the engine wide metrics: increments need neither locks nor atomic
+ * read-modify-write instructions and books on different threads never write to the same counters.
+ * Any thread can read the counters at any time, e.g. through the <code>MetricsRegistry</code>
+ * <br>
+ * Gauges such as the number of resting orders are read from the book without synchronization and may be slightly
+ * outdated if the book is modified concurrently
+ */
+public class BookMetrics implements BookMetricsMBean {
+    public enum Counter {
+        /** orders added to the book, whether they were executed or not */
+        ORDERS_ADDED,
+        /** resting orders deleted from the book, including amendments whose new limit crosses the book */
+        ORDERS_DELETED,
+        /** amendments of resting orders */
+        AMENDS,
+        /** amendments which only reduced the volume and kept the order's place in the queue */
+        AMENDS_IN_PLACE,
+        /** executions between an incoming and a resting order */
+        FILLS,
+        /** orders resting on a price level which did not exist before */
+        LEVELS_CREATED,
+        /** orders resting on an existing price level */
+        LEVELS_JOINED,
+        /** price levels for which no removed tick could be reused and a new tick was allocated */
+        TICK_ALLOCATIONS,
+        /** price levels inserted into a red black tree (i.e. outside the price ladder) */
+        TREE_INSERTS,
+        /** price levels deleted from a red black tree */
+        TREE_DELETES,
+        /** stop orders which were triggered by the last traded price */
+        STOPS_TRIGGERED,
+        /** displayed slices of iceberg orders which were refilled from their hidden volume */
+        REPLENISHMENTS
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(Counter.values().length);
+    private final OrderBook book;
+
+    BookMetrics(OrderBook book) {
+        this.book = book;
+    }
+
+    void increment(Counter counter) {
+        // single writer, an ordered store suffices to make the increment visible to readers
+        int i = counter.ordinal();
+        counts.lazySet(i, counts.get(i) + 1);
+    }
+
+    public long get(Counter counter) {
+        return counts.get(counter.ordinal());
+    }
+
+    @Override public long getOrdersAdded() {return get(Counter.ORDERS_ADDED);}
+    @Override public long getOrdersDeleted() {return get(Counter.ORDERS_DELETED);}
+    @Override public long getAmends() {return get(Counter.AMENDS);}
+    @Override public long getAmendsInPlace() {return get(Counter.AMENDS_IN_PLACE);}
+    @Override public long getFills() {return get(Counter.FILLS);}
+    @Override public long getLevelsCreated() {return get(Counter.LEVELS_CREATED);}
+    @Override public long getLevelsJoined() {return get(Counter.LEVELS_JOINED);}
+    @Override public long getTickAllocations() {return get(Counter.TICK_ALLOCATIONS);}
+    @Override public long getTreeInserts() {return get(Counter.TREE_INSERTS);}
+    @Override public long getTreeDeletes() {return get(Counter.TREE_DELETES);}
+    @Override public long getStopsTriggered() {return get(Counter.STOPS_TRIGGERED);}
+    @Override public long getReplenishments() {return get(Counter.REPLENISHMENTS);}
+
+    @Override
+    public int getRestingOrders() {
+        return book.getBidSide().orderCount + book.getAskSide().orderCount;
+    }
+
+    @Override public int getBidLevels() {return book.getBidSide().size();}
+    @Override public int getAskLevels() {return book.getAskSide().size();}
+    @Override public int getDormantStops() {return book.getStops().size();}
+
+    @Override
+    public double getOrdersPerLevel() {
+        int levels = getBidLevels() + getAskLevels();
+        return levels == 0 ? 0 : getRestingOrders() / (double) levels;
+    }
+}
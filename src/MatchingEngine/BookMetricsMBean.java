@@ -0,0 +1,24 @@
+package MatchingEngine;
+
+/**
+ * JMX view of the metrics of an order book, see <code>BookMetrics</code>
+ */
+public interface BookMetricsMBean {
+    long getOrdersAdded();
+    long getOrdersDeleted();
+    long getAmends();
+    long getAmendsInPlace();
+    long getFills();
+    long getLevelsCreated();
+    long getLevelsJoined();
+    long getTickAllocations();
+    long getTreeInserts();
+    long getTreeDeletes();
+    long getStopsTriggered();
+    long getReplenishments();
+    int getRestingOrders();
+    int getBidLevels();
+    int getAskLevels();
+    int getDormantStops();
+    double getOrdersPerLevel();
+}
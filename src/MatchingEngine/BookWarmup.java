@@ -0,0 +1,63 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.LimitOrder;
+import MatchingEngine.OrderTypes.MarketOrder;
+import MatchingEngine.OrderTypes.Order;
+
+import java.util.Random;
+
+/**
+ * Synthetic order flow which warms up the code paths of the matching engine before a session opens.
+ * <br>
+ * The flow is run against a private engine with an order book of the same price band, such that the books,
+ * journals and listeners of the real engine are not touched. Since all engines share the same classes, the methods
+ * compiled by the JIT during the warmup are used by the real engine afterwards. The flow covers passive and crossing
+ * limit orders, market orders, cancellations and amendments as well as prices outside the band (red black tree)
+ */
+class BookWarmup {
+    private static final String PRODUCT = "warmup";
+    // number of orders which rest in the warmup book at most before the oldest ones are cancelled
+    private static final int LIVE_ORDERS = 1_000;
+
+    static void run(FixedPoint fixedPoint, long minPrice, long maxPrice, long tickSize, int orders) {
+        MatchingEngine engine = new MatchingEngine();
+        engine.openBook(PRODUCT, fixedPoint, minPrice, maxPrice, tickSize);
+
+        Random rand = new Random(42);
+        long levels = (maxPrice - minPrice) / tickSize + 1;
+        long mid = minPrice + levels / 2 * tickSize;
+        int spread = (int) Math.max(1, Math.min(levels / 2, 100));
+
+        for (int i = 0; i < orders; i++) {
+            OrderType side = rand.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+            int sign = side == OrderType.BUY ? -1 : 1;
+            int op = rand.nextInt(100);
+            long volume = 1 + rand.nextInt(100);
+
+            if (op < 50) {
+                // passive order on its own side of the mid price
+                long price = mid + sign * (1 + rand.nextInt(spread)) * tickSize;
+                engine.addOrder(new LimitOrder(PRODUCT, i, price, volume, side, false));
+            } else if (op < 70) {
+                // crossing order
+                long price = mid - sign * rand.nextInt(spread) * tickSize;
+                engine.addOrder(new LimitOrder(PRODUCT, i, price, volume, side, false));
+            } else if (op < 75) {
+                engine.addOrder(new MarketOrder(PRODUCT, i, volume, side, false));
+            } else if (op < 80) {
+                // passive order outside of the price band
+                long price = sign < 0 ? minPrice - (1 + rand.nextInt(spread)) * tickSize : maxPrice + (1 + rand.nextInt(spread)) * tickSize;
+                engine.addOrder(new LimitOrder(PRODUCT, i, price, volume, side, false));
+            } else if (op < 90) {
+                engine.cancel(rand.nextInt(i + 1));
+            } else {
+                engine.amend(rand.nextInt(i + 1), volume, mid + sign * (1 + rand.nextInt(spread)) * tickSize);
+            }
+
+            // keep the warmup book small
+            if (i >= LIVE_ORDERS)
+                engine.cancel(i - LIVE_ORDERS);
+        }
+        engine.closeAllBooks();
+    }
+}
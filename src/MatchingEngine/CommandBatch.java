@@ -0,0 +1,117 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.Order;
+
+import java.util.Arrays;
+
+/**
+ * Reusable buffer of commands which are submitted to a matching engine at once with <code>MatchingEngine.submit</code>.
+ * <br>
+ * The commands are stored in parallel arrays which grow as needed, such that a batch which is cleared and refilled
+ * for each burst of orders does not allocate once it has reached its working size
+ * <pre>{@code
+ * CommandBatch batch = new CommandBatch(256);
+ * BatchResult result = new BatchResult(1024);
+ * batch.add(new LimitOrder("Amazon", 1, 100, 100, OrderType.SELL, false));
+ * batch.cancel("Apple", 2);
+ * matcher.submit(batch, result);
+ * batch.clear();}</pre>
+ */
+public class CommandBatch {
+    static final byte ADD = 0;
+    static final byte CANCEL = 1;
+    static final byte AMEND = 2;
+
+    byte[] types;
+    String[] products;
+    Order[] orders;
+    int[] orderIDs;
+    long[] volumes;
+    long[] limits;
+    int size;
+
+    // scratch space of the engine to group the commands by book
+    int[] groups;
+    int[] sequence;
+
+    /**
+     * @param capacity initial number of commands
+     */
+    public CommandBatch(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive");
+        types = new byte[capacity];
+        products = new String[capacity];
+        orders = new Order[capacity];
+        orderIDs = new int[capacity];
+        volumes = new long[capacity];
+        limits = new long[capacity];
+        groups = new int[capacity];
+        sequence = new int[capacity];
+    }
+
+    /**
+     * Appends an order which is added to the book of its product
+     * @return index of the command in the batch
+     */
+    public int add(Order order) {
+        int i = next(ADD, order.getProduct(), order.getOrderID());
+        orders[i] = order;
+        return i;
+    }
+
+    /**
+     * Appends the cancellation of a resting order
+     * @param product instrument of the order
+     * @return index of the command in the batch
+     */
+    public int cancel(String product, int orderID) {
+        return next(CANCEL, product, orderID);
+    }
+
+    /**
+     * Appends an amendment of a resting order, see <code>MatchingEngine.amend</code>
+     * @param product instrument of the order
+     * @return index of the command in the batch
+     */
+    public int amend(String product, int orderID, long volume, long limit) {
+        MatchingEngine.checkAmendedVolume(volume);
+        int i = next(AMEND, product, orderID);
+        volumes[i] = volume;
+        limits[i] = limit;
+        return i;
+    }
+
+    /**
+     * Removes all commands, the capacity of the batch is kept
+     */
+    public void clear() {
+        Arrays.fill(products, 0, size, null);
+        Arrays.fill(orders, 0, size, null);
+        size = 0;
+    }
+
+    public int size() {return size;}
+
+    private int next(byte type, String product, int orderID) {
+        if (size == types.length)
+            grow();
+        int i = size++;
+        types[i] = type;
+        products[i] = product;
+        orderIDs[i] = orderID;
+        return i;
+    }
+
+    private void grow() {
+        int capacity = types.length << 1;
+        types = Arrays.copyOf(types, capacity);
+        products = Arrays.copyOf(products, capacity);
+        orders = Arrays.copyOf(orders, capacity);
+        orderIDs = Arrays.copyOf(orderIDs, capacity);
+        volumes = Arrays.copyOf(volumes, capacity);
+        limits = Arrays.copyOf(limits, capacity);
+        groups = new int[capacity];
+        sequence = new int[capacity];
+    }
+}
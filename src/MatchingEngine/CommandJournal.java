@@ -0,0 +1,402 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Journal of all commands (add, cancel, amend, modify, open and close book, auctions) submitted to a <code>MatchingEngine</code>.
+ * <br>
+ * Each command is appended to a memory mapped segment file before it is applied to the order books. As matching is
+ * deterministic, replaying the journal into a new matching engine rebuilds all order books exactly as they were
+ * before a restart
+ * <pre>{@code
+ * MatchingEngine matcher = new MatchingEngine();
+ * CommandJournal.replay("commands", matcher);
+ * // continue journaling after the recovered commands
+ * matcher.setCommandJournal(new CommandJournal("commands", 64 << 20));}</pre>
+ * Trade loggers and trade journals should only be registered after the replay, as the replayed executions
+ * would otherwise be logged a second time
+ * <br>
+ * Records are stored as [int length][byte type][payload] in little endian byte order. A length of 0 marks the end
+ * of the journal, a length of -1 marks the end of a segment whose next record is stored in the following segment
+ */
+public class CommandJournal implements Closeable {
+    static final byte OPEN_BOOK = 1;
+    static final byte ADD = 2;
+    static final byte CANCEL = 3;
+    static final byte AMEND = 4;
+    static final byte MODIFY = 5;
+    static final byte CLOSE_BOOK = 6;
+    static final byte CLOSE_ALL = 7;
+    static final byte START_AUCTION = 8;
+    static final byte UNCROSS = 9;
+
+    static final byte LIMIT_ORDER = 0;
+    static final byte MARKET_ORDER = 1;
+    static final byte KILL_OR_FILL_ORDER = 2;
+    static final byte IMMEDIATE_OR_CANCEL_ORDER = 3;
+    // dormant stop order, whose stop price follows the fields of the order
+    static final byte STOP_ORDER = 4;
+    // iceberg order, whose peak and hidden volume follow the fields of the order
+    static final byte ICEBERG_ORDER = 5;
+    // stop order which was triggered and rests in the book as a limit order, its stop price follows the fields of the order
+    static final byte TRIGGERED_STOP_ORDER = 6;
+
+    private static final int END_OF_SEGMENT = -1;
+    private static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES;
+    // type, orderID, side, logTrade, limit and volume of an order, followed by the fields of its type
+    static final int ORDER_SIZE = 1 + 4 + 1 + 1 + 8 + 8;
+    static final int MAX_ORDER_SIZE = ORDER_SIZE + 8 + 8;
+    private static final int MAX_NAME_LENGTH = Short.MAX_VALUE;
+    private static final int MIN_SEGMENT_SIZE = 1 << 16;
+
+    private final Path directory;
+    private final int segmentSize;
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+
+    /**
+     * Opens the journal in the specified directory. If the directory already contains a journal,
+     * new commands are appended after its last command
+     * @param directory directory which holds the segment files
+     * @param segmentSize size of a segment file in bytes (at least 64KB)
+     * @throws IOException if the directory or a segment cannot be created
+     */
+    public CommandJournal(String directory, int segmentSize) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE)
+            throw new IllegalArgumentException("segment size must be at least " + MIN_SEGMENT_SIZE + " bytes");
+
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        Files.createDirectories(this.directory);
+
+        // continue in the last existing segment
+        int last = 0;
+        while (Files.exists(segmentFile(this.directory, last + 1)))
+            last++;
+        segmentIndex = last;
+        segment = map(segmentFile(this.directory, last), FileChannel.MapMode.READ_WRITE, segmentSize);
+        int length;
+        while ((length = segment.getInt(segment.position())) != 0) {
+            if (length == END_OF_SEGMENT) {
+                nextSegment();
+                break;
+            }
+            segment.position(segment.position() + Integer.BYTES + length);
+        }
+    }
+
+    void openBook(int productID, String product, FixedPoint fixedPoint, boolean ladder, long minPrice, long maxPrice, long tickSize){
+        byte[] name = product.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_LENGTH)
+            throw new IllegalArgumentException("product name too long for the command journal");
+
+        ByteBuffer buffer = startRecord(OPEN_BOOK, 4 + 4 + 4 + 1 + 8 + 8 + 8 + 2 + name.length);
+        buffer.putInt(productID)
+                .putInt(fixedPoint.getPriceDecimals())
+                .putInt(fixedPoint.getQuantityDecimals())
+                .put((byte) (ladder ? 1 : 0))
+                .putLong(minPrice)
+                .putLong(maxPrice)
+                .putLong(tickSize)
+                .putShort((short) name.length)
+                .put(name);
+    }
+
+    void addOrder(int productID, Order order){
+        putOrder(startRecord(ADD, 4 + orderSize(order)).putInt(productID), order);
+    }
+
+    void cancel(int orderID){
+        startRecord(CANCEL, 4).putInt(orderID);
+    }
+
+    void amend(int orderID, long volume, long limit){
+        startRecord(AMEND, 4 + 8 + 8).putInt(orderID).putLong(volume).putLong(limit);
+    }
+
+    void modifyOrder(int originalOrderID, int productID, Order modifiedOrder){
+        putOrder(startRecord(MODIFY, 4 + 4 + orderSize(modifiedOrder)).putInt(originalOrderID).putInt(productID), modifiedOrder);
+    }
+
+    void closeBook(int productID){
+        startRecord(CLOSE_BOOK, 4).putInt(productID);
+    }
+
+    void closeAllBooks(){
+        startRecord(CLOSE_ALL, 0);
+    }
+
+    void startAuction(int productID){
+        startRecord(START_AUCTION, 4).putInt(productID);
+    }
+
+    void uncross(int productID){
+        startRecord(UNCROSS, 4).putInt(productID);
+    }
+
+    /**
+     * Writes an order as stored in journals and snapshots
+     */
+    static void putOrder(ByteBuffer buffer, Order order){
+        byte type = orderType(order);
+        buffer.put(type)
+                .putInt(order.getOrderID())
+                .put((byte) order.getSide().ordinal())
+                .put((byte) (order.isLogTrade() ? 1 : 0))
+                .putLong(order.getLimit())
+                .putLong(order.getVolume());
+        if (type == STOP_ORDER || type == TRIGGERED_STOP_ORDER)
+            buffer.putLong(((StopOrder) order).getStopPrice());
+        else if (type == ICEBERG_ORDER)
+            buffer.putLong(((IcebergOrder) order).getPeak()).putLong(((IcebergOrder) order).getHiddenVolume());
+    }
+
+    static int orderSize(Order order){
+        byte type = orderType(order);
+        if (type == STOP_ORDER || type == TRIGGERED_STOP_ORDER)
+            return ORDER_SIZE + 8;
+        if (type == ICEBERG_ORDER)
+            return ORDER_SIZE + 8 + 8;
+        return ORDER_SIZE;
+    }
+
+    // writes the header of a record and returns the buffer positioned at the start of its payload
+    private ByteBuffer startRecord(byte type, int payloadSize){
+        // the end of segment marker must always fit behind the record
+        if (segment.remaining() < HEADER_SIZE + payloadSize + Integer.BYTES) {
+            segment.putInt(END_OF_SEGMENT);
+            nextSegment();
+        }
+        return segment.putInt(Byte.BYTES + payloadSize).put(type);
+    }
+
+    private void nextSegment(){
+        try {
+            segment.force();
+            segmentIndex++;
+            segment = map(segmentFile(directory, segmentIndex), FileChannel.MapMode.READ_WRITE, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Forces all journaled commands of the current segment to the storage device
+     */
+    public void flush(){
+        segment.force();
+    }
+
+    @Override
+    public void close(){
+        flush();
+    }
+
+    /**
+     * @return position of the next command in the journal, which can be passed to <code>replay</code>
+     * to replay only the commands journaled after this point
+     */
+    public long getPosition(){
+        return ((long) segmentIndex << 32) | segment.position();
+    }
+
+    /**
+     * Applies all commands of the journal in the specified directory to the matching engine.
+     * The matching engine must not have a command journal registered during the replay
+     * @param directory directory which holds the segment files of the journal
+     * @param engine matching engine whose order books are rebuilt
+     * @return number of replayed commands
+     * @throws IOException if a segment cannot be read
+     */
+    public static long replay(String directory, MatchingEngine engine) throws IOException {
+        return replay(directory, engine, 0);
+    }
+
+    /**
+     * Applies all commands of the journal starting at position to the matching engine, e.g. the commands
+     * journaled after a snapshot from which the engine was restored.
+     * The matching engine must not have a command journal registered during the replay
+     * @param directory directory which holds the segment files of the journal
+     * @param engine matching engine whose order books are rebuilt
+     * @param position position of the first replayed command, see <code>getPosition</code>
+     * @return number of replayed commands
+     * @throws IOException if a segment cannot be read
+     */
+    public static long replay(String directory, MatchingEngine engine, long position) throws IOException {
+        if (engine.commandJournal != null)
+            throw new IllegalStateException("commands cannot be journaled while the journal is replayed");
+
+        Path dir = Paths.get(directory);
+        OrderType[] sides = OrderType.values();
+        long commands = 0;
+
+        // books which already exist in the engine (e.g. restored from a snapshot) are not opened again in the journal
+        String[] products = new String[16];
+        for (Map.Entry<String, OrderBook> book : engine.instruments.entries()){
+            int productID = book.getValue().getProductID();
+            if (productID >= products.length)
+                products = Arrays.copyOf(products, Math.max(products.length << 1, productID + 1));
+            products[productID] = book.getKey();
+        }
+
+        for (int index = (int) (position >>> 32); Files.exists(segmentFile(dir, index)); index++) {
+            MappedByteBuffer buffer = map(segmentFile(dir, index), FileChannel.MapMode.READ_ONLY, 0);
+            if (index == (int) (position >>> 32))
+                buffer.position((int) position);
+            while (buffer.remaining() >= Integer.BYTES) {
+                int length = buffer.getInt();
+                if (length == 0)
+                    return commands;
+                if (length == END_OF_SEGMENT)
+                    break;
+
+                byte type = buffer.get();
+                switch (type) {
+                    case OPEN_BOOK: {
+                        int productID = buffer.getInt();
+                        FixedPoint fixedPoint = new FixedPoint(buffer.getInt(), buffer.getInt());
+                        boolean ladder = buffer.get() == 1;
+                        long minPrice = buffer.getLong();
+                        long maxPrice = buffer.getLong();
+                        long tickSize = buffer.getLong();
+                        byte[] name = new byte[buffer.getShort()];
+                        buffer.get(name);
+                        String product = new String(name, StandardCharsets.UTF_8);
+
+                        if (productID >= products.length)
+                            products = Arrays.copyOf(products, Math.max(products.length << 1, productID + 1));
+                        products[productID] = product;
+                        if (ladder)
+                            engine.openBook(product, fixedPoint, minPrice, maxPrice, tickSize);
+                        else
+                            engine.openBook(product, fixedPoint);
+                        break;
+                    }
+                    case ADD:
+                        engine.addOrder(readOrder(buffer, products, sides));
+                        break;
+                    case CANCEL:
+                        engine.cancel(buffer.getInt());
+                        break;
+                    case AMEND:
+                        engine.amend(buffer.getInt(), buffer.getLong(), buffer.getLong());
+                        break;
+                    case MODIFY: {
+                        Order original = engine.orderIndex.get(buffer.getInt());
+                        Order modified = readOrder(buffer, products, sides);
+                        if (original != null)
+                            engine.modifyOrder(original, modified);
+                        break;
+                    }
+                    case CLOSE_BOOK:
+                        engine.closeBook(products[buffer.getInt()]);
+                        break;
+                    case CLOSE_ALL:
+                        engine.closeAllBooks();
+                        break;
+                    case START_AUCTION:
+                        engine.startAuction(products[buffer.getInt()]);
+                        break;
+                    case UNCROSS:
+                        engine.uncross(products[buffer.getInt()]);
+                        break;
+                    default:
+                        throw new IllegalStateException("corrupt command journal, unknown record type " + type);
+                }
+                commands++;
+            }
+        }
+        return commands;
+    }
+
+    private static Order readOrder(ByteBuffer buffer, String[] products, OrderType[] sides){
+        String product = products[buffer.getInt()];
+        return readOrder(buffer, product, sides);
+    }
+
+    /**
+     * Reads an order written by <code>putOrder</code>
+     */
+    static Order readOrder(ByteBuffer buffer, String product, OrderType[] sides){
+        byte type = buffer.get();
+        int orderID = buffer.getInt();
+        OrderType side = sides[buffer.get()];
+        boolean logTrade = buffer.get() == 1;
+        long limit = buffer.getLong();
+        long volume = buffer.getLong();
+
+        switch (type) {
+            case MARKET_ORDER:
+                return new MarketOrder(product, orderID, volume, side, logTrade);
+            case KILL_OR_FILL_ORDER:
+                return new KillOrFillOrder(product, limit, orderID, volume, side, logTrade);
+            case IMMEDIATE_OR_CANCEL_ORDER:
+                return new ImmediateOrCancelOrder(product, orderID, limit, volume, side, logTrade);
+            case STOP_ORDER:
+                return new StopOrder(product, orderID, buffer.getLong(), limit, volume, side, logTrade);
+            case TRIGGERED_STOP_ORDER: {
+                StopOrder order = new StopOrder(product, orderID, buffer.getLong(), limit, volume, side, logTrade);
+                order.trigger();
+                return order;
+            }
+            case ICEBERG_ORDER: {
+                IcebergOrder order = new IcebergOrder(product, orderID, limit, volume, buffer.getLong(), side, logTrade);
+                order.setHiddenVolume(buffer.getLong());
+                return order;
+            }
+            default:
+                return new LimitOrder(product, orderID, limit, volume, side, logTrade);
+        }
+    }
+
+    // type of the order as stored in journals and snapshots
+    static byte orderType(Order order){
+        if (order instanceof MarketOrder)
+            return MARKET_ORDER;
+        if (order instanceof KillOrFillOrder)
+            return KILL_OR_FILL_ORDER;
+        if (order instanceof ImmediateOrCancelOrder)
+            return IMMEDIATE_OR_CANCEL_ORDER;
+        if (order instanceof StopOrder)
+            return ((StopOrder) order).isTriggered() ? TRIGGERED_STOP_ORDER : STOP_ORDER;
+        if (order instanceof IcebergOrder)
+            return ICEBERG_ORDER;
+        return LIMIT_ORDER;
+    }
+
+    static Path segmentFile(Path directory, int index){
+        return directory.resolve(String.format("commands-%06d.journal", index));
+    }
+
+    // maps the file, a size of 0 maps the file with its current size
+    private static MappedByteBuffer map(Path file, FileChannel.MapMode mode, int size) throws IOException {
+        MappedByteBuffer buffer;
+        if (mode == FileChannel.MapMode.READ_ONLY) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer = channel.map(mode, 0, size == 0 ? channel.size() : size);
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                buffer = channel.map(mode, 0, size);
+            }
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+}
@@ -0,0 +1,121 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.Order;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue of commands for a single shard of a <code>ShardedMatchingEngine</code>
+ * <br>
+ * The queue is a ring of pre-allocated, mutable commands. Any number of producer threads claim a sequence number
+ * with a single atomic increment, fill the command stored in the slot of the sequence and publish it by storing the
+ * round of the sequence in the slot. The shard thread (single consumer) processes the commands in sequence order and
+ * frees their slots afterwards. No objects are allocated and no locks are taken per command
+ */
+class CommandQueue {
+    static final byte OPEN_BOOK = 1;
+    static final byte ADD = 2;
+    static final byte CANCEL = 3;
+    static final byte AMEND = 4;
+    static final byte CLOSE_BOOK = 5;
+    static final byte SET_RETENTION = 6;
+    static final byte START_AUCTION = 7;
+    static final byte UNCROSS = 8;
+
+    /**
+     * Mutable command stored in a slot of the ring, only the fields of its type are set
+     */
+    static final class Command {
+        byte type;
+        String product;
+        Order order;
+        int orderID;
+        long volume;
+        long limit;
+        FixedPoint fixedPoint;
+        boolean ladder;
+        long minPrice;
+        long maxPrice;
+        long tickSize;
+        RetentionPolicy retention;
+
+        // releases the references held by the command once it was processed
+        void clear() {
+            product = null;
+            order = null;
+            fixedPoint = null;
+            retention = null;
+        }
+    }
+
+    private final Command[] commands;
+    // round (sequence / capacity) of the command published in each slot
+    private final AtomicIntegerArray published;
+    private final int mask;
+    private final int shift;
+
+    // sequence of the next command claimed by a producer
+    private final AtomicLong claimed = new AtomicLong();
+    // sequence of the next command processed by the consumer, all commands before it may be overwritten
+    private final AtomicLong consumed = new AtomicLong();
+
+    CommandQueue(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        commands = new Command[size];
+        published = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            commands[i] = new Command();
+            published.set(i, -1);
+        }
+        mask = size - 1;
+        shift = Integer.numberOfTrailingZeros(size);
+    }
+
+    /**
+     * Claims the next sequence, parks the producer until its slot has been freed by the consumer
+     * @return claimed sequence, its command must be filled and then published with <code>publish</code>
+     */
+    long claim() {
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed.get() > mask)
+            LockSupport.parkNanos(1_000);
+        return sequence;
+    }
+
+    Command get(long sequence) {
+        return commands[(int) sequence & mask];
+    }
+
+    void publish(long sequence) {
+        published.lazySet((int) sequence & mask, (int) (sequence >>> shift));
+    }
+
+    /**
+     * @return command with the specified sequence or null if it has not been published yet
+     */
+    Command poll(long sequence) {
+        int i = (int) sequence & mask;
+        return published.get(i) == (int) (sequence >>> shift) ? commands[i] : null;
+    }
+
+    /**
+     * Frees the slots of all commands before sequence
+     */
+    void release(long sequence) {
+        consumed.lazySet(sequence);
+    }
+
+    /**
+     * @return number of commands which were claimed but not yet processed
+     */
+    long backlog() {
+        return claimed.get() - consumed.get();
+    }
+}
@@ -0,0 +1,28 @@
+package MatchingEngine;
+
+/**
+ * Receives the incremental depth (L2) updates of a <code>MarketDataPublisher</code>.
+ * <br>
+ * All updates caused by a single command of the matching engine (e.g. an order sweeping several price levels) are
+ * conflated per price level and delivered together, the last update of a command is flagged with <code>endOfEvent</code>.
+ * Callbacks are invoked on the publisher thread. All prices and volumes are scaled with the <code>FixedPoint</code> of the product
+ */
+public interface DepthListener {
+    /** price level which was not part of the book before */
+    byte NEW = 0;
+    /** volume of an existing price level changed */
+    byte CHANGE = 1;
+    /** last order of a price level was executed or deleted */
+    byte DELETE = 2;
+
+    /**
+     * @param productID id of the instrument, see <code>MatchingEngine.getProductID</code>
+     * @param sequence sequence number of the update per instrument, starting at 0. A gap indicates dropped updates
+     * @param side side of the price level
+     * @param action <code>NEW</code>, <code>CHANGE</code> or <code>DELETE</code>
+     * @param price price of the level
+     * @param volume total volume of the level after the update, 0 for <code>DELETE</code>
+     * @param endOfEvent true for the last update of a command
+     */
+    void onUpdate(int productID, long sequence, OrderType side, byte action, long price, long volume, boolean endOfEvent);
+}
@@ -52,11 +52,15 @@ class DoublyLinkedQueue<T extends DoublyLinkedQueueNode<T>> implements Iterable<
             if (prev.next != null){
                 prev.next.prev = prev.prev;
             }
+            prev.queue = null;
         }
     }
 
     public void add(T item){
+        item.queue = this;
+        item.next = null;
         if(head == null){
+            item.prev = null;
             head = item;
             tail = item;
         } else {
@@ -78,18 +82,33 @@ class DoublyLinkedQueue<T extends DoublyLinkedQueueNode<T>> implements Iterable<
             item.prev.next = item.next;
         if (item.next != null)
             item.next.prev = item.prev;
+        item.prev = null;
+        item.next = null;
+        item.queue = null;
+    }
+
+    public T getFirst(){
+        return head;
     }
 
     public T removeFirst(){
         T n = head;
         head = head.next;
-        head.prev = null;
+        if (head == null)
+            tail = null;
+        else
+            head.prev = null;
 
+        n.next = null;
+        n.queue = null;
         return n;
     }
 
     public void addLast(T data){
+        data.queue = this;
+        data.next = null;
         if (head == null){
+            data.prev = null;
             head = data;
             tail = data;
         } else {
@@ -1,6 +1,8 @@
 package MatchingEngine;
 
-public abstract class DoublyLinkedQueueNode<T> {
+public abstract class DoublyLinkedQueueNode<T extends DoublyLinkedQueueNode<T>> {
     T prev;
     T next;
+    // queue the node is currently linked into, null if the node is not part of any queue
+    DoublyLinkedQueue<T> queue;
 }
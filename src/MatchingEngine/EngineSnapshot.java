@@ -0,0 +1,257 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.Order;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Binary snapshot of all order books of a <code>MatchingEngine</code>.
+ * <br>
+ * A snapshot is taken in two steps. The state of all books is first copied into a compact buffer on the thread
+ * running the matching engine, which is the only time matching is paused. The buffer is then written to the
+ * snapshot file by a background thread. Together with the position of the command journal at the time of the
+ * snapshot, startup becomes "restore the last snapshot and replay the tail of the journal"
+ * <br>
+ * The snapshots of an engine are captured into a pair of direct buffers which are reused and only grow with the
+ * books, such that a snapshot can be captured while the previous one is still being written, and are written by a
+ * single background thread
+ * <br>
+ * Layout (little endian): a header (magic, version, journal position, next product id, number of orders and books)
+ * followed by each book (product id, name, decimals, price ladder, retention policy, whether each side tracks the
+ * cumulative volume of its levels), the orders of its bid and ask side, its last traded price, whether it is in the
+ * call phase of an auction and its dormant stop orders. Orders of a side are stored tick by tick in FIFO order and stops level by
+ * level in their order of arrival, such that restoring them preserves the time priority
+ */
+class EngineSnapshot {
+    private static final int MAGIC = 0x534E4150;
+    private static final int VERSION = 5;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4 + 4;
+    private static final int BOOK_SIZE = 4 + 2 + 4 + 4 + 1 + 8 + 8 + 8 + 1 + 4 + 8 + 8 + 1 + 1 + 4 + 4 + 1 + 8 + 1 + 4;
+
+    final ByteBuffer[] buffers = new ByteBuffer[2];
+    private final CompletableFuture<?>[] writes = new CompletableFuture<?>[2];
+    private int next;
+    private ExecutorService writer;
+
+    /**
+     * Captures the books into the next buffer of the pair and writes it to the file on the background thread.
+     * Must be called on the thread running the matching engine
+     * @param journalPosition position of the command journal at the time of the snapshot, -1 if there is none
+     * @param wait true to wait for the write of the next buffer if both buffers are still being written,
+     *             false to skip the snapshot
+     * @return future which completes once the snapshot is written, null if it was skipped
+     */
+    CompletableFuture<Void> take(MatchingEngine engine, long journalPosition, String fileName, boolean wait) {
+        CompletableFuture<?> previous = writes[next];
+        if (previous != null && !previous.isDone()) {
+            if (!wait)
+                return null;
+            // the outcome of the previous write is reported by its own future
+            previous.handle((result, e) -> null).join();
+        }
+
+        long size = size(engine);
+        ByteBuffer buffer = buffers[next];
+        if (buffer == null || buffer.capacity() < size) {
+            // some headroom such that a growing book does not allocate on every snapshot
+            buffer = buffers[next] = ByteBuffer.allocateDirect((int) Math.min(size + (size >> 3), Integer.MAX_VALUE))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.clear();
+        capture(engine, journalPosition, buffer);
+
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        ByteBuffer snapshot = buffer;
+        CompletableFuture<Void> done = CompletableFuture.runAsync(() -> write(snapshot, fileName), writer);
+        writes[next] = done;
+        next ^= 1;
+        return done;
+    }
+
+    // upper bound of the size of a snapshot, orders of most types are smaller than the largest order
+    private static long size(MatchingEngine engine) {
+        long size = HEADER_SIZE + (long) engine.orderIndex.size() * CommandJournal.MAX_ORDER_SIZE;
+        for (String product : engine.instruments.products())
+            size += BOOK_SIZE + product.getBytes(StandardCharsets.UTF_8).length;
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalStateException("order books are too large for a single snapshot");
+        return size;
+    }
+
+    /**
+     * Copies the state of all order books into the buffer, which must hold at least <code>size</code> bytes
+     * @param engine matching engine whose books are copied
+     * @param journalPosition position of the command journal at the time of the snapshot, -1 if there is none
+     * @param buffer buffer receiving the snapshot, flipped such that it is ready to be written
+     */
+    static void capture(MatchingEngine engine, long journalPosition, ByteBuffer buffer) {
+        buffer.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(journalPosition)
+                .putInt(engine.instruments.nextID())
+                .putInt(engine.orderIndex.size())
+                .putInt(engine.instruments.size());
+
+        for (Map.Entry<String, OrderBook> entry : engine.instruments.entries()) {
+            OrderBook book = entry.getValue();
+            OrderTree bids = book.getBidSide();
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+
+            buffer.putInt(book.getProductID())
+                    .putShort((short) name.length)
+                    .put(name)
+                    .putInt(book.getFixedPoint().getPriceDecimals())
+                    .putInt(book.getFixedPoint().getQuantityDecimals())
+                    .put((byte) (bids.hasLadder() ? 1 : 0))
+                    .putLong(bids.hasLadder() ? bids.getLadderMin() : 0)
+                    .putLong(bids.hasLadder() ? bids.getLadderMax() : 0)
+                    .putLong(bids.hasLadder() ? bids.getTickSize() : 0);
+            // both sides share the retention policy of the book
+            RetentionPolicy retention = bids.getRetentionPolicy();
+            buffer.put((byte) (retention != null ? 1 : 0))
+                    .putInt(retention != null ? retention.getMaxEmptyLevels() : 0)
+                    .putLong(retention != null ? retention.getMaxDistance() : 0)
+                    .putLong(retention != null ? retention.getMaxIdleNanos() : 0)
+                    .put((byte) (bids.tracksCumulativeVolume() ? 1 : 0))
+                    .put((byte) (book.getAskSide().tracksCumulativeVolume() ? 1 : 0));
+            putSide(buffer, bids);
+            putSide(buffer, book.getAskSide());
+
+            buffer.put((byte) (book.hasTraded() ? 1 : 0))
+                    .putLong(book.getLastTradePrice())
+                    .put((byte) (book.isCallPhase() ? 1 : 0))
+                    .putInt(book.getStops().size());
+            book.getStops().forEach(stop -> CommandJournal.putOrder(buffer, stop));
+        }
+        buffer.flip();
+    }
+
+    private static void putSide(ByteBuffer buffer, OrderTree side) {
+        int countPosition = buffer.position();
+        int[] count = new int[1];
+        buffer.putInt(0);
+        side.forEachTick(tick -> {
+            for (Order order : tick.getOrders()) {
+                CommandJournal.putOrder(buffer, order);
+                count[0]++;
+            }
+        });
+        buffer.putInt(countPosition, count[0]);
+    }
+
+    /**
+     * Writes a captured snapshot to a file. The snapshot is first written to a temporary file which replaces
+     * the target file once it is complete
+     */
+    private static void write(ByteBuffer snapshot, String fileName) {
+        Path target = Paths.get(fileName);
+        Path temporary = Paths.get(fileName + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (snapshot.hasRemaining())
+                    channel.write(snapshot);
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Restores all order books of a snapshot into an engine without order books. Orders are added to
+     * their books without being matched. A registered market data publisher publishes each restored book as a
+     * single event of new levels
+     * @return position of the command journal at the time of the snapshot, -1 if there was none
+     */
+    static long restore(MatchingEngine engine, String fileName) throws IOException {
+        if (!engine.instruments.isEmpty())
+            throw new IllegalStateException("snapshot can only be restored into an engine without order books");
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            throw new IOException("not a snapshot of this version: " + fileName);
+        long journalPosition = buffer.getLong();
+        int nextProductID = buffer.getInt();
+        engine.orderIndex.ensureCapacity(buffer.getInt());
+        int books = buffer.getInt();
+        OrderType[] sides = OrderType.values();
+
+        for (int b = 0; b < books; b++) {
+            int productID = buffer.getInt();
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            String product = new String(name, StandardCharsets.UTF_8);
+            FixedPoint fixedPoint = new FixedPoint(buffer.getInt(), buffer.getInt());
+            boolean ladder = buffer.get() == 1;
+            long minPrice = buffer.getLong();
+            long maxPrice = buffer.getLong();
+            long tickSize = buffer.getLong();
+            RetentionPolicy retention = buffer.get() == 1
+                    ? new RetentionPolicy(buffer.getInt(), buffer.getLong(), buffer.getLong()) : null;
+            if (retention == null)
+                buffer.position(buffer.position() + 4 + 8 + 8);
+            boolean bidsTrackVolume = buffer.get() == 1;
+            boolean asksTrackVolume = buffer.get() == 1;
+
+            OrderBook book = ladder ? new OrderBook(fixedPoint, minPrice, maxPrice, tickSize) : new OrderBook(fixedPoint);
+            engine.registerBook(product, book, productID);
+
+            // bid side followed by the ask side
+            for (int side = 0; side < 2; side++) {
+                int orders = buffer.getInt();
+                for (int i = 0; i < orders; i++)
+                    book.restoreOrder(CommandJournal.readOrder(buffer, product, sides));
+            }
+            // enabled once all orders are restored, which sums the volume of every level once
+            if (bidsTrackVolume)
+                book.getBidSide().trackCumulativeVolume();
+            if (asksTrackVolume)
+                book.getAskSide().trackCumulativeVolume();
+            if (retention != null)
+                book.setRetentionPolicy(retention);
+
+            boolean traded = buffer.get() == 1;
+            long lastTradePrice = buffer.getLong();
+            if (traded)
+                book.restoreLastTrade(lastTradePrice);
+            if (buffer.get() == 1)
+                book.startAuction();
+            int stops = buffer.getInt();
+            for (int i = 0; i < stops; i++)
+                book.restoreOrder(CommandJournal.readOrder(buffer, product, sides));
+            // the levels reported while the orders were restored are published as one refresh of the book
+            if (engine.marketData != null)
+                engine.marketData.endEvent(book);
+        }
+        engine.instruments.reserve(nextProductID);
+        return journalPosition;
+    }
+}
@@ -0,0 +1,65 @@
+package MatchingEngine;
+
+/**
+ * Receives the results of the commands processed by a matching engine.
+ * <br>
+ * The callbacks are invoked on the thread running the matching engine, i.e. on the shard threads of a
+ * <code>ShardedMatchingEngine</code>. Implementations must therefore return quickly and, if they are registered with
+ * several shards, be thread safe. All prices and volumes are scaled with the <code>FixedPoint</code> of the product
+ */
+public interface ExecutionListener {
+
+    /**
+     * Called for every fill between an incoming order and an order resting in the book
+     * @param product name of the instrument
+     * @param takerOrderID ID of the incoming order
+     * @param makerOrderID ID of the resting order
+     * @param takerSide side of the incoming order
+     * @param price price of the resting order
+     * @param volume executed volume
+     */
+    default void onFill(String product, int takerOrderID, int makerOrderID, OrderType takerSide, long price, long volume) {}
+
+    /**
+     * Called once a cancel command was processed
+     * @param cancelled true if the order was resting in a book and has been deleted
+     */
+    default void onCancel(int orderID, boolean cancelled) {}
+
+    /**
+     * Called once an amend command was processed
+     * @param amended true if the order was resting in a book and has been amended
+     */
+    default void onAmend(int orderID, boolean amended) {}
+
+    /**
+     * Called if a fill-or-kill order could not be executed or the remainder of an immediate-or-cancel order
+     * was discarded
+     * @param orderID ID of the order
+     * @param volume volume which was not executed
+     */
+    default void onKill(int orderID, long volume) {}
+
+    /**
+     * Called once a stop order was triggered, before it is executed
+     * @param orderID ID of the stop order
+     * @param lastPrice last traded price at which the order was triggered
+     */
+    default void onTrigger(int orderID, long lastPrice) {}
+
+    /**
+     * Called once the book of a product has been uncrossed at the end of the call phase of an auction,
+     * after the fills of the uncross have been reported
+     * @param product name of the instrument
+     * @param equilibrium price and volume of the uncross, null if no orders crossed
+     */
+    default void onUncross(String product, AuctionPrice equilibrium) {}
+
+    /**
+     * Called if a command was rejected by the matching engine, e.g. an order with an ID which is already resting.
+     * The sharded engine also reports commands which failed with any other exception
+     * @param orderID ID of the order of the command, -1 for commands without an order
+     * @param reason message of the rejection or the failure
+     */
+    default void onReject(int orderID, String reason) {}
+}
@@ -0,0 +1,73 @@
+package MatchingEngine;
+
+/**
+ * Describes the fixed point representation of prices and quantities of one instrument.
+ * <br>
+ * Inside the matching engine, prices and quantities are stored as scaled <code>long</code> values
+ * (e.g. with 2 price decimals, a price of 101.25 is stored as 10125). This keeps matching exact
+ * and avoids boxing and floating point comparisons on the hot path.
+ * FixedPoint converts between the decimal representation used by clients and the scaled representation
+ * used by the engine
+ * <pre>{@code
+ * FixedPoint fp = new FixedPoint(2, 0);
+ * matcher.openBook("Amazon", fp);
+ * Order order = new LimitOrder("Amazon", 1, fp.price(101.25), fp.quantity(100), OrderType.SELL, true);}</pre>
+ */
+public final class FixedPoint {
+    private static final long[] POWERS_OF_TEN = new long[19];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    /** prices and quantities are whole numbers, used for books which are not opened explicitly */
+    public static final FixedPoint INTEGER = new FixedPoint(0, 0);
+
+    private final int priceDecimals;
+    private final int quantityDecimals;
+    private final long priceFactor;
+    private final long quantityFactor;
+
+    /**
+     * @param priceDecimals number of decimal places of prices
+     * @param quantityDecimals number of decimal places of quantities
+     */
+    public FixedPoint(int priceDecimals, int quantityDecimals) {
+        if (priceDecimals < 0 || priceDecimals >= POWERS_OF_TEN.length
+                || quantityDecimals < 0 || quantityDecimals >= POWERS_OF_TEN.length)
+            throw new IllegalArgumentException("number of decimals must be between 0 and " + (POWERS_OF_TEN.length - 1));
+        this.priceDecimals = priceDecimals;
+        this.quantityDecimals = quantityDecimals;
+        this.priceFactor = POWERS_OF_TEN[priceDecimals];
+        this.quantityFactor = POWERS_OF_TEN[quantityDecimals];
+    }
+
+    /**
+     * @param price decimal price
+     * @return price scaled to the engine's long representation
+     */
+    public long price(double price) {return Math.round(price * priceFactor);}
+
+    /**
+     * @param quantity decimal quantity
+     * @return quantity scaled to the engine's long representation
+     */
+    public long quantity(double quantity) {return Math.round(quantity * quantityFactor);}
+
+    /**
+     * @param price scaled price
+     * @return decimal representation of the price
+     */
+    public double toPrice(long price) {return price / (double) priceFactor;}
+
+    /**
+     * @param quantity scaled quantity
+     * @return decimal representation of the quantity
+     */
+    public double toQuantity(long quantity) {return quantity / (double) quantityFactor;}
+
+    // getter methods
+    public int getPriceDecimals() {return priceDecimals;}
+    public int getQuantityDecimals() {return quantityDecimals;}
+}
@@ -0,0 +1,132 @@
+package MatchingEngine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative long values, e.g. latencies in nanoseconds, with a fixed, pre-allocated set of buckets.
+ * <br>
+ * Values below 128 are counted exactly. Larger values are counted in log-linear buckets: each power of two range
+ * [2^m, 2^(m+1)) is split into 64 buckets of equal width, which bounds the relative error of the reported values
+ * to 1/64 (~1.6%). Values above 2^41 - 1 (~36 minutes in nanoseconds) are counted as 2^41 - 1.
+ * <br>
+ * A histogram is written by a single thread without locks or allocations and can be read by any other thread
+ * at any time, e.g. with <code>copy</code>. Values which are recorded while another thread reads the histogram may
+ * or may not be included in the result
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;
+    private static final int MAX_MAGNITUDE = 40;
+    public static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Counts the value, must only be called by the thread owning the histogram
+     * @param value recorded value, negative values are counted as 0
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        else if (value > MAX_VALUE)
+            value = MAX_VALUE;
+
+        // single writer, ordered stores suffice to make the updates visible to readers
+        int i = index(value);
+        counts.lazySet(i, counts.get(i) + 1);
+        sum.lazySet(sum.get() + value);
+        if (value > max.get())
+            max.lazySet(value);
+    }
+
+    /**
+     * @return copy of the current state of the histogram, which is no longer modified by the writer
+     */
+    public Histogram copy() {
+        Histogram copy = new Histogram();
+        for (int i = 0; i < counts.length(); i++)
+            copy.counts.lazySet(i, counts.get(i));
+        copy.sum.lazySet(sum.get());
+        copy.max.lazySet(max.get());
+        return copy;
+    }
+
+    /**
+     * Adds the current counts of another histogram, e.g. to merge the histograms of several instruments.
+     * Must only be called on a histogram which is not written by another thread, such as a copy
+     */
+    void add(Histogram other) {
+        for (int i = 0; i < counts.length(); i++)
+            counts.lazySet(i, counts.get(i) + other.counts.get(i));
+        sum.lazySet(sum.get() + other.sum.get());
+        if (other.max.get() > max.get())
+            max.lazySet(other.max.get());
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++)
+            count += counts.get(i);
+        return count;
+    }
+
+    public long getMax() {return max.get();}
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : sum.get() / (double) count;
+    }
+
+    /**
+     * @param percentile percentile in [0, 100]
+     * @return smallest value such that percentile % of all recorded values are less or equal to it
+     * (up to the precision of the buckets), 0 if no value was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile must be in [0, 100]");
+
+        long count = getCount();
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(highestValue(i), getMax());
+        }
+        return getMax();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", mean=" + Math.round(getMean()) + ", p50=" + getValueAtPercentile(50)
+                + ", p99=" + getValueAtPercentile(99) + ", p99.9=" + getValueAtPercentile(99.9) + ", max=" + getMax();
+    }
+
+    // values below SUB_BUCKET_COUNT map to themselves, larger values to the top SUB_BUCKET_BITS bits of their magnitude
+    static int index(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude < SUB_BUCKET_BITS)
+            return (int) value;
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    // largest value counted in bucket i
+    static long highestValue(int i) {
+        if (i < SUB_BUCKET_COUNT)
+            return i;
+        int shift = i / SUB_BUCKET_HALF - 1;
+        long lowest = (long) (i - shift * SUB_BUCKET_HALF) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
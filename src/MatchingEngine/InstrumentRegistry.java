@@ -0,0 +1,94 @@
+package MatchingEngine;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of the order books of a matching engine.
+ * <br>
+ * Each book is assigned a dense integer id (the product id) when it is created and stored in an array at the address
+ * of its id, such that the book of a resting order or of a binary message is located without hashing a
+ * <code>String</code>. The names of the instruments are only mapped to their books for the String based API.
+ * Ids are not reused after a book is closed, as they identify the instrument in the journals
+ */
+class InstrumentRegistry {
+    private OrderBook[] books = new OrderBook[16];
+    private final Map<String, OrderBook> byName = new HashMap<>();
+    private int nextID;
+
+    /**
+     * @return book with the specified product id or null if no such book exists
+     */
+    OrderBook get(int productID){
+        return productID >= 0 && productID < books.length ? books[productID] : null;
+    }
+
+    OrderBook get(String product){
+        return byName.get(product);
+    }
+
+    boolean contains(String product){
+        return byName.containsKey(product);
+    }
+
+    /**
+     * Registers the book under its product id, which must not be used by another book
+     */
+    void register(String product, OrderBook book, int productID){
+        if (get(productID) != null)
+            throw new IllegalArgumentException("Product id " + productID + " is already registered");
+        if (productID >= books.length)
+            books = Arrays.copyOf(books, Math.max(books.length << 1, productID + 1));
+        books[productID] = book;
+        byName.put(product, book);
+        nextID = Math.max(nextID, productID + 1);
+    }
+
+    /**
+     * @return the removed book or null if no book exists for the product
+     */
+    OrderBook remove(String product){
+        OrderBook book = byName.remove(product);
+        if (book != null)
+            books[book.getProductID()] = null;
+        return book;
+    }
+
+    void clear(){
+        Arrays.fill(books, null);
+        byName.clear();
+    }
+
+    // id of the next book that is created
+    int nextID(){
+        return nextID;
+    }
+
+    // skips the ids below productID, used to continue with the ids of a restored snapshot
+    void reserve(int productID){
+        nextID = Math.max(nextID, productID);
+    }
+
+    int size(){
+        return byName.size();
+    }
+
+    boolean isEmpty(){
+        return byName.isEmpty();
+    }
+
+    Set<String> products(){
+        return byName.keySet();
+    }
+
+    Collection<OrderBook> books(){
+        return byName.values();
+    }
+
+    Set<Map.Entry<String, OrderBook>> entries(){
+        return byName.entrySet();
+    }
+}
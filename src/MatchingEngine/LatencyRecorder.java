@@ -0,0 +1,117 @@
+package MatchingEngine;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opt-in recorder of the latencies of all operations of a matching engine, per instrument and operation.
+ * <br>
+ * The histograms of an instrument are allocated when its order book is opened. Afterwards, recording a latency
+ * only reads the clock and increments a bucket of a pre-allocated <code>Histogram</code> on the engine thread.
+ * Engines without a recorder only pay for a null check per operation.
+ * <br>
+ * Any other thread can read copies of the histograms while the engine is running
+ * <pre>{@code
+ * LatencyRecorder recorder = new LatencyRecorder();
+ * matcher.setLatencyRecorder(recorder);
+ * ...
+ * // e.g. on a monitoring thread
+ * Histogram matches = recorder.getLatency("Amazon", LatencyRecorder.Operation.MATCH);
+ * System.out.println(matches.getValueAtPercentile(99.9));}</pre>
+ */
+public class LatencyRecorder {
+    /**
+     * Recorded operations, latencies are measured in nanoseconds
+     */
+    public enum Operation {
+        /** order added to the book without being executed */
+        ADD,
+        /** order which was (partially) executed when it was added */
+        MATCH,
+        CANCEL,
+        AMEND,
+        MODIFY
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    // index of the histogram of the number of fills per match, following the operations
+    static final int FILLS = OPERATIONS.length;
+
+    // histograms by product, registered by the engine thread(s) and read by any thread
+    private final ConcurrentHashMap<String, Histogram[]> products = new ConcurrentHashMap<>();
+
+    /**
+     * @return histograms of all operations of the product followed by the histogram of fills per match
+     */
+    Histogram[] register(String product) {
+        return products.computeIfAbsent(product, p -> {
+            Histogram[] histograms = new Histogram[FILLS + 1];
+            for (int i = 0; i < histograms.length; i++)
+                histograms[i] = new Histogram();
+            return histograms;
+        });
+    }
+
+    void record(Histogram[] histograms, Operation operation, long start) {
+        histograms[operation.ordinal()].record(System.nanoTime() - start);
+    }
+
+    // an added order is recorded as a match if it was executed against at least one resting order
+    void recordAdd(Histogram[] histograms, long start, long fills) {
+        long latency = System.nanoTime() - start;
+        if (fills == 0) {
+            histograms[Operation.ADD.ordinal()].record(latency);
+        } else {
+            histograms[Operation.MATCH.ordinal()].record(latency);
+            histograms[FILLS].record(fills);
+        }
+    }
+
+    /**
+     * @return products for which latencies are recorded
+     */
+    public Set<String> getProducts() {
+        return Collections.unmodifiableSet(products.keySet());
+    }
+
+    /**
+     * @return copy of the latency histogram (in nanoseconds) of the operation on the product's book,
+     * null if no book of the product has been opened
+     */
+    public Histogram getLatency(String product, Operation operation) {
+        Histogram[] histograms = products.get(product);
+        return histograms == null ? null : histograms[operation.ordinal()].copy();
+    }
+
+    /**
+     * @return latency histogram (in nanoseconds) of the operation merged over all products, e.g. over the
+     * instruments of all shards of a <code>ShardedMatchingEngine</code>
+     */
+    public Histogram getLatency(Operation operation) {
+        return merge(operation.ordinal());
+    }
+
+    /**
+     * @return histogram of the number of fills per match merged over all products
+     */
+    public Histogram getFillsPerMatch() {
+        return merge(FILLS);
+    }
+
+    private Histogram merge(int index) {
+        Histogram merged = new Histogram();
+        for (Histogram[] histograms : products.values())
+            merged.add(histograms[index]);
+        return merged;
+    }
+
+    /**
+     * @return copy of the histogram of the number of fills per match of the product,
+     * null if no book of the product has been opened
+     */
+    public Histogram getFillsPerMatch(String product) {
+        Histogram[] histograms = products.get(product);
+        return histograms == null ? null : histograms[FILLS].copy();
+    }
+}
@@ -0,0 +1,155 @@
+package MatchingEngine;
+
+import java.util.Arrays;
+
+/**
+ * Hash map with primitive <code>long</code> keys using open addressing with linear probing.
+ * <br>
+ * Keys and values are stored in two parallel arrays, such that no entry objects and no boxed keys are
+ * allocated when inserting an element. Deletion shifts the following elements of the probe sequence back
+ * into the free slot, which avoids tombstones and keeps lookups short after many insertions and deletions.
+ * <br>
+ * A slot is empty if its value is null, null values can therefore not be stored in the map
+ * @param <V> type of the values
+ */
+public class LongObjectHashMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private V[] values;
+    private int mask;
+    private int shift;
+    private int size;
+    private int resizeThreshold;
+
+    public LongObjectHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize number of elements that can be stored without resizing the map
+     */
+    public LongObjectHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public V get(long key) {
+        int i = index(key);
+        V value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key)
+                return value;
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value stored for key or null if there was none
+     */
+    public V put(long key, V value) {
+        if (value == null)
+            throw new IllegalArgumentException("null values are not supported");
+
+        int i = index(key);
+        V old;
+        while ((old = values[i]) != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeThreshold)
+            resize(values.length << 1);
+        return null;
+    }
+
+    /**
+     * @return the removed value or null if key was not in the map
+     */
+    public V remove(long key) {
+        int i = index(key);
+        V value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                shiftBack(i);
+                size--;
+                return value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    public int size() {return size;}
+    public boolean isEmpty() {return size == 0;}
+
+    // moves elements after the freed slot back such that no element is separated from its home slot by an empty slot
+    private void shiftBack(int free) {
+        int i = free;
+        while (true) {
+            i = (i + 1) & mask;
+            V value = values[i];
+            if (value == null)
+                break;
+            int home = index(keys[i]);
+            // element can only be moved if its home slot is not located cyclically in (free, i]
+            if (((i - home) & mask) >= ((i - free) & mask)) {
+                keys[free] = keys[i];
+                values[free] = value;
+                free = i;
+            }
+        }
+        values[free] = null;
+    }
+
+    private int index(long key) {
+        // fibonacci hashing, the high bits of the product are the best mixed ones
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = (V[]) new Object[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        resizeThreshold = capacity >> 1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        V[] oldValues = values;
+        allocate(capacity);
+        for (int j = 0; j < oldValues.length; j++) {
+            V value = oldValues[j];
+            if (value != null) {
+                int i = index(oldKeys[j]);
+                while (values[i] != null)
+                    i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = value;
+            }
+        }
+    }
+
+    // smallest power of two which keeps the load factor at or below 0.5
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity >> 1 < expectedSize)
+            capacity <<= 1;
+        return capacity;
+    }
+}
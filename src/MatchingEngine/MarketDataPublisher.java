@@ -0,0 +1,249 @@
+package MatchingEngine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes incremental depth (L2) updates of all order books of a matching engine.
+ * <br>
+ * The order trees report every change of a price level (new level, changed volume, removed level) while a command
+ * is processed, such that the book is never scanned. The changes are conflated per price level until the command
+ * has been applied, only the resulting state of each touched level is published. A level which is created and
+ * removed by the same command is not published at all.
+ * <br>
+ * Like the <code>TradeLogger</code>, the matching engine thread (single producer) stores the updates as fixed size
+ * records in a pre-allocated ring buffer, from which a publisher thread (single consumer) delivers them to a
+ * <code>DepthListener</code>. If the ring buffer is full, the engine waits or drops updates according to the
+ * <code>BackpressurePolicy</code>, dropped updates leave a gap in the sequence numbers of the instrument
+ * <pre>{@code
+ * MarketDataPublisher publisher = new MarketDataPublisher(1 << 16, TradeLogger.BackpressurePolicy.BLOCK, listener);
+ * matcher.setMarketDataPublisher(publisher);
+ * ...
+ * publisher.shutdown();}</pre>
+ * A publisher must only be registered with a single matching engine
+ */
+public class MarketDataPublisher {
+    private static final long IDLE_PARK_NANOS = 50_000;
+    private static final byte BID = 1;
+    private static final byte END_OF_EVENT = 2;
+
+    // ring buffer of update records, slot i holds the record with sequence number s for which (s & mask) == i
+    private final int[] productIDs;
+    private final long[] sequences;
+    private final byte[] actions;
+    private final byte[] flags;
+    private final long[] prices;
+    private final long[] volumes;
+    private final int mask;
+    private final TradeLogger.BackpressurePolicy policy;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+
+    // producer side state, only accessed by the matching engine thread
+    private long nextSequence;
+    private long cachedConsumed;
+    private long droppedUpdates;
+
+    // price levels changed by the current command, tick is null once the level has been removed
+    private Tick[] pendingTicks = new Tick[16];
+    private boolean[] pendingBid = new boolean[16];
+    private long[] pendingPrices = new long[16];
+    private long[] pendingVolumes = new long[16];
+    private boolean[] pendingExisted = new boolean[16];
+    private int pendingCount;
+
+    private final DepthListener listener;
+    private final Thread publisher;
+    private volatile boolean running = true;
+
+    /**
+     * @param capacity number of updates the ring buffer can hold, rounded up to the next power of two
+     * @param policy behaviour of the matching engine if the ring buffer is full
+     * @param listener listener which receives the updates on the publisher thread
+     */
+    public MarketDataPublisher(int capacity, TradeLogger.BackpressurePolicy policy, DepthListener listener) {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        productIDs = new int[size];
+        sequences = new long[size];
+        actions = new byte[size];
+        flags = new byte[size];
+        prices = new long[size];
+        volumes = new long[size];
+        mask = size - 1;
+        this.policy = policy;
+        this.listener = listener;
+
+        publisher = new Thread(this::drain, "market-data-publisher");
+        publisher.start();
+    }
+
+    /**
+     * Records the new state of a price level which was changed by the current command
+     * @param bid side of the level
+     * @param tick tick of the level after the change
+     * @param created true if the level had no volume before the change
+     */
+    void levelChanged(boolean bid, Tick tick, boolean created) {
+        int slot = tick.depthSlot;
+        if (slot < 0) {
+            // a level removed earlier in the same command may have been created again with another tick
+            if (created)
+                slot = findRemoved(bid, tick.getTickValue());
+            if (slot < 0) {
+                if (pendingCount == pendingTicks.length)
+                    growPending();
+                slot = pendingCount++;
+                pendingBid[slot] = bid;
+                pendingPrices[slot] = tick.getTickValue();
+                pendingExisted[slot] = !created;
+            }
+        }
+
+        long volume = tick.getAvailableVolume();
+        pendingVolumes[slot] = volume;
+        if (volume == 0) {
+            // the tick may be reused for another price level once it is empty
+            pendingTicks[slot] = null;
+            tick.depthSlot = -1;
+        } else {
+            pendingTicks[slot] = tick;
+            tick.depthSlot = slot;
+        }
+    }
+
+    /**
+     * Publishes the conflated changes of the current command, called once the command has been applied to the book
+     */
+    void endEvent(OrderBook book) {
+        if (pendingCount == 0)
+            return;
+
+        int last = -1;
+        for (int slot = 0; slot < pendingCount; slot++) {
+            if (pendingVolumes[slot] > 0 || pendingExisted[slot])
+                last = slot;
+        }
+        for (int slot = 0; slot <= last; slot++) {
+            long volume = pendingVolumes[slot];
+            boolean existed = pendingExisted[slot];
+            if (volume > 0 || existed) {
+                byte action = volume == 0 ? DepthListener.DELETE : existed ? DepthListener.CHANGE : DepthListener.NEW;
+                byte flag = (byte) ((pendingBid[slot] ? BID : 0) | (slot == last ? END_OF_EVENT : 0));
+                publish(book.getProductID(), book.depthSequence++, action, flag, pendingPrices[slot], volume);
+            }
+        }
+
+        for (int slot = 0; slot < pendingCount; slot++) {
+            if (pendingTicks[slot] != null) {
+                pendingTicks[slot].depthSlot = -1;
+                pendingTicks[slot] = null;
+            }
+        }
+        pendingCount = 0;
+    }
+
+    private int findRemoved(boolean bid, long price) {
+        for (int slot = 0; slot < pendingCount; slot++) {
+            if (pendingTicks[slot] == null && pendingBid[slot] == bid && pendingPrices[slot] == price)
+                return slot;
+        }
+        return -1;
+    }
+
+    private void growPending() {
+        int capacity = pendingTicks.length << 1;
+        pendingTicks = Arrays.copyOf(pendingTicks, capacity);
+        pendingBid = Arrays.copyOf(pendingBid, capacity);
+        pendingPrices = Arrays.copyOf(pendingPrices, capacity);
+        pendingVolumes = Arrays.copyOf(pendingVolumes, capacity);
+        pendingExisted = Arrays.copyOf(pendingExisted, capacity);
+    }
+
+    private void publish(int productID, long sequence, byte action, byte flag, long price, long volume) {
+        long next = nextSequence;
+        if (next - cachedConsumed > mask && !awaitSpace(next))
+            return;
+
+        int i = (int) next & mask;
+        productIDs[i] = productID;
+        sequences[i] = sequence;
+        actions[i] = action;
+        flags[i] = flag;
+        prices[i] = price;
+        volumes[i] = volume;
+        nextSequence = next + 1;
+        published.lazySet(next + 1);
+    }
+
+    // waits according to the backpressure policy until the slot of sequence is free, returns false if the update is dropped
+    private boolean awaitSpace(long sequence) {
+        while (sequence - (cachedConsumed = consumed.get()) > mask) {
+            switch (policy) {
+                case DROP:
+                    droppedUpdates++;
+                    return false;
+                case SPIN:
+                    Thread.onSpinWait();
+                    break;
+                default:
+                    LockSupport.parkNanos(1_000);
+            }
+        }
+        return true;
+    }
+
+    // publisher thread, delivers all published records to the listener
+    private void drain() {
+        long read = consumed.get();
+        while (true) {
+            long available = published.get();
+            if (read == available) {
+                if (!running) {
+                    // the producer has stopped, all of its records are visible now
+                    if (published.get() == read)
+                        break;
+                    continue;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            for (; read < available; read++) {
+                int i = (int) read & mask;
+                byte flag = flags[i];
+                listener.onUpdate(productIDs[i], sequences[i], (flag & BID) != 0 ? OrderType.BUY : OrderType.SELL,
+                        actions[i], prices[i], volumes[i], (flag & END_OF_EVENT) != 0);
+            }
+            consumed.lazySet(read);
+        }
+    }
+
+    /**
+     * @return number of updates which were dropped because the ring buffer was full (only with <code>BackpressurePolicy.DROP</code>)
+     */
+    public long getDroppedUpdates() {return droppedUpdates;}
+
+    /**
+     * @return number of updates which were published but not yet delivered to the listener
+     */
+    public long getBacklog() {return published.get() - consumed.get();}
+
+    /**
+     * Stops the publisher thread once all updates in the ring buffer have been delivered
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            publisher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
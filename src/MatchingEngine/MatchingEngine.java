@@ -1,8 +1,14 @@
 package MatchingEngine;
 import MatchingEngine.OrderTypes.Order;
+import MatchingEngine.OrderTypes.OrderPool;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This class implements a Matching Engine that allows for the following operations
@@ -29,7 +35,7 @@ import java.util.HashMap;
  register the logger
  <pre>{@code
 MatchingEngine matcher = new MatchingEngine();
-TradeLogger tl = new TradeLogger();
+TradeLogger tl = new TradeLogger("logFile.bin");
 matcher.setTradeLogger(tl);
 }</pre>
  To add new trades, create instances of <code>MarketOrder</code> or <code>LimitOrder</code> and submit them to the matcher
@@ -37,31 +43,540 @@ matcher.setTradeLogger(tl);
  Order order = new LimitOrder("Amazon", 1, 100, 100, OrderType.SELL, true);
  matcher.addOrder(order);}</pre>
  In order to delete or modify trades, the same Order instance can be used. However, the matcher also accepts a new instance
- with identical parameters to the order that needs to be updated / deleted.
+ with the same orderID as the order that needs to be updated / deleted. Order IDs must be unique across all order books
+ of the engine, as resting orders are indexed by their ID. Orders can therefore also be cancelled or amended with their ID alone
+ <pre>{@code
+ matcher.cancel(1);
+ matcher.amend(1, 50, 101);}</pre>
 
  Ultimately, the thread running the tradeLogger must be terminated with {@code tl.shutdown();}
  */
 public class MatchingEngine {
+    // number of commands after which the clock is read to check whether a scheduled snapshot is due
+    static final int SNAPSHOT_CHECK_COMMANDS = 1_024;
+
     TradeLogger tradeLogger;
-    Map<String, OrderBook> orderBooks = new HashMap<>();
+    TradeJournal tradeJournal;
+    CommandJournal commandJournal;
+    ExecutionListener executionListener;
+    LatencyRecorder latencyRecorder;
+    MetricsRegistry metricsRegistry;
+    MarketDataPublisher marketData;
+    // order books by their product id and by the name of their instrument
+    final InstrumentRegistry instruments = new InstrumentRegistry();
+    // index of all orders resting in any order book by their order ID. Order IDs are the int IDs of Order, which are
+    // also used by the listeners, journals and binary messages, so the index is keyed by int rather than long
+    final IntObjectHashMap<Order> orderIndex = new IntObjectHashMap<>(1_000);
+    // books of the groups of a batch and the offsets of their commands, see submit
+    private OrderBook[] batchBooks = new OrderBook[16];
+    private int[] batchOffsets = new int[17];
+    // decoder and pool of the orders of binary messages, see onMessage
+    private final MessageDecoder decoder = new MessageDecoder();
+    final OrderPool messagePool = new OrderPool(0);
+    // buffers and writer of the snapshots and the schedule of periodic snapshots, see scheduleSnapshots
+    private final EngineSnapshot snapshots = new EngineSnapshot();
+    private String snapshotFile;
+    private long snapshotInterval;
+    private long lastSnapshot;
+    private int commandsUntilSnapshotCheck;
+    CompletableFuture<Void> scheduledSnapshot;
 
     public void setTradeLogger(TradeLogger tradeLogger){
         this.tradeLogger = tradeLogger;
+        if (metricsRegistry != null && tradeLogger != null)
+            metricsRegistry.register("trade-logger", tradeLogger);
+    }
+
+    /**
+     * Registers a journal to which every fill is appended. Must be set before the first order book is created
+     * @param tradeJournal journal of all fills
+     */
+    public void setTradeJournal(TradeJournal tradeJournal){
+        this.tradeJournal = tradeJournal;
+    }
+
+    /**
+     * Registers a journal to which every command is appended before it is applied, see <code>CommandJournal</code>
+     * @param commandJournal journal of all commands
+     */
+    public void setCommandJournal(CommandJournal commandJournal){
+        this.commandJournal = commandJournal;
+    }
+
+    /**
+     * Registers a listener which is notified of every fill of all order books
+     * @param executionListener listener invoked on the thread running the engine
+     */
+    public void setExecutionListener(ExecutionListener executionListener){
+        this.executionListener = executionListener;
+        for (OrderBook book : instruments.books())
+            book.setExecutionListener(executionListener);
+    }
+
+    /**
+     * Registers a recorder of the latencies of all operations, see <code>LatencyRecorder</code>
+     * @param latencyRecorder recorder of the latencies or null to stop recording
+     */
+    public void setLatencyRecorder(LatencyRecorder latencyRecorder){
+        this.latencyRecorder = latencyRecorder;
+        for (Map.Entry<String, OrderBook> entry : instruments.entries())
+            entry.getValue().latencies = latencyRecorder != null ? latencyRecorder.register(entry.getKey()) : null;
     }
 
+    /**
+     * Registers a publisher of the incremental depth updates of all order books, see <code>MarketDataPublisher</code>.
+     * Updates are only published for changes after the registration and are not published when a book is closed
+     * @param marketData publisher of the depth updates or null to stop publishing
+     */
+    public void setMarketDataPublisher(MarketDataPublisher marketData){
+        this.marketData = marketData;
+        for (OrderBook book : instruments.books())
+            book.setMarketDataPublisher(marketData);
+    }
+
+    /**
+     * Registers the metrics of all order books and of the trade logger with the registry, see <code>MetricsRegistry</code>
+     * @param metricsRegistry registry through which the metrics are exported
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry){
+        this.metricsRegistry = metricsRegistry;
+        for (Map.Entry<String, OrderBook> entry : instruments.entries())
+            metricsRegistry.register(entry.getKey(), entry.getValue().getMetrics());
+        if (tradeLogger != null)
+            metricsRegistry.register("trade-logger", tradeLogger);
+    }
+
+    /**
+     * Adds the order to the order book of its product. If no order book exists for the product yet, a new
+     * order book is created
+     * @param order order to be added
+     * @throws IllegalArgumentException if an order with the same orderID is already resting in a book or if a market,
+     * fill-or-kill or immediate-or-cancel order is added to a book in the call phase of an auction
+     */
     public void addOrder(Order order){
-    OrderBook book = orderBooks.get(order.getProduct());
+        if (orderIndex.containsKey(order.getOrderID()))
+            throw new IllegalArgumentException("Order with ID " + order.getOrderID() + " already exists");
+
+        addOrder(order, bookFor(order.getProduct()));
+    }
 
-        // create new order book for new product type
+    // returns the book of the product, a new order book is created for new product types
+    private OrderBook bookFor(String product){
+        OrderBook book = instruments.get(product);
         if (book == null){
-            book = new OrderBook();
-            book.setTradeLogger(tradeLogger);
-            orderBooks.put(order.getProduct(), book);
+            book = new OrderBook(FixedPoint.INTEGER);
+            registerBook(product, book);
+            if (commandJournal != null)
+                commandJournal.openBook(book.getProductID(), product, FixedPoint.INTEGER, false, 0, 0, 0);
+        }
+        return book;
+    }
+
+    private void addOrder(Order order, OrderBook book){
+        if (book.isCallPhase() && !OrderBook.acceptedInCallPhase(order))
+            throw new IllegalArgumentException("Order with ID " + order.getOrderID() + " cannot be executed in the call phase of " + book.product);
+        if (commandJournal != null)
+            commandJournal.addOrder(book.getProductID(), order);
+
+        if (latencyRecorder == null) {
             book.addOrder(order);
-        // add product to existing order book
         } else {
+            long fills = book.getFillCount();
+            long start = System.nanoTime();
             book.addOrder(order);
+            latencyRecorder.recordAdd(book.latencies, start, book.getFillCount() - fills);
+        }
+        endCommand(book);
+    }
+
+    /**
+     * Opens an order book for the specified product whose prices and quantities are scaled with fixedPoint
+     * <pre>{@code
+     * FixedPoint fp = new FixedPoint(2, 0);
+     * matcher.openBook("Amazon", fp);
+     * matcher.addOrder(new LimitOrder("Amazon", 1, fp.price(101.25), fp.quantity(100), OrderType.SELL, true));}</pre>
+     * Books which are not opened explicitly are created on the first order and use <code>FixedPoint.INTEGER</code>
+     * @param product name of the instrument
+     * @param fixedPoint decimals of prices and quantities of the instrument
+     */
+    public void openBook(String product, FixedPoint fixedPoint){
+        checkBookDoesNotExist(product);
+
+        OrderBook book = new OrderBook(fixedPoint);
+        registerBook(product, book);
+        if (commandJournal != null)
+            commandJournal.openBook(book.getProductID(), product, fixedPoint, false, 0, 0, 0);
+    }
+
+    /**
+     * Opens an order book for the specified product whose prices are expected to stay inside the band
+     * [minPrice, maxPrice] on a grid of tickSize. Price levels inside the band are stored in an array backed
+     * price ladder and can be inserted and located in O(1). Orders with prices outside the band are still accepted
+     * and stored in the red black tree of the book
+     * <pre>{@code
+     * FixedPoint fp = new FixedPoint(2, 0);
+     * matcher.openBook("Amazon", fp, fp.price(50), fp.price(150), fp.price(0.01));}</pre>
+     * @param product name of the instrument
+     * @param fixedPoint decimals of prices and quantities of the instrument
+     * @param minPrice lowest (scaled) price of the band
+     * @param maxPrice highest (scaled) price of the band
+     * @param tickSize minimal (scaled) price increment of the instrument
+     */
+    public void openBook(String product, FixedPoint fixedPoint, long minPrice, long maxPrice, long tickSize){
+        checkBookDoesNotExist(product);
+
+        OrderBook book = new OrderBook(fixedPoint, minPrice, maxPrice, tickSize);
+        registerBook(product, book);
+        if (commandJournal != null)
+            commandJournal.openBook(book.getProductID(), product, fixedPoint, true, minPrice, maxPrice, tickSize);
+    }
+
+    /**
+     * @param product name of the instrument
+     * @return fixed point representation of the instrument's prices and quantities or null if no book exists
+     */
+    public FixedPoint getFixedPoint(String product){
+        OrderBook book = instruments.get(product);
+        return book == null ? null : book.getFixedPoint();
+    }
+
+    /**
+     * @param product name of the instrument
+     * @return id of the instrument which identifies it in the trade journal, -1 if no book exists
+     */
+    public int getProductID(String product){
+        OrderBook book = instruments.get(product);
+        return book == null ? -1 : book.getProductID();
+    }
+
+    /**
+     * Returns the best n price levels of one side of the product's book, starting with the best price.
+     * The levels are served from a cache per side which is only rebuilt once a level inside it changes, such that
+     * repeated requests for the top of the book do not walk the book. Must be called on the thread running the engine
+     * <pre>{@code
+     * List<PriceLevel> bids = matcher.getDepth("Amazon", OrderType.BUY, 5);}</pre>
+     * @param n maximal number of levels
+     * @return levels of the side, fewer than n if the side has fewer levels
+     * @throws IllegalArgumentException if no book exists for the product
+     */
+    public List<PriceLevel> getDepth(String product, OrderType side, int n){
+        if (n < 0)
+            throw new IllegalArgumentException("number of levels must not be negative");
+        if (n == 0) {
+            if (instruments.get(product) == null)
+                throw new IllegalArgumentException("No order book exists for " + product);
+            return new ArrayList<>(0);
         }
+        long[] prices = new long[n];
+        long[] volumes = new long[n];
+        int levels = getDepth(product, side, prices, volumes);
+        List<PriceLevel> depth = new ArrayList<>(levels);
+        for (int i = 0; i < levels; i++)
+            depth.add(new PriceLevel(prices[i], volumes[i]));
+        return depth;
+    }
+
+    /**
+     * Copies the best price levels of one side of the product's book into the arrays without allocating,
+     * see <code>getDepth(String, OrderType, int)</code>
+     * <pre>{@code
+     * long[] prices = new long[10];
+     * long[] volumes = new long[10];
+     * int levels = matcher.getDepth("Amazon", OrderType.SELL, prices, volumes);}</pre>
+     * @param prices receives the prices of the levels, its length is the maximal number of levels
+     * @param volumes receives the total volumes of the levels, must be at least as long as prices
+     * @return number of copied levels
+     * @throws IllegalArgumentException if no book exists for the product
+     */
+    public int getDepth(String product, OrderType side, long[] prices, long[] volumes){
+        OrderBook book = instruments.get(product);
+        if (book == null)
+            throw new IllegalArgumentException("No order book exists for " + product);
+        if (volumes.length < prices.length)
+            throw new IllegalArgumentException("volumes must be at least as long as prices");
+        return book.getDepth(side, prices, volumes);
+    }
+
+    /**
+     * Starts the call phase of an auction (e.g. the opening or closing auction) for the book of the product.
+     * Until the book is uncrossed, limit, iceberg and stop orders are accepted and rest in the book without being
+     * matched, even if the book is crossed, and stops are not triggered. Orders which must be executed on arrival
+     * (market, fill-or-kill and immediate-or-cancel orders) are rejected. Cancellations and amendments are applied as usual
+     * <pre>{@code
+     * matcher.startAuction("Amazon");
+     * matcher.addOrder(new LimitOrder("Amazon", 1, 101, 100, OrderType.BUY, false));
+     * matcher.addOrder(new LimitOrder("Amazon", 2, 99, 60, OrderType.SELL, false));
+     * AuctionPrice indicative = matcher.getIndicativePrice("Amazon");
+     * AuctionPrice opening = matcher.uncross("Amazon");}</pre>
+     * @param product name of the instrument
+     * @throws IllegalArgumentException if no book exists for the product or it is already in the call phase
+     */
+    public void startAuction(String product){
+        OrderBook book = auctionBook(product, false);
+        if (commandJournal != null)
+            commandJournal.startAuction(book.getProductID());
+        book.startAuction();
+    }
+
+    /**
+     * Ends the call phase of the product's book and executes all crossing orders at a single price, the equilibrium
+     * of the book (see <code>getIndicativePrice</code>). The orders are executed in price/time priority, buy orders
+     * are reported as takers. Orders which were not executed remain in the book and continuous matching resumes,
+     * stops triggered by the equilibrium price are released. The result is also reported to
+     * <code>ExecutionListener.onUncross</code>
+     * @param product name of the instrument
+     * @return equilibrium at which the orders were executed or null if the book was not crossed
+     * @throws IllegalArgumentException if no book exists for the product or it is not in the call phase
+     */
+    public AuctionPrice uncross(String product){
+        OrderBook book = auctionBook(product, true);
+        if (commandJournal != null)
+            commandJournal.uncross(book.getProductID());
+        AuctionPrice equilibrium = book.uncross();
+        if (executionListener != null)
+            executionListener.onUncross(product, equilibrium);
+        endCommand(book);
+        return equilibrium;
+    }
+
+    /**
+     * Returns the price at which the book of the product would be uncrossed now. The equilibrium is the limit price
+     * of a resting order which maximizes the executed volume, then minimizes the surplus (the volume which remains
+     * executable on one side at the price). Among the remaining prices, the highest is taken if they all leave a surplus
+     * on the bid side and the lowest if they all leave one on the ask side, otherwise the price closest to the last
+     * traded price (the lowest if the book has not traded). The hidden volume of iceberg orders is included
+     * <br>
+     * The books of both sides keep the cumulative volume of their levels up to date during the call phase, such that
+     * the price is found by a binary search in O(logP * logN) for P prices between the best ask and bid and N levels,
+     * and can be queried after every order
+     * @param product name of the instrument
+     * @return indicative equilibrium or null if the book is not crossed
+     * @throws IllegalArgumentException if no book exists for the product or it is not in the call phase
+     */
+    public AuctionPrice getIndicativePrice(String product){
+        return auctionBook(product, true).equilibrium();
+    }
+
+    /**
+     * @param product name of the instrument
+     * @return true if the book of the product is in the call phase of an auction, false if not or if no book exists
+     */
+    public boolean isCallPhase(String product){
+        OrderBook book = instruments.get(product);
+        return book != null && book.isCallPhase();
+    }
+
+    private OrderBook auctionBook(String product, boolean callPhase){
+        OrderBook book = instruments.get(product);
+        if (book == null)
+            throw new IllegalArgumentException("No order book exists for " + product);
+        if (book.isCallPhase() != callPhase)
+            throw new IllegalArgumentException("Order book for " + product + (callPhase ? " is not" : " is already") + " in the call phase");
+        return book;
+    }
+
+    /**
+     * Prepares the book of the product, which must have been opened with a price band, for the start of a session.
+     * A tick is pre-allocated for every level of the band on both sides, such that no price level inside the band
+     * allocates memory. Afterwards, synthetic order flow for the same price band is run against a private engine on a
+     * background thread to compile the code paths of the matching engine before the first real orders arrive
+     * <pre>{@code
+     * matcher.openBook("Amazon", fp, fp.price(50), fp.price(150), fp.price(0.01));
+     * matcher.prewarm("Amazon", 200_000).join();
+     * assert matcher.isReady("Amazon");}</pre>
+     * Must be called on the thread running the engine, which may keep processing orders during the warmup
+     * @param product name of the instrument
+     * @param warmupOrders number of synthetic orders
+     * @return future which completes once the warmup has finished and the book is ready
+     * @throws IllegalArgumentException if no book with a price band exists for the product
+     */
+    public CompletableFuture<Void> prewarm(String product, int warmupOrders){
+        OrderBook book = instruments.get(product);
+        if (book == null)
+            throw new IllegalArgumentException("No order book exists for " + product);
+        OrderTree bids = book.getBidSide();
+        if (!bids.hasLadder())
+            throw new IllegalArgumentException("Order book for " + product + " has no price band");
+
+        book.preallocateTicks();
+        FixedPoint fixedPoint = book.getFixedPoint();
+        long minPrice = bids.getLadderMin();
+        long maxPrice = bids.getLadderMax();
+        long tickSize = bids.getTickSize();
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Thread warmup = new Thread(() -> {
+            try {
+                BookWarmup.run(fixedPoint, minPrice, maxPrice, tickSize, warmupOrders);
+                book.ready = true;
+                done.complete(null);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        }, "warmup-" + product);
+        warmup.setDaemon(true);
+        warmup.start();
+        return done;
+    }
+
+    /**
+     * @return true if the book of the product has been pre-warmed with <code>prewarm</code>
+     */
+    public boolean isReady(String product){
+        OrderBook book = instruments.get(product);
+        return book != null && book.ready;
+    }
+
+    /**
+     * Retains empty price levels of the product's book according to the policy instead of removing them immediately,
+     * see <code>RetentionPolicy</code>. Retained levels must be compacted periodically with <code>compact</code>
+     * <pre>{@code
+     * FixedPoint fp = matcher.getFixedPoint("Amazon");
+     * matcher.setRetentionPolicy("Amazon", new RetentionPolicy(256, fp.price(1.0), TimeUnit.SECONDS.toNanos(5)));}</pre>
+     * @param product name of the instrument
+     * @param policy retention policy or null to remove empty levels immediately
+     * @throws IllegalArgumentException if no book exists for the product
+     */
+    public void setRetentionPolicy(String product, RetentionPolicy policy){
+        OrderBook book = instruments.get(product);
+        if (book == null)
+            throw new IllegalArgumentException("No order book exists for " + product);
+        book.setRetentionPolicy(policy);
+    }
+
+    /**
+     * Makes both sides of the product's book keep the cumulative volume of their price levels from now on, which the
+     * liquidity check of fill-or-kill orders and the equilibrium of auctions require. Without this call, tracking is
+     * enabled by the first fill-or-kill order (for the opposite side) or auction of the book, which then pays O(N) to sum
+     * the N levels already resting. Books which receive fill-or-kill orders should therefore enable tracking right after
+     * they are opened. Afterwards, every change of a level's volume costs O(logN) instead of O(1)
+     * <pre>{@code
+     * matcher.openBook("Amazon", fp);
+     * matcher.trackCumulativeVolume("Amazon");}</pre>
+     * @param product name of the instrument
+     * @throws IllegalArgumentException if no book exists for the product
+     */
+    public void trackCumulativeVolume(String product){
+        OrderBook book = instruments.get(product);
+        if (book == null)
+            throw new IllegalArgumentException("No order book exists for " + product);
+        book.getBidSide().trackCumulativeVolume();
+        book.getAskSide().trackCumulativeVolume();
+    }
+
+    /**
+     * Removes the retained empty price levels of all books which exceed the distance or idle time of
+     * their retention policy. Should be called whenever the thread running the engine is idle
+     * @return number of removed price levels
+     */
+    public int compact(){
+        long now = System.nanoTime();
+        int removed = 0;
+        for (OrderBook book : instruments.books())
+            removed += book.compact(now);
+        return removed;
+    }
+
+    private void registerBook(String product, OrderBook book){
+        registerBook(product, book, instruments.nextID());
+    }
+
+    // registers a book with a given product id, used when books are restored from a snapshot
+    void registerBook(String product, OrderBook book, int productID){
+        book.setTradeLogger(tradeLogger);
+        book.setOrderIndex(orderIndex);
+        book.setTradeJournal(tradeJournal);
+        book.setExecutionListener(executionListener);
+        book.setMarketDataPublisher(marketData);
+        book.latencies = latencyRecorder != null ? latencyRecorder.register(product) : null;
+        if (metricsRegistry != null)
+            metricsRegistry.register(product, book.getMetrics());
+        book.setProductID(productID);
+        book.product = product;
+        instruments.register(product, book, productID);
+    }
+
+    /**
+     * Takes a snapshot of all order books. The books are copied on the calling thread, which must be the thread
+     * running the engine, and written to the file by a background thread. If a command journal is registered,
+     * the snapshot records its current position such that only the commands after the snapshot need to be replayed
+     * <pre>{@code
+     * matcher.snapshot("books.snapshot").join();
+     *
+     * // on startup
+     * MatchingEngine recovered = new MatchingEngine();
+     * long position = recovered.restore("books.snapshot");
+     * CommandJournal.replay("journal", recovered, position);}</pre>
+     * @param fileName file the snapshot is written to, an existing snapshot is only replaced once the new one is complete
+     * @return future which completes once the snapshot has been written
+     */
+    public CompletableFuture<Void> snapshot(String fileName){
+        long journalPosition = commandJournal != null ? commandJournal.getPosition() : -1;
+        return snapshots.take(this, journalPosition, fileName, true);
+    }
+
+    /**
+     * Takes a snapshot to the file whenever the interval has elapsed since the previous scheduled snapshot.
+     * The clock is read on the thread running the engine once every 1,024 commands
+     * and by <code>snapshotIfDue</code>, which should be called whenever the thread is idle. A scheduled snapshot is
+     * skipped while the two previous snapshots are still being written
+     * <pre>{@code
+     * matcher.scheduleSnapshots("books.snapshot", TimeUnit.SECONDS.toNanos(30));}</pre>
+     * @param fileName file the snapshots are written to or null to stop taking snapshots
+     * @param intervalNanos minimal time between two snapshots
+     */
+    public void scheduleSnapshots(String fileName, long intervalNanos){
+        if (fileName != null && intervalNanos <= 0)
+            throw new IllegalArgumentException("snapshot interval must be positive");
+        snapshotFile = fileName;
+        snapshotInterval = intervalNanos;
+        lastSnapshot = System.nanoTime();
+        commandsUntilSnapshotCheck = SNAPSHOT_CHECK_COMMANDS;
+    }
+
+    /**
+     * Takes a scheduled snapshot if its interval has elapsed, see <code>scheduleSnapshots</code>
+     * @return future which completes once the snapshot has been written, null if no snapshot was taken
+     */
+    public CompletableFuture<Void> snapshotIfDue(){
+        commandsUntilSnapshotCheck = SNAPSHOT_CHECK_COMMANDS;
+        if (snapshotFile == null)
+            return null;
+        long now = System.nanoTime();
+        if (now - lastSnapshot < snapshotInterval)
+            return null;
+
+        long journalPosition = commandJournal != null ? commandJournal.getPosition() : -1;
+        CompletableFuture<Void> written = snapshots.take(this, journalPosition, snapshotFile, false);
+        if (written != null) {
+            lastSnapshot = now;
+            scheduledSnapshot = written;
+        }
+        return written;
+    }
+
+    // called once a command has been applied to the book
+    private void endCommand(OrderBook book){
+        if (marketData != null)
+            marketData.endEvent(book);
+        if (snapshotFile != null && --commandsUntilSnapshotCheck == 0)
+            snapshotIfDue();
+    }
+
+    /**
+     * Restores the order books of a snapshot into this engine, which must not contain any order books.
+     * Restored orders are not matched and keep their time priority. If a market data publisher is registered,
+     * every restored book is published as one event which adds all of its levels
+     * @param fileName snapshot written by <code>snapshot</code>
+     * @return command journal position of the snapshot, -1 if no command journal was registered when it was taken
+     */
+    public long restore(String fileName) throws IOException {
+        return EngineSnapshot.restore(this, fileName);
+    }
+
+    private void checkBookDoesNotExist(String product){
+        if (instruments.contains(product))
+            throw new IllegalArgumentException("Order book for " + product + " already exists");
     }
 
     /**
@@ -69,7 +584,14 @@ public class MatchingEngine {
      * @param product order book to be deleted
      */
     public void closeBook(String product){
-        orderBooks.remove(product);
+        OrderBook book = instruments.remove(product);
+        if (book != null){
+            if (commandJournal != null)
+                commandJournal.closeBook(book.getProductID());
+            book.removeFromIndex();
+            if (metricsRegistry != null)
+                metricsRegistry.unregister(product);
+        }
     }
 
     /**
@@ -77,14 +599,21 @@ public class MatchingEngine {
      * matching engine
      */
     public void closeAllBooks(){
-        orderBooks.clear();
+        if (commandJournal != null)
+            commandJournal.closeAllBooks();
+        if (metricsRegistry != null) {
+            for (String product : instruments.products())
+                metricsRegistry.unregister(product);
+        }
+        instruments.clear();
+        orderIndex.clear();
     }
 
     /**
      * Deletes the supplied order from the order book
      * The method either accepts the original instance of the order that was
-     * added or a new order instance with the same parameters as the original order
-     * that should be deleted in the book
+     * added or a new order instance with the same orderID as the original order
+     * that should be deleted in the book. Orders resting in the book of another product are not deleted
      * <pre>{@code
      * Order orderOriginal = new LimitOrder("Amazon", 1, 100, 100, OrderType.SELL, true);
      * matcher.addOrder(orderOriginal
@@ -96,27 +625,300 @@ public class MatchingEngine {
      * @param order Order to be deleted
      */
     public void deleteOrder(Order order){
-        OrderBook book = orderBooks.get(order.getProduct());
-        if (book != null)
-            book.deleteOrder(order);
+        Order resting = orderIndex.get(order.getOrderID());
+        if (resting != null && resting.getProduct().equals(order.getProduct()))
+            cancel(resting, instruments.get(resting.getProductID()));
     }
 
-    // like this, order modification leads to a loss of the order's place in the queue
-    // and the modified order is inserted at the end of the queue
+    /**
+     * Deletes the resting order with the specified ID in O(1)
+     * @param orderID ID of the order to be deleted, order IDs are unique across all books of the engine
+     * @return true if the order was resting in a book and has been deleted, false otherwise
+     */
+    public boolean cancel(int orderID){
+        Order resting = orderIndex.get(orderID);
+        if (resting == null)
+            return false;
+
+        cancel(resting, instruments.get(resting.getProductID()));
+        return true;
+    }
+
+    private void cancel(Order resting, OrderBook book){
+        if (commandJournal != null)
+            commandJournal.cancel(resting.getOrderID());
+        long start = latencyRecorder != null ? System.nanoTime() : 0;
+        book.deleteOrder(resting);
+        resting.recycle();
+        if (latencyRecorder != null)
+            latencyRecorder.record(book.latencies, LatencyRecorder.Operation.CANCEL, start);
+        endCommand(book);
+    }
+
+    /**
+     * Changes volume and limit of the resting order with the specified ID.
+     * If only the volume is reduced, the order is amended in place and keeps its place in the queue. A higher volume
+     * moves it to the end of the queue of its price level and a new limit to the end of the queue of the new level,
+     * without deleting and adding the order again. If the new limit crosses the book, the order is executed against
+     * the opposite side
+     * @param orderID ID of the order to be amended
+     * @param volume new (scaled) volume of the order
+     * @param limit new (scaled) limit of the order
+     * @return true if the order was resting in a book and has been amended, false otherwise
+     */
+    public boolean amend(int orderID, long volume, long limit){
+        checkAmendedVolume(volume);
+
+        Order resting = orderIndex.get(orderID);
+        if (resting == null)
+            return false;
+
+        amend(resting, instruments.get(resting.getProductID()), volume, limit);
+        return true;
+    }
+
+    private void amend(Order resting, OrderBook book, long volume, long limit){
+        checkAmendedVolume(volume);
+        if (commandJournal != null)
+            commandJournal.amend(resting.getOrderID(), volume, limit);
+        long start = latencyRecorder != null ? System.nanoTime() : 0;
+        book.amendOrder(resting, volume, limit);
+        if (latencyRecorder != null)
+            latencyRecorder.record(book.latencies, LatencyRecorder.Operation.AMEND, start);
+        endCommand(book);
+    }
+
+    // the single check of the volume of amendments, applied by every path which amends an order
+    static void checkAmendedVolume(long volume){
+        if (volume <= 0)
+            throw new IllegalArgumentException("Amended volume must be positive, use cancel to delete an order");
+    }
+
+    /**
+     * Decodes and applies the binary message starting at offset, see <code>MessageDecoder</code> for the format.
+     * The fields are read directly from the buffer and the book is located by the instrument ID of the message.
+     * Orders of NEW_ORDER messages are taken from a pool of the engine and returned to it once they are executed or
+     * cancelled, such that only resting orders are held as objects and the message path does not allocate in steady state
+     * <pre>{@code
+     * int offset = 0;
+     * while (offset < buffer.limit())
+     *     offset += matcher.onMessage(buffer, offset);}</pre>
+     * The results of CANCEL and AMEND messages are reported to <code>ExecutionListener.onCancel</code> and
+     * <code>ExecutionListener.onAmend</code>, they only apply to orders resting in the book of the instrument
+     * @param buffer buffer holding the message
+     * @param offset offset of the message header
+     * @return number of bytes of the message
+     * @throws IllegalArgumentException if the message is malformed, refers to an instrument without book,
+     * adds an order with an ID which is already resting in a book, an unknown order kind or a volume which is not positive,
+     * or adds a market order in the call phase of an auction
+     */
+    public int onMessage(ByteBuffer buffer, int offset){
+        MessageDecoder message = decoder.wrap(buffer, offset);
+        int template = message.templateID();
+        if (message.blockLength() < blockLength(template))
+            throw new IllegalArgumentException("Invalid block length " + message.blockLength() + " of template " + template);
+
+        int instrumentID = message.instrumentID();
+        OrderBook book = instruments.get(instrumentID);
+        if (book == null)
+            throw new IllegalArgumentException("No order book exists for instrument " + instrumentID);
+
+        int orderID = message.orderID();
+        switch (template){
+            case MessageDecoder.NEW_ORDER: {
+                if (orderIndex.containsKey(orderID))
+                    throw new IllegalArgumentException("Order with ID " + orderID + " already exists");
+                // the message is validated before an order is taken from the pool, a rejected order would not be returned to it
+                byte kind = message.orderKind();
+                if (kind != MessageDecoder.LIMIT && kind != MessageDecoder.MARKET)
+                    throw new IllegalArgumentException("Unknown order kind " + kind + " of order with ID " + orderID);
+                if (message.quantity() <= 0)
+                    throw new IllegalArgumentException("Volume of order with ID " + orderID + " must be positive");
+                if (kind == MessageDecoder.MARKET && book.isCallPhase())
+                    throw new IllegalArgumentException("Order with ID " + orderID + " cannot be executed in the call phase of " + book.product);
+                Order order = kind == MessageDecoder.MARKET
+                        ? messagePool.marketOrder(book.product, orderID, message.quantity(), message.side(), message.logTrade())
+                        : messagePool.limitOrder(book.product, orderID, message.price(), message.quantity(), message.side(), message.logTrade());
+                addOrder(order, book);
+                break;
+            }
+            case MessageDecoder.CANCEL: {
+                Order resting = orderIndex.get(orderID);
+                boolean cancelled = resting != null && resting.getProductID() == book.getProductID();
+                if (cancelled)
+                    cancel(resting, book);
+                if (executionListener != null)
+                    executionListener.onCancel(orderID, cancelled);
+                break;
+            }
+            case MessageDecoder.AMEND: {
+                long volume = message.quantity();
+                checkAmendedVolume(volume);
+                Order resting = orderIndex.get(orderID);
+                boolean amended = resting != null && resting.getProductID() == book.getProductID();
+                if (amended)
+                    amend(resting, book, volume, message.price());
+                if (executionListener != null)
+                    executionListener.onAmend(orderID, amended);
+                break;
+            }
+        }
+        return message.encodedLength();
+    }
+
+    // minimal block length of the messages of a template
+    private static int blockLength(int template){
+        switch (template){
+            case MessageDecoder.NEW_ORDER: return MessageDecoder.NEW_ORDER_LENGTH;
+            case MessageDecoder.CANCEL: return MessageDecoder.CANCEL_LENGTH;
+            case MessageDecoder.AMEND: return MessageDecoder.AMEND_LENGTH;
+            default: throw new IllegalArgumentException("Unknown template " + template);
+        }
+    }
+
+    /**
+     * Applies all commands of the batch. The commands are grouped by order book and the commands of each book are
+     * applied in a tight loop in their order inside the batch. Commands of different books may therefore be applied
+     * in a different order than they were appended. Fills and the status of each command are written to result
+     * <pre>{@code
+     * matcher.submit(batch, result);
+     * for (int i = 0; i < result.getFillCount(); i++)
+     *     publish(result.getTakerOrderID(i), result.getMakerOrderID(i), result.getPrice(i), result.getVolume(i));}</pre>
+     * Unlike the single order methods, cancellations and amendments only apply to orders resting in the book of
+     * the product given in the command and rejected orders do not throw but are reported as <code>REJECTED</code>
+     * @param batch commands to be applied
+     * @param result buffer which is cleared and filled with the results of the batch
+     */
+    public void submit(CommandBatch batch, BatchResult result){
+        int size = batch.size;
+        result.clear(size);
+
+        // assign each command to the group of its book, the book is only looked up if the product changes
+        int groupCount = 0;
+        try {
+            String lastProduct = null;
+            OrderBook lastBook = null;
+            for (int i = 0; i < size; i++){
+                String product = batch.products[i];
+                if (product != lastProduct){
+                    lastProduct = product;
+                    lastBook = batch.types[i] == CommandBatch.ADD ? bookFor(product) : instruments.get(product);
+                } else if (lastBook == null && batch.types[i] == CommandBatch.ADD){
+                    lastBook = bookFor(product);
+                }
+
+                if (lastBook == null){
+                    // cancellation or amendment for a product without book
+                    batch.groups[i] = -1;
+                    result.setStatus(i, BatchResult.NOT_FOUND);
+                    continue;
+                }
+                if (lastBook.batchGroup < 0){
+                    if (groupCount == batchBooks.length){
+                        batchBooks = Arrays.copyOf(batchBooks, groupCount << 1);
+                        batchOffsets = new int[(groupCount << 1) + 1];
+                    }
+                    lastBook.batchGroup = groupCount;
+                    batchBooks[groupCount++] = lastBook;
+                }
+                batch.groups[i] = lastBook.batchGroup;
+            }
+
+            // stable counting sort of the commands by group
+            Arrays.fill(batchOffsets, 0, groupCount + 1, 0);
+            for (int i = 0; i < size; i++){
+                if (batch.groups[i] >= 0)
+                    batchOffsets[batch.groups[i] + 1]++;
+            }
+            for (int g = 0; g < groupCount; g++)
+                batchOffsets[g + 1] += batchOffsets[g];
+            for (int i = 0; i < size; i++){
+                if (batch.groups[i] >= 0)
+                    batch.sequence[batchOffsets[batch.groups[i]]++] = i;
+            }
+
+            int k = 0;
+            for (int g = 0; g < groupCount; g++){
+                OrderBook book = batchBooks[g];
+                book.batchResult = result;
+                int end = batchOffsets[g];
+                for (; k < end; k++){
+                    int i = batch.sequence[k];
+                    book.batchCommand = i;
+                    result.setStatus(i, applyBatchCommand(batch, i, book));
+                }
+                book.batchResult = null;
+            }
+        } finally {
+            // books must not keep their group or result if a command failed, the next batch would reuse them
+            for (int g = 0; g < groupCount; g++){
+                batchBooks[g].batchResult = null;
+                batchBooks[g].batchGroup = -1;
+                batchBooks[g] = null;
+            }
+        }
+    }
+
+    private byte applyBatchCommand(CommandBatch batch, int i, OrderBook book){
+        int orderID = batch.orderIDs[i];
+        if (batch.types[i] == CommandBatch.ADD){
+            if (orderIndex.containsKey(orderID) || (book.isCallPhase() && !OrderBook.acceptedInCallPhase(batch.orders[i])))
+                return BatchResult.REJECTED;
+            addOrder(batch.orders[i], book);
+            return BatchResult.DONE;
+        }
+
+        Order resting = orderIndex.get(orderID);
+        if (resting == null || resting.getProductID() != book.getProductID())
+            return BatchResult.NOT_FOUND;
+        if (batch.types[i] == CommandBatch.CANCEL)
+            cancel(resting, book);
+        else
+            amend(resting, book, batch.volumes[i], batch.limits[i]);
+        return BatchResult.DONE;
+    }
+
+    /**
+     * Modifies the resting order with the orderID of originalOrder, which may be a replica of the resting instance,
+     * such that it takes over limit and volume of modifiedOrder. Like <code>amend</code>, a reduced volume keeps the
+     * order's place in the queue. Stop orders with a new stop price and iceberg orders with a new peak are replaced by
+     * modifiedOrder, which is added to the end of the queue. Orders resting in the book of another product are not modified
+     * <pre>{@code
+     * matcher.addOrder(new LimitOrder("Amazon", 1, 100, 100, OrderType.SELL, true));
+     * matcher.modifyOrder(new LimitOrder("Amazon", 1, 100, 100, OrderType.SELL, true),
+     *         new LimitOrder("Amazon", 1, 100, 60, OrderType.SELL, true));}</pre>
+     * @param originalOrder resting order or an order with the same orderID
+     * @param modifiedOrder order with the same orderID, side, type and product and the modified parameters
+     * @throws IllegalArgumentException if modifiedOrder differs from originalOrder in any other than the
+     * modifiable parameters or has no volume
+     */
     public void modifyOrder(Order originalOrder, Order modifiedOrder){
 
         // checks
-        if (originalOrder.getSide().equals(modifiedOrder.getSide()))
+        if (originalOrder.getOrderID() != modifiedOrder.getOrderID())
+            throw new IllegalArgumentException("Order modification cannot change the orderID");
+        if (originalOrder.getSide() != modifiedOrder.getSide())
             throw new IllegalArgumentException("Order modification cannot change between buy and sell");
         if (originalOrder.getClass() != modifiedOrder.getClass())
             throw new IllegalArgumentException("Order modification cannot change between order types");
         if (!originalOrder.getProduct().equals(modifiedOrder.getProduct()))
             throw new IllegalArgumentException("Order modification cannot change between products");
+        if (modifiedOrder.getVolume() <= 0)
+            throw new IllegalArgumentException("Modified volume must be positive, use cancel to delete an order");
 
-        // should throw errors down the line if order does not exist in the order book anymore!
-        OrderBook book = orderBooks.get(originalOrder.getProduct());
-        if (book != null){
-            book.updateOrder(originalOrder, modifiedOrder);
+        // original order might be a replica, resolve the instance resting in the book of its product
+        Order resting = orderIndex.get(originalOrder.getOrderID());
+        if (resting != null && resting.getProduct().equals(modifiedOrder.getProduct())){
+            if (resting.getClass() != modifiedOrder.getClass() || resting.getSide() != modifiedOrder.getSide())
+                throw new IllegalArgumentException("Order modification does not match the resting order " + resting.getOrderID());
+            OrderBook book = instruments.get(resting.getProductID());
+            if (commandJournal != null)
+                commandJournal.modifyOrder(resting.getOrderID(), book.getProductID(), modifiedOrder);
+            long start = latencyRecorder != null ? System.nanoTime() : 0;
+            book.updateOrder(resting, modifiedOrder);
+            if (latencyRecorder != null)
+                latencyRecorder.record(book.latencies, LatencyRecorder.Operation.MODIFY, start);
+            endCommand(book);
         }
     }
 }
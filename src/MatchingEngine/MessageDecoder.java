@@ -0,0 +1,112 @@
+package MatchingEngine;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Flyweight decoder of the binary order entry messages processed by <code>MatchingEngine.onMessage</code>.
+ * <br>
+ * Every message consists of an 8 byte header [u16 blockLength][u16 templateId][u16 schemaId][u16 version]
+ * followed by a block of fixed width fields in little endian byte order
+ * <ul>
+ * <li>NEW_ORDER: [i32 instrumentID][i32 orderID][i64 price][i64 quantity][u8 side][u8 orderKind][u8 flags]</li>
+ * <li>CANCEL: [i32 instrumentID][i32 orderID]</li>
+ * <li>AMEND: [i32 instrumentID][i32 orderID][i64 price][i64 quantity]</li>
+ * </ul>
+ * The instrument ID is the product id assigned to the book when it was opened, see <code>MatchingEngine.getProductID</code>.
+ * Prices and quantities are scaled with the <code>FixedPoint</code> of the instrument. The decoder does not copy the
+ * message, its fields are read from the buffer when they are accessed. Messages are written with <code>MessageEncoder</code>
+ * <pre>{@code
+ * MessageDecoder decoder = new MessageDecoder();
+ * decoder.wrap(buffer, offset);
+ * if (decoder.templateID() == MessageDecoder.CANCEL)
+ *     cancel(decoder.orderID());
+ * offset += decoder.encodedLength();}</pre>
+ */
+public class MessageDecoder {
+    public static final int NEW_ORDER = 1;
+    public static final int CANCEL = 2;
+    public static final int AMEND = 3;
+
+    /** order kind of a limit order in a NEW_ORDER message */
+    public static final byte LIMIT = 0;
+    /** order kind of a market order in a NEW_ORDER message, the price of the message is ignored */
+    public static final byte MARKET = 1;
+    /** flag of a NEW_ORDER message whose fills are written to the trade logger */
+    public static final byte LOG_TRADE = 1;
+
+    static final int SCHEMA_ID = 1;
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 8;
+    static final int NEW_ORDER_LENGTH = 27;
+    static final int CANCEL_LENGTH = 8;
+    static final int AMEND_LENGTH = 24;
+
+    // offsets of the fields inside the block
+    static final int INSTRUMENT_ID = 0;
+    static final int ORDER_ID = 4;
+    static final int PRICE = 8;
+    static final int QUANTITY = 16;
+    static final int SIDE = 24;
+    static final int ORDER_KIND = 25;
+    static final int FLAGS = 26;
+
+    // the fields are read through a little endian view of the wrapped buffer, which is only created once per buffer
+    private ByteBuffer source;
+    private ByteBuffer buffer;
+    private int block;
+
+    /**
+     * Points the decoder to the message starting at offset. The byte order of the buffer is not changed
+     * @throws IllegalArgumentException if the message belongs to another schema or is truncated
+     */
+    public MessageDecoder wrap(ByteBuffer buffer, int offset) {
+        if (buffer != source) {
+            source = buffer;
+            this.buffer = littleEndianView(buffer);
+        }
+        if (offset + HEADER_LENGTH > buffer.limit())
+            throw new IllegalArgumentException("Truncated message header at offset " + offset);
+        if (Short.toUnsignedInt(this.buffer.getShort(offset + 4)) != SCHEMA_ID)
+            throw new IllegalArgumentException("Unknown schema " + Short.toUnsignedInt(this.buffer.getShort(offset + 4)));
+
+        this.block = offset + HEADER_LENGTH;
+        if (block + blockLength() > buffer.limit())
+            throw new IllegalArgumentException("Truncated message at offset " + offset);
+        return this;
+    }
+
+    public int blockLength() {return Short.toUnsignedInt(buffer.getShort(block - 8));}
+    public int templateID() {return Short.toUnsignedInt(buffer.getShort(block - 6));}
+    public int version() {return Short.toUnsignedInt(buffer.getShort(block - 2));}
+
+    /**
+     * @return number of bytes of the message including its header
+     */
+    public int encodedLength() {return HEADER_LENGTH + blockLength();}
+
+    public int instrumentID() {return buffer.getInt(block + INSTRUMENT_ID);}
+    public int orderID() {return buffer.getInt(block + ORDER_ID);}
+
+    // price and quantity are not part of a CANCEL message
+    public long price() {return buffer.getLong(block + PRICE);}
+    public long quantity() {return buffer.getLong(block + QUANTITY);}
+
+    // side, order kind and flags are only part of a NEW_ORDER message
+    public OrderType side() {return buffer.get(block + SIDE) == 0 ? OrderType.BUY : OrderType.SELL;}
+    public byte orderKind() {return buffer.get(block + ORDER_KIND);}
+    public boolean logTrade() {return (buffer.get(block + FLAGS) & LOG_TRADE) != 0;}
+
+    /**
+     * @return little endian view of the content of buffer, its limit is the capacity as the limit of buffer may change
+     */
+    static ByteBuffer littleEndianView(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        view.limit(view.capacity());
+        return view;
+    }
+
+    static byte encodeSide(OrderType side) {
+        return side == OrderType.BUY ? (byte) 0 : (byte) 1;
+    }
+}
@@ -0,0 +1,85 @@
+package MatchingEngine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes binary order entry messages in the format read by <code>MessageDecoder</code>
+ * <pre>{@code
+ * MessageEncoder encoder = new MessageEncoder();
+ * encoder.wrap(buffer, 0);
+ * int length = encoder.newOrder(matcher.getProductID("Amazon"), 1, OrderType.SELL, MessageDecoder.LIMIT, 100, 100, false);
+ * matcher.onMessage(buffer, 0);}</pre>
+ */
+public class MessageEncoder {
+    // the fields are written through a little endian view of the wrapped buffer, see MessageDecoder
+    private ByteBuffer source;
+    private ByteBuffer buffer;
+    private int offset;
+
+    /**
+     * Points the encoder to offset, where the next message is written. The byte order of the buffer is not changed
+     */
+    public MessageEncoder wrap(ByteBuffer buffer, int offset) {
+        if (buffer != source) {
+            source = buffer;
+            this.buffer = MessageDecoder.littleEndianView(buffer);
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * @return offset of the next message, i.e. the end of the messages encoded since wrap
+     */
+    public int offset() {return offset;}
+
+    /**
+     * @param orderKind <code>MessageDecoder.LIMIT</code> or <code>MessageDecoder.MARKET</code>
+     * @return number of bytes of the message
+     */
+    public int newOrder(int instrumentID, int orderID, OrderType side, byte orderKind, long price, long quantity, boolean logTrade) {
+        int block = header(MessageDecoder.NEW_ORDER, MessageDecoder.NEW_ORDER_LENGTH);
+        buffer.putInt(block + MessageDecoder.INSTRUMENT_ID, instrumentID);
+        buffer.putInt(block + MessageDecoder.ORDER_ID, orderID);
+        buffer.putLong(block + MessageDecoder.PRICE, price);
+        buffer.putLong(block + MessageDecoder.QUANTITY, quantity);
+        buffer.put(block + MessageDecoder.SIDE, MessageDecoder.encodeSide(side));
+        buffer.put(block + MessageDecoder.ORDER_KIND, orderKind);
+        buffer.put(block + MessageDecoder.FLAGS, logTrade ? MessageDecoder.LOG_TRADE : 0);
+        return MessageDecoder.HEADER_LENGTH + MessageDecoder.NEW_ORDER_LENGTH;
+    }
+
+    /**
+     * @return number of bytes of the message
+     */
+    public int cancel(int instrumentID, int orderID) {
+        int block = header(MessageDecoder.CANCEL, MessageDecoder.CANCEL_LENGTH);
+        buffer.putInt(block + MessageDecoder.INSTRUMENT_ID, instrumentID);
+        buffer.putInt(block + MessageDecoder.ORDER_ID, orderID);
+        return MessageDecoder.HEADER_LENGTH + MessageDecoder.CANCEL_LENGTH;
+    }
+
+    /**
+     * @return number of bytes of the message
+     */
+    public int amend(int instrumentID, int orderID, long price, long quantity) {
+        int block = header(MessageDecoder.AMEND, MessageDecoder.AMEND_LENGTH);
+        buffer.putInt(block + MessageDecoder.INSTRUMENT_ID, instrumentID);
+        buffer.putInt(block + MessageDecoder.ORDER_ID, orderID);
+        buffer.putLong(block + MessageDecoder.PRICE, price);
+        buffer.putLong(block + MessageDecoder.QUANTITY, quantity);
+        return MessageDecoder.HEADER_LENGTH + MessageDecoder.AMEND_LENGTH;
+    }
+
+    private int header(int templateID, int blockLength) {
+        if (offset + MessageDecoder.HEADER_LENGTH + blockLength > source.limit())
+            throw new IndexOutOfBoundsException("Message of " + (MessageDecoder.HEADER_LENGTH + blockLength) + " bytes exceeds the limit of the buffer at offset " + offset);
+        buffer.putShort(offset, (short) blockLength);
+        buffer.putShort(offset + 2, (short) templateID);
+        buffer.putShort(offset + 4, (short) MessageDecoder.SCHEMA_ID);
+        buffer.putShort(offset + 6, (short) MessageDecoder.VERSION);
+        int block = offset + MessageDecoder.HEADER_LENGTH;
+        offset = block + blockLength;
+        return block;
+    }
+}
@@ -0,0 +1,226 @@
+package MatchingEngine;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the metrics of all order books and trade loggers of one or more matching engines.
+ * <br>
+ * Matching engines register their books once the registry is set with <code>MatchingEngine.setMetricsRegistry</code>.
+ * The metrics can be read at any time without stopping the engines, either programmatically with
+ * <code>getBookMetrics</code>, as MBeans after <code>enableJmx</code> or as a text dump which also shows the
+ * number of orders and fills per second of each book since the previous dump
+ * <pre>{@code
+ * MetricsRegistry registry = new MetricsRegistry();
+ * matcher.setMetricsRegistry(registry);
+ * registry.enableJmx();
+ * registry.startDump(System.out, 10, TimeUnit.SECONDS);}</pre>
+ */
+public class MetricsRegistry {
+    private static final String DOMAIN = "MatchingEngine";
+
+    private final ConcurrentHashMap<String, BookMetrics> books = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TradeLogger> tradeLoggers = new ConcurrentHashMap<>();
+    private volatile MBeanServer mBeanServer;
+    private ScheduledExecutorService dumper;
+
+    // counters of the previous dump to compute rates, guarded by this
+    private final Map<String, long[]> previousCounts = new HashMap<>();
+    private final long[] previousTotals = new long[2];
+    private long previousDump = System.nanoTime();
+
+    void register(String product, BookMetrics metrics) {
+        books.put(product, metrics);
+        registerMBean("OrderBook", product, metrics);
+    }
+
+    void unregister(String product) {
+        if (books.remove(product) != null)
+            unregisterMBean("OrderBook", product);
+    }
+
+    /**
+     * Registers a trade logger whose backlog and dropped trades are reported
+     * @param name name under which the logger is reported
+     */
+    public void register(String name, TradeLogger tradeLogger) {
+        tradeLoggers.put(name, tradeLogger);
+        registerMBean("TradeLogger", name, tradeLogger);
+    }
+
+    /**
+     * @return products whose books are registered
+     */
+    public Set<String> getProducts() {
+        return Collections.unmodifiableSet(books.keySet());
+    }
+
+    /**
+     * @return metrics of the product's book or null if no book is registered for the product
+     */
+    public BookMetrics getBookMetrics(String product) {
+        return books.get(product);
+    }
+
+    /**
+     * @return sum of the counter over all registered books, which may be run by different threads such as the
+     * shards of a <code>ShardedMatchingEngine</code>
+     */
+    public long getTotal(BookMetrics.Counter counter) {
+        long total = 0;
+        for (BookMetrics metrics : books.values())
+            total += metrics.get(counter);
+        return total;
+    }
+
+    /**
+     * @return number of orders resting in all registered books
+     */
+    public long getTotalRestingOrders() {
+        long total = 0;
+        for (BookMetrics metrics : books.values())
+            total += metrics.getRestingOrders();
+        return total;
+    }
+
+    /**
+     * Registers all current and future books and trade loggers with the platform MBean server under the domain
+     * <code>MatchingEngine</code>, e.g. <code>MatchingEngine:type=OrderBook,name="Amazon"</code>
+     */
+    public synchronized void enableJmx() {
+        if (mBeanServer != null)
+            return;
+        mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        books.forEach((product, metrics) -> registerMBean("OrderBook", product, metrics));
+        tradeLoggers.forEach((name, logger) -> registerMBean("TradeLogger", name, logger));
+    }
+
+    /**
+     * Writes <code>dump</code> to out in a fixed interval on a background thread
+     */
+    public synchronized void startDump(PrintStream out, long period, TimeUnit unit) {
+        if (dumper != null)
+            throw new IllegalStateException("dump has already been started");
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> out.print(dump()), period, period, unit);
+    }
+
+    /**
+     * Stops the periodic dump
+     */
+    public synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdown();
+            dumper = null;
+        }
+    }
+
+    /**
+     * @return one line per book and trade logger with their current metrics, followed by the totals of all books.
+     * Rates are computed over the time since the previous dump
+     */
+    public synchronized String dump() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-9, (now - previousDump) / 1e9);
+        previousDump = now;
+
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, BookMetrics> entry : new TreeMap<>(books).entrySet()) {
+            BookMetrics metrics = entry.getValue();
+            long orders = metrics.getOrdersAdded();
+            long fills = metrics.getFills();
+            long[] previous = previousCounts.computeIfAbsent(entry.getKey(), p -> new long[2]);
+            long levels = metrics.getLevelsCreated() + metrics.getLevelsJoined();
+
+            out.append("book ").append(entry.getKey())
+                    .append(": orders/s=").append(Math.round((orders - previous[0]) / seconds))
+                    .append(", fills/s=").append(Math.round((fills - previous[1]) / seconds))
+                    .append(", resting=").append(metrics.getRestingOrders())
+                    .append(", bidLevels=").append(metrics.getBidLevels())
+                    .append(", askLevels=").append(metrics.getAskLevels())
+                    .append(", orders/level=").append(String.format("%.2f", metrics.getOrdersPerLevel()))
+                    .append(", tickChurn=").append(String.format("%.3f", levels == 0 ? 0 : metrics.getLevelsCreated() / (double) levels))
+                    .append(", tickAllocations=").append(metrics.getTickAllocations())
+                    .append(", treeInserts=").append(metrics.getTreeInserts())
+                    .append(", treeDeletes=").append(metrics.getTreeDeletes())
+                    .append(", deleted=").append(metrics.getOrdersDeleted())
+                    .append(", amends=").append(metrics.getAmends())
+                    .append(", amendsInPlace=").append(metrics.getAmendsInPlace())
+                    .append(", dormantStops=").append(metrics.getDormantStops())
+                    .append(", stopsTriggered=").append(metrics.getStopsTriggered())
+                    .append(", replenishments=").append(metrics.getReplenishments())
+                    .append('\n');
+            previous[0] = orders;
+            previous[1] = fills;
+        }
+        previousCounts.keySet().retainAll(books.keySet());
+
+        long orders = getTotal(BookMetrics.Counter.ORDERS_ADDED);
+        long fills = getTotal(BookMetrics.Counter.FILLS);
+        out.append("total: books=").append(books.size())
+                .append(", orders/s=").append(Math.round((orders - previousTotals[0]) / seconds))
+                .append(", fills/s=").append(Math.round((fills - previousTotals[1]) / seconds))
+                .append(", resting=").append(getTotalRestingOrders())
+                .append(", deleted=").append(getTotal(BookMetrics.Counter.ORDERS_DELETED))
+                .append(", amends=").append(getTotal(BookMetrics.Counter.AMENDS))
+                .append(", stopsTriggered=").append(getTotal(BookMetrics.Counter.STOPS_TRIGGERED))
+                .append('\n');
+        previousTotals[0] = orders;
+        previousTotals[1] = fills;
+
+        for (Map.Entry<String, TradeLogger> entry : new TreeMap<>(tradeLoggers).entrySet()) {
+            out.append("logger ").append(entry.getKey())
+                    .append(": backlog=").append(entry.getValue().getBacklog())
+                    .append(", dropped=").append(entry.getValue().getDroppedTrades())
+                    .append('\n');
+        }
+        return out.toString();
+    }
+
+    private void registerMBean(String type, String name, Object bean) {
+        MBeanServer server = mBeanServer;
+        if (server == null)
+            return;
+        try {
+            ObjectName objectName = objectName(type, name);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(bean, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register MBean for " + name, e);
+        }
+    }
+
+    private void unregisterMBean(String type, String name) {
+        MBeanServer server = mBeanServer;
+        if (server == null)
+            return;
+        try {
+            ObjectName objectName = objectName(type, name);
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot unregister MBean for " + name, e);
+        }
+    }
+
+    private static ObjectName objectName(String type, String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }
+}
@@ -9,67 +9,396 @@ import MatchingEngine.OrderTypes.*;
  * and methods to add orders as well as execute orders
  */
 class OrderBook {
-    private final OrderTree bidSide = new BidTree();
-    private final OrderTree askSide = new AskTree();
+    private final BookMetrics metrics = new BookMetrics(this);
+    private final OrderTree bidSide = new BidTree(metrics);
+    private final OrderTree askSide = new AskTree(metrics);
+    private final FixedPoint fixedPoint;
     private TradeLogger tradeLogger;
+    private TradeJournal tradeJournal;
+    private ExecutionListener executionListener;
+    // set once the book has been pre-warmed, see MatchingEngine.prewarm
+    volatile boolean ready;
+    // group of the book and result buffer while a batch is applied, see MatchingEngine.submit
+    int batchGroup = -1;
+    BatchResult batchResult;
+    int batchCommand;
+    // latency histograms of the book if a latency recorder is registered, see LatencyRecorder
+    Histogram[] latencies;
+    // id of the instrument assigned by the matching engine
+    private int productID;
+    // name of the instrument, shared by all orders created from binary messages
+    String product;
+    // sequence number of the next depth update of the book, see MarketDataPublisher
+    long depthSequence;
+    // index of all resting orders of the matching engine, shared between all order books
+    private IntObjectHashMap<Order> orderIndex = new IntObjectHashMap<>();
+    // dormant stop orders and the last traded price of the book which triggers them
+    private final StopBook stops = new StopBook();
+    private long lastTradePrice;
+    private boolean traded;
+    // orders rest without being matched while the book is in the call phase of an auction
+    private boolean callPhase;
+
+    OrderBook(FixedPoint fixedPoint){
+        this.fixedPoint = fixedPoint;
+    }
+
+    /**
+     * Creates an order book whose bid and ask side store all prices inside the band [minPrice, maxPrice]
+     * in an array backed price ladder. Prices outside the band are stored in the red black trees
+     * All prices are given in the scaled representation of fixedPoint
+     */
+    OrderBook(FixedPoint fixedPoint, long minPrice, long maxPrice, long tickSize){
+        this.fixedPoint = fixedPoint;
+        bidSide.configureLadder(minPrice, maxPrice, tickSize);
+        askSide.configureLadder(minPrice, maxPrice, tickSize);
+    }
 
     void setTradeLogger(TradeLogger tradeLogger){
         this.tradeLogger = tradeLogger;
     }
 
+    void setOrderIndex(IntObjectHashMap<Order> orderIndex){
+        this.orderIndex = orderIndex;
+    }
+
+    void setTradeJournal(TradeJournal tradeJournal){
+        this.tradeJournal = tradeJournal;
+    }
+
+    void setExecutionListener(ExecutionListener executionListener){
+        this.executionListener = executionListener;
+    }
+
+    void setMarketDataPublisher(MarketDataPublisher marketData){
+        bidSide.marketData = marketData;
+        askSide.marketData = marketData;
+    }
+
+    void setProductID(int productID){
+        this.productID = productID;
+    }
+
     /**
      * Before an order is added to the order book, it is checked if it can be fully or partially executed
      * given the best bid/ask. The order is only added in case not the full volume can be executed immediately
+     * <br>
+     * Stop orders are added to the trigger book instead, unless the last traded price has already reached their
+     * stop price. Once the order has been executed, the stops triggered by its trades are released one after another
+     * in price/time order. Stops triggered by the trades of a released stop join the same loop, such that cascades
+     * are handled iteratively and each released stop takes O(logS) in the trigger book
+     * <br>
+     * In the call phase of an auction, orders rest without being matched and stops are not triggered until the uncross
      * @param order order to be added to the order book
      */
     void addOrder(Order order){
         // set trade logger for each order
         order.setTradeLogger(tradeLogger);
+        order.setProductID(productID);
+        metrics.increment(BookMetrics.Counter.ORDERS_ADDED);
+
+        if (order instanceof StopOrder && !((StopOrder) order).isTriggered()){
+            StopOrder stop = (StopOrder) order;
+            if (callPhase || !stopReached(stop)){
+                orderIndex.put(order.getOrderID(), order);
+                stops.add(stop);
+                return;
+            }
+            trigger(stop);
+        }
+        if (callPhase){
+            rest(order);
+            return;
+        }
+        execute(order);
+        releaseStops();
+    }
 
+    private void releaseStops(){
+        if (traded && stops.size() > 0){
+            StopOrder stop;
+            while ((stop = stops.nextTriggered(lastTradePrice)) != null){
+                orderIndex.remove(stop.getOrderID());
+                trigger(stop);
+                execute(stop);
+            }
+        }
+    }
+
+    private void execute(Order order){
         // check if order can be executed before adding it to the book
-        if (order instanceof MarketOrder)
+        if (order instanceof MarketOrder || order instanceof StopOrder && !((StopOrder) order).isStopLimit())
             marketOrder(order);
+        else if (order instanceof KillOrFillOrder)
+            killOrFillOrder(order);
         else if (isExecutable(order)){
-            if (order instanceof LimitOrder) {
+            if (order instanceof LimitOrder || order instanceof ImmediateOrCancelOrder || order instanceof StopOrder
+                    || order instanceof IcebergOrder) {
                     limitOrder(order);
             }
         }
 
+        // fully executed orders are returned to their pool
+        if (order.getVolume() == 0) {
+            order.recycle();
+        // immediate orders never rest in the book, their remaining volume is discarded
+        } else if (order instanceof KillOrFillOrder || order instanceof ImmediateOrCancelOrder) {
+            if (executionListener != null)
+                executionListener.onKill(order.getOrderID(), order.getVolume());
         // if not all volume was executed, add to order book
-        if (order.getVolume() > 0) {
-            if (order.getSide() == OrderType.BUY){
-                bidSide.addOrder(order);
-            } else {
-                askSide.addOrder(order);
+        } else {
+            rest(order);
+        }
+    }
+
+    private void rest(Order order){
+        display(order);
+        orderIndex.put(order.getOrderID(), order);
+        if (order.getSide() == OrderType.BUY){
+            bidSide.addOrder(order);
+        } else {
+            askSide.addOrder(order);
+        }
+    }
+
+    /**
+     * Starts the call phase of an auction. Both sides track the cumulative volume of their levels from now on,
+     * such that the equilibrium can be computed without walking the levels
+     */
+    void startAuction(){
+        callPhase = true;
+        bidSide.trackCumulativeVolume();
+        askSide.trackCumulativeVolume();
+    }
+
+    boolean isCallPhase(){
+        return callPhase;
+    }
+
+    /**
+     * @return true if the order can be added in the call phase, orders which must be executed immediately cannot
+     */
+    static boolean acceptedInCallPhase(Order order){
+        return !(order instanceof MarketOrder || order instanceof KillOrFillOrder || order instanceof ImmediateOrCancelOrder);
+    }
+
+    /**
+     * Computes the limit price which maximizes the executable volume of the crossing orders and, among those prices,
+     * minimizes the surplus. If the remaining prices all leave a surplus on the bid side the highest of them is taken,
+     * if they all leave a surplus on the ask side the lowest (market pressure). Otherwise the price closest to the last
+     * traded price is taken, or the lowest price if the book has not traded yet. Only the limit prices of resting orders
+     * are considered, such that no crossing orders remain after the uncross
+     * <br>
+     * The demand at a price (bid volume at or above it) and the supply (ask volume at or below it) are taken from the
+     * cumulative volumes of both sides in O(logN). As the surplus (demand - supply) does not increase with the price,
+     * the maximal volume is found at one of the two neighbouring limit prices between which the surplus turns negative.
+     * They are located by binary searches over the prices between the best ask and the best bid, no level is visited
+     * @return equilibrium of the book or null if the best bid does not cross the best ask
+     */
+    AuctionPrice equilibrium(){
+        Tick bestBid = bidSide.getBestPrice();
+        Tick bestAsk = askSide.getBestPrice();
+        if (bestBid == null || bestAsk == null || bestBid.getTickValue() < bestAsk.getTickValue())
+            return null;
+        long low = bestAsk.getTickValue();
+        long high = bestBid.getTickValue();
+
+        // the surplus is already negative at the lowest price, all higher prices execute less and leave a larger surplus
+        if (surplus(low) < 0)
+            return auctionPrice(low);
+
+        // highest price with a non-negative surplus and the limit prices around it
+        long below = high;
+        if (surplus(high) < 0){
+            long above = high;
+            below = low;
+            while (above - below > 1){
+                long middle = below + (above - below) / 2;
+                if (surplus(middle) >= 0)
+                    below = middle;
+                else
+                    above = middle;
             }
         }
+        AuctionPrice lower = auctionPrice(limitPriceBelow(below + 1, low));
+        AuctionPrice upper = below < high ? auctionPrice(limitPriceAbove(below, high)) : null;
+
+        int order = upper == null ? -1 : compare(lower, upper);
+        if (order > 0)
+            return upper;
+        if (order < 0 && lower.getSurplus() > 0)
+            return lower;
+
+        // two neighbouring limit prices share their surplus (and volume) if the lower one only holds asks
+        // and the higher one only bids, no third price can share it
+        AuctionPrice equilibrium = closestToLastTrade(samePrevious(lower, low), lower);
+        if (order == 0)
+            equilibrium = closestToLastTrade(equilibrium, closestToLastTrade(upper, sameNext(upper, high)));
+        return equilibrium;
+    }
+
+    // negative if a executes more volume or the same volume with a smaller surplus than b
+    private static int compare(AuctionPrice a, AuctionPrice b){
+        if (a.getVolume() != b.getVolume())
+            return a.getVolume() > b.getVolume() ? -1 : 1;
+        return Long.compare(Math.abs(a.getSurplus()), Math.abs(b.getSurplus()));
+    }
+
+    // the next lower limit price if it has the same surplus as equilibrium, otherwise null
+    private AuctionPrice samePrevious(AuctionPrice equilibrium, long low){
+        if (equilibrium.getPrice() == low)
+            return null;
+        AuctionPrice previous = auctionPrice(limitPriceBelow(equilibrium.getPrice(), low));
+        return previous.getSurplus() == equilibrium.getSurplus() ? previous : null;
+    }
+
+    // the next higher limit price if it has the same surplus as equilibrium, otherwise null
+    private AuctionPrice sameNext(AuctionPrice equilibrium, long high){
+        if (equilibrium.getPrice() == high)
+            return null;
+        AuctionPrice next = auctionPrice(limitPriceAbove(equilibrium.getPrice(), high));
+        return next.getSurplus() == equilibrium.getSurplus() ? next : null;
+    }
+
+    // a (lower price) or b, whichever is closer to the last traded price, a if the book has not traded
+    private AuctionPrice closestToLastTrade(AuctionPrice a, AuctionPrice b){
+        if (a == null)
+            return b;
+        if (b == null || !traded)
+            return a;
+        return Math.abs(b.getPrice() - lastTradePrice) < Math.abs(a.getPrice() - lastTradePrice) ? b : a;
+    }
+
+    // highest price in [low, price) at which an order rests on either side, low must be such a price
+    private long limitPriceBelow(long price, long low){
+        long demand = bidSide.volumeUpTo(price);
+        long supply = askSide.volumeUpTo(price - 1);
+        // [found, price) contains a limit price, [notFound, price) does not
+        long found = low;
+        long notFound = price;
+        while (notFound - found > 1){
+            long middle = found + (notFound - found) / 2;
+            if (bidSide.volumeUpTo(middle) > demand || askSide.volumeUpTo(middle - 1) < supply)
+                found = middle;
+            else
+                notFound = middle;
+        }
+        return found;
+    }
+
+    // lowest price in (price, high] at which an order rests on either side, high must be such a price
+    private long limitPriceAbove(long price, long high){
+        long demand = bidSide.volumeUpTo(price + 1);
+        long supply = askSide.volumeUpTo(price);
+        // (price, found] contains a limit price, (price, notFound] does not
+        long found = high;
+        long notFound = price;
+        while (found - notFound > 1){
+            long middle = notFound + (found - notFound) / 2;
+            if (askSide.volumeUpTo(middle) > supply || bidSide.volumeUpTo(middle + 1) < demand)
+                found = middle;
+            else
+                notFound = middle;
+        }
+        return found;
+    }
+
+    private long surplus(long price){
+        return bidSide.volumeUpTo(price) - askSide.volumeUpTo(price);
+    }
+
+    private AuctionPrice auctionPrice(long price){
+        long demand = bidSide.volumeUpTo(price);
+        long supply = askSide.volumeUpTo(price);
+        return new AuctionPrice(price, Math.min(demand, supply), demand - supply);
+    }
+
+    /**
+     * Ends the call phase and executes the crossing orders at the equilibrium price. The levels are consumed once
+     * from the best prices inwards: the first buy order of the best bid is executed against the orders of the best ask
+     * in time priority until the volume of the equilibrium has been executed. Buy orders are reported as takers.
+     * Stops triggered by the equilibrium price are released afterwards
+     * @return equilibrium at which the orders were executed or null if no orders crossed
+     */
+    AuctionPrice uncross(){
+        AuctionPrice equilibrium = equilibrium();
+        callPhase = false;
+        if (equilibrium == null)
+            return null;
+
+        long price = equilibrium.getPrice();
+        long remaining = equilibrium.getVolume();
+        while (remaining > 0){
+            Tick bid = bidSide.getBestPrice();
+            Tick ask = askSide.getBestPrice();
+            Order buyer = bid.getOrders().getFirst();
+            long volume = Math.min(remaining, Math.min(buyer.getVolume(), ask.getAvailableVolume()));
+
+            askSide.orderCount -= ask.tradeVolume(volume, buyer, price, this);
+            askSide.levelChanged(ask, false);
+            if (ask.isEmpty())
+                askSide.releaseTick(ask);
+
+            // the fills of the buy order have been reported by the ask tick
+            bidSide.orderCount -= bid.tradeVolume(volume, null, price, this);
+            bidSide.levelChanged(bid, false);
+            if (bid.isEmpty())
+                bidSide.releaseTick(bid);
+            remaining -= volume;
+        }
+        releaseStops();
+        return equilibrium;
+    }
+
+    // buy stops are triggered by prices at or above, sell stops by prices at or below their stop price
+    private boolean stopReached(StopOrder stop){
+        if (!traded)
+            return false;
+        return stop.getSide() == OrderType.BUY ? lastTradePrice >= stop.getStopPrice() : lastTradePrice <= stop.getStopPrice();
+    }
+
+    private void trigger(StopOrder stop){
+        stop.trigger();
+        metrics.increment(BookMetrics.Counter.STOPS_TRIGGERED);
+        if (executionListener != null)
+            executionListener.onTrigger(stop.getOrderID(), lastTradePrice);
     }
 
     private void limitOrder(Order order){
-        double traded;
+        long traded;
         if (order.getSide().equals(OrderType.BUY)){
             // executes trade on the ask side
-            traded = tradeVolume(order.getVolume(), order.getLimit(), askSide);
+            traded = tradeVolume(order, order.getLimit(), askSide);
         } else {
             // executes trades on the bid side
-            traded = tradeVolume(order.getVolume(), order.getLimit(), bidSide);
+            traded = tradeVolume(order, order.getLimit(), bidSide);
         }
         // execute trade on the opposite side
         order.tradeVolume(traded);
     }
 
+    // the order is only executed if the opposite side holds its full volume at prices up to its limit. Unless tracking
+    // was enabled with MatchingEngine.trackCumulativeVolume, the first fill-or-kill order of a side enables it in O(N)
+    private void killOrFillOrder(Order order){
+        OrderTree opposite = order.getSide() == OrderType.BUY ? askSide : bidSide;
+        opposite.trackCumulativeVolume();
+        if (opposite.volumeUpTo(order.getLimit()) >= order.getVolume())
+            limitOrder(order);
+    }
+
     private void marketOrder(Order order){
-        double traded;
+        long traded;
         if (order.getSide().equals(OrderType.BUY)){
-            traded = tradeVolume(order.getVolume(), askSide);
+            traded = tradeVolume(order, askSide);
         } else {
-            traded = tradeVolume(order.getVolume(), bidSide);
+            traded = tradeVolume(order, bidSide);
         }
         order.tradeVolume(traded);
     }
 
-    private double tradeVolume(double volume, double limit, OrderTree side){
-        double neededVolume = volume;
+    private long tradeVolume(Order taker, long limit, OrderTree side){
+        long volume = taker.getVolume();
+        long neededVolume = volume;
 
         // start order execution at the best price (lowest ask / highest bid)
         Tick t = side.getBestPrice();
@@ -84,20 +413,23 @@ class OrderBook {
             }
 
             if (t.getAvailableVolume() <= neededVolume){
-                double availableVolume = t.getAvailableVolume();
+                long availableVolume = t.getAvailableVolume();
                 // trade entire tick volume, reduce needed volume accordingly
-                // delete tick from order book and get next best tick
-                t.tradeVolume(neededVolume);
+                side.orderCount -= t.tradeVolume(availableVolume, taker, this);
+                side.levelChanged(t, false);
                 neededVolume -= availableVolume;
 
-                // delete tick from order tree and order hashmap
-                side.orders.delete(t);
-                side.orderMap.remove(t.getTickValue());
+                // iceberg orders refilled their slices, the tick is executed again
+                if (!t.isEmpty())
+                    continue;
 
-                // get the next best price
+                // delete tick from order tree and order hashmap (or price ladder), or retain it
+                // and get the next best tick
+                side.releaseTick(t);
                 t = side.getBestPrice();
             } else {
-                t.tradeVolume(neededVolume);
+                side.orderCount -= t.tradeVolume(neededVolume, taker, this);
+                side.levelChanged(t, false);
                 neededVolume = 0;
                 break;
             }
@@ -105,23 +437,131 @@ class OrderBook {
         return (volume - neededVolume); // returns traded volume
     }
 
-    private double tradeVolume(double volume, OrderTree side){
-        return tradeVolume(volume, Double.MAX_VALUE, side);
+    // market orders execute against any price on the opposite side
+    private long tradeVolume(Order taker, OrderTree side){
+        return tradeVolume(taker, side instanceof BidTree ? Long.MIN_VALUE : Long.MAX_VALUE, side);
     }
 
+    /**
+     * Called for each execution of a resting order against an incoming order
+     * @param taker incoming order
+     * @param maker resting order
+     * @param price price of the tick the resting order belongs to
+     * @param volume executed volume
+     */
+    void onFill(Order taker, Order maker, long price, long volume){
+        metrics.increment(BookMetrics.Counter.FILLS);
+        lastTradePrice = price;
+        traded = true;
+        if (tradeJournal != null)
+            tradeJournal.append(productID, taker.getOrderID(), maker.getOrderID(), taker.getSide(), price, volume);
+        if (batchResult != null)
+            batchResult.addFill(batchCommand, taker.getOrderID(), maker.getOrderID(), price, volume);
+        if (executionListener != null)
+            executionListener.onFill(taker.getProduct(), taker.getOrderID(), maker.getOrderID(), taker.getSide(), price, volume);
+    }
+
+    /**
+     * Called once the displayed slice of a resting iceberg order has been refilled from its hidden volume
+     */
+    void onReplenish(){
+        metrics.increment(BookMetrics.Counter.REPLENISHMENTS);
+    }
+
+    /**
+     * Replaces a resting or dormant order with a modified instance of it (same orderID, side and type). If the
+     * modification only changes volume and limit, the resting instance is amended, see <code>amendOrder</code>.
+     * Stops with a new stop price and icebergs with a new peak are deleted and the modified instance is added instead
+     */
     void updateOrder(Order originalOrder, Order updatedOrder){
-        // register trade logger for updated order
-        updatedOrder.setTradeLogger(tradeLogger);
+        if (updatedOrder instanceof StopOrder && ((StopOrder) updatedOrder).getStopPrice() != ((StopOrder) originalOrder).getStopPrice()
+                || updatedOrder instanceof IcebergOrder && ((IcebergOrder) updatedOrder).getPeak() != ((IcebergOrder) originalOrder).getPeak()){
+            deleteOrder(originalOrder);
+            originalOrder.recycle();
+            addOrder(updatedOrder);
+        } else {
+            amendOrder(originalOrder, totalVolume(updatedOrder), updatedOrder.getLimit());
+        }
+    }
 
-        if (originalOrder.getSide() == OrderType.BUY){
-            bidSide.updateOrder(originalOrder, originalOrder);
+    /**
+     * Amends volume and limit of a resting or dormant order of this book without going through the order index
+     * <ul>
+     * <li>a lower volume at the same limit is applied in place: the order keeps its place in the queue and neither
+     * the level nor the order index are touched</li>
+     * <li>a higher volume at the same limit moves the order to the back of the queue of its level</li>
+     * <li>a new limit moves the order from its level to the level of the new limit, unless the limit crosses the
+     * opposite side. The order is then executed like a new order</li>
+     * </ul>
+     * Dormant stops keep their place in the trigger book if their volume is reduced and are added again otherwise
+     * @param volume new (total) volume of the order, must be positive
+     * @param limit new limit of the order
+     */
+    void amendOrder(Order order, long volume, long limit){
+        metrics.increment(BookMetrics.Counter.AMENDS);
+        boolean dormant = order instanceof StopOrder && StopBook.contains((StopOrder) order);
+        OrderTree side = order.getSide() == OrderType.BUY ? bidSide : askSide;
+
+        if (limit == order.getLimit() && volume <= totalVolume(order)){
+            metrics.increment(BookMetrics.Counter.AMENDS_IN_PLACE);
+            if (dormant)
+                order.reduceVolume(volume);
+            else
+                side.reduceVolume(order, volume);
+            return;
+        }
+        if (dormant){
+            deleteOrder(order);
+            order.amend(limit, volume);
+            addOrder(order);
+            return;
+        }
+
+        if (limit == order.getLimit()){
+            // the level keeps at least this order, it is neither removed nor looked up
+            Tick tick = Tick.of(order);
+            tick.deleteOrder(order);
+            amend(order, volume, limit);
+            tick.addOrder(order);
+            side.levelChanged(tick, false);
+            return;
+        }
+        side.deleteOrder(order);
+        // a crossing order is executed with its total volume, icebergs are only split again once they rest
+        order.amend(limit, volume);
+        if (!callPhase && isExecutable(order)){
+            metrics.increment(BookMetrics.Counter.ORDERS_DELETED);
+            orderIndex.remove(order.getOrderID());
+            addOrder(order);
         } else {
-            askSide.updateOrder(originalOrder, originalOrder);
+            display(order);
+            side.addOrder(order);
         }
     }
 
+    private static void amend(Order order, long volume, long limit){
+        order.amend(limit, volume);
+        display(order);
+    }
+
+    private static void display(Order order){
+        if (order instanceof IcebergOrder)
+            ((IcebergOrder) order).display();
+    }
+
+    private static long totalVolume(Order order){
+        return order instanceof IcebergOrder ? ((IcebergOrder) order).getTotalVolume() : order.getVolume();
+    }
+
+    /**
+     * @param order order instance resting in this book which is deleted
+     */
     void deleteOrder(Order order) {
-        if (order.getSide() == OrderType.BUY){
+        metrics.increment(BookMetrics.Counter.ORDERS_DELETED);
+        orderIndex.remove(order.getOrderID());
+        if (order instanceof StopOrder && StopBook.contains((StopOrder) order)){
+            stops.remove((StopOrder) order);
+        } else if (order.getSide() == OrderType.BUY){
             bidSide.deleteOrder(order);
 
         } else {
@@ -150,7 +590,106 @@ class OrderBook {
                 return (bestPrice.getTickValue() >= order.getLimit());
         }
     }
+    /**
+     * Removes all orders resting in this book from the order index of the matching engine
+     */
+    void removeFromIndex(){
+        bidSide.removeFromIndex(orderIndex);
+        askSide.removeFromIndex(orderIndex);
+        stops.forEach(stop -> orderIndex.remove(stop.getOrderID()));
+    }
+
+    /**
+     * Adds an order to its side of the book (or a dormant stop to the trigger book) without matching it,
+     * used to restore a snapshot
+     * @param order order which was resting in the book when the snapshot was taken
+     */
+    void restoreOrder(Order order){
+        order.setTradeLogger(tradeLogger);
+        order.setProductID(productID);
+        orderIndex.put(order.getOrderID(), order);
+        if (order instanceof StopOrder && !((StopOrder) order).isTriggered()){
+            stops.add((StopOrder) order);
+        } else if (order.getSide() == OrderType.BUY){
+            bidSide.addOrder(order);
+        } else {
+            askSide.addOrder(order);
+        }
+    }
+
+    /**
+     * @see OrderTree#getDepth
+     */
+    int getDepth(OrderType side, long[] prices, long[] volumes){
+        return (side == OrderType.BUY ? bidSide : askSide).getDepth(prices, volumes);
+    }
+
+    /**
+     * Restores the last traded price of the book, used to restore a snapshot
+     */
+    void restoreLastTrade(long price){
+        lastTradePrice = price;
+        traded = true;
+    }
+
+    StopBook getStops(){
+        return stops;
+    }
+
+    long getLastTradePrice(){
+        return lastTradePrice;
+    }
+
+    boolean hasTraded(){
+        return traded;
+    }
+
+    OrderTree getBidSide(){
+        return bidSide;
+    }
+
+    OrderTree getAskSide(){
+        return askSide;
+    }
+
+    IntObjectHashMap<Order> getOrderIndex(){
+        return orderIndex;
+    }
+
+    int getProductID(){
+        return productID;
+    }
+
+    FixedPoint getFixedPoint(){
+        return fixedPoint;
+    }
+
+    long getFillCount(){
+        return metrics.get(BookMetrics.Counter.FILLS);
+    }
+
+    void setRetentionPolicy(RetentionPolicy policy){
+        bidSide.setRetentionPolicy(policy);
+        askSide.setRetentionPolicy(policy);
+    }
+
+    int compact(long now){
+        return bidSide.compact(now) + askSide.compact(now);
+    }
+
+    /**
+     * Pre-allocates a tick for each level of the price ladder on both sides
+     */
+    void preallocateTicks(){
+        bidSide.preallocateTicks(bidSide.getLadderLevels());
+        askSide.preallocateTicks(askSide.getLadderLevels());
+    }
+
+    BookMetrics getMetrics(){
+        return metrics;
+    }
+
     boolean isEmpty(){
-        return bidSide.size() == 0 && askSide.size() == 0;
+        return bidSide.size() == 0 && askSide.size() == 0 && stops.size() == 0;
     }
 }
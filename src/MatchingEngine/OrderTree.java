@@ -1,17 +1,89 @@
 package MatchingEngine;
 
 import MatchingEngine.OrderTypes.Order;
-import java.util.Map;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.function.Consumer;
 
+/**
+ * An OrderTree holds all ticks (price levels) of one side of an order book.
+ * <br>
+ * By default, ticks are stored in a red black tree and located through a hash map.
+ * If the price band and tick size of the instrument are known, the tree can additionally be configured
+ * with an array backed price ladder in which each address represents one price level. Ticks inside the
+ * band are then located by index and never enter the tree. Prices outside the band (or off the tick grid)
+ * fall back to the red black tree
+ */
 class OrderTree {
     //TreeMap<Double, Tick> orders;
-    Map<Double, Tick> orderMap;
+    LongObjectHashMap<Tick> orderMap;
     RedBlackTree<Tick> orders;
-    public OrderTree() {
-        orderMap = new HashMap<>(1_000);
-        orders = new RedBlackTree<Tick>(Comparator.comparingDouble((Tick a) -> a.getTickValue()));
+
+    // optional price ladder, ladder[i] holds the tick with price ladderMin + i * tickSize
+    Tick[] ladder;
+    long ladderMin;
+    long tickSize;
+    int ladderLevels;
+    int bestIndex = -1;
+
+    // removed ticks which are reused for new price levels
+    private Tick[] tickPool = new Tick[16];
+    private int pooledTicks;
+
+    // empty ticks retained in the red black tree, from the oldest to the newest emptied tick
+    private RetentionPolicy retention;
+    private int emptyLevels;
+    private Tick oldestEmpty;
+    private Tick newestEmpty;
+    // best tick of the red black tree which is not empty, only maintained with a retention policy
+    private Tick bestNonEmpty;
+
+    // number of orders resting in the tree and the counters of the book the tree belongs to
+    int orderCount;
+    final BookMetrics metrics;
+    // receives the changes of the price levels if depth updates are published, null otherwise
+    MarketDataPublisher marketData;
+
+    // cached prices and volumes of the best levels, invalidated once a level inside the cached levels changes
+    private long[] depthPrices = new long[0];
+    private long[] depthVolumes = new long[0];
+    private int depthLevels;
+    private boolean depthValid;
+
+    // cumulative volume is tracked once the first fill-or-kill order is checked against this side. The volume of the
+    // tree ticks is aggregated in the red black tree, the volume of the ladder in a fenwick tree over its addresses
+    private boolean tracksVolume;
+    private long[] ladderVolumes;
+
+    public OrderTree(BookMetrics metrics) {
+        this.metrics = metrics;
+        orderMap = new LongObjectHashMap<>(1_000);
+        orders = new RedBlackTree<Tick>(Comparator.comparingLong((Tick a) -> a.getTickValue()));
+    }
+
+    /**
+     * Configures an array backed price ladder for all prices in [minPrice, maxPrice] which lie on the grid
+     * defined by tickSize. Must be called before any order is added to the tree
+     *
+     * @param minPrice lowest price of the ladder
+     * @param maxPrice highest price of the ladder
+     * @param tickSize distance between two neighbouring price levels
+     */
+    void configureLadder(long minPrice, long maxPrice, long tickSize) {
+        if (tickSize <= 0 || maxPrice < minPrice)
+            throw new IllegalArgumentException("invalid price band for price ladder");
+        if (size() > 0)
+            throw new IllegalStateException("price ladder must be configured before orders are added");
+
+        long levels = (maxPrice - minPrice) / tickSize + 1;
+        if (levels > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("price band contains too many price levels");
+
+        this.ladder = new Tick[(int) levels];
+        this.ladderMin = minPrice;
+        this.tickSize = tickSize;
+        this.ladderLevels = 0;
+        this.bestIndex = -1;
     }
 
     /**
@@ -19,46 +91,454 @@ class OrderTree {
      * If the OrderTree already contains a tick with the same price as the Price of the Order,
      * the order is appended to the internal order queue of the tick.
      * If no tick for the price of the order can be found, a new tick is created and appended
-     * to the order tree
+     * to the order tree (or stored in the price ladder if the price lies inside the ladder's band)
      *
      * @param order order which is added to the order book
      */
     public void addOrder(Order order) {
+        orderCount++;
+        int index = ladderIndex(order.getLimit());
+        if (index >= 0) {
+            Tick t = ladder[index];
+            if (t == null) {
+                t = newTick(order.getLimit(), order);
+                t.ladderIndex = index;
+                ladder[index] = t;
+                ladderLevels++;
+                if (bestIndex < 0 || isBetterIndex(index, bestIndex))
+                    bestIndex = index;
+                levelChanged(t, true);
+            } else {
+                t.addOrder(order);
+                metrics.increment(BookMetrics.Counter.LEVELS_JOINED);
+                levelChanged(t, false);
+            }
+            return;
+        }
 
         Tick t = orderMap.get(order.getLimit());
         // tick is not yet in orderMap
         if (t == null) {
-            Tick tick = new Tick(order.getLimit(), order);
-            orders.insert(tick);
-            orderMap.put(order.getLimit(), tick);
+            t = newTick(order.getLimit(), order);
+            orders.insert(t);
+            orderMap.put(order.getLimit(), t);
+            metrics.increment(BookMetrics.Counter.TREE_INSERTS);
+            levelChanged(t, true);
+        } else if (t.retained) {
+            // empty level retained in the tree is reused without inserting it again
+            unlinkEmpty(t);
+            t.addOrder(order);
+            metrics.increment(BookMetrics.Counter.LEVELS_CREATED);
+            levelChanged(t, true);
         } else {
             t.addOrder(order);
+            metrics.increment(BookMetrics.Counter.LEVELS_JOINED);
+            levelChanged(t, false);
         }
+        if (retention != null && (bestNonEmpty == null || isBetterPrice(t.getTickValue(), bestNonEmpty.getTickValue())))
+            bestNonEmpty = t;
     }
 
     /**
-     * Attempts to delete the passed order from the orderbook. If the order is not in the book,
-     * nothing is executed
+     * Attempts to delete the passed order from the orderbook. The tick of the order is located through
+     * the order itself, such that no lookup is necessary. If the order is not in the book, nothing is executed
      *
-     * @param order order to be deleted from the orderbook
+     * @param order order instance resting in the orderbook which is deleted
      */
     void deleteOrder(Order order) {
-        Tick tick = orderMap.get(order.getLimit());
+        Tick tick = Tick.of(order);
 
         if (tick != null){
             tick.deleteOrder(order);
+            orderCount--;
+            levelChanged(tick, false);
 
             // if order queue of tick is now empty, tick can be deleted too
             if (tick.isEmpty()){
-                orders.delete(tick);
-                orderMap.remove(order.getLimit());
+                releaseTick(tick);
+            }
+        }
+    }
+
+    /**
+     * Reports the new volume of a price level to the depth cache and the market data publisher,
+     * must be called before an empty tick is released
+     * @param created true if the level had no volume before the change
+     */
+    void levelChanged(Tick tick, boolean created) {
+        // a change behind the worst cached level does not affect the cache unless the side has fewer levels than cached
+        if (depthValid && (depthLevels == 0 || depthLevels < depthPrices.length || !isBetterPrice(depthPrices[depthLevels - 1], tick.getTickValue())))
+            depthValid = false;
+        if (tracksVolume) {
+            if (tick.ladderIndex >= 0) {
+                addLadderVolume(tick.ladderIndex, tick.getExecutableVolume() - tick.weight);
+                tick.weight = tick.getExecutableVolume();
+            } else {
+                orders.setWeight(tick, tick.getExecutableVolume());
+            }
+        }
+        if (marketData != null)
+            marketData.levelChanged(this instanceof BidTree, tick, created);
+    }
+
+    /**
+     * Reduces the volume of a resting order in place, neither its place in the queue nor its level change
+     * @param volume new (total) volume of the order, not larger than its current (total) volume
+     */
+    void reduceVolume(Order order, long volume){
+        Tick tick = Tick.of(order);
+        tick.reduceVolume(order, volume);
+        levelChanged(tick, false);
+    }
+
+    /**
+     * Removes an (empty) tick from the price ladder or the red black tree and its hash map.
+     * The tick is kept for reuse and must not be used by the caller afterwards
+     * @param tick tick to be removed
+     */
+    void removeTick(Tick tick) {
+        if (tick.retained)
+            unlinkEmpty(tick);
+
+        if (tick.ladderIndex >= 0) {
+            ladder[tick.ladderIndex] = null;
+            ladderLevels--;
+            if (tick.ladderIndex == bestIndex)
+                updateBestIndex();
+        } else {
+            if (tick == bestNonEmpty)
+                bestNonEmpty = nextNonEmpty(worseTick(tick));
+            orders.delete(tick);
+            orderMap.remove(tick.getTickValue());
+            metrics.increment(BookMetrics.Counter.TREE_DELETES);
+        }
+
+        if (pooledTicks == tickPool.length)
+            tickPool = Arrays.copyOf(tickPool, pooledTicks << 1);
+        tickPool[pooledTicks++] = tick;
+    }
+
+    /**
+     * Called once the last order of a tick has been executed or deleted. Without a retention policy (and for
+     * ticks of the price ladder) the tick is removed, otherwise it is retained in the red black tree
+     * @param tick empty tick, which must not be used by the caller afterwards
+     */
+    void releaseTick(Tick tick) {
+        if (retention == null || tick.ladderIndex >= 0) {
+            removeTick(tick);
+            return;
+        }
+
+        if (tick == bestNonEmpty)
+            bestNonEmpty = nextNonEmpty(worseTick(tick));
+        tick.retained = true;
+        tick.olderEmpty = newestEmpty;
+        tick.newerEmpty = null;
+        if (newestEmpty == null)
+            oldestEmpty = tick;
+        else
+            newestEmpty.newerEmpty = tick;
+        newestEmpty = tick;
+        emptyLevels++;
+        if (retention.tracksIdleTime())
+            tick.emptiedAt = System.nanoTime();
+
+        if (emptyLevels > retention.getMaxEmptyLevels())
+            removeTick(oldestEmpty);
+    }
+
+    private void unlinkEmpty(Tick tick) {
+        if (tick.olderEmpty == null)
+            oldestEmpty = tick.newerEmpty;
+        else
+            tick.olderEmpty.newerEmpty = tick.newerEmpty;
+        if (tick.newerEmpty == null)
+            newestEmpty = tick.olderEmpty;
+        else
+            tick.newerEmpty.olderEmpty = tick.olderEmpty;
+        tick.olderEmpty = null;
+        tick.newerEmpty = null;
+        tick.retained = false;
+        emptyLevels--;
+    }
+
+    /**
+     * Sets the retention policy of empty ticks, all retained ticks are removed if policy is null
+     */
+    void setRetentionPolicy(RetentionPolicy policy) {
+        this.retention = policy;
+        if (policy == null) {
+            while (oldestEmpty != null)
+                removeTick(oldestEmpty);
+            bestNonEmpty = null;
+        } else {
+            while (emptyLevels > policy.getMaxEmptyLevels())
+                removeTick(oldestEmpty);
+            bestNonEmpty = nextNonEmpty(treeEnd());
+        }
+    }
+
+    RetentionPolicy getRetentionPolicy() {
+        return retention;
+    }
+
+    /**
+     * Removes all retained ticks which have been empty for too long or are too far from the best price
+     * @param now current time in nanoseconds
+     * @return number of removed ticks
+     */
+    int compact(long now) {
+        if (retention == null || emptyLevels == 0)
+            return 0;
+
+        Tick best = getBestPrice();
+        int removed = 0;
+        Tick tick = oldestEmpty;
+        while (tick != null) {
+            Tick next = tick.newerEmpty;
+            boolean idle = now - tick.emptiedAt > retention.getMaxIdleNanos();
+            boolean distant = best != null && Math.abs(tick.getTickValue() - best.getTickValue()) > retention.getMaxDistance();
+            if (idle || distant) {
+                removeTick(tick);
+                removed++;
             }
+            tick = next;
         }
+        return removed;
+    }
+
+    // best tick of the red black tree which is not empty, without a retention policy no tick of the tree is empty
+    Tick bestTreeTick() {
+        return retention == null ? treeEnd() : bestNonEmpty;
+    }
+
+    // first tick which is not empty, starting at t towards worse prices
+    private Tick nextNonEmpty(Tick t) {
+        while (t != null && t.isEmpty())
+            t = worseTick(t);
+        return t;
+    }
+
+    /**
+     * Starts to track the cumulative volume of the price levels, which is required by <code>volumeUpTo</code>.
+     * Afterwards, every change of a level's volume costs O(logN) instead of O(1)
+     */
+    void trackCumulativeVolume() {
+        if (tracksVolume)
+            return;
+        for (Tick t = orders.getMinimum(); t != null; t = orders.successor(t))
+            t.weight = t.getExecutableVolume();
+        orders.enableAggregation();
+        if (ladder != null) {
+            ladderVolumes = new long[ladder.length + 1];
+            for (Tick t : ladder) {
+                if (t != null) {
+                    t.weight = t.getExecutableVolume();
+                    addLadderVolume(t.ladderIndex, t.weight);
+                }
+            }
+        }
+        tracksVolume = true;
+    }
+
+    boolean tracksCumulativeVolume() {
+        return tracksVolume;
+    }
+
+    /**
+     * Total volume of all levels whose price is equal to or better than limit, computed in O(logN) without
+     * walking the levels. Cumulative volume must be tracked, see <code>trackCumulativeVolume</code>.
+     * The hidden volume of iceberg orders is included, as it is executed once a level is traded through
+     */
+    long volumeUpTo(long limit) {
+        boolean bid = this instanceof BidTree;
+        long volume = 0;
+        // tree ticks are sorted by ascending price, better bids are on the right and better asks on the left
+        Tick t = orders.getRoot();
+        while (t != null) {
+            if (isBetterPrice(limit, t.getTickValue())) {
+                t = bid ? t.right : t.left;
+            } else {
+                volume += t.weight + RedBlackTree.subtreeWeight(bid ? t.right : t.left);
+                t = bid ? t.left : t.right;
+            }
+        }
+
+        if (ladder != null && ladderLevels > 0) {
+            long ladderMax = getLadderMax();
+            if (bid) {
+                // addresses from the first price at or above limit to the end of the ladder
+                long first = limit <= ladderMin ? 0 : limit > ladderMax ? ladder.length : (limit - ladderMin + tickSize - 1) / tickSize;
+                volume += ladderVolume(ladder.length - 1) - ladderVolume((int) first - 1);
+            } else {
+                // addresses from the start of the ladder to the last price at or below limit
+                long last = limit < ladderMin ? -1 : limit >= ladderMax ? ladder.length - 1 : (limit - ladderMin) / tickSize;
+                volume += ladderVolume((int) last);
+            }
+        }
+        return volume;
+    }
+
+    private void addLadderVolume(int index, long delta) {
+        for (int i = index + 1; i < ladderVolumes.length; i += i & -i)
+            ladderVolumes[i] += delta;
     }
 
-    void updateOrder(Order originalOrder, Order modifiedOrder){
-        deleteOrder(originalOrder);
-        addOrder(modifiedOrder);
+    // volume of the ladder addresses [0, index]
+    private long ladderVolume(int index) {
+        long volume = 0;
+        for (int i = index + 1; i > 0; i -= i & -i)
+            volume += ladderVolumes[i];
+        return volume;
+    }
+
+    /**
+     * Copies the best price levels (at most the length of the arrays) into prices and volumes, starting with the
+     * best price. The levels are served from a cache which is only rebuilt once a level inside it has changed
+     * @return number of copied levels
+     */
+    int getDepth(long[] prices, long[] volumes) {
+        int n = Math.min(prices.length, volumes.length);
+        // a request for no levels must not leave a valid cache without levels
+        if (n == 0)
+            return 0;
+        if (!depthValid || (n > depthPrices.length && depthLevels == depthPrices.length))
+            rebuildDepth(Math.max(n, depthPrices.length));
+
+        int levels = Math.min(n, depthLevels);
+        System.arraycopy(depthPrices, 0, prices, 0, levels);
+        System.arraycopy(depthVolumes, 0, volumes, 0, levels);
+        return levels;
+    }
+
+    // merges the levels of the price ladder and the red black tree from the best price towards worse prices
+    private void rebuildDepth(int capacity) {
+        if (capacity > depthPrices.length) {
+            depthPrices = new long[capacity];
+            depthVolumes = new long[capacity];
+        }
+
+        int step = isBetterIndex(1, 0) ? -1 : 1;
+        int index = bestIndex;
+        int ladderSeen = 0;
+        Tick fromTree = bestTreeTick();
+        int levels = 0;
+        while (levels < capacity) {
+            Tick fromLadder = index >= 0 ? ladder[index] : null;
+            Tick next;
+            if (fromLadder != null && (fromTree == null || isBetterPrice(fromLadder.getTickValue(), fromTree.getTickValue()))) {
+                next = fromLadder;
+                // find the next occupied address, unless all levels of the ladder have been visited
+                if (++ladderSeen == ladderLevels) {
+                    index = -1;
+                } else {
+                    do {
+                        index += step;
+                    } while (ladder[index] == null);
+                }
+            } else if (fromTree != null) {
+                next = fromTree;
+                fromTree = nextNonEmpty(worseTick(fromTree));
+            } else {
+                break;
+            }
+            depthPrices[levels] = next.getTickValue();
+            depthVolumes[levels++] = next.getAvailableVolume();
+        }
+        depthLevels = levels;
+        depthValid = true;
+    }
+
+    /**
+     * Fills the pool of removed ticks up to count ticks, such that count price levels can be created without allocations
+     */
+    void preallocateTicks(int count) {
+        if (tickPool.length < count)
+            tickPool = Arrays.copyOf(tickPool, count);
+        while (pooledTicks < count)
+            tickPool[pooledTicks++] = new Tick();
+    }
+
+    int getLadderLevels() {return ladder == null ? 0 : ladder.length;}
+
+    // takes a tick from the pool of removed ticks, a new tick is only created if the pool is empty
+    private Tick newTick(long price, Order order) {
+        metrics.increment(BookMetrics.Counter.LEVELS_CREATED);
+        if (pooledTicks == 0) {
+            metrics.increment(BookMetrics.Counter.TICK_ALLOCATIONS);
+            return new Tick(price, order);
+        }
+
+        Tick tick = tickPool[--pooledTicks];
+        tickPool[pooledTicks] = null;
+        tick.init(price, order);
+        return tick;
+    }
+
+    Tick getTick(long price) {
+        int index = ladderIndex(price);
+        if (index >= 0)
+            return ladder[index];
+        return orderMap.get(price);
+    }
+
+    // returns the ladder address of price or -1 if the price is not covered by the ladder
+    private int ladderIndex(long price) {
+        if (ladder == null || price < ladderMin)
+            return -1;
+        long offset = price - ladderMin;
+        long index = offset / tickSize;
+        if (index >= ladder.length || index * tickSize != offset)
+            return -1;
+        return (int) index;
+    }
+
+    // scans from the removed best index towards worse prices until the next occupied level is found
+    private void updateBestIndex() {
+        if (ladderLevels == 0) {
+            bestIndex = -1;
+            return;
+        }
+        int step = isBetterIndex(1, 0) ? -1 : 1;
+        int i = bestIndex + step;
+        while (ladder[i] == null)
+            i += step;
+        bestIndex = i;
+    }
+
+    /**
+     * Removes all orders resting in this tree from the order index of the matching engine
+     * @param orderIndex index of all resting orders of the matching engine
+     */
+    void removeFromIndex(IntObjectHashMap<Order> orderIndex) {
+        forEachTick(tick -> {
+            for (Order order : tick.getOrders())
+                orderIndex.remove(order.getOrderID());
+        });
+    }
+
+    /**
+     * Applies action to all ticks of the tree, first to the ticks of the price ladder and afterwards
+     * to the ticks of the red black tree
+     */
+    void forEachTick(Consumer<Tick> action) {
+        if (ladder != null) {
+            for (Tick t : ladder) {
+                if (t != null)
+                    action.accept(t);
+            }
+        }
+        for (Tick t = orders.getMaximum(); t != null; t = orders.predecessor(t))
+            action.accept(t);
+    }
+
+    boolean hasLadder() {return ladder != null;}
+    long getLadderMin() {return ladderMin;}
+    long getLadderMax() {return ladderMin + (ladder.length - 1) * tickSize;}
+    long getTickSize() {return tickSize;}
+
+    Tick getBestLadderTick() {
+        return bestIndex < 0 ? null : ladder[bestIndex];
     }
 
     // method implemented in subclasses
@@ -66,21 +546,102 @@ class OrderTree {
         return null;
     }
 
+    // method implemented in subclasses
+    boolean isBetterIndex(int index, int other) {
+        return false;
+    }
+
+    // method implemented in subclasses
+    boolean isBetterPrice(long price, long other) {
+        return false;
+    }
+
+    // best tick of the red black tree, implemented in subclasses
+    Tick treeEnd() {
+        return null;
+    }
+
+    // neighbouring tick of the red black tree with the next worse price, implemented in subclasses
+    Tick worseTick(Tick tick) {
+        return null;
+    }
+
+    // number of price levels with at least one order
     public int size(){
-        return orders.size();
+        return orders.size() - emptyLevels + ladderLevels;
     }
 }
 
 class BidTree extends OrderTree {
+    BidTree(BookMetrics metrics) {
+        super(metrics);
+    }
+
     @Override
     public Tick getBestPrice(){
+        Tick fromTree = bestTreeTick();
+        Tick fromLadder = getBestLadderTick();
+        if (fromLadder == null)
+            return fromTree;
+        if (fromTree == null || fromLadder.getTickValue() > fromTree.getTickValue())
+            return fromLadder;
+        return fromTree;
+    }
+
+    @Override
+    boolean isBetterIndex(int index, int other) {
+        return index > other;
+    }
+
+    @Override
+    boolean isBetterPrice(long price, long other) {
+        return price > other;
+    }
+
+    @Override
+    Tick treeEnd() {
         return orders.getMaximum();
     }
+
+    @Override
+    Tick worseTick(Tick tick) {
+        return orders.predecessor(tick);
+    }
 }
 
 class AskTree extends OrderTree {
+    AskTree(BookMetrics metrics) {
+        super(metrics);
+    }
+
     @Override
     public Tick getBestPrice(){
+        Tick fromTree = bestTreeTick();
+        Tick fromLadder = getBestLadderTick();
+        if (fromLadder == null)
+            return fromTree;
+        if (fromTree == null || fromLadder.getTickValue() < fromTree.getTickValue())
+            return fromLadder;
+        return fromTree;
+    }
+
+    @Override
+    boolean isBetterIndex(int index, int other) {
+        return index < other;
+    }
+
+    @Override
+    boolean isBetterPrice(long price, long other) {
+        return price < other;
+    }
+
+    @Override
+    Tick treeEnd() {
         return orders.getMinimum();
     }
-}
\ No newline at end of file
+
+    @Override
+    Tick worseTick(Tick tick) {
+        return orders.successor(tick);
+    }
+}
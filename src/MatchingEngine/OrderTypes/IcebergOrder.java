@@ -0,0 +1,86 @@
+package MatchingEngine.OrderTypes;
+
+import MatchingEngine.OrderType;
+
+/**
+ * Iceberg (reserve) order which only displays a slice of its volume in the book.
+ * <br>
+ * An incoming iceberg order is executed with its full volume like a limit order. If it rests in the book, at most
+ * <code>peak</code> of its volume is displayed and the remainder is held as hidden volume. While resting,
+ * <code>getVolume</code> returns the displayed slice, such that the volume of its price level and all depth views only
+ * contain displayed quantity. Once the slice is fully executed, the order book refills it from the hidden volume and
+ * moves the order to the back of the queue of its price level
+ */
+public class IcebergOrder extends Order {
+    private final long peak;
+    private long hiddenVolume;
+
+    /**
+     * @param volume total volume of the order
+     * @param peak maximal displayed volume
+     */
+    public IcebergOrder(String product, int orderID, long limit, long volume, long peak, OrderType side, boolean logTrade) {
+        super(product, orderID, volume, side, logTrade);
+        if (peak <= 0)
+            throw new IllegalArgumentException("peak of an iceberg order must be positive");
+        this.limit = limit;
+        this.peak = peak;
+    }
+
+    /**
+     * Moves the volume above the peak into the hidden volume, called by the order book before the order rests
+     */
+    public void display() {
+        if (volume > peak) {
+            hiddenVolume += volume - peak;
+            volume = peak;
+        }
+    }
+
+    /**
+     * Refills the displayed slice from the hidden volume, called by the order book once the slice has been executed
+     * @return new displayed volume, 0 if the hidden volume is exhausted
+     */
+    public long replenish() {
+        long slice = Math.min(peak, hiddenVolume);
+        hiddenVolume -= slice;
+        volume += slice;
+        return slice;
+    }
+
+    /**
+     * Restores the hidden volume of a resting order, used to restore a snapshot
+     */
+    public void setHiddenVolume(long hiddenVolume) {
+        this.hiddenVolume = hiddenVolume;
+    }
+
+    /**
+     * Changes limit and total volume of the order, which is split into a displayed and a hidden part again
+     * once the order rests
+     */
+    @Override
+    public void amend(long limit, long volume) {
+        super.amend(limit, volume);
+        hiddenVolume = 0;
+    }
+
+    /**
+     * Reduces the total volume of a resting order in place, the hidden volume is reduced first and the displayed
+     * slice only once no hidden volume remains
+     * @param volume new total volume of the order, not larger than its current total volume
+     */
+    @Override
+    public void reduceVolume(long volume) {
+        if (volume >= this.volume) {
+            hiddenVolume = volume - this.volume;
+        } else {
+            hiddenVolume = 0;
+            this.volume = volume;
+        }
+    }
+
+    public long getPeak() {return peak;}
+    public long getHiddenVolume() {return hiddenVolume;}
+    public long getTotalVolume() {return volume + hiddenVolume;}
+}
@@ -0,0 +1,16 @@
+package MatchingEngine.OrderTypes;
+
+import MatchingEngine.OrderType;
+
+/**
+ * Immediate-or-cancel order which is executed against the book up to its limit like a limit order.
+ * Instead of resting in the book, the volume which cannot be executed immediately is discarded and
+ * reported to <code>ExecutionListener.onKill</code>
+ */
+public class ImmediateOrCancelOrder extends Order {
+
+    public ImmediateOrCancelOrder(String product, int orderID, long limit, long volume, OrderType side, boolean logTrade) {
+        super(product, orderID, volume, side, logTrade);
+        this.limit = limit;
+    }
+}
@@ -2,8 +2,14 @@ package MatchingEngine.OrderTypes;
 import MatchingEngine.*;
 import MatchingEngine.OrderType;
 
+/**
+ * Fill-or-kill order which is either executed immediately with its full volume at prices up to its limit or
+ * not at all. The order book checks the available volume before it executes the order, such that a killed
+ * order does not change the book. Killed orders are reported to <code>ExecutionListener.onKill</code>
+ */
 public class KillOrFillOrder extends Order {
-    public KillOrFillOrder(String product, double price, int orderID, double volume, OrderType side, boolean logTrade) {
+    public KillOrFillOrder(String product, long price, int orderID, long volume, OrderType side, boolean logTrade) {
         super(product, orderID, volume, side, logTrade);
+        this.limit = price;
     }
 }
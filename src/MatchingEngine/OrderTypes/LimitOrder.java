@@ -7,8 +7,12 @@ import MatchingEngine.OrderType;
  */
 public class LimitOrder extends Order {
 
-    public LimitOrder(String product, int orderID, double limit, double volume, OrderType side, boolean logTrade) {
+    public LimitOrder(String product, int orderID, long limit, long volume, OrderType side, boolean logTrade) {
         super(product, orderID, volume, side, logTrade);
         this.limit = limit;
     }
+
+    // used by the order pool to create empty instances
+    LimitOrder(){
+    }
 }
@@ -3,18 +3,34 @@ package MatchingEngine.OrderTypes;
 import MatchingEngine.*;
 /**
  * Order contains all relevant information attached to an order submitted to an instance of <code>OrderBook</code>
+ * <br>
+ * Limit prices and volumes are stored as scaled long values, see <code>FixedPoint</code>
  */
 
 public class Order extends DoublyLinkedQueueNode<Order> {
-    private final int orderID;
-    private double volume;
-    private final OrderType side;
-    private final boolean logTrade;
-    private final String product;
+    private int orderID;
+    long volume;
+    private OrderType side;
+    private boolean logTrade;
+    private String product;
     private TradeLogger tradeLogger;
-    double limit = 0;
+    // id of the order book the order was added to, set by the order book
+    private int productID = -1;
+    long limit = 0;
 
-    public Order(String product, int orderID, double volume, OrderType side, boolean logTrade){
+    // pool the order was acquired from, null if the order was created directly
+    OrderPool pool;
+    boolean pooled;
+
+    public Order(String product, int orderID, long volume, OrderType side, boolean logTrade){
+        init(product, orderID, volume, side, logTrade);
+    }
+
+    // used by the order pool to create empty instances
+    Order(){
+    }
+
+    void init(String product, int orderID, long volume, OrderType side, boolean logTrade){
         this.product = product;
         this.side = side;
         this.orderID = orderID;
@@ -22,31 +38,67 @@ public class Order extends DoublyLinkedQueueNode<Order> {
         this.logTrade = logTrade;
     }
 
-    public void tradeVolume(double volume){
+    public void tradeVolume(long volume){
         if (volume > this.volume)
             throw new IllegalArgumentException("volume too high for order to be executed");
         // invoke trade logger if it is a flagged order
-        if (logTrade)
-            tradeLogger.logTrade(this + ", " + volume);
+        if (logTrade && tradeLogger != null)
+            tradeLogger.logTrade(orderID, volume);
 
         this.volume -= volume;
     }
 
+    /**
+     * Changes limit and volume of the order. Used by the matching engine to amend an order
+     * after it was taken out of its order book
+     * @param limit new limit of the order
+     * @param volume new volume of the order
+     */
+    public void amend(long limit, long volume){
+        this.limit = limit;
+        this.volume = volume;
+    }
+
+    /**
+     * Reduces the volume of the order in place. Used by the order book to amend a resting order without
+     * taking it out of its queue
+     * @param volume new volume of the order, not larger than its current volume
+     */
+    public void reduceVolume(long volume){
+        this.volume = volume;
+    }
+
     public void tradeTotalVolume(){
         tradeVolume(this.volume);
     }
 
+    /**
+     * Returns the order to the pool it was acquired from. Called by the matching engine once the order
+     * was fully executed or cancelled. Orders which were not acquired from a pool are left untouched
+     */
+    public void recycle(){
+        if (pool != null && !pooled)
+            pool.release(this);
+    }
+
     @Override
     public String toString() {
         return ("" + this.orderID);
     }
 
     // getter & setter methods
-    public double getLimit() {return limit;}
-    public double getVolume() {return volume;}
+    public long getLimit() {return limit;}
+    public long getVolume() {return volume;}
     public OrderType getSide() {return side;}
     public String getProduct() {return product;}
     public int getOrderID() {return orderID;}
+    public boolean isLogTrade() {return logTrade;}
     public void setTradeLogger(TradeLogger tradeLogger){this.tradeLogger = tradeLogger;}
+
+    /**
+     * @return product id of the order book the order was added to, -1 if it has not been added to a book
+     */
+    public int getProductID() {return productID;}
+    public void setProductID(int productID){this.productID = productID;}
 }
 
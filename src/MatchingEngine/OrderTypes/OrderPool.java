@@ -0,0 +1,82 @@
+package MatchingEngine.OrderTypes;
+
+import MatchingEngine.OrderType;
+
+import java.util.Arrays;
+
+/**
+ * Pool of reusable <code>LimitOrder</code> and <code>MarketOrder</code> instances.
+ * <br>
+ * Orders acquired from the pool are returned to it by the matching engine once they are fully executed
+ * or cancelled. In steady state, submitting orders therefore does not allocate any new objects.
+ * After an order has been submitted, the caller must not keep using its reference once it may have been
+ * executed or cancelled, as the instance will be handed out again
+ * <pre>{@code
+ * OrderPool pool = new OrderPool(10_000);
+ * matcher.addOrder(pool.limitOrder("Amazon", 1, 100, 100, OrderType.SELL, false));}</pre>
+ * The pool is not thread safe and must be used on the thread running the matching engine
+ */
+public class OrderPool {
+    private LimitOrder[] limitOrders;
+    private int limitCount;
+    private MarketOrder[] marketOrders;
+    private int marketCount;
+
+    /**
+     * @param initialSize number of limit orders that are allocated upfront. The pool grows if more orders are needed
+     */
+    public OrderPool(int initialSize) {
+        limitOrders = new LimitOrder[Math.max(initialSize, 16)];
+        marketOrders = new MarketOrder[16];
+        for (int i = 0; i < initialSize; i++)
+            release(newLimitOrder());
+    }
+
+    public LimitOrder limitOrder(String product, int orderID, long limit, long volume, OrderType side, boolean logTrade) {
+        LimitOrder order = limitCount > 0 ? limitOrders[--limitCount] : newLimitOrder();
+        limitOrders[limitCount] = null;
+        order.init(product, orderID, volume, side, logTrade);
+        order.limit = limit;
+        order.pooled = false;
+        return order;
+    }
+
+    public MarketOrder marketOrder(String product, int orderID, long volume, OrderType side, boolean logTrade) {
+        MarketOrder order = marketCount > 0 ? marketOrders[--marketCount] : newMarketOrder();
+        marketOrders[marketCount] = null;
+        order.init(product, orderID, volume, side, logTrade);
+        order.limit = MarketOrder.limitFor(side);
+        order.pooled = false;
+        return order;
+    }
+
+    void release(Order order) {
+        order.pooled = true;
+        if (order instanceof LimitOrder) {
+            if (limitCount == limitOrders.length)
+                limitOrders = Arrays.copyOf(limitOrders, limitCount << 1);
+            limitOrders[limitCount++] = (LimitOrder) order;
+        } else if (order instanceof MarketOrder) {
+            if (marketCount == marketOrders.length)
+                marketOrders = Arrays.copyOf(marketOrders, marketCount << 1);
+            marketOrders[marketCount++] = (MarketOrder) order;
+        }
+    }
+
+    private LimitOrder newLimitOrder() {
+        LimitOrder order = new LimitOrder();
+        order.pool = this;
+        return order;
+    }
+
+    private MarketOrder newMarketOrder() {
+        MarketOrder order = new MarketOrder();
+        order.pool = this;
+        return order;
+    }
+
+    /**
+     * @return number of orders which are currently available in the pool
+     */
+    public int available() {return limitCount + marketCount;}
+}
@@ -0,0 +1,47 @@
+package MatchingEngine.OrderTypes;
+
+import MatchingEngine.OrderType;
+
+/**
+ * Stop order which waits in the trigger book of its order book until the last traded price reaches its stop price.
+ * A buy stop is triggered once the price rises to its stop price or above, a sell stop once the price falls to its
+ * stop price or below. Stops whose stop price has already been reached when they arrive are triggered immediately
+ * <br>
+ * A triggered stop order is executed as a market order, or as a limit order if it was created with a limit
+ * (stop-limit order). Dormant stops can be cancelled and amended by their orderID like resting orders
+ */
+public class StopOrder extends Order {
+    private final long stopPrice;
+    private boolean triggered;
+
+    /**
+     * Creates a stop order which is executed as a market order once it is triggered
+     */
+    public StopOrder(String product, int orderID, long stopPrice, long volume, OrderType side, boolean logTrade) {
+        this(product, orderID, stopPrice, MarketOrder.limitFor(side), volume, side, logTrade);
+    }
+
+    /**
+     * Creates a stop-limit order which is executed as a limit order once it is triggered
+     */
+    public StopOrder(String product, int orderID, long stopPrice, long limit, long volume, OrderType side, boolean logTrade) {
+        super(product, orderID, volume, side, logTrade);
+        this.stopPrice = stopPrice;
+        this.limit = limit;
+    }
+
+    /**
+     * Marks the order as triggered, called by the order book before the order is executed
+     */
+    public void trigger() {
+        triggered = true;
+    }
+
+    public long getStopPrice() {return stopPrice;}
+    public boolean isTriggered() {return triggered;}
+
+    /**
+     * @return true if the order is executed as a limit order once it is triggered
+     */
+    public boolean isStopLimit() {return limit != MarketOrder.limitFor(getSide());}
+}
@@ -0,0 +1,40 @@
+package MatchingEngine;
+
+/**
+ * Aggregated price level of one side of an order book, see <code>MatchingEngine.getDepth</code>.
+ * Price and volume are scaled with the <code>FixedPoint</code> of the product
+ */
+public final class PriceLevel {
+    private final long price;
+    private final long volume;
+
+    public PriceLevel(long price, long volume) {
+        this.price = price;
+        this.volume = volume;
+    }
+
+    public long getPrice() {return price;}
+
+    /**
+     * @return total volume of all orders resting at the price
+     */
+    public long getVolume() {return volume;}
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof PriceLevel))
+            return false;
+        PriceLevel other = (PriceLevel) o;
+        return price == other.price && volume == other.volume;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(price) * 31 + Long.hashCode(volume);
+    }
+
+    @Override
+    public String toString() {
+        return volume + "@" + price;
+    }
+}
@@ -5,6 +5,10 @@ import java.util.Comparator;
 /**
  * Implementation of a Red Black binary tree with additional references to the maximum
  * and minimum node in the tree for update of best bid / ask in O(1) in the order book
+ * <br>
+ * Once aggregation is enabled, every node additionally stores the sum of the weights of its subtree, which is
+ * maintained in O(logN) on insertion, deletion and weight changes, such that the total weight of all nodes up to a
+ * key can be computed in O(logN)
  */
 class RedBlackTree<T extends RedBlackTreeNode<T>> {
     private int size;
@@ -12,6 +16,7 @@ class RedBlackTree<T extends RedBlackTreeNode<T>> {
     private T minimum;
     private T maximum;
     private final Comparator<T> comparator;
+    private boolean aggregating;
 
     public RedBlackTree(Comparator<T> comparator) {
         this.comparator = comparator;
@@ -40,6 +45,7 @@ class RedBlackTree<T extends RedBlackTreeNode<T>> {
             return;
         }
 
+        data.subtreeWeight = data.weight;
         if (root == null) {
             root = data;
             minimum = data;
@@ -65,6 +71,9 @@ class RedBlackTree<T extends RedBlackTreeNode<T>> {
 
         while (current != null) {
             parent = current;
+            // the new node becomes part of the subtree of all nodes on its path
+            if (aggregating)
+                current.subtreeWeight += n.weight;
             int cmp = comparator.compare(n, current);
             if (cmp < 0) {
                 current = current.left;
@@ -151,6 +160,10 @@ class RedBlackTree<T extends RedBlackTreeNode<T>> {
         }
         y.left = x;
         x.parent = y;
+        if (aggregating) {
+            aggregate(x);
+            aggregate(y);
+        }
     }
 
     private void rotateRight(T y) {
@@ -171,111 +184,143 @@ class RedBlackTree<T extends RedBlackTreeNode<T>> {
         }
         x.right = y;
         y.parent = x;
+        if (aggregating) {
+            aggregate(y);
+            aggregate(x);
+        }
     }
 
+    /**
+     * Removes the node from the tree. The node is unlinked from the tree and can be inserted again afterwards
+     * @param node node which is currently part of the tree
+     */
     public void delete(T node) {
-        T child;
-        if (node.left != null && node.right != null) {
-            T predecessor = maximum(node.left);
-            node.left.parent = null; // remove link to predecessor
-            node.left = null;
-            node.right = null;
-            node.parent = null;
-            node = predecessor;
+        // minimum and maximum must be updated while the node is still linked into the tree
+        if (node == minimum) {
+            minimum = successor(node);
         }
-
-        if (node.left != null) {
-            child = node.left;
-        } else {
-            child = node.right;
+        if (node == maximum) {
+            maximum = predecessor(node);
         }
 
-        if (!node.isRed) {
-            node.isRed = (child == null || child.isRed);
-            deleteFixUp(child);
-        }
+        T child;
+        T childParent;
+        boolean removedRed = node.isRed;
 
-        if (node.parent == null) {
-            root = child;
+        if (node.left == null) {
+            child = node.right;
+            childParent = node.parent;
+            transplant(node, node.right);
+        } else if (node.right == null) {
+            child = node.left;
+            childParent = node.parent;
+            transplant(node, node.left);
         } else {
-            if (node == node.parent.left) {
-                node.parent.left = child;
+            // nodes are part of the stored elements and cannot be swapped by value,
+            // the successor is therefore moved into the position of the deleted node
+            T next = minimum(node.right);
+            removedRed = next.isRed;
+            child = next.right;
+            if (next.parent == node) {
+                childParent = next;
             } else {
-                node.parent.right = child;
+                childParent = next.parent;
+                transplant(next, next.right);
+                next.right = node.right;
+                next.right.parent = next;
             }
+            transplant(node, next);
+            next.left = node.left;
+            next.left.parent = next;
+            next.isRed = node.isRed;
         }
 
-        if (child != null) {
-            child.parent = node.parent;
+        // the subtrees on the path from the lowest relinked node to the root have lost the deleted node
+        if (aggregating) {
+            for (T n = childParent; n != null; n = n.parent)
+                aggregate(n);
         }
 
-        if (node == minimum) {
-            minimum = successor(node);
+        if (!removedRed) {
+            deleteFixUp(child, childParent);
         }
 
-        if (node == maximum) {
-            maximum = predecessor(node);
-        }
+        node.left = null;
+        node.right = null;
+        node.parent = null;
+        node.isRed = true;
         size--;
     }
 
-    private void deleteFixUp(T x) {
-        while (x != null && x != root && !x.isRed) {
-            if (x == x.parent.left) {
-                T w = x.parent.right;
+    // replaces the subtree rooted at u with the subtree rooted at v
+    private void transplant(T u, T v) {
+        if (u.parent == null) {
+            root = v;
+        } else if (u == u.parent.left) {
+            u.parent.left = v;
+        } else {
+            u.parent.right = v;
+        }
+        if (v != null) {
+            v.parent = u.parent;
+        }
+    }
 
-                if (w != null && w.isRed) {
+    // x might be null (a black leaf), its parent is therefore passed separately
+    private void deleteFixUp(T x, T parent) {
+        while (x != root && !isRed(x)) {
+            if (x == parent.left) {
+                T w = parent.right;
+                if (isRed(w)) {
                     w.isRed = false;
-                    x.parent.isRed = true;
-                    rotateLeft(x.parent);
-                    w = x.parent.right;
+                    parent.isRed = true;
+                    rotateLeft(parent);
+                    w = parent.right;
                 }
-                if (w != null && !w.left.isRed && !w.right.isRed) {
+                if (!isRed(w.left) && !isRed(w.right)) {
                     w.isRed = true;
-                    x = x.parent;
+                    x = parent;
+                    parent = x.parent;
                 } else {
-                    if (w != null && !w.right.isRed) {
+                    if (!isRed(w.right)) {
                         w.left.isRed = false;
                         w.isRed = true;
                         rotateRight(w);
-                        w = x.parent.right;
+                        w = parent.right;
                     }
-                    if (w != null) {
-                        w.isRed = x.parent.isRed;
-                    }
-                    x.parent.isRed = false;
-                    if (w != null && w.right != null) {
+                    w.isRed = parent.isRed;
+                    parent.isRed = false;
+                    if (w.right != null) {
                         w.right.isRed = false;
                     }
-                    rotateLeft(x.parent);
+                    rotateLeft(parent);
                     x = root;
                 }
             } else {
-                T w = x.parent.left;
-                if (w != null && w.isRed) {
+                T w = parent.left;
+                if (isRed(w)) {
                     w.isRed = false;
-                    x.parent.isRed = true;
-                    rotateRight(x.parent);
-                    w = x.parent.left;
+                    parent.isRed = true;
+                    rotateRight(parent);
+                    w = parent.left;
                 }
-                if (w != null && !w.right.isRed && !w.left.isRed) {
+                if (!isRed(w.right) && !isRed(w.left)) {
                     w.isRed = true;
-                    x = x.parent;
+                    x = parent;
+                    parent = x.parent;
                 } else {
-                    if (w != null && !w.left.isRed) {
+                    if (!isRed(w.left)) {
                         w.right.isRed = false;
                         w.isRed = true;
                         rotateLeft(w);
-                        w = x.parent.left;
-                    }
-                    if (w != null) {
-                        w.isRed = x.parent.isRed;
+                        w = parent.left;
                     }
-                    x.parent.isRed = false;
-                    if (w != null && w.left != null) {
+                    w.isRed = parent.isRed;
+                    parent.isRed = false;
+                    if (w.left != null) {
                         w.left.isRed = false;
                     }
-                    rotateRight(x.parent);
+                    rotateRight(parent);
                     x = root;
                 }
             }
@@ -285,6 +330,66 @@ class RedBlackTree<T extends RedBlackTreeNode<T>> {
         }
     }
 
+    /**
+     * Enables the aggregation of the weights of all subtrees, the weights of all nodes must be set before
+     */
+    public void enableAggregation() {
+        if (aggregating)
+            return;
+        // post order traversal, children are aggregated before their parent
+        T previous = null;
+        T node = root;
+        while (node != null) {
+            if (previous == node.parent) {
+                // arrived from the parent, descend into the left subtree first
+                if (node.left != null) {
+                    previous = node;
+                    node = node.left;
+                    continue;
+                }
+                if (node.right != null) {
+                    previous = node;
+                    node = node.right;
+                    continue;
+                }
+            } else if (previous == node.left && node.right != null) {
+                previous = node;
+                node = node.right;
+                continue;
+            }
+            aggregate(node);
+            previous = node;
+            node = node.parent;
+        }
+        aggregating = true;
+    }
+
+    public boolean isAggregating() {return aggregating;}
+
+    /**
+     * Changes the weight of a node which is part of the tree and updates the sums of all subtrees containing it
+     */
+    public void setWeight(T node, long weight) {
+        long delta = weight - node.weight;
+        node.weight = weight;
+        if (aggregating) {
+            for (T n = node; n != null; n = n.parent)
+                n.subtreeWeight += delta;
+        }
+    }
+
+    private void aggregate(T node) {
+        node.subtreeWeight = node.weight + subtreeWeight(node.left) + subtreeWeight(node.right);
+    }
+
+    static long subtreeWeight(RedBlackTreeNode<?> node) {
+        return node == null ? 0 : node.subtreeWeight;
+    }
+
+    private boolean isRed(T node) {
+        return node != null && node.isRed;
+    }
+
     // Find minimum node in subtree rooted at given node
     private T minimum(T node) {
         while (node.left != null) {
@@ -302,7 +407,7 @@ class RedBlackTree<T extends RedBlackTreeNode<T>> {
     }
 
     // Find successor of a given node
-    private T successor(T node) {
+    public T successor(T node) {
         if (node.right != null) {
             return minimum(node.right);
         }
@@ -341,6 +446,7 @@ class RedBlackTree<T extends RedBlackTreeNode<T>> {
     }
 
     // getter methods
+    public T getRoot() {return root;}
     public T getMinimum() {return minimum;}
     public T getMaximum() {return maximum;}
     public int size(){return size;}
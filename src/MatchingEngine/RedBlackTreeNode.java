@@ -6,6 +6,10 @@ abstract class RedBlackTreeNode<T> {
     T parent;
     boolean isRed;
 
+    // weight of the node and the sum of the weights of its subtree, only maintained if the tree aggregates weights
+    long weight;
+    long subtreeWeight;
+
     RedBlackTreeNode() {
         this.isRed = true; // new nodes are always red
     }
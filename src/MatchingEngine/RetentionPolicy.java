@@ -0,0 +1,41 @@
+package MatchingEngine;
+
+/**
+ * Defines how long empty price levels of an order book are retained before they are removed.
+ * <br>
+ * By default, a price level is removed from its red black tree as soon as its last order is executed or deleted,
+ * and the next order at the same price pays O(logN) to insert it again. With a retention policy, empty levels stay
+ * in the tree (and are skipped when the best price is determined) such that prices which oscillate around the
+ * touch are only inserted once. Empty levels are evicted
+ * <ul>
+ * <li>immediately, if more than maxEmptyLevels levels of one side are empty (the level emptied first is evicted)</li>
+ * <li>on compaction, if their distance from the best price of their side exceeds maxDistance</li>
+ * <li>on compaction, if they have been empty for longer than maxIdleNanos</li>
+ * </ul>
+ * Compaction is run with <code>MatchingEngine.compact</code>, e.g. whenever the engine thread is idle.
+ * Levels stored in a price ladder are located in O(1) and are not affected by the policy
+ */
+public final class RetentionPolicy {
+    private final int maxEmptyLevels;
+    private final long maxDistance;
+    private final long maxIdleNanos;
+
+    /**
+     * @param maxEmptyLevels maximal number of empty levels per side
+     * @param maxDistance maximal (scaled) price distance of an empty level from the best price, Long.MAX_VALUE for no limit
+     * @param maxIdleNanos maximal time a level is retained while empty, Long.MAX_VALUE for no limit
+     */
+    public RetentionPolicy(int maxEmptyLevels, long maxDistance, long maxIdleNanos) {
+        if (maxEmptyLevels < 0 || maxDistance < 0 || maxIdleNanos < 0)
+            throw new IllegalArgumentException("retention limits must not be negative");
+        this.maxEmptyLevels = maxEmptyLevels;
+        this.maxDistance = maxDistance;
+        this.maxIdleNanos = maxIdleNanos;
+    }
+
+    public int getMaxEmptyLevels() {return maxEmptyLevels;}
+    public long getMaxDistance() {return maxDistance;}
+    public long getMaxIdleNanos() {return maxIdleNanos;}
+
+    boolean tracksIdleTime() {return maxIdleNanos != Long.MAX_VALUE;}
+}
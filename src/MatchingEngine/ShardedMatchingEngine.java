@@ -0,0 +1,349 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.Order;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Matching engine which distributes its instruments over several shards, each running on its own thread.
+ * <br>
+ * Instruments are assigned to a shard by the hash of their name. Every shard owns a <code>MatchingEngine</code> with the
+ * order books of its instruments, which is only accessed by the thread of the shard and therefore needs no locks.
+ * Commands are delivered to the shards through lock-free queues and can be submitted from any thread. Since the
+ * commands of an instrument are always processed by the same shard in submission order (per submitting thread),
+ * matching stays deterministic per instrument while different instruments are matched in parallel
+ * <br>
+ * All methods return once the command has been queued. Results are reported asynchronously to the
+ * <code>ExecutionListener</code>, which is invoked on the shard threads
+ * <pre>{@code
+ * ShardedMatchingEngine matcher = new ShardedMatchingEngine(4, 1 << 16, listener);
+ * matcher.addOrder(new LimitOrder("Amazon", 1, 100, 100, OrderType.SELL, false));
+ * matcher.cancel("Amazon", 1);
+ * matcher.shutdown();}</pre>
+ * Order IDs must be unique across all instruments. Orders must not be accessed by the submitting thread after they
+ * were submitted
+ */
+public class ShardedMatchingEngine {
+    private static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+    private static final int SPIN_TRIES = 1_000;
+    private static final long IDLE_PARK_NANOS = 1_000;
+
+    private final Shard[] shards;
+    private volatile boolean running = true;
+
+    /**
+     * Creates an engine with one shard per available processor without a listener
+     */
+    public ShardedMatchingEngine() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, null);
+    }
+
+    /**
+     * @param shards number of shards, each running on its own thread
+     * @param queueCapacity number of commands which can be queued per shard, submitting threads are parked while
+     *                      the queue of a shard is full
+     * @param listener listener notified of fills and results of commands, may be null
+     */
+    public ShardedMatchingEngine(int shards, int queueCapacity, ExecutionListener listener) {
+        this(shards, queueCapacity, listener, null, null);
+    }
+
+    /**
+     * Creates an engine whose shards register the metrics and latencies of their books with a shared registry and
+     * recorder, which merge them over all shards, see <code>MetricsRegistry.getTotal</code> and
+     * <code>LatencyRecorder.getLatency(Operation)</code>
+     * @param shards number of shards, each running on its own thread
+     * @param queueCapacity number of commands which can be queued per shard
+     * @param listener listener notified of fills and results of commands, may be null
+     * @param metricsRegistry registry of the metrics of the books of all shards, may be null
+     * @param latencyRecorder recorder of the latencies of the books of all shards, may be null
+     */
+    public ShardedMatchingEngine(int shards, int queueCapacity, ExecutionListener listener,
+                                 MetricsRegistry metricsRegistry, LatencyRecorder latencyRecorder) {
+        if (shards <= 0)
+            throw new IllegalArgumentException("number of shards must be positive");
+
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++)
+            this.shards[i] = new Shard(i, queueCapacity, listener);
+        // set before the shard threads start, which afterwards are the only threads accessing their engines
+        for (Shard shard : this.shards) {
+            if (metricsRegistry != null)
+                shard.engine.setMetricsRegistry(metricsRegistry);
+            shard.engine.setLatencyRecorder(latencyRecorder);
+        }
+        for (Shard shard : this.shards)
+            shard.thread.start();
+    }
+
+    /**
+     * Queues an order for the order book of its product, see <code>MatchingEngine.addOrder</code>
+     * @param order order to be added, it must not be accessed anymore after it was submitted
+     */
+    public void addOrder(Order order) {
+        CommandQueue queue = shardOf(order.getProduct()).queue;
+        long sequence = queue.claim();
+        CommandQueue.Command command = queue.get(sequence);
+        command.type = CommandQueue.ADD;
+        command.product = order.getProduct();
+        command.order = order;
+        command.orderID = order.getOrderID();
+        queue.publish(sequence);
+    }
+
+    /**
+     * Queues the cancellation of a resting order, the result is reported to <code>ExecutionListener.onCancel</code>.
+     * The order is only cancelled if it rests in the book of the product
+     * @param product instrument of the order, which selects the shard
+     * @param orderID ID of the order to be deleted
+     */
+    public void cancel(String product, int orderID) {
+        CommandQueue queue = shardOf(product).queue;
+        long sequence = queue.claim();
+        CommandQueue.Command command = queue.get(sequence);
+        command.type = CommandQueue.CANCEL;
+        command.product = product;
+        command.orderID = orderID;
+        queue.publish(sequence);
+    }
+
+    /**
+     * Queues an amendment of a resting order, the result is reported to <code>ExecutionListener.onAmend</code>.
+     * The order is only amended if it rests in the book of the product
+     * @param product instrument of the order, which selects the shard
+     * @param orderID ID of the order to be amended
+     * @param volume new (scaled) volume of the order
+     * @param limit new (scaled) limit of the order
+     */
+    public void amend(String product, int orderID, long volume, long limit) {
+        CommandQueue queue = shardOf(product).queue;
+        long sequence = queue.claim();
+        CommandQueue.Command command = queue.get(sequence);
+        command.type = CommandQueue.AMEND;
+        command.product = product;
+        command.orderID = orderID;
+        command.volume = volume;
+        command.limit = limit;
+        queue.publish(sequence);
+    }
+
+    /**
+     * Queues the creation of an order book, see <code>MatchingEngine.openBook(String, FixedPoint)</code>
+     */
+    public void openBook(String product, FixedPoint fixedPoint) {
+        openBook(product, fixedPoint, false, 0, 0, 0);
+    }
+
+    /**
+     * Queues the creation of an order book with a price ladder,
+     * see <code>MatchingEngine.openBook(String, FixedPoint, long, long, long)</code>
+     */
+    public void openBook(String product, FixedPoint fixedPoint, long minPrice, long maxPrice, long tickSize) {
+        openBook(product, fixedPoint, true, minPrice, maxPrice, tickSize);
+    }
+
+    private void openBook(String product, FixedPoint fixedPoint, boolean ladder, long minPrice, long maxPrice, long tickSize) {
+        CommandQueue queue = shardOf(product).queue;
+        long sequence = queue.claim();
+        CommandQueue.Command command = queue.get(sequence);
+        command.type = CommandQueue.OPEN_BOOK;
+        command.product = product;
+        command.orderID = -1;
+        command.fixedPoint = fixedPoint;
+        command.ladder = ladder;
+        command.minPrice = minPrice;
+        command.maxPrice = maxPrice;
+        command.tickSize = tickSize;
+        queue.publish(sequence);
+    }
+
+    /**
+     * Queues the deletion of the order book of the product
+     */
+    public void closeBook(String product) {
+        CommandQueue queue = shardOf(product).queue;
+        long sequence = queue.claim();
+        CommandQueue.Command command = queue.get(sequence);
+        command.type = CommandQueue.CLOSE_BOOK;
+        command.product = product;
+        queue.publish(sequence);
+    }
+
+    /**
+     * Queues a change of the retention policy of empty price levels of the product's book,
+     * see <code>MatchingEngine.setRetentionPolicy</code>. Retained levels are compacted whenever a shard is idle
+     */
+    public void setRetentionPolicy(String product, RetentionPolicy policy) {
+        CommandQueue queue = shardOf(product).queue;
+        long sequence = queue.claim();
+        CommandQueue.Command command = queue.get(sequence);
+        command.type = CommandQueue.SET_RETENTION;
+        command.product = product;
+        command.orderID = -1;
+        command.retention = policy;
+        queue.publish(sequence);
+    }
+
+    /**
+     * Queues the start of the call phase of an auction for the product's book, see <code>MatchingEngine.startAuction</code>
+     */
+    public void startAuction(String product) {
+        auctionCommand(product, CommandQueue.START_AUCTION);
+    }
+
+    /**
+     * Queues the uncross of the product's book, see <code>MatchingEngine.uncross</code>. The equilibrium is reported
+     * to <code>ExecutionListener.onUncross</code>
+     */
+    public void uncross(String product) {
+        auctionCommand(product, CommandQueue.UNCROSS);
+    }
+
+    private void auctionCommand(String product, byte type) {
+        CommandQueue queue = shardOf(product).queue;
+        long sequence = queue.claim();
+        CommandQueue.Command command = queue.get(sequence);
+        command.type = type;
+        command.product = product;
+        command.orderID = -1;
+        queue.publish(sequence);
+    }
+
+    /**
+     * @return index of the shard which processes the commands of the product
+     */
+    public int getShard(String product) {
+        // spread the bits of the hash code, String hashes of similar names mostly differ in the low bits
+        int hash = product.hashCode() * 0x9E3779B9;
+        return (int) (((hash >>> 16) * (long) shards.length) >>> 16);
+    }
+
+    public int getShardCount() {return shards.length;}
+
+    /**
+     * @return number of commands which were submitted but not yet processed by any shard
+     */
+    public long getBacklog() {
+        long backlog = 0;
+        for (Shard shard : shards)
+            backlog += shard.queue.backlog();
+        return backlog;
+    }
+
+    /**
+     * Stops all shard threads once they have processed all commands submitted before the call.
+     * No commands may be submitted concurrently or afterwards
+     */
+    public void shutdown() {
+        running = false;
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Shard shardOf(String product) {
+        return shards[getShard(product)];
+    }
+
+    /**
+     * Order books of the instruments of one shard and the thread processing its commands
+     */
+    private final class Shard {
+        private final MatchingEngine engine = new MatchingEngine();
+        private final CommandQueue queue;
+        private final ExecutionListener listener;
+        private final Thread thread;
+
+        private Shard(int index, int queueCapacity, ExecutionListener listener) {
+            this.queue = new CommandQueue(queueCapacity);
+            this.listener = listener;
+            engine.setExecutionListener(listener);
+            thread = new Thread(this::run, "matching-shard-" + index);
+        }
+
+        private void run() {
+            long sequence = 0;
+            int idle = 0;
+            while (true) {
+                CommandQueue.Command command = queue.poll(sequence);
+                if (command == null) {
+                    // commands claimed before the shutdown are still processed
+                    if (!running && queue.backlog() == 0)
+                        break;
+                    if (++idle < SPIN_TRIES) {
+                        Thread.onSpinWait();
+                    } else {
+                        // retained price levels are compacted once per idle period
+                        if (idle == SPIN_TRIES)
+                            engine.compact();
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                    continue;
+                }
+
+                idle = 0;
+                process(command);
+                command.clear();
+                queue.release(++sequence);
+            }
+        }
+
+        private void process(CommandQueue.Command command) {
+            try {
+                switch (command.type) {
+                    case CommandQueue.ADD:
+                        engine.addOrder(command.order);
+                        break;
+                    case CommandQueue.CANCEL: {
+                        boolean cancelled = restsInBook(command) && engine.cancel(command.orderID);
+                        if (listener != null)
+                            listener.onCancel(command.orderID, cancelled);
+                        break;
+                    }
+                    case CommandQueue.AMEND: {
+                        boolean amended = restsInBook(command) && engine.amend(command.orderID, command.volume, command.limit);
+                        if (listener != null)
+                            listener.onAmend(command.orderID, amended);
+                        break;
+                    }
+                    case CommandQueue.OPEN_BOOK:
+                        if (command.ladder)
+                            engine.openBook(command.product, command.fixedPoint, command.minPrice, command.maxPrice, command.tickSize);
+                        else
+                            engine.openBook(command.product, command.fixedPoint);
+                        break;
+                    case CommandQueue.CLOSE_BOOK:
+                        engine.closeBook(command.product);
+                        break;
+                    case CommandQueue.SET_RETENTION:
+                        engine.setRetentionPolicy(command.product, command.retention);
+                        break;
+                    case CommandQueue.START_AUCTION:
+                        engine.startAuction(command.product);
+                        break;
+                    case CommandQueue.UNCROSS:
+                        engine.uncross(command.product);
+                        break;
+                    default:
+                        throw new IllegalStateException("unknown command type " + command.type);
+                }
+            } catch (RuntimeException e) {
+                // neither a rejected nor a failed command (e.g. a failing journal or listener) may stop the shard,
+                // whose queue would otherwise never be drained again
+                if (listener != null)
+                    listener.onReject(command.orderID, e instanceof IllegalArgumentException ? e.getMessage() : e.toString());
+            }
+        }
+
+        // cancellations and amendments only apply to orders resting in the book of the product of the command
+        private boolean restsInBook(CommandQueue.Command command) {
+            Order resting = engine.orderIndex.get(command.orderID);
+            OrderBook book = engine.instruments.get(command.product);
+            return resting != null && book != null && resting.getProductID() == book.getProductID();
+        }
+    }
+}
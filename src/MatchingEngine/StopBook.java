@@ -0,0 +1,145 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.Order;
+import MatchingEngine.OrderTypes.StopOrder;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/**
+ * Trigger book which holds the dormant stop orders of one order book.
+ * <br>
+ * Stops are grouped into levels by their stop price. The levels of each side are stored in a red black tree and
+ * located through a hash map, the stops of a level in a queue in the order of their arrival. As buy stops are
+ * triggered by rising and sell stops by falling prices, the next triggered stop is always the first stop of the
+ * lowest buy level or of the highest sell level. Releasing a stop therefore takes O(logN) and a trade never looks
+ * at the stops which it does not trigger
+ */
+class StopBook {
+    private final Side buyStops = new Side();
+    private final Side sellStops = new Side();
+    private int size;
+
+    // removed levels which are reused for new stop prices
+    private StopLevel[] levelPool = new StopLevel[16];
+    private int pooledLevels;
+
+    /**
+     * @param stop dormant stop order which is appended to the level of its stop price
+     */
+    void add(StopOrder stop) {
+        Side side = stop.getSide() == OrderType.BUY ? buyStops : sellStops;
+        StopLevel level = side.byPrice.get(stop.getStopPrice());
+        if (level == null) {
+            level = newLevel(stop.getStopPrice());
+            side.levels.insert(level);
+            side.byPrice.put(level.stopPrice, level);
+        }
+        level.stops.addLast(stop);
+        size++;
+    }
+
+    /**
+     * @param stop dormant stop order of this book which is removed
+     */
+    void remove(StopOrder stop) {
+        StopLevel level = StopLevel.of(stop);
+        level.stops.remove(stop);
+        size--;
+        if (level.stops.isEmpty())
+            removeLevel(stop.getSide() == OrderType.BUY ? buyStops : sellStops, level);
+    }
+
+    /**
+     * Removes and returns the next stop triggered by the last traded price, buy stops with a stop price at or
+     * below the price and sell stops with a stop price at or above it are taken in price/time order
+     * @param lastPrice last traded price of the book
+     * @return the next triggered stop or null if the price does not trigger any stop
+     */
+    StopOrder nextTriggered(long lastPrice) {
+        StopLevel level = buyStops.levels.getMinimum();
+        Side side = buyStops;
+        if (level == null || level.stopPrice > lastPrice) {
+            level = sellStops.levels.getMaximum();
+            side = sellStops;
+            if (level == null || level.stopPrice < lastPrice)
+                return null;
+        }
+
+        StopOrder stop = (StopOrder) level.stops.removeFirst();
+        size--;
+        if (level.stops.isEmpty())
+            removeLevel(side, level);
+        return stop;
+    }
+
+    /**
+     * @return true if the stop order is dormant in a trigger book
+     */
+    static boolean contains(StopOrder stop) {
+        return StopLevel.of(stop) != null;
+    }
+
+    /**
+     * Applies action to all dormant stops, the buy stops from the lowest and the sell stops from the highest stop
+     * price and the stops of a level in the order of their arrival
+     */
+    void forEach(Consumer<StopOrder> action) {
+        buyStops.forEach(action, false);
+        sellStops.forEach(action, true);
+    }
+
+    int size() {return size;}
+
+    private StopLevel newLevel(long stopPrice) {
+        StopLevel level = pooledLevels > 0 ? levelPool[--pooledLevels] : new StopLevel();
+        levelPool[pooledLevels] = null;
+        level.stopPrice = stopPrice;
+        return level;
+    }
+
+    private void removeLevel(Side side, StopLevel level) {
+        side.levels.delete(level);
+        side.byPrice.remove(level.stopPrice);
+        if (pooledLevels == levelPool.length)
+            levelPool = Arrays.copyOf(levelPool, pooledLevels << 1);
+        levelPool[pooledLevels++] = level;
+    }
+
+    private static final class Side {
+        final RedBlackTree<StopLevel> levels = new RedBlackTree<>(Comparator.comparingLong((StopLevel l) -> l.stopPrice));
+        final LongObjectHashMap<StopLevel> byPrice = new LongObjectHashMap<>(16);
+
+        void forEach(Consumer<StopOrder> action, boolean descending) {
+            StopLevel level = descending ? levels.getMaximum() : levels.getMinimum();
+            while (level != null) {
+                for (Order stop : level.stops)
+                    action.accept((StopOrder) stop);
+                level = descending ? levels.predecessor(level) : levels.successor(level);
+            }
+        }
+    }
+
+    /**
+     * all dormant stops with the same stop price on one side of the trigger book
+     */
+    static final class StopLevel extends RedBlackTreeNode<StopLevel> {
+        final StopQueue stops = new StopQueue(this);
+        long stopPrice;
+
+        // locates the level of a dormant stop in O(1), null if the order is not dormant in any trigger book
+        static StopLevel of(Order order) {
+            DoublyLinkedQueueNode<Order> node = order;
+            return node.queue instanceof StopQueue ? ((StopQueue) node.queue).level : null;
+        }
+    }
+
+    static final class StopQueue extends DoublyLinkedQueue<Order> {
+        final StopLevel level;
+
+        StopQueue(StopLevel level) {
+            this.level = level;
+        }
+    }
+}
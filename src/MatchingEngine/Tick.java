@@ -1,11 +1,8 @@
 package MatchingEngine;
 
+import MatchingEngine.OrderTypes.IcebergOrder;
 import MatchingEngine.OrderTypes.Order;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-
 /**
  * This class represents a tick value (price) in an order book.
  * <br>
@@ -14,76 +11,182 @@ import java.util.Map;
  * <br>
  * Tick contains an internal queue that holds all orders with a limit price of the Tick values' <code>tickValue</code>
  * The class contains methods to add and remove orders from the tick as well as execute a specified amount of volume from the tick
+ * <br>
+ * Empty ticks are reused by their OrderTree for new price levels, see <code>init</code>
  */
 
 class Tick extends RedBlackTreeNode<Tick> {
-    private final DoublyLinkedQueue<Order> orderQueue = new DoublyLinkedQueue<Order>();
-    private final Map<Integer, Order> idToOrder = new HashMap<>();
-    private final double tickValue;
-    private double availableVolume;
+    private final OrderQueue orderQueue = new OrderQueue(this);
+    private long tickValue;
+    private long availableVolume;
+    // volume of the resting iceberg orders which is not displayed yet
+    private long hiddenVolume;
+
+    // address of the tick inside the price ladder of its OrderTree, -1 if the tick is stored in the red black tree
+    int ladderIndex = -1;
+
+    // empty tick which is retained in its tree, linked from the oldest to the newest empty tick, see RetentionPolicy
+    boolean retained;
+    Tick olderEmpty;
+    Tick newerEmpty;
+    long emptiedAt;
+
+    // slot of the pending depth update of the current command, -1 if there is none, see MarketDataPublisher
+    int depthSlot = -1;
 
     // to create a new tick, a first order must be submitted too
-    public Tick(double tickValue, Order order){
+    public Tick(long tickValue, Order order){
+        init(tickValue, order);
+    }
+
+    // empty tick which is kept in the tick pool of an OrderTree until it is initialized
+    Tick(){
+    }
+
+    /**
+     * (Re-)initializes an empty tick for a new price level
+     * @param tickValue price of the tick
+     * @param order first order of the tick
+     */
+    void init(long tickValue, Order order){
         this.tickValue = tickValue;
+        this.availableVolume = 0;
+        this.hiddenVolume = 0;
+        this.ladderIndex = -1;
+        this.retained = false;
+        this.olderEmpty = null;
+        this.newerEmpty = null;
+        this.weight = 0;
         addOrder(order);
     }
 
     void addOrder(Order order){
         // add order and increase tick volume
         orderQueue.addLast(order);
-        idToOrder.put(order.getOrderID(), order);
         availableVolume += order.getVolume();
+        hiddenVolume += hiddenVolumeOf(order);
     }
 
     /**
      * tradeVolume iterates over all trades in the Tick's internal order queue
-     * and executes them until the needed volume is executed. Execution is done in FOFO order
+     * and executes them until the needed volume is executed. Execution is done in FIFO order
+     * Fully executed orders are removed from the tick and the order index of the matching engine and are recycled.
+     * An iceberg order whose displayed slice is executed is refilled from its hidden volume and moved to the back of
+     * the queue in O(1) instead, the refilled slice is added to the available volume of the tick
      * @param volume volume to be removed from this tick (using trades in FIFO order)
+     * @param taker incoming order which is executed against this tick
+     * @param book order book the tick belongs to, which is notified of each fill
+     * @return number of fully executed orders which were removed from the tick
+     */
+    int tradeVolume(long volume, Order taker, OrderBook book){
+        return tradeVolume(volume, taker, tickValue, book);
+    }
+
+    /**
+     * Executes volume from the tick at the specified price, used by the uncross of an auction
+     * @param taker order which is executed against this tick, null if the fills are reported by the opposite tick
+     * @see #tradeVolume(long, Order, OrderBook)
      */
-    void tradeVolume(double volume){
+    int tradeVolume(long volume, Order taker, long price, OrderBook book){
 
-        double neededVolume = volume;
-        Iterator<Order> it = orderQueue.iterator();
+        long neededVolume = volume;
+        int removed = 0;
 
-        while (neededVolume > 0 && it.hasNext()){
-            Order nextOrder = it.next();
+        // the queue is consumed from its head, no iterator is needed
+        while (neededVolume > 0 && !orderQueue.isEmpty()){
+            Order nextOrder = orderQueue.getFirst();
 
             // order is fully matched and removed from the Tick
             if (nextOrder.getVolume() <= neededVolume){
-                neededVolume -= nextOrder.getVolume();
+                long filled = nextOrder.getVolume();
+                neededVolume -= filled;
                 nextOrder.tradeTotalVolume();
+                if (taker != null)
+                    book.onFill(taker, nextOrder, price, filled);
+                orderQueue.removeFirst();
+
+                // refilled iceberg orders lose their time priority
+                if (nextOrder instanceof IcebergOrder && ((IcebergOrder) nextOrder).getHiddenVolume() > 0){
+                    long replenished = ((IcebergOrder) nextOrder).replenish();
+                    availableVolume += replenished;
+                    hiddenVolume -= replenished;
+                    orderQueue.addLast(nextOrder);
+                    book.onReplenish();
+                    continue;
+                }
 
                 // remove executed order from queue
-                idToOrder.remove(nextOrder.getOrderID());
-                it.remove();
+                book.getOrderIndex().remove(nextOrder.getOrderID());
+                nextOrder.recycle();
+                removed++;
 
                 // partially execute the order and leave inside the order queue
             } else {
                 nextOrder.tradeVolume(neededVolume);
+                if (taker != null)
+                    book.onFill(taker, nextOrder, price, neededVolume);
                 break;
             }
         }
         // update available volume inside tick
         this.availableVolume -= volume;
+        return removed;
     }
 
     /**
-     * Removes the total volume from this tick
+     * @param order order resting in this tick which is deleted
      */
-    void tradeTotalVolume(){
-        tradeVolume(this.availableVolume);
+    void deleteOrder(Order order){
+        orderQueue.remove(order);
+        availableVolume -= order.getVolume();
+        hiddenVolume -= hiddenVolumeOf(order);
     }
 
     /**
-     * @param order order to be deleted
+     * Reduces the volume of an order resting in this tick in place, the order keeps its place in the queue
+     * @param volume new (total) volume of the order, not larger than its current (total) volume
      */
-    void deleteOrder(Order order){
-        Order o = idToOrder.remove(order.getOrderID());
-        orderQueue.remove(o);
+    void reduceVolume(Order order, long volume){
+        long displayed = order.getVolume();
+        long hidden = hiddenVolumeOf(order);
+        order.reduceVolume(volume);
+        availableVolume -= displayed - order.getVolume();
+        hiddenVolume -= hidden - hiddenVolumeOf(order);
+    }
+
+    private static long hiddenVolumeOf(Order order){
+        return order instanceof IcebergOrder ? ((IcebergOrder) order).getHiddenVolume() : 0;
+    }
+
+    /**
+     * @param order order to be located
+     * @return the tick in which the order is resting or null if the order is not resting in any tick
+     */
+    static Tick of(Order order){
+        // queue is declared in this package and is only visible through the node type
+        DoublyLinkedQueueNode<Order> node = order;
+        return node.queue instanceof OrderQueue ? ((OrderQueue) node.queue).tick : null;
+    }
+
+    /**
+     * queue of all orders of a tick which allows an order to locate its tick in O(1)
+     */
+    static final class OrderQueue extends DoublyLinkedQueue<Order> {
+        final Tick tick;
+
+        OrderQueue(Tick tick){
+            this.tick = tick;
+        }
     }
 
     // getter & helper methods
     boolean isEmpty(){return orderQueue.isEmpty();}
-    double getTickValue() {return this.tickValue;}
-    double getAvailableVolume() {return this.availableVolume;}
+    DoublyLinkedQueue<Order> getOrders() {return orderQueue;}
+    long getTickValue() {return this.tickValue;}
+    long getAvailableVolume() {return this.availableVolume;}
+
+    /**
+     * @return displayed and hidden volume of the tick, which is executed if the tick is traded through
+     */
+    long getExecutableVolume() {return availableVolume + hiddenVolume;}
 }
@@ -0,0 +1,159 @@
+package MatchingEngine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary journal of all fills executed by the matching engine.
+ * <br>
+ * Each fill is appended as a fixed width record to a memory mapped segment file. Once a segment is full,
+ * the journal rolls over to the next segment. Appending a fill therefore neither formats a string nor
+ * performs a system call, the operating system writes the mapped pages to disk in the background.
+ * <br>
+ * Record layout (little endian, <code>RECORD_SIZE</code> bytes)
+ * <ul>
+ * <li>sequence (long) - starts at 1, a record with sequence 0 marks the end of the journal</li>
+ * <li>timestamp (long) - epoch milliseconds of the fill</li>
+ * <li>productID (int) - id of the instrument, see <code>MatchingEngine.getProductID</code></li>
+ * <li>takerOrderID (int) - ID of the incoming order</li>
+ * <li>makerOrderID (int) - ID of the resting order</li>
+ * <li>takerSide (int) - 0 if the incoming order is a buy order, 1 if it is a sell order</li>
+ * <li>price (long) - scaled price of the fill</li>
+ * <li>volume (long) - scaled volume of the fill</li>
+ * </ul>
+ * Segments are named <code>fills-000000.journal</code>, <code>fills-000001.journal</code>, ... and can be
+ * read with <code>TradeJournalReader</code>. A journal opened on a directory of an earlier run continues its segments
+ * <pre>{@code
+ * TradeJournal journal = new TradeJournal("journal", 64 << 20);
+ * matcher.setTradeJournal(journal);
+ * ...
+ * journal.close();}</pre>
+ */
+public class TradeJournal implements Closeable {
+    public static final int RECORD_SIZE = 48;
+
+    static final int SEQUENCE_OFFSET = 0;
+    static final int TIMESTAMP_OFFSET = 8;
+    static final int PRODUCT_OFFSET = 16;
+    static final int TAKER_OFFSET = 20;
+    static final int MAKER_OFFSET = 24;
+    static final int SIDE_OFFSET = 28;
+    static final int PRICE_OFFSET = 32;
+    static final int VOLUME_OFFSET = 40;
+
+    private final Path directory;
+    private final int segmentSize;
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int position;
+    private long sequence;
+
+    /**
+     * Opens the journal in the specified directory. If the directory already contains a journal, new fills are
+     * appended after its last complete fill and their sequence continues, such that the fills of earlier runs
+     * remain available for reconciliation
+     * @param directory directory which holds the segment files
+     * @param segmentSize size of a new segment file in bytes, rounded down to a multiple of <code>RECORD_SIZE</code>
+     * @throws IOException if the directory or a segment cannot be created or opened
+     */
+    public TradeJournal(String directory, int segmentSize) throws IOException {
+        if (segmentSize < RECORD_SIZE)
+            throw new IllegalArgumentException("segment must hold at least one record");
+
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+        Files.createDirectories(this.directory);
+
+        // continue in the last existing segment, after its last record with a sequence
+        int last = 0;
+        while (Files.exists(segmentFile(this.directory, last + 1)))
+            last++;
+        segmentIndex = last;
+        segment = map(segmentFile(this.directory, last));
+        long recorded;
+        while (position < segment.capacity() && (recorded = segment.getLong(position + SEQUENCE_OFFSET)) != 0) {
+            sequence = recorded;
+            position += RECORD_SIZE;
+        }
+    }
+
+    /**
+     * Appends a fill to the journal
+     * @param productID id of the instrument
+     * @param takerOrderID ID of the incoming order
+     * @param makerOrderID ID of the resting order
+     * @param takerSide side of the incoming order
+     * @param price scaled price of the fill
+     * @param volume scaled volume of the fill
+     */
+    public void append(int productID, int takerOrderID, int makerOrderID, OrderType takerSide, long price, long volume) {
+        if (position == segment.capacity()) {
+            try {
+                nextSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        MappedByteBuffer buffer = segment;
+        int p = position;
+        buffer.putLong(p + TIMESTAMP_OFFSET, System.currentTimeMillis());
+        buffer.putInt(p + PRODUCT_OFFSET, productID);
+        buffer.putInt(p + TAKER_OFFSET, takerOrderID);
+        buffer.putInt(p + MAKER_OFFSET, makerOrderID);
+        buffer.putInt(p + SIDE_OFFSET, takerSide.ordinal());
+        buffer.putLong(p + PRICE_OFFSET, price);
+        buffer.putLong(p + VOLUME_OFFSET, volume);
+        // the sequence is written last, a record is only complete once its sequence is set
+        buffer.putLong(p + SEQUENCE_OFFSET, ++sequence);
+        position = p + RECORD_SIZE;
+    }
+
+    private void nextSegment() throws IOException {
+        segment.force();
+        segmentIndex++;
+        segment = map(segmentFile(directory, segmentIndex));
+        position = 0;
+    }
+
+    // maps an existing segment with its own size, which holds whole records, or creates a new segment
+    private MappedByteBuffer map(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size == 0 ? segmentSize : size - size % RECORD_SIZE);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    static Path segmentFile(Path directory, int index) {
+        return directory.resolve(String.format("fills-%06d.journal", index));
+    }
+
+    /**
+     * Forces all appended fills of the current segment to the storage device
+     */
+    public void flush() {
+        segment.force();
+    }
+
+    /**
+     * @return sequence number of the last appended fill
+     */
+    public long getSequence() {return sequence;}
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
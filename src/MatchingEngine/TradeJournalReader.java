@@ -0,0 +1,91 @@
+package MatchingEngine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static MatchingEngine.TradeJournal.*;
+
+/**
+ * Streams the fills of a <code>TradeJournal</code> back in the order they were appended.
+ * <br>
+ * The reader is a cursor over the mapped segment files, <code>next</code> moves it to the next fill
+ * whose fields are then available through the getter methods. No objects are created per fill
+ * <pre>{@code
+ * try (TradeJournalReader reader = new TradeJournalReader("journal")) {
+ *     while (reader.next())
+ *         reconcile(reader.getTakerOrderID(), reader.getMakerOrderID(), reader.getPrice(), reader.getVolume());
+ * }}</pre>
+ */
+public class TradeJournalReader implements Closeable {
+    private static final OrderType[] SIDES = OrderType.values();
+
+    private final Path directory;
+    private MappedByteBuffer segment;
+    private int segmentIndex = -1;
+    private int position;
+    private int record = -1;
+
+    /**
+     * @param directory directory which holds the segment files of the journal
+     * @throws IOException if the first segment cannot be opened
+     */
+    public TradeJournalReader(String directory) throws IOException {
+        this.directory = Paths.get(directory);
+        nextSegment();
+    }
+
+    /**
+     * Moves the reader to the next fill
+     * @return true if another fill is available, false if the end of the journal is reached
+     * @throws IOException if the next segment cannot be opened
+     */
+    public boolean next() throws IOException {
+        while (segment != null) {
+            if (position + RECORD_SIZE <= segment.capacity()) {
+                if (segment.getLong(position + SEQUENCE_OFFSET) == 0)
+                    return false;
+                record = position;
+                position += RECORD_SIZE;
+                return true;
+            }
+            nextSegment();
+        }
+        return false;
+    }
+
+    private void nextSegment() throws IOException {
+        segmentIndex++;
+        Path file = TradeJournal.segmentFile(directory, segmentIndex);
+        if (!Files.exists(file)) {
+            segment = null;
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        position = 0;
+    }
+
+    // getter methods for the fill the reader currently points to
+    public long getSequence() {return segment.getLong(record + SEQUENCE_OFFSET);}
+    public long getTimestamp() {return segment.getLong(record + TIMESTAMP_OFFSET);}
+    public int getProductID() {return segment.getInt(record + PRODUCT_OFFSET);}
+    public int getTakerOrderID() {return segment.getInt(record + TAKER_OFFSET);}
+    public int getMakerOrderID() {return segment.getInt(record + MAKER_OFFSET);}
+    public OrderType getTakerSide() {return SIDES[segment.getInt(record + SIDE_OFFSET)];}
+    public long getPrice() {return segment.getLong(record + PRICE_OFFSET);}
+    public long getVolume() {return segment.getLong(record + VOLUME_OFFSET);}
+
+    @Override
+    public void close() {
+        segment = null;
+    }
+}
@@ -1,54 +1,210 @@
 package MatchingEngine;
 
-import java.util.concurrent.ExecutorService;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintStream;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * MatchingEngine.TradeLogger is responsible for creating log entries on executed trades.
  * The log entries will be written using a separate thread so as not to block the matching engine
- * Log entries will only be created if the matched trade has the attribute <code>XXX<code/> set to true
+ * Log entries will only be created if the matched trade has the attribute <code>logTrade</code> set to true
+ * <br>
+ * The matching engine thread (single producer) stores each fill as a fixed size record in a pre-allocated
+ * ring buffer. A writer thread (single consumer) drains all available records in batches into a buffer
+ * which is written to a <code>FileChannel</code> once it is full or the ring buffer is empty. No objects are
+ * allocated and no locks are taken per fill.
+ * <br>
+ * Each record in the log file consists of the order ID (int) followed by the executed volume (long),
+ * both in little endian byte order
+ * <br>
+ * If the ring buffer is full, the behaviour of the matching engine is defined by the <code>BackpressurePolicy</code>
  */
-public class TradeLogger {
-    File logFile;
-    PrintStream printStream;
-    // log file writing is done on a separate thread
-    ExecutorService executor = Executors.newSingleThreadExecutor();
+public class TradeLogger implements TradeLoggerMBean {
+    /**
+     * Defines how the matching engine waits for free space if the ring buffer of the logger is full
+     */
+    public enum BackpressurePolicy {
+        /** park the matching engine thread until the writer has freed space */
+        BLOCK,
+        /** busy spin until the writer has freed space, lowest latency but occupies the core */
+        SPIN,
+        /** drop the fill, dropped fills are counted in <code>getDroppedTrades</code> */
+        DROP
+    }
+
+    static final int RECORD_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    // ring buffer of fill records, slot i holds the record with sequence number s for which (s & mask) == i
+    private final int[] orderIDs;
+    private final long[] volumes;
+    private final int mask;
+    private final BackpressurePolicy policy;
+
+    // sequence of the next record written by the producer, published to the writer after the record is stored
+    private final AtomicLong published = new AtomicLong();
+    // sequence of the next record read by the writer, all records before it may be overwritten
+    private final AtomicLong consumed = new AtomicLong();
+
+    // producer side state, only accessed by the matching engine thread
+    private long nextSequence;
+    private long cachedConsumed;
+    private long droppedTrades;
+
+    private final FileChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    /**
+     * Creates a logger with a ring buffer for 65536 fills which blocks the matching engine if the buffer is full
+     * @param fileName Name of the file that the Logger should create and write to
+     * @throws IOException if the file cannot be created
+     */
+    public TradeLogger(String fileName) throws IOException {
+        this(fileName, DEFAULT_CAPACITY, BackpressurePolicy.BLOCK);
+    }
 
     /**
      * @param fileName Name of the file that the Logger should create and write to
-     * @throws FileNotFoundException
+     * @param capacity number of fills the ring buffer can hold, rounded up to the next power of two
+     * @param policy behaviour of the matching engine if the ring buffer is full
+     * @throws IOException if the file cannot be created
      */
-    public TradeLogger(String fileName) throws FileNotFoundException {
-         logFile = new File(fileName);
-         printStream = new PrintStream(logFile);
+    public TradeLogger(String fileName, int capacity, BackpressurePolicy policy) throws IOException {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        this.orderIDs = new int[size];
+        this.volumes = new long[size];
+        this.mask = size - 1;
+        this.policy = policy;
+
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        // log file writing is done on a separate thread
+        writer = new Thread(this::drain, "trade-logger");
+        writer.start();
     }
 
     /**
-     * @param msg Message that is written to the logfile
+     * Stores a fill in the ring buffer. Must only be called from the thread running the matching engine
+     * @param orderID ID of the executed order
+     * @param volume executed (scaled) volume
      */
-    public void logTrade(String msg) {
-        executor.submit(() -> {
-            printStream.println(msg);
-        });
+    public void logTrade(int orderID, long volume) {
+        long sequence = nextSequence;
+        if (sequence - cachedConsumed > mask && !awaitSpace(sequence))
+            return;
+
+        int i = (int) sequence & mask;
+        orderIDs[i] = orderID;
+        volumes[i] = volume;
+        nextSequence = sequence + 1;
+        published.lazySet(sequence + 1);
+    }
+
+    // waits according to the backpressure policy until the slot of sequence is free, returns false if the fill is dropped
+    private boolean awaitSpace(long sequence) {
+        while (sequence - (cachedConsumed = consumed.get()) > mask) {
+            switch (policy) {
+                case DROP:
+                    droppedTrades++;
+                    return false;
+                case SPIN:
+                    Thread.onSpinWait();
+                    break;
+                default:
+                    LockSupport.parkNanos(1_000);
+            }
+        }
+        return true;
+    }
+
+    // writer thread, copies all published records into the write buffer in batches
+    private void drain() {
+        long read = consumed.get();
+        while (true) {
+            long available = published.get();
+            if (read == available) {
+                if (!running) {
+                    // the producer has stopped, all of its records are visible now
+                    if (published.get() == read)
+                        break;
+                    continue;
+                }
+                flush();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            for (; read < available; read++) {
+                int i = (int) read & mask;
+                if (writeBuffer.remaining() < RECORD_SIZE)
+                    flush();
+                writeBuffer.putInt(orderIDs[i]).putLong(volumes[i]);
+            }
+            consumed.lazySet(read);
+        }
+        flush();
+    }
+
+    private void flush() {
+        writeBuffer.flip();
+        try {
+            while (writeBuffer.hasRemaining())
+                channel.write(writeBuffer);
+        } catch (IOException e) {
+            // records are discarded from now on such that the matching engine is never blocked by a failed writer
+            failure = e;
+        }
+        writeBuffer.clear();
     }
 
+    /**
+     * @return number of fills which were dropped because the ring buffer was full (only with <code>BackpressurePolicy.DROP</code>)
+     */
+    @Override
+    public long getDroppedTrades() {return droppedTrades;}
+
+    /**
+     * @return number of fills which were logged but not yet copied by the writer thread
+     */
+    @Override
+    public long getBacklog() {return published.get() - consumed.get();}
+
     /**
      * Shuts down the thread which writes to logFiles
-     * The thread will wait for the completion of its tasks for a maximum of 600 seconds.
-     * If it is not done by then, it will be aborted
+     * The thread writes all fills which are still in the ring buffer before it terminates
+     * @throws UncheckedIOException if writing to the log file failed
      */
     public void shutdown() {
-        executor.shutdown();
+        running = false;
         try {
-            // wait maximum 10 seconds to finish tasks before thread is shut down
-            executor.awaitTermination(600, TimeUnit.SECONDS);
+            writer.join();
         } catch (InterruptedException e) {
-            //
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (failure == null)
+                failure = e;
         }
-        printStream.close();
+        if (failure != null)
+            throw new UncheckedIOException(failure);
     }
 }
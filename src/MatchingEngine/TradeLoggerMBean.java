@@ -0,0 +1,9 @@
+package MatchingEngine;
+
+/**
+ * JMX view of a <code>TradeLogger</code>
+ */
+public interface TradeLoggerMBean {
+    long getBacklog();
+    long getDroppedTrades();
+}
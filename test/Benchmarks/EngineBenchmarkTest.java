@@ -0,0 +1,50 @@
+package Benchmarks;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Every benchmark scenario passes its own verification on small and deep books, and the harness reports the
+ * percentiles of its samples
+ */
+public class EngineBenchmarkTest {
+
+    public void testScenariosVerifyTheirRounds() {
+        for (String name : EngineBenchmark.SCENARIOS) {
+            Harness.Scenario scenario = EngineBenchmark.scenario(name);
+            // the second round starts again from newly created books
+            assertEquals(Harness.round(scenario, 10, 16).length, Harness.round(scenario, 10, 16).length, name);
+            Harness.round(scenario, 1_000, 1);
+        }
+    }
+
+    public void testFailedVerificationFailsTheRound() {
+        Harness.Scenario scenario = new Harness.Scenario() {
+            @Override
+            int prepare(int depth, int instruments) {
+                return depth;
+            }
+
+            @Override
+            void operation(int i) {}
+
+            @Override
+            void verify() {
+                throw new IllegalStateException("not executed");
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> Harness.round(scenario, 10, 1));
+        assertThrows(IllegalArgumentException.class, () -> EngineBenchmark.scenario("unknown"));
+    }
+
+    public void testPercentiles() {
+        long[] samples = new long[1_000];
+        for (int i = 0; i < samples.length; i++)
+            samples[i] = i + 1;
+        assertEquals(1, Harness.percentile(samples, 0));
+        assertEquals(500, Harness.percentile(samples, 0.5));
+        assertEquals(990, Harness.percentile(samples, 0.99));
+        assertEquals(999, Harness.percentile(samples, 0.999));
+        assertEquals(1_000, Harness.percentile(samples, 1));
+        assertEquals(7, Harness.percentile(new long[]{7}, 0.999));
+    }
+}
@@ -0,0 +1,95 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.*;
+
+import java.util.Arrays;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Amended and modified orders keep their place in the queue only if their volume is reduced, are executed if their
+ * new limit crosses the book and are only changed in the book of their own product
+ */
+public class AmendTest {
+
+    public void testVolumeReductionKeepsPriority() {
+        MatchingEngine matcher = new MatchingEngine();
+        FillRecorder fills = new FillRecorder();
+        matcher.setExecutionListener(fills);
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        matcher.addOrder(new LimitOrder("A", 2, 100, 10, OrderType.SELL, false));
+        assertTrue(matcher.amend(1, 4, 100), "amended");
+        matcher.addOrder(new LimitOrder("A", 3, 100, 6, OrderType.BUY, false));
+        assertEquals(Arrays.asList(FillRecorder.fill(3, 1, 100, 4), FillRecorder.fill(3, 2, 100, 2)), fills.fills);
+    }
+
+    public void testVolumeIncreaseMovesToTheEndOfTheQueue() {
+        MatchingEngine matcher = new MatchingEngine();
+        FillRecorder fills = new FillRecorder();
+        matcher.setExecutionListener(fills);
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        matcher.addOrder(new LimitOrder("A", 2, 100, 10, OrderType.SELL, false));
+        matcher.modifyOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false),
+                new LimitOrder("A", 1, 100, 12, OrderType.SELL, false));
+        matcher.addOrder(new LimitOrder("A", 3, 100, 12, OrderType.BUY, false));
+        assertEquals(Arrays.asList(FillRecorder.fill(3, 2, 100, 10), FillRecorder.fill(3, 1, 100, 2)), fills.fills);
+        assertEquals(10, matcher.getDepth("A", OrderType.SELL, 1).get(0).getVolume());
+    }
+
+    public void testCrossingAmendmentIsExecuted() {
+        MatchingEngine matcher = new MatchingEngine();
+        FillRecorder fills = new FillRecorder();
+        matcher.setExecutionListener(fills);
+        matcher.addOrder(new LimitOrder("A", 1, 105, 10, OrderType.SELL, false));
+        matcher.addOrder(new LimitOrder("A", 2, 100, 15, OrderType.BUY, false));
+        assertTrue(matcher.amend(2, 15, 105), "amended");
+        assertEquals(Arrays.asList(FillRecorder.fill(2, 1, 105, 10)), fills.fills);
+        assertTrue(matcher.getDepth("A", OrderType.SELL, 1).isEmpty(), "asks are executed");
+        assertEquals(5, matcher.getDepth("A", OrderType.BUY, 1).get(0).getVolume());
+        assertEquals(105, matcher.getDepth("A", OrderType.BUY, 1).get(0).getPrice());
+    }
+
+    public void testCrossingIcebergExecutesItsTotalVolume() {
+        MatchingEngine matcher = new MatchingEngine();
+        FillRecorder fills = new FillRecorder();
+        matcher.setExecutionListener(fills);
+        matcher.addOrder(new LimitOrder("A", 1, 105, 1_000, OrderType.SELL, false));
+        matcher.addOrder(new IcebergOrder("A", 2, 100, 500, 100, OrderType.BUY, false));
+        assertTrue(matcher.amend(2, 500, 105), "amended");
+        assertEquals(500, fills.filledVolume);
+        assertEquals(500, matcher.getDepth("A", OrderType.SELL, 1).get(0).getVolume());
+        assertTrue(matcher.getDepth("A", OrderType.BUY, 1).isEmpty(), "iceberg is executed");
+    }
+
+    public void testModificationOnlyAppliesToTheBookOfTheProduct() {
+        MatchingEngine matcher = new MatchingEngine();
+        FillRecorder fills = new FillRecorder();
+        matcher.setExecutionListener(fills);
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        matcher.openBook("B", FixedPoint.INTEGER);
+        matcher.modifyOrder(new LimitOrder("B", 1, 100, 10, OrderType.SELL, false),
+                new LimitOrder("B", 1, 90, 4, OrderType.SELL, false));
+        assertEquals(Arrays.asList(new PriceLevel(100, 10)), matcher.getDepth("A", OrderType.SELL, 5));
+        assertTrue(matcher.getDepth("B", OrderType.SELL, 5).isEmpty(), "order of A modified in book B");
+        matcher.modifyOrder(new LimitOrder("C", 1, 100, 10, OrderType.SELL, false),
+                new LimitOrder("C", 1, 90, 4, OrderType.SELL, false));
+        assertFalse(matcher.instruments.contains("C"), "book created by a modification");
+
+        matcher.modifyOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false),
+                new LimitOrder("A", 1, 90, 4, OrderType.SELL, false));
+        assertEquals(Arrays.asList(new PriceLevel(90, 4)), matcher.getDepth("A", OrderType.SELL, 5));
+        assertTrue(fills.fills.isEmpty(), "fills");
+    }
+
+    public void testModificationMustMatchTheRestingOrder() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        assertThrows(IllegalArgumentException.class, () -> matcher.modifyOrder(
+                new LimitOrder("A", 1, 100, 10, OrderType.SELL, false), new LimitOrder("B", 1, 100, 10, OrderType.SELL, false)));
+        assertThrows(IllegalArgumentException.class, () -> matcher.modifyOrder(
+                new LimitOrder("A", 1, 100, 10, OrderType.SELL, false), new LimitOrder("A", 1, 100, 0, OrderType.SELL, false)));
+        assertThrows(IllegalArgumentException.class, () -> matcher.modifyOrder(
+                new LimitOrder("A", 1, 100, 10, OrderType.BUY, false), new LimitOrder("A", 1, 100, 5, OrderType.BUY, false)));
+        assertEquals(10, matcher.getDepth("A", OrderType.SELL, 1).get(0).getVolume());
+    }
+}
@@ -0,0 +1,59 @@
+package MatchingEngine;
+
+import java.util.Objects;
+
+/**
+ * Assertions of the tests of all packages, a failed assertion throws an <code>AssertionError</code>
+ */
+public final class Assertions {
+    private Assertions() {}
+
+    /**
+     * Code which is expected to throw, see <code>assertThrows</code>
+     */
+    public interface Executable {
+        void run() throws Exception;
+    }
+
+    public static void assertTrue(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+
+    public static void assertFalse(boolean condition, String message) {
+        assertTrue(!condition, message);
+    }
+
+    public static void assertEquals(Object expected, Object actual) {
+        assertEquals(expected, actual, "");
+    }
+
+    public static void assertEquals(Object expected, Object actual, String message) {
+        if (!Objects.equals(expected, actual))
+            throw new AssertionError((message.isEmpty() ? "" : message + ": ") + "expected " + expected + " but was " + actual);
+    }
+
+    public static void assertEquals(long expected, long actual) {
+        assertEquals(expected, actual, "");
+    }
+
+    public static void assertEquals(long expected, long actual, String message) {
+        if (expected != actual)
+            throw new AssertionError((message.isEmpty() ? "" : message + ": ") + "expected " + expected + " but was " + actual);
+    }
+
+    public static void assertNull(Object actual, String message) {
+        assertTrue(actual == null, message + ": expected null but was " + actual);
+    }
+
+    public static <T extends Throwable> T assertThrows(Class<T> type, Executable executable) {
+        try {
+            executable.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e))
+                return type.cast(e);
+            throw new AssertionError("expected " + type.getSimpleName() + " but " + e + " was thrown", e);
+        }
+        throw new AssertionError("expected " + type.getSimpleName() + " but nothing was thrown");
+    }
+}
@@ -0,0 +1,179 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * The equilibrium found by binary search equals the equilibrium of a pass over all limit prices, and the uncross
+ * executes its volume at its price from the best levels inwards
+ */
+public class AuctionTest {
+
+    // volume of the levels executable at the price, bids at or above and asks at or below it
+    private static long volumeAt(List<PriceLevel> levels, long price, boolean bids) {
+        long volume = 0;
+        for (PriceLevel level : levels) {
+            if (bids ? level.getPrice() >= price : level.getPrice() <= price)
+                volume += level.getVolume();
+        }
+        return volume;
+    }
+
+    // equilibrium by the rules of MatchingEngine.getIndicativePrice, evaluated at every limit price of the crossed range
+    static AuctionPrice equilibrium(List<PriceLevel> bids, List<PriceLevel> asks, boolean traded, long lastPrice) {
+        if (bids.isEmpty() || asks.isEmpty() || bids.get(0).getPrice() < asks.get(0).getPrice())
+            return null;
+        List<AuctionPrice> best = new ArrayList<>();
+        List<PriceLevel> levels = new ArrayList<>(bids);
+        levels.addAll(asks);
+        for (PriceLevel level : levels) {
+            long price = level.getPrice();
+            if (price < asks.get(0).getPrice() || price > bids.get(0).getPrice())
+                continue;
+            long demand = volumeAt(bids, price, true);
+            long supply = volumeAt(asks, price, false);
+            AuctionPrice candidate = new AuctionPrice(price, Math.min(demand, supply), demand - supply);
+            if (best.stream().anyMatch(p -> p.getPrice() == price))
+                continue;
+            if (!best.isEmpty()) {
+                AuctionPrice current = best.get(0);
+                if (candidate.getVolume() < current.getVolume() || (candidate.getVolume() == current.getVolume()
+                        && Math.abs(candidate.getSurplus()) > Math.abs(current.getSurplus())))
+                    continue;
+                if (candidate.getVolume() > current.getVolume() || Math.abs(candidate.getSurplus()) < Math.abs(current.getSurplus()))
+                    best.clear();
+            }
+            best.add(candidate);
+        }
+        best.sort((a, b) -> Long.compare(a.getPrice(), b.getPrice()));
+        if (best.stream().allMatch(p -> p.getSurplus() > 0))
+            return best.get(best.size() - 1);
+        if (best.stream().allMatch(p -> p.getSurplus() < 0) || !traded)
+            return best.get(0);
+        AuctionPrice closest = best.get(0);
+        for (AuctionPrice price : best) {
+            if (Math.abs(price.getPrice() - lastPrice) < Math.abs(closest.getPrice() - lastPrice))
+                closest = price;
+        }
+        return closest;
+    }
+
+    // removes the volume from the best levels inwards
+    private static List<PriceLevel> consume(List<PriceLevel> levels, long volume) {
+        List<PriceLevel> remaining = new ArrayList<>();
+        for (PriceLevel level : levels) {
+            long executed = Math.min(volume, level.getVolume());
+            volume -= executed;
+            if (level.getVolume() > executed)
+                remaining.add(new PriceLevel(level.getPrice(), level.getVolume() - executed));
+        }
+        return remaining;
+    }
+
+    public void testEquilibriumMatchesAPassOverAllPrices() {
+        for (int mode = 0; mode < 2; mode++) {
+            MatchingEngine matcher = new MatchingEngine();
+            if (mode == 0)
+                matcher.openBook("X", FixedPoint.INTEGER);
+            else
+                matcher.openBook("X", FixedPoint.INTEGER, 80, 120, 1);
+            FillRecorder fills = new FillRecorder();
+            matcher.setExecutionListener(fills);
+            Random random = new Random(30 + mode);
+            int orderID = 1;
+            for (int round = 0; round < 200; round++) {
+                // continuous trading sets the last traded price of the next auction
+                for (int i = 0; i < 20; i++) {
+                    OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                    matcher.addOrder(new LimitOrder("X", orderID++, 90 + random.nextInt(21), 1 + random.nextInt(10), side, false));
+                }
+                matcher.startAuction("X");
+                for (int i = 0; i < 40; i++) {
+                    if (random.nextInt(5) == 0) {
+                        matcher.cancel(1 + random.nextInt(orderID));
+                    } else {
+                        OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                        matcher.addOrder(new LimitOrder("X", orderID++, 85 + random.nextInt(31), 1 + random.nextInt(20), side, false));
+                    }
+                    OrderBook book = matcher.instruments.get("X");
+                    AuctionPrice expected = equilibrium(matcher.getDepth("X", OrderType.BUY, 1_000),
+                            matcher.getDepth("X", OrderType.SELL, 1_000), book.hasTraded(), book.getLastTradePrice());
+                    assertEquals(expected, matcher.getIndicativePrice("X"), "indicative price in round " + round);
+                }
+
+                List<PriceLevel> bids = matcher.getDepth("X", OrderType.BUY, 1_000);
+                List<PriceLevel> asks = matcher.getDepth("X", OrderType.SELL, 1_000);
+                AuctionPrice indicative = matcher.getIndicativePrice("X");
+                int fillCount = fills.fills.size();
+                long filled = fills.filledVolume;
+                AuctionPrice uncrossed = matcher.uncross("X");
+                assertEquals(indicative, uncrossed, "uncross in round " + round);
+                assertFalse(matcher.isCallPhase("X"), "call phase after the uncross");
+                if (uncrossed == null)
+                    continue;
+                assertEquals(uncrossed.getVolume(), fills.filledVolume - filled, "executed volume in round " + round);
+                for (String fill : fills.fills.subList(fillCount, fills.fills.size()))
+                    assertTrue(fill.contains("@" + uncrossed.getPrice() + "x"), fill + " at the equilibrium " + uncrossed);
+                assertEquals(consume(bids, uncrossed.getVolume()), matcher.getDepth("X", OrderType.BUY, 1_000));
+                assertEquals(consume(asks, uncrossed.getVolume()), matcher.getDepth("X", OrderType.SELL, 1_000));
+            }
+        }
+    }
+
+    public void testSurplusDecidesBetweenPricesOfTheSameVolume() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.openBook("A", FixedPoint.INTEGER);
+        matcher.startAuction("A");
+        matcher.addOrder(new LimitOrder("A", 1, 102, 100, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("A", 2, 99, 60, OrderType.SELL, false));
+        // the bid side keeps a surplus at both prices, the highest is taken
+        assertEquals(new AuctionPrice(102, 60, 40), matcher.getIndicativePrice("A"));
+        matcher.addOrder(new LimitOrder("A", 3, 100, 100, OrderType.SELL, false));
+        assertEquals(new AuctionPrice(100, 100, -60), matcher.getIndicativePrice("A"));
+    }
+
+    public void testCallPhaseCollectsOrdersWithoutMatching() {
+        MatchingEngine matcher = new MatchingEngine();
+        FillRecorder fills = new FillRecorder();
+        matcher.setExecutionListener(fills);
+        matcher.openBook("A", FixedPoint.INTEGER);
+        matcher.startAuction("A");
+        assertThrows(IllegalArgumentException.class, () -> matcher.startAuction("A"));
+        matcher.addOrder(new LimitOrder("A", 1, 101, 10, OrderType.BUY, false));
+        matcher.addOrder(new IcebergOrder("A", 2, 100, 12, 2, OrderType.SELL, false));
+        matcher.addOrder(new StopOrder("A", 3, 100, 5, OrderType.SELL, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> matcher.addOrder(new MarketOrder("A", 4, 5, OrderType.BUY, false)));
+        assertThrows(IllegalArgumentException.class,
+                () -> matcher.addOrder(new KillOrFillOrder("A", 101, 5, 5, OrderType.BUY, false)));
+        assertTrue(fills.fills.isEmpty(), "fills in the call phase");
+        // the hidden volume of the iceberg is executable in the auction
+        assertEquals(new AuctionPrice(100, 10, -2), matcher.getIndicativePrice("A"));
+
+        matcher.addOrder(new LimitOrder("A", 5, 90, 5, OrderType.BUY, false));
+        assertEquals(new AuctionPrice(100, 10, -2), matcher.uncross("A"));
+        // the stop triggered by the equilibrium price is released before the uncross is reported
+        assertEquals(Arrays.asList("trigger 3 100", "uncross A 10@100 surplus -2"), fills.events);
+        assertEquals(FillRecorder.fill(3, 5, 90, 5), fills.fills.get(fills.fills.size() - 1));
+        assertEquals(Arrays.asList(new PriceLevel(100, 2)), matcher.getDepth("A", OrderType.SELL, 5));
+        assertThrows(IllegalArgumentException.class, () -> matcher.uncross("A"));
+    }
+
+    public void testUncrossOfABookWhichIsNotCrossed() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.openBook("A", FixedPoint.INTEGER);
+        matcher.startAuction("A");
+        matcher.addOrder(new LimitOrder("A", 1, 99, 10, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("A", 2, 100, 10, OrderType.SELL, false));
+        assertNull(matcher.getIndicativePrice("A"), "indicative price");
+        assertNull(matcher.uncross("A"), "equilibrium");
+        matcher.addOrder(new MarketOrder("A", 3, 4, OrderType.BUY, false));
+        assertEquals(6, matcher.getDepth("A", OrderType.SELL, 1).get(0).getVolume());
+    }
+}
@@ -0,0 +1,166 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.LimitOrder;
+import MatchingEngine.OrderTypes.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Batches are applied book by book with the same result as applying the commands of each book one by one,
+ * and a failed batch leaves no state behind which affects the next one
+ */
+public class BatchTest {
+    private static final String[] PRODUCTS = {"A", "B", "C"};
+
+    private static List<String> fills(BatchResult result) {
+        List<String> fills = new ArrayList<>();
+        for (int f = 0; f < result.getFillCount(); f++)
+            fills.add(result.getCommandIndex(f) + ":" + FillRecorder.fill(result.getTakerOrderID(f), result.getMakerOrderID(f),
+                    result.getPrice(f), result.getVolume(f)));
+        return fills;
+    }
+
+    public void testBatchMatchesCommandsAppliedOneByOne() {
+        MatchingEngine batched = new MatchingEngine();
+        MatchingEngine single = new MatchingEngine();
+        FillRecorder singleFills = new FillRecorder();
+        single.setExecutionListener(singleFills);
+        CommandBatch batch = new CommandBatch(4);
+        BatchResult result = new BatchResult(4);
+        Random random = new Random(6);
+        int nextOrderID = 1;
+
+        for (int round = 0; round < 200; round++) {
+            batch.clear();
+            // the orders of the batch are executed by the batched engine, the other engine receives copies
+            Order[] copies = new Order[50];
+            for (int c = 0; c < 50; c++) {
+                String product = PRODUCTS[random.nextInt(PRODUCTS.length)];
+                int action = random.nextInt(10);
+                if (action < 6) {
+                    long limit = 95 + random.nextInt(11);
+                    long volume = 1 + random.nextInt(10);
+                    OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                    batch.add(new LimitOrder(product, nextOrderID, limit, volume, side, false));
+                    copies[c] = new LimitOrder(product, nextOrderID++, limit, volume, side, false);
+                } else if (action < 8) {
+                    batch.cancel(product, 1 + random.nextInt(nextOrderID));
+                } else {
+                    batch.amend(product, 1 + random.nextInt(nextOrderID), 1 + random.nextInt(10), 95 + random.nextInt(11));
+                }
+            }
+            batched.submit(batch, result);
+
+            // the commands of each book in their order inside the batch, books may be applied in any order
+            for (String product : PRODUCTS) {
+                List<String> expectedFills = new ArrayList<>();
+                for (int i = 0; i < batch.size(); i++) {
+                    if (!batch.products[i].equals(product))
+                        continue;
+                    int fills = singleFills.fills.size();
+                    byte status = apply(single, batch, i, copies[i]);
+                    assertEquals(status, result.getStatus(i), "status of command " + i);
+                    for (String fill : singleFills.fills.subList(fills, singleFills.fills.size()))
+                        expectedFills.add(i + ":" + fill);
+                }
+                List<String> actualFills = new ArrayList<>();
+                for (String fill : fills(result)) {
+                    if (batch.products[Integer.parseInt(fill.substring(0, fill.indexOf(':')))].equals(product))
+                        actualFills.add(fill);
+                }
+                assertEquals(expectedFills, actualFills, "fills of " + product + " in round " + round);
+            }
+        }
+        for (String product : PRODUCTS) {
+            assertEquals(single.getDepth(product, OrderType.BUY, 20), batched.getDepth(product, OrderType.BUY, 20));
+            assertEquals(single.getDepth(product, OrderType.SELL, 20), batched.getDepth(product, OrderType.SELL, 20));
+        }
+    }
+
+    // applies a command of the batch with the single order methods and returns its status
+    private static byte apply(MatchingEngine matcher, CommandBatch batch, int i, Order order) {
+        int orderID = batch.orderIDs[i];
+        if (batch.types[i] == CommandBatch.ADD) {
+            if (matcher.orderIndex.containsKey(orderID))
+                return BatchResult.REJECTED;
+            matcher.addOrder(order);
+            return BatchResult.DONE;
+        }
+        OrderBook book = matcher.instruments.get(batch.products[i]);
+        Order resting = matcher.orderIndex.get(orderID);
+        if (book == null || resting == null || resting.getProductID() != book.getProductID())
+            return BatchResult.NOT_FOUND;
+        if (batch.types[i] == CommandBatch.CANCEL)
+            matcher.cancel(orderID);
+        else
+            matcher.amend(orderID, batch.volumes[i], batch.limits[i]);
+        return BatchResult.DONE;
+    }
+
+    public void testStatusOfRejectedAndMissingCommands() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        CommandBatch batch = new CommandBatch(4);
+        batch.add(new LimitOrder("A", 1, 99, 10, OrderType.SELL, false));
+        batch.cancel("B", 1);
+        batch.amend("X", 1, 5, 100);
+        batch.amend("A", 1, 5, 100);
+        BatchResult result = new BatchResult(4);
+        matcher.submit(batch, result);
+
+        assertEquals(BatchResult.REJECTED, result.getStatus(0));
+        assertEquals(BatchResult.NOT_FOUND, result.getStatus(1));
+        assertEquals(BatchResult.NOT_FOUND, result.getStatus(2));
+        assertEquals(BatchResult.DONE, result.getStatus(3));
+        assertEquals(5, matcher.getDepth("A", OrderType.SELL, 1).get(0).getVolume());
+        assertFalse(matcher.instruments.contains("X"), "book created by an amendment");
+    }
+
+    public void testAmendedVolumeIsValidatedOnEveryPath() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        assertThrows(IllegalArgumentException.class, () -> new CommandBatch(1).amend("A", 1, 0, 100));
+        assertThrows(IllegalArgumentException.class, () -> matcher.amend(1, 0, 100));
+        assertThrows(IllegalArgumentException.class, () -> matcher.amend(2, -1, 100));
+        assertEquals(10, matcher.getDepth("A", OrderType.SELL, 1).get(0).getVolume());
+    }
+
+    public void testFailedBatchDoesNotTagTheBooks() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.setExecutionListener(new ExecutionListener() {
+            @Override
+            public void onFill(String product, int takerOrderID, int makerOrderID, OrderType takerSide, long price, long volume) {
+                if (takerOrderID == 4)
+                    throw new IllegalStateException("listener failed");
+            }
+        });
+        CommandBatch batch = new CommandBatch(4);
+        batch.add(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        batch.add(new LimitOrder("B", 2, 100, 10, OrderType.SELL, false));
+        batch.add(new LimitOrder("A", 3, 100, 4, OrderType.BUY, false));
+        batch.add(new LimitOrder("B", 4, 100, 4, OrderType.BUY, false));
+        BatchResult failed = new BatchResult(4);
+        assertThrows(IllegalStateException.class, () -> matcher.submit(batch, failed));
+        for (String product : new String[]{"A", "B"}) {
+            assertEquals(-1, matcher.instruments.get(product).batchGroup);
+            assertNull(matcher.instruments.get(product).batchResult, "result of book " + product);
+        }
+        int failedFills = failed.getFillCount();
+
+        // B was the second group of the failed batch and is the first group of the next batch
+        batch.clear();
+        batch.add(new LimitOrder("B", 5, 101, 3, OrderType.SELL, false));
+        batch.add(new LimitOrder("A", 6, 100, 3, OrderType.BUY, false));
+        BatchResult result = new BatchResult(4);
+        matcher.submit(batch, result);
+        assertEquals(BatchResult.DONE, result.getStatus(0));
+        assertEquals(BatchResult.DONE, result.getStatus(1));
+        assertEquals(java.util.Arrays.asList("1:" + FillRecorder.fill(6, 1, 100, 3)), fills(result));
+        assertEquals(failedFills, failed.getFillCount());
+        assertEquals(3, matcher.getDepth("B", OrderType.SELL, 2).get(1).getVolume());
+    }
+}
@@ -0,0 +1,68 @@
+package MatchingEngine;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Replaying the command journal into a new engine rebuilds its books with the same fills and time priorities
+ */
+public class CommandJournalTest {
+    private static final int SEGMENT_SIZE = 1 << 16;
+
+    // the fills of further commands depend on the time priority of the resting orders
+    static void assertSamePriorities(RandomFlow flow, MatchingEngine expected, MatchingEngine actual) {
+        FillRecorder expectedFills = new FillRecorder();
+        FillRecorder actualFills = new FillRecorder();
+        expected.setExecutionListener(expectedFills);
+        actual.setExecutionListener(actualFills);
+        flow.continuation(99).run(expected, 5_000);
+        flow.continuation(99).run(actual, 5_000);
+        assertEquals(expectedFills.fills, actualFills.fills, "fills after the replay");
+    }
+
+    public void testReplayRebuildsTheBooks() throws Exception {
+        try (TempDirectory directory = new TempDirectory()) {
+            MatchingEngine matcher = new MatchingEngine();
+            FillRecorder fills = new FillRecorder();
+            matcher.setExecutionListener(fills);
+            CommandJournal journal = new CommandJournal(directory.toString(), SEGMENT_SIZE);
+            matcher.setCommandJournal(journal);
+            RandomFlow.openBooks(matcher);
+            RandomFlow flow = new RandomFlow(1);
+            flow.run(matcher, 30_000);
+            matcher.setCommandJournal(null);
+            journal.close();
+            assertTrue(java.nio.file.Files.exists(CommandJournal.segmentFile(directory.path, 3)), "several segments");
+
+            MatchingEngine replayed = new MatchingEngine();
+            FillRecorder replayedFills = new FillRecorder();
+            replayed.setExecutionListener(replayedFills);
+            CommandJournal.replay(directory.toString(), replayed);
+            assertEquals(fills.fills, replayedFills.fills, "replayed fills");
+            assertEquals(fills.events, replayedFills.events, "replayed events");
+            assertEquals(flow.state(matcher), flow.state(replayed));
+            assertSamePriorities(flow, matcher, replayed);
+        }
+    }
+
+    public void testReopenedJournalAppendsAfterItsLastCommand() throws Exception {
+        try (TempDirectory directory = new TempDirectory()) {
+            MatchingEngine matcher = new MatchingEngine();
+            CommandJournal journal = new CommandJournal(directory.toString(), SEGMENT_SIZE);
+            matcher.setCommandJournal(journal);
+            RandomFlow.openBooks(matcher);
+            RandomFlow flow = new RandomFlow(2);
+            flow.run(matcher, 5_000);
+            journal.close();
+
+            journal = new CommandJournal(directory.toString(), SEGMENT_SIZE);
+            matcher.setCommandJournal(journal);
+            flow.run(matcher, 5_000);
+            matcher.setCommandJournal(null);
+            journal.close();
+
+            MatchingEngine replayed = new MatchingEngine();
+            CommandJournal.replay(directory.toString(), replayed);
+            assertEquals(flow.state(matcher), flow.state(replayed));
+        }
+    }
+}
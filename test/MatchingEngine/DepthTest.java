@@ -0,0 +1,84 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.LimitOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Depth requests of any number of levels, served from the cached view of each side, return the same levels as
+ * the reference book after every change of the book
+ */
+public class DepthTest {
+
+    private static List<PriceLevel> top(List<PriceLevel> levels, int n) {
+        return new ArrayList<>(levels.subList(0, Math.min(n, levels.size())));
+    }
+
+    public void testCachedDepthMatchesTheReferenceBook() {
+        for (int mode = 0; mode < 2; mode++) {
+            MatchingEngine matcher = new MatchingEngine();
+            if (mode == 0)
+                matcher.openBook("X", FixedPoint.INTEGER);
+            else
+                matcher.openBook("X", FixedPoint.INTEGER, 90, 110, 1);
+            ReferenceBook reference = new ReferenceBook();
+            Random random = new Random(40 + mode);
+            int orderID = 1;
+            for (int i = 0; i < 30_000; i++) {
+                int action = random.nextInt(10);
+                if (action < 6) {
+                    long limit = 80 + random.nextInt(41);
+                    long volume = 1 + random.nextInt(20);
+                    OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                    matcher.addOrder(new LimitOrder("X", orderID, limit, volume, side, false));
+                    reference.add(orderID++, limit, volume, side);
+                } else if (action < 9) {
+                    int cancelled = 1 + random.nextInt(orderID);
+                    assertEquals(reference.cancel(cancelled), matcher.cancel(cancelled), "cancel " + cancelled);
+                } else {
+                    int amended = 1 + random.nextInt(orderID);
+                    long volume = 1 + random.nextInt(20);
+                    long limit = 80 + random.nextInt(41);
+                    assertEquals(reference.amend(amended, volume, limit), matcher.amend(amended, volume, limit), "amend " + amended);
+                }
+
+                // requests of different sizes, including none, grow and reuse the cache of each side
+                OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                int n = random.nextInt(12);
+                assertEquals(top(reference.depth(side), n), matcher.getDepth("X", side, n), n + " levels after command " + i);
+                long[] prices = new long[random.nextInt(4)];
+                long[] volumes = new long[prices.length];
+                int levels = matcher.getDepth("X", side, prices, volumes);
+                List<PriceLevel> expected = top(reference.depth(side), prices.length);
+                assertEquals(expected.size(), levels);
+                for (int l = 0; l < levels; l++)
+                    assertEquals(expected.get(l), new PriceLevel(prices[l], volumes[l]));
+            }
+        }
+    }
+
+    public void testRequestForNoLevelsKeepsTheBookUsable() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        assertTrue(matcher.getDepth("A", OrderType.SELL, 0).isEmpty(), "no levels requested");
+        assertEquals(0, matcher.getDepth("A", OrderType.SELL, new long[0], new long[0]));
+        // a level change after a request for no levels must not read a cached level
+        matcher.addOrder(new LimitOrder("A", 2, 99, 5, OrderType.SELL, false));
+        matcher.addOrder(new LimitOrder("A", 3, 101, 5, OrderType.SELL, false));
+        assertEquals(Arrays.asList(new PriceLevel(99, 5), new PriceLevel(100, 10)), matcher.getDepth("A", OrderType.SELL, 2));
+    }
+
+    public void testInvalidRequestsAreRejected() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.openBook("A", FixedPoint.INTEGER);
+        assertThrows(IllegalArgumentException.class, () -> matcher.getDepth("A", OrderType.BUY, -1));
+        assertThrows(IllegalArgumentException.class, () -> matcher.getDepth("B", OrderType.BUY, 0));
+        assertThrows(IllegalArgumentException.class, () -> matcher.getDepth("B", OrderType.BUY, 5));
+        assertThrows(IllegalArgumentException.class, () -> matcher.getDepth("A", OrderType.BUY, new long[2], new long[1]));
+    }
+}
@@ -0,0 +1,55 @@
+package MatchingEngine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Execution listener which records the fills and events of an engine in the order they are reported
+ */
+class FillRecorder implements ExecutionListener {
+    // the listener of a sharded engine is called by the shard threads
+    final List<String> fills = Collections.synchronizedList(new ArrayList<>());
+    final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    volatile long filledVolume;
+
+    static String fill(int takerOrderID, int makerOrderID, long price, long volume) {
+        return takerOrderID + "/" + makerOrderID + "@" + price + "x" + volume;
+    }
+
+    @Override
+    public void onFill(String product, int takerOrderID, int makerOrderID, OrderType takerSide, long price, long volume) {
+        fills.add(fill(takerOrderID, makerOrderID, price, volume));
+        filledVolume += volume;
+    }
+
+    @Override
+    public void onCancel(int orderID, boolean cancelled) {
+        events.add("cancel " + orderID + " " + cancelled);
+    }
+
+    @Override
+    public void onAmend(int orderID, boolean amended) {
+        events.add("amend " + orderID + " " + amended);
+    }
+
+    @Override
+    public void onKill(int orderID, long volume) {
+        events.add("kill " + orderID + " " + volume);
+    }
+
+    @Override
+    public void onTrigger(int orderID, long lastPrice) {
+        events.add("trigger " + orderID + " " + lastPrice);
+    }
+
+    @Override
+    public void onUncross(String product, AuctionPrice equilibrium) {
+        events.add("uncross " + product + " " + equilibrium);
+    }
+
+    @Override
+    public void onReject(int orderID, String reason) {
+        events.add("reject " + orderID);
+    }
+}
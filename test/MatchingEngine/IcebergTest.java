@@ -0,0 +1,112 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Resting iceberg orders only display their peak, are refilled from their hidden volume and then lose their place
+ * in the queue, while incoming icebergs and liquidity checks use their total volume
+ */
+public class IcebergTest {
+
+    public void testBooksMatchLikeTheReferenceBook() {
+        for (int mode = 0; mode < 2; mode++) {
+            MatchingEngine matcher = new MatchingEngine();
+            if (mode == 0)
+                matcher.openBook("X", FixedPoint.INTEGER);
+            else
+                matcher.openBook("X", FixedPoint.INTEGER, 90, 110, 1);
+            FillRecorder recorder = new FillRecorder();
+            matcher.setExecutionListener(recorder);
+            ReferenceBook reference = new ReferenceBook();
+            Random random = new Random(20 + mode);
+            int orderID = 1;
+            for (int i = 0; i < 50_000; i++) {
+                int action = random.nextInt(10);
+                long limit = 85 + random.nextInt(31);
+                long volume = 1 + random.nextInt(30);
+                OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                if (action < 3) {
+                    long peak = 1 + random.nextInt(8);
+                    matcher.addOrder(new IcebergOrder("X", orderID, limit, volume, peak, side, false));
+                    reference.add(orderID++, limit, volume, peak, side);
+                } else if (action < 7) {
+                    matcher.addOrder(new LimitOrder("X", orderID, limit, volume, side, false));
+                    reference.add(orderID++, limit, volume, side);
+                } else {
+                    int cancelled = 1 + random.nextInt(orderID);
+                    assertEquals(reference.cancel(cancelled), matcher.cancel(cancelled), "cancel " + cancelled);
+                }
+                if (i % 500 == 0) {
+                    assertEquals(reference.fills, recorder.fills, "fills in mode " + mode);
+                    assertEquals(reference.depth(OrderType.BUY), matcher.getDepth("X", OrderType.BUY, 100), "bids in mode " + mode);
+                    assertEquals(reference.depth(OrderType.SELL), matcher.getDepth("X", OrderType.SELL, 100), "asks in mode " + mode);
+                }
+            }
+            assertEquals(reference.fills, recorder.fills, "fills in mode " + mode);
+        }
+    }
+
+    public void testRefilledSliceMovesToTheBackOfTheQueue() {
+        MatchingEngine matcher = new MatchingEngine();
+        FillRecorder fills = new FillRecorder();
+        matcher.setExecutionListener(fills);
+        matcher.addOrder(new IcebergOrder("A", 1, 100, 10, 4, OrderType.SELL, false));
+        matcher.addOrder(new LimitOrder("A", 2, 100, 5, OrderType.SELL, false));
+        assertEquals(Arrays.asList(new PriceLevel(100, 9)), matcher.getDepth("A", OrderType.SELL, 5));
+
+        matcher.addOrder(new LimitOrder("A", 3, 100, 4, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("A", 4, 100, 6, OrderType.BUY, false));
+        assertEquals(Arrays.asList(FillRecorder.fill(3, 1, 100, 4), FillRecorder.fill(4, 2, 100, 5),
+                FillRecorder.fill(4, 1, 100, 1)), fills.fills);
+        IcebergOrder iceberg = (IcebergOrder) matcher.orderIndex.get(1);
+        assertEquals(3, iceberg.getVolume());
+        assertEquals(2, iceberg.getHiddenVolume());
+        assertEquals(Arrays.asList(new PriceLevel(100, 3)), matcher.getDepth("A", OrderType.SELL, 5));
+        assertEquals(1, matcher.instruments.get("A").getMetrics().get(BookMetrics.Counter.REPLENISHMENTS));
+    }
+
+    public void testIncomingIcebergIsExecutedWithItsTotalVolume() {
+        MatchingEngine matcher = new MatchingEngine();
+        FillRecorder fills = new FillRecorder();
+        matcher.setExecutionListener(fills);
+        matcher.addOrder(new LimitOrder("A", 1, 100, 7, OrderType.SELL, false));
+        matcher.addOrder(new IcebergOrder("A", 2, 100, 20, 5, OrderType.BUY, false));
+        assertEquals(Arrays.asList(FillRecorder.fill(2, 1, 100, 7)), fills.fills);
+        assertEquals(Arrays.asList(new PriceLevel(100, 5)), matcher.getDepth("A", OrderType.BUY, 5));
+        assertEquals(8, ((IcebergOrder) matcher.orderIndex.get(2)).getHiddenVolume());
+    }
+
+    public void testFillOrKillCountsTheHiddenVolume() {
+        MatchingEngine matcher = new MatchingEngine();
+        FillRecorder fills = new FillRecorder();
+        matcher.setExecutionListener(fills);
+        matcher.addOrder(new IcebergOrder("A", 1, 100, 10, 2, OrderType.SELL, false));
+        matcher.addOrder(new KillOrFillOrder("A", 100, 2, 8, OrderType.BUY, false));
+        assertEquals(8, fills.filledVolume);
+        assertEquals(4, fills.fills.size());
+        matcher.addOrder(new KillOrFillOrder("A", 100, 3, 3, OrderType.BUY, false));
+        assertEquals(Arrays.asList("kill 3 3"), fills.events);
+        assertEquals(Arrays.asList(new PriceLevel(100, 2)), matcher.getDepth("A", OrderType.SELL, 5));
+    }
+
+    public void testReducedIcebergKeepsItsPlaceAndLosesHiddenVolumeFirst() {
+        MatchingEngine matcher = new MatchingEngine();
+        FillRecorder fills = new FillRecorder();
+        matcher.setExecutionListener(fills);
+        matcher.addOrder(new IcebergOrder("A", 1, 100, 10, 4, OrderType.SELL, false));
+        matcher.addOrder(new LimitOrder("A", 2, 100, 5, OrderType.SELL, false));
+        assertTrue(matcher.amend(1, 6, 100), "amended");
+        IcebergOrder iceberg = (IcebergOrder) matcher.orderIndex.get(1);
+        assertEquals(4, iceberg.getVolume());
+        assertEquals(2, iceberg.getHiddenVolume());
+
+        matcher.addOrder(new LimitOrder("A", 3, 100, 4, OrderType.BUY, false));
+        assertEquals(Arrays.asList(FillRecorder.fill(3, 1, 100, 4)), fills.fills);
+        assertEquals(Arrays.asList(new PriceLevel(100, 7)), matcher.getDepth("A", OrderType.SELL, 5));
+    }
+}
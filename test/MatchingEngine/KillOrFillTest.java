@@ -0,0 +1,78 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.*;
+
+import java.util.Random;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Fill-or-kill orders are executed exactly if the opposite side holds their volume up to their limit, whether the
+ * cumulative volume is tracked from the start or only once the first fill-or-kill order arrives
+ */
+public class KillOrFillTest {
+
+    // volume of the side up to the limit, summed over the levels of the depth
+    private static long volumeUpTo(MatchingEngine matcher, String product, OrderType side, long limit) {
+        long volume = 0;
+        for (PriceLevel level : matcher.getDepth(product, side, 1_000)) {
+            if (side == OrderType.SELL ? level.getPrice() <= limit : level.getPrice() >= limit)
+                volume += level.getVolume();
+        }
+        return volume;
+    }
+
+    private static void run(MatchingEngine matcher, String product, long seed) {
+        FillRecorder fills = new FillRecorder();
+        matcher.setExecutionListener(fills);
+        Random random = new Random(seed);
+        // order IDs are unique across the books of the engine
+        int first = (int) seed * 10_000;
+        for (int id = first; id < first + 5_000; id++) {
+            OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+            long limit = 90 + random.nextInt(21);
+            long volume = 1 + random.nextInt(30);
+            if (random.nextInt(4) == 0) {
+                OrderType opposite = side == OrderType.BUY ? OrderType.SELL : OrderType.BUY;
+                boolean executable = volumeUpTo(matcher, product, opposite, limit) >= volume;
+                long filled = fills.filledVolume;
+                matcher.addOrder(new KillOrFillOrder(product, limit, id, volume, side, false));
+                assertEquals(executable ? volume : 0, fills.filledVolume - filled, "filled volume of order " + id);
+                assertEquals(!executable, fills.events.contains("kill " + id + " " + volume), "kill of order " + id);
+            } else if (random.nextInt(3) == 0 && id > first + 10) {
+                matcher.cancel(id - 1 - random.nextInt(10));
+            } else {
+                // passive orders keep a spread around 100
+                limit = side == OrderType.BUY ? limit - 10 : limit + 10;
+                matcher.addOrder(new LimitOrder(product, id, limit, volume, side, false));
+            }
+        }
+    }
+
+    public void testFillOrKillWithLazyTracking() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.openBook("A", FixedPoint.INTEGER);
+        matcher.openBook("B", FixedPoint.INTEGER, 80, 120, 1);
+        run(matcher, "A", 1);
+        run(matcher, "B", 2);
+    }
+
+    public void testFillOrKillWithTrackingEnabledUpFront() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.openBook("A", FixedPoint.INTEGER);
+        matcher.openBook("B", FixedPoint.INTEGER, 80, 120, 1);
+        matcher.trackCumulativeVolume("A");
+        matcher.trackCumulativeVolume("B");
+        for (String product : new String[]{"A", "B"}) {
+            assertTrue(matcher.instruments.get(product).getBidSide().tracksCumulativeVolume(), product + " bids track volume");
+            assertTrue(matcher.instruments.get(product).getAskSide().tracksCumulativeVolume(), product + " asks track volume");
+        }
+        run(matcher, "A", 1);
+        run(matcher, "B", 2);
+    }
+
+    public void testTrackingRequiresABook() {
+        MatchingEngine matcher = new MatchingEngine();
+        assertThrows(IllegalArgumentException.class, () -> matcher.trackCumulativeVolume("A"));
+    }
+}
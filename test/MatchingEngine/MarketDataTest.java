@@ -0,0 +1,139 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.LimitOrder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * The incremental depth updates rebuild the depth of every book, with gap free sequence numbers per instrument,
+ * and a restored book is published as one event of new levels under its own instrument
+ */
+public class MarketDataTest {
+
+    /**
+     * Depth listener which applies the updates to a copy of each book and records violations of the protocol,
+     * which cannot be asserted on the publisher thread
+     */
+    private static final class DepthMirror implements DepthListener {
+        final Map<Integer, TreeMap<Long, Long>> bids = new HashMap<>();
+        final Map<Integer, TreeMap<Long, Long>> asks = new HashMap<>();
+        final Map<Integer, Long> sequences = new HashMap<>();
+        final Map<Integer, Integer> events = new HashMap<>();
+        final Map<Integer, Boolean> open = new HashMap<>();
+        final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        final List<Byte> actions = new ArrayList<>();
+
+        @Override
+        public void onUpdate(int productID, long sequence, OrderType side, byte action, long price, long volume, boolean endOfEvent) {
+            long expected = sequences.getOrDefault(productID, 0L);
+            if (sequence != expected)
+                errors.add("sequence " + sequence + " of instrument " + productID + " instead of " + expected);
+            sequences.put(productID, sequence + 1);
+            actions.add(action);
+
+            TreeMap<Long, Long> levels = (side == OrderType.BUY ? bids : asks).computeIfAbsent(productID, id -> new TreeMap<>());
+            boolean exists = levels.containsKey(price);
+            if (action == NEW ? exists : !exists)
+                errors.add("action " + action + " for " + side + " level " + price + " of instrument " + productID);
+            if (action == DELETE)
+                levels.remove(price);
+            else
+                levels.put(price, volume);
+
+            open.put(productID, !endOfEvent);
+            if (endOfEvent)
+                events.merge(productID, 1, Integer::sum);
+        }
+
+        List<PriceLevel> depth(int productID, OrderType side) {
+            List<PriceLevel> depth = new ArrayList<>();
+            TreeMap<Long, Long> levels = (side == OrderType.BUY ? bids : asks).getOrDefault(productID, new TreeMap<>());
+            for (Map.Entry<Long, Long> level : (side == OrderType.BUY ? levels.descendingMap() : levels).entrySet())
+                depth.add(new PriceLevel(level.getKey(), level.getValue()));
+            return depth;
+        }
+
+        void assertSameDepth(MatchingEngine matcher, String product) {
+            int productID = matcher.getProductID(product);
+            assertEquals(matcher.getDepth(product, OrderType.BUY, 1_000), depth(productID, OrderType.BUY), product + " bids");
+            assertEquals(matcher.getDepth(product, OrderType.SELL, 1_000), depth(productID, OrderType.SELL), product + " asks");
+            assertFalse(open.getOrDefault(productID, false), "event of " + product + " is not ended");
+        }
+    }
+
+    public void testUpdatesRebuildTheDepth() {
+        MatchingEngine matcher = new MatchingEngine();
+        DepthMirror mirror = new DepthMirror();
+        MarketDataPublisher publisher = new MarketDataPublisher(1 << 10, TradeLogger.BackpressurePolicy.BLOCK, mirror);
+        matcher.setMarketDataPublisher(publisher);
+        RandomFlow.openBooks(matcher);
+        new RandomFlow(60).run(matcher, 30_000);
+        publisher.shutdown();
+
+        assertEquals(0, publisher.getDroppedUpdates());
+        assertEquals(Collections.emptyList(), mirror.errors);
+        // updates of book C are not published when it is closed, only the books which stay open are compared
+        mirror.assertSameDepth(matcher, "A");
+        mirror.assertSameDepth(matcher, "B");
+    }
+
+    public void testSweepIsPublishedAsOneEvent() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.openBook("A", FixedPoint.INTEGER);
+        DepthMirror mirror = new DepthMirror();
+        MarketDataPublisher publisher = new MarketDataPublisher(64, TradeLogger.BackpressurePolicy.BLOCK, mirror);
+        matcher.setMarketDataPublisher(publisher);
+        for (int id = 1; id <= 5; id++)
+            matcher.addOrder(new LimitOrder("A", id, 100 + id, 10, OrderType.SELL, false));
+        matcher.addOrder(new LimitOrder("A", 6, 104, 35, OrderType.BUY, false));
+        publisher.shutdown();
+
+        int productID = matcher.getProductID("A");
+        assertEquals(6, (int) mirror.events.get(productID));
+        // three deleted levels and the changed fourth level, the executed buy order never rested
+        assertEquals(9, (long) mirror.sequences.get(productID));
+        assertEquals(DepthListener.DELETE, (byte) mirror.actions.get(5));
+        assertEquals(DepthListener.CHANGE, (byte) mirror.actions.get(8));
+        mirror.assertSameDepth(matcher, "A");
+    }
+
+    public void testRestoredBooksArePublishedUnderTheirOwnInstrument() throws Exception {
+        try (TempDirectory directory = new TempDirectory()) {
+            MatchingEngine matcher = new MatchingEngine();
+            RandomFlow.openBooks(matcher);
+            RandomFlow flow = new RandomFlow(61);
+            flow.run(matcher, 10_000);
+            matcher.snapshot(directory.file("books.snapshot")).join();
+
+            MatchingEngine recovered = new MatchingEngine();
+            DepthMirror mirror = new DepthMirror();
+            MarketDataPublisher publisher = new MarketDataPublisher(1 << 10, TradeLogger.BackpressurePolicy.BLOCK, mirror);
+            recovered.setMarketDataPublisher(publisher);
+            recovered.restore(directory.file("books.snapshot"));
+            // the first command after the restore only publishes the changes of its own book
+            recovered.addOrder(new LimitOrder("B", 1_000_000, 50, 1, OrderType.BUY, false));
+            publisher.shutdown();
+
+            assertEquals(Collections.emptyList(), mirror.errors);
+            for (String product : recovered.instruments.products()) {
+                int productID = recovered.getProductID(product);
+                mirror.assertSameDepth(recovered, product);
+                int levels = recovered.getDepth(product, OrderType.BUY, 1_000).size() + recovered.getDepth(product, OrderType.SELL, 1_000).size();
+                if (product.equals("B")) {
+                    assertEquals(2, (int) mirror.events.get(productID));
+                    assertEquals(levels, (long) mirror.sequences.get(productID));
+                } else if (levels > 0) {
+                    assertEquals(1, (int) mirror.events.get(productID));
+                    assertEquals(levels, (long) mirror.sequences.get(productID));
+                }
+            }
+        }
+    }
+}
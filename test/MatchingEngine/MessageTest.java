@@ -0,0 +1,145 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.LimitOrder;
+import MatchingEngine.OrderTypes.MarketOrder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Binary messages are applied like the equivalent order objects, and rejected messages neither take an order from
+ * the message pool nor change the caller's buffer
+ */
+public class MessageTest {
+    private static final String[] PRODUCTS = {"A", "B"};
+
+    public void testMessagesMatchLikeOrderObjects() {
+        MatchingEngine messages = new MatchingEngine();
+        MatchingEngine objects = new MatchingEngine();
+        FillRecorder messageFills = new FillRecorder();
+        FillRecorder objectFills = new FillRecorder();
+        messages.setExecutionListener(messageFills);
+        objects.setExecutionListener(objectFills);
+        for (String product : PRODUCTS) {
+            messages.openBook(product, FixedPoint.INTEGER);
+            objects.openBook(product, FixedPoint.INTEGER);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        MessageEncoder encoder = new MessageEncoder();
+        Random random = new Random(50);
+        int orderID = 1;
+        for (int round = 0; round < 2_000; round++) {
+            // encode a run of messages, apply the objects and then decode the run
+            encoder.wrap(buffer, 0);
+            for (int i = 0; i < 20; i++) {
+                String product = PRODUCTS[random.nextInt(PRODUCTS.length)];
+                int instrument = messages.getProductID(product);
+                OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                long price = 95 + random.nextInt(11);
+                long quantity = 1 + random.nextInt(10);
+                int action = random.nextInt(10);
+                if (action < 5) {
+                    encoder.newOrder(instrument, orderID, side, MessageDecoder.LIMIT, price, quantity, false);
+                    objects.addOrder(new LimitOrder(product, orderID++, price, quantity, side, false));
+                } else if (action < 6) {
+                    encoder.newOrder(instrument, orderID, side, MessageDecoder.MARKET, 0, quantity, false);
+                    objects.addOrder(new MarketOrder(product, orderID++, quantity, side, false));
+                } else if (action < 8) {
+                    int cancelled = 1 + random.nextInt(orderID);
+                    encoder.cancel(instrument, cancelled);
+                    boolean rests = objects.orderIndex.containsKey(cancelled) && objects.orderIndex.get(cancelled).getProduct().equals(product);
+                    objectFills.onCancel(cancelled, rests && objects.cancel(cancelled));
+                } else {
+                    int amended = 1 + random.nextInt(orderID);
+                    encoder.amend(instrument, amended, price, quantity);
+                    boolean rests = objects.orderIndex.containsKey(amended) && objects.orderIndex.get(amended).getProduct().equals(product);
+                    objectFills.onAmend(amended, rests && objects.amend(amended, quantity, price));
+                }
+            }
+            int end = encoder.offset();
+            for (int offset = 0; offset < end; )
+                offset += messages.onMessage(buffer, offset);
+        }
+
+        assertEquals(objectFills.fills, messageFills.fills);
+        assertEquals(objectFills.events, messageFills.events);
+        for (String product : PRODUCTS) {
+            assertEquals(objects.getDepth(product, OrderType.BUY, 20), messages.getDepth(product, OrderType.BUY, 20));
+            assertEquals(objects.getDepth(product, OrderType.SELL, 20), messages.getDepth(product, OrderType.SELL, 20));
+        }
+        assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+    }
+
+    public void testRejectedOrdersDoNotTakeAnOrderFromThePool() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.openBook("A", FixedPoint.INTEGER);
+        int instrument = matcher.getProductID("A");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        MessageEncoder encoder = new MessageEncoder();
+        encoder.wrap(buffer, 0).newOrder(instrument, 1, OrderType.SELL, MessageDecoder.LIMIT, 100, 10, false);
+        matcher.onMessage(buffer, 0);
+        encoder.wrap(buffer, 0).cancel(instrument, 1);
+        matcher.onMessage(buffer, 0);
+        assertEquals(1, matcher.messagePool.available());
+
+        matcher.startAuction("A");
+        encoder.wrap(buffer, 0).newOrder(instrument, 2, OrderType.BUY, MessageDecoder.MARKET, 0, 10, false);
+        assertThrows(IllegalArgumentException.class, () -> matcher.onMessage(buffer, 0));
+        encoder.wrap(buffer, 0).newOrder(instrument, 3, OrderType.BUY, (byte) 7, 100, 10, false);
+        assertThrows(IllegalArgumentException.class, () -> matcher.onMessage(buffer, 0));
+        encoder.wrap(buffer, 0).newOrder(instrument, 4, OrderType.BUY, MessageDecoder.LIMIT, 100, 0, false);
+        assertThrows(IllegalArgumentException.class, () -> matcher.onMessage(buffer, 0));
+        assertEquals(1, matcher.messagePool.available());
+        assertEquals(0, matcher.instruments.get("A").getBidSide().orderCount);
+    }
+
+    public void testMalformedMessagesAreRejected() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.openBook("A", FixedPoint.INTEGER);
+        int instrument = matcher.getProductID("A");
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        MessageEncoder encoder = new MessageEncoder();
+
+        encoder.wrap(buffer, 0).cancel(instrument + 1, 1);
+        assertThrows(IllegalArgumentException.class, () -> matcher.onMessage(buffer, 0));
+        encoder.wrap(buffer, 0).amend(instrument, 1, 100, 0);
+        assertThrows(IllegalArgumentException.class, () -> matcher.onMessage(buffer, 0));
+
+        encoder.wrap(buffer, 0).cancel(instrument, 1);
+        ByteBuffer truncated = buffer.duplicate().limit(MessageDecoder.HEADER_LENGTH + MessageDecoder.CANCEL_LENGTH - 1);
+        assertThrows(IllegalArgumentException.class, () -> matcher.onMessage(truncated, 0));
+        // unknown template and schema, the header is little endian
+        buffer.order(ByteOrder.LITTLE_ENDIAN).putShort(2, (short) 9).order(ByteOrder.BIG_ENDIAN);
+        assertThrows(IllegalArgumentException.class, () -> matcher.onMessage(buffer, 0));
+        encoder.wrap(buffer, 0).cancel(instrument, 1);
+        buffer.order(ByteOrder.LITTLE_ENDIAN).putShort(4, (short) 2).order(ByteOrder.BIG_ENDIAN);
+        assertThrows(IllegalArgumentException.class, () -> matcher.onMessage(buffer, 0));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> encoder.wrap(buffer, 64 - MessageDecoder.HEADER_LENGTH).cancel(instrument, 1));
+    }
+
+    public void testCancelAndAmendOnlyApplyToTheBookOfTheInstrument() {
+        MatchingEngine matcher = new MatchingEngine();
+        FillRecorder listener = new FillRecorder();
+        matcher.setExecutionListener(listener);
+        matcher.openBook("A", FixedPoint.INTEGER);
+        matcher.openBook("B", FixedPoint.INTEGER);
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        MessageEncoder encoder = new MessageEncoder();
+
+        encoder.wrap(buffer, 0).cancel(matcher.getProductID("B"), 1);
+        matcher.onMessage(buffer, 0);
+        encoder.wrap(buffer, 0).amend(matcher.getProductID("B"), 1, 100, 5);
+        matcher.onMessage(buffer, 0);
+        encoder.wrap(buffer, 0).amend(matcher.getProductID("A"), 1, 100, 5);
+        matcher.onMessage(buffer, 0);
+        assertEquals(Arrays.asList("cancel 1 false", "amend 1 false", "amend 1 true"), listener.events);
+        assertEquals(5, matcher.getDepth("A", OrderType.SELL, 1).get(0).getVolume());
+    }
+}
@@ -0,0 +1,58 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.LimitOrder;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * The metrics and latencies of the books of all shards of a sharded engine are registered with one registry and
+ * recorder, which merge them over the shards
+ */
+public class MetricsTest {
+    private static final String[] PRODUCTS = {"A", "B", "C", "D", "E", "F", "G", "H"};
+
+    public void testMetricsAreMergedOverAllShards() {
+        MetricsRegistry registry = new MetricsRegistry();
+        LatencyRecorder recorder = new LatencyRecorder();
+        ShardedMatchingEngine matcher = new ShardedMatchingEngine(4, 16, null, registry, recorder);
+        int id = 0;
+        // per product: two resting sell orders, a buy order filling one of them and a cancellation of the other
+        for (String product : PRODUCTS) {
+            matcher.addOrder(new LimitOrder(product, ++id, 100, 10, OrderType.SELL, false));
+            matcher.addOrder(new LimitOrder(product, ++id, 101, 10, OrderType.SELL, false));
+            matcher.addOrder(new LimitOrder(product, ++id, 100, 10, OrderType.BUY, false));
+            matcher.cancel(product, id - 1);
+        }
+        matcher.shutdown();
+
+        java.util.Set<Integer> shards = new java.util.HashSet<>();
+        for (String product : PRODUCTS)
+            shards.add(matcher.getShard(product));
+        assertTrue(shards.size() > 1, "products are spread over several shards");
+        assertEquals(java.util.Set.of(PRODUCTS), registry.getProducts());
+
+        int books = PRODUCTS.length;
+        assertEquals(3L * books, registry.getTotal(BookMetrics.Counter.ORDERS_ADDED));
+        assertEquals(books, registry.getTotal(BookMetrics.Counter.FILLS));
+        assertEquals(0, registry.getTotalRestingOrders());
+        long perBook = 0;
+        for (String product : PRODUCTS)
+            perBook += registry.getBookMetrics(product).get(BookMetrics.Counter.ORDERS_DELETED);
+        assertEquals(perBook, registry.getTotal(BookMetrics.Counter.ORDERS_DELETED));
+        assertTrue(registry.dump().contains("total: books=" + books + ","), "dump of the totals");
+
+        assertEquals(2L * books, recorder.getLatency(LatencyRecorder.Operation.ADD).getCount());
+        assertEquals(books, recorder.getLatency(LatencyRecorder.Operation.MATCH).getCount());
+        assertEquals(books, recorder.getLatency(LatencyRecorder.Operation.CANCEL).getCount());
+        assertEquals(books, recorder.getFillsPerMatch().getCount());
+        assertEquals(1, recorder.getFillsPerMatch().getMax());
+    }
+
+    public void testEngineWithoutRegistry() {
+        ShardedMatchingEngine matcher = new ShardedMatchingEngine(2, 16, null);
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        matcher.shutdown();
+        assertEquals(0, new MetricsRegistry().getTotal(BookMetrics.Counter.ORDERS_ADDED));
+        assertEquals(0, new LatencyRecorder().getLatency(LatencyRecorder.Operation.ADD).getCount());
+    }
+}
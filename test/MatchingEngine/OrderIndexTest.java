@@ -0,0 +1,58 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.LimitOrder;
+
+import java.util.List;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Resting orders of all books are found by their order ID alone and leave the index once they stop resting
+ */
+public class OrderIndexTest {
+
+    public void testCancelAndAmendByOrderID() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("B", 2, 50, 10, OrderType.SELL, false));
+        assertTrue(matcher.amend(2, 4, 51), "amend in another book");
+        assertEquals(List.of(new PriceLevel(51, 4)), matcher.getDepth("B", OrderType.SELL, 5));
+        assertTrue(matcher.cancel(1), "cancel");
+        assertFalse(matcher.cancel(1), "cancelled twice");
+        assertFalse(matcher.amend(1, 5, 100), "amend cancelled order");
+        assertFalse(matcher.cancel(3), "unknown order");
+        assertEquals(List.of(), matcher.getDepth("A", OrderType.BUY, 5));
+    }
+
+    public void testDuplicateOrderIDsAreRejectedAcrossBooks() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.BUY, false));
+        assertThrows(IllegalArgumentException.class, () -> matcher.addOrder(new LimitOrder("B", 1, 100, 10, OrderType.BUY, false)));
+        // once executed, the ID can be used again
+        matcher.addOrder(new LimitOrder("A", 2, 100, 10, OrderType.SELL, false));
+        assertNull(matcher.orderIndex.get(1), "executed order");
+        assertNull(matcher.orderIndex.get(2), "executed taker");
+        matcher.addOrder(new LimitOrder("B", 1, 100, 10, OrderType.BUY, false));
+    }
+
+    public void testDeleteOrderOnlyDeletesTheOrderOfItsProduct() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.BUY, false));
+        matcher.deleteOrder(new LimitOrder("B", 1, 100, 10, OrderType.BUY, false));
+        assertEquals(List.of(new PriceLevel(100, 10)), matcher.getDepth("A", OrderType.BUY, 5));
+        matcher.deleteOrder(new LimitOrder("A", 1, 0, 1, OrderType.BUY, false));
+        assertEquals(List.of(), matcher.getDepth("A", OrderType.BUY, 5));
+    }
+
+    public void testClosedBooksLeaveTheIndex() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("B", 2, 100, 10, OrderType.BUY, false));
+        matcher.closeBook("A");
+        assertFalse(matcher.cancel(1), "order of closed book");
+        assertTrue(matcher.cancel(2), "order of open book");
+        matcher.addOrder(new LimitOrder("C", 3, 100, 10, OrderType.BUY, false));
+        matcher.closeAllBooks();
+        assertFalse(matcher.cancel(3), "order after closing all books");
+    }
+}
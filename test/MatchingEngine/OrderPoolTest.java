@@ -0,0 +1,98 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.LimitOrder;
+import MatchingEngine.OrderTypes.OrderPool;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Pooled orders return to their pool once they stop resting, such that the add / match / cancel cycle does not allocate
+ */
+public class OrderPoolTest {
+
+    public void testOrdersReturnOnceExecutedOrCancelled() {
+        MatchingEngine matcher = new MatchingEngine();
+        OrderPool pool = new OrderPool(4);
+        matcher.addOrder(pool.limitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        matcher.addOrder(pool.limitOrder("A", 2, 101, 10, OrderType.SELL, false));
+        assertEquals(2, pool.available());
+
+        // the market order and the fully executed maker return, the partially executed maker keeps resting
+        matcher.addOrder(pool.marketOrder("A", 3, 15, OrderType.BUY, false));
+        assertEquals(4, pool.available());
+        assertTrue(matcher.cancel(2), "cancel partially executed order");
+        assertEquals(5, pool.available());
+        assertFalse(matcher.cancel(2), "cancelled twice");
+        assertEquals(5, pool.available());
+    }
+
+    public void testInstancesAreReused() {
+        MatchingEngine matcher = new MatchingEngine();
+        OrderPool pool = new OrderPool(1);
+        LimitOrder first = pool.limitOrder("A", 1, 100, 10, OrderType.SELL, false);
+        matcher.addOrder(first);
+        matcher.cancel(1);
+        LimitOrder second = pool.limitOrder("A", 2, 99, 5, OrderType.BUY, false);
+        assertTrue(first == second, "instance is handed out again");
+        assertEquals(2, second.getOrderID());
+        assertEquals(99, second.getLimit());
+        assertEquals(5, second.getVolume());
+    }
+
+    public void testUnpooledOrdersAreNotAddedToAPool() {
+        MatchingEngine matcher = new MatchingEngine();
+        OrderPool pool = new OrderPool(0);
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        matcher.addOrder(pool.limitOrder("A", 2, 100, 10, OrderType.BUY, false));
+        assertEquals(1, pool.available());
+    }
+
+    public void testAddMatchCancelCycleDoesNotAllocate() {
+        for (boolean ladder : new boolean[]{false, true}) {
+            double bytesPerCycle = allocatedBytesPerCycle(ladder, 300_000, 200_000);
+            // a single object per cycle would be at least 16 bytes
+            assertTrue(bytesPerCycle < 1, (ladder ? "ladder" : "tree") + " allocates " + bytesPerCycle + " bytes / cycle");
+        }
+    }
+
+    // each cycle adds a passive bid and ask, executes a crossing order and cancels the orders of an older cycle
+    private static double allocatedBytesPerCycle(boolean ladder, int warmupCycles, int cycles) {
+        int depth = 1_000;
+        int n = warmupCycles + cycles;
+        Random random = new Random(42);
+        int[] prices = new int[3 * n];
+        int[] volumes = new int[3 * n];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = random.nextInt(depth);
+            volumes[i] = 1 + random.nextInt(1000);
+        }
+
+        MatchingEngine matcher = new MatchingEngine();
+        if (ladder)
+            matcher.openBook("1", FixedPoint.INTEGER, 0, 3 * depth, 1);
+        else
+            matcher.openBook("1", FixedPoint.INTEGER);
+        OrderPool pool = new OrderPool(10_000);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long before = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == warmupCycles)
+                before = threads.getThreadAllocatedBytes(thread);
+            int id = 3 * i;
+            matcher.addOrder(pool.limitOrder("1", id, depth + prices[id], volumes[id], OrderType.SELL, false));
+            matcher.addOrder(pool.limitOrder("1", id + 1, prices[id + 1], volumes[id + 1], OrderType.BUY, false));
+            matcher.addOrder(pool.limitOrder("1", id + 2, depth + prices[id + 2], volumes[id + 2], OrderType.BUY, false));
+            if (i >= 1_000) {
+                matcher.cancel(3 * (i - 1_000));
+                matcher.cancel(3 * (i - 1_000) + 1);
+                matcher.cancel(3 * (i - 1_000) + 2);
+            }
+        }
+        return (threads.getThreadAllocatedBytes(thread) - before) / (double) cycles;
+    }
+}
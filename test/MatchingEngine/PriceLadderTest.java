@@ -0,0 +1,80 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.LimitOrder;
+import MatchingEngine.OrderTypes.MarketOrder;
+
+import java.util.List;
+import java.util.Random;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Books with a price ladder must match exactly like books which only use the red black tree
+ */
+public class PriceLadderTest {
+
+    // tree only, ladder covering part of the prices, ladder with a grid which leaves every other price to the tree
+    private static MatchingEngine engine(int mode) {
+        MatchingEngine matcher = new MatchingEngine();
+        if (mode == 0)
+            matcher.openBook("X", FixedPoint.INTEGER);
+        else if (mode == 1)
+            matcher.openBook("X", FixedPoint.INTEGER, 90, 110, 1);
+        else
+            matcher.openBook("X", FixedPoint.INTEGER, 90, 110, 2);
+        return matcher;
+    }
+
+    public void testBooksMatchLikeTheReferenceBook() {
+        for (int mode = 0; mode < 3; mode++) {
+            MatchingEngine matcher = engine(mode);
+            FillRecorder recorder = new FillRecorder();
+            matcher.setExecutionListener(recorder);
+            ReferenceBook reference = new ReferenceBook();
+            Random random = new Random(mode);
+            int orderID = 1;
+            for (int i = 0; i < 50_000; i++) {
+                int action = random.nextInt(10);
+                if (action < 6) {
+                    long limit = 80 + random.nextInt(41);
+                    long volume = 1 + random.nextInt(20);
+                    OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+                    matcher.addOrder(new LimitOrder("X", orderID, limit, volume, side, false));
+                    reference.add(orderID++, limit, volume, side);
+                } else {
+                    int cancelled = 1 + random.nextInt(orderID);
+                    assertEquals(reference.cancel(cancelled), matcher.cancel(cancelled), "cancel " + cancelled);
+                }
+                if (i % 500 == 0) {
+                    assertEquals(reference.fills, recorder.fills, "fills in mode " + mode);
+                    assertEquals(reference.depth(OrderType.BUY), matcher.getDepth("X", OrderType.BUY, 100), "bids in mode " + mode);
+                    assertEquals(reference.depth(OrderType.SELL), matcher.getDepth("X", OrderType.SELL, 100), "asks in mode " + mode);
+                }
+            }
+            assertEquals(reference.fills, recorder.fills, "fills in mode " + mode);
+        }
+    }
+
+    public void testPricesOutsideTheBandAreOrderedWithTheLadder() {
+        MatchingEngine matcher = engine(1);
+        matcher.addOrder(new LimitOrder("X", 1, 85, 1, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("X", 2, 90, 2, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("X", 3, 112, 3, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("X", 4, 100, 4, OrderType.BUY, false));
+        assertEquals(List.of(new PriceLevel(112, 3), new PriceLevel(100, 4), new PriceLevel(90, 2), new PriceLevel(85, 1)),
+                matcher.getDepth("X", OrderType.BUY, 10));
+    }
+
+    public void testMarketOrderSweepsLadderAndTreeLevels() {
+        MatchingEngine matcher = engine(2);
+        FillRecorder recorder = new FillRecorder();
+        matcher.setExecutionListener(recorder);
+        // 91 is off the grid of the ladder and rests in the tree
+        matcher.addOrder(new LimitOrder("X", 1, 92, 5, OrderType.SELL, false));
+        matcher.addOrder(new LimitOrder("X", 2, 91, 5, OrderType.SELL, false));
+        matcher.addOrder(new LimitOrder("X", 3, 120, 5, OrderType.SELL, false));
+        matcher.addOrder(new MarketOrder("X", 4, 12, OrderType.BUY, false));
+        assertEquals(List.of("4/2@91x5", "4/1@92x5", "4/3@120x2"), recorder.fills);
+        assertEquals(List.of(new PriceLevel(120, 3)), matcher.getDepth("X", OrderType.SELL, 10));
+    }
+}
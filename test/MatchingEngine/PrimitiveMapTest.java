@@ -0,0 +1,68 @@
+package MatchingEngine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * The open addressing maps must behave like a <code>HashMap</code> through growth and backward shift deletion
+ */
+public class PrimitiveMapTest {
+
+    // consecutive prices, keys colliding in the low bits and keys at the limits of the range
+    private static long key(Random random) {
+        switch (random.nextInt(3)) {
+            case 0: return 1_000 + random.nextInt(500);
+            case 1: return (long) random.nextInt(200) << 32;
+            default: return random.nextBoolean() ? Long.MIN_VALUE + random.nextInt(10) : -random.nextInt(10);
+        }
+    }
+
+    public void testLongKeysBehaveLikeHashMap() {
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>(4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 200_000; i++) {
+            long key = key(random);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key), "remove " + key);
+            } else {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i), "put " + key);
+            }
+            assertEquals(expected.get(key), map.get(key), "get " + key);
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Long, Long> entry : expected.entrySet())
+            assertEquals(entry.getValue(), map.get(entry.getKey()), "entry " + entry.getKey());
+        map.clear();
+        assertTrue(map.isEmpty(), "cleared");
+        for (long key : expected.keySet())
+            assertFalse(map.containsKey(key), "cleared key " + key);
+    }
+
+    public void testIntKeysBehaveLikeHashMap() {
+        IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(2);
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextBoolean() ? random.nextInt(5_000) : random.nextInt(100) << 16;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key), "remove " + key);
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i), "put " + key);
+            }
+            assertEquals(expected.get(key), map.get(key), "get " + key);
+            assertEquals(expected.size(), map.size());
+        }
+        map.ensureCapacity(100_000);
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet())
+            assertEquals(entry.getValue(), map.get(entry.getKey()), "entry after growing " + entry.getKey());
+    }
+
+    public void testNullValuesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new LongObjectHashMap<String>().put(1, null));
+        assertThrows(IllegalArgumentException.class, () -> new IntObjectHashMap<String>().put(1, null));
+    }
+}
@@ -0,0 +1,109 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Random commands of all types against a tree book (A), a ladder book (B) and a book created by its first order (C),
+ * used to check that journals and snapshots reproduce the state of an engine
+ */
+final class RandomFlow {
+    private final Random random;
+    private int nextOrderID = 1;
+
+    RandomFlow(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * @return flow with other random commands which continues with the order IDs of this flow
+     */
+    RandomFlow continuation(long seed) {
+        RandomFlow flow = new RandomFlow(seed);
+        flow.nextOrderID = nextOrderID;
+        return flow;
+    }
+
+    static void openBooks(MatchingEngine matcher) {
+        matcher.openBook("A", FixedPoint.INTEGER);
+        matcher.openBook("B", FixedPoint.INTEGER, 90, 110, 1);
+    }
+
+    void run(MatchingEngine matcher, int commands) {
+        for (int i = 0; i < commands; i++)
+            step(matcher);
+    }
+
+    void step(MatchingEngine matcher) {
+        String product = random.nextInt(3) == 0 ? "C" : random.nextBoolean() ? "A" : "B";
+        boolean callPhase = matcher.instruments.get(product) != null && matcher.isCallPhase(product);
+        OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+        long limit = 85 + random.nextInt(31);
+        long volume = 1 + random.nextInt(20);
+        int action = random.nextInt(100);
+        if (action < 40) {
+            matcher.addOrder(new LimitOrder(product, nextOrderID++, limit, volume, side, false));
+        } else if (action < 55 && !callPhase) {
+            int orderID = nextOrderID++;
+            if (action < 45)
+                matcher.addOrder(new MarketOrder(product, orderID, volume, side, false));
+            else if (action < 50)
+                matcher.addOrder(new KillOrFillOrder(product, limit, orderID, volume, side, false));
+            else
+                matcher.addOrder(new ImmediateOrCancelOrder(product, orderID, limit, volume, side, false));
+        } else if (action < 60) {
+            if (random.nextBoolean())
+                matcher.addOrder(new StopOrder(product, nextOrderID++, limit, volume, side, false));
+            else
+                matcher.addOrder(new StopOrder(product, nextOrderID++, limit, limit + (side == OrderType.BUY ? 1 : -1), volume, side, false));
+        } else if (action < 65) {
+            matcher.addOrder(new IcebergOrder(product, nextOrderID++, limit, volume + 20, 1 + random.nextInt(5), side, false));
+        } else if (action < 78) {
+            matcher.cancel(1 + random.nextInt(nextOrderID));
+        } else if (action < 90) {
+            int orderID = 1 + random.nextInt(nextOrderID);
+            Order resting = matcher.orderIndex.get(orderID);
+            matcher.amend(orderID, volume, resting != null && random.nextBoolean() ? resting.getLimit() : limit);
+        } else if (action < 95) {
+            Order resting = matcher.orderIndex.get(1 + random.nextInt(nextOrderID));
+            if (resting != null && resting.getClass() == LimitOrder.class) {
+                matcher.modifyOrder(new LimitOrder(resting.getProduct(), resting.getOrderID(), resting.getLimit(), resting.getVolume(), resting.getSide(), false),
+                        new LimitOrder(resting.getProduct(), resting.getOrderID(), limit, volume, resting.getSide(), false));
+            }
+        } else if (action < 97) {
+            if (matcher.instruments.get(product) != null && !callPhase)
+                matcher.startAuction(product);
+        } else if (action < 99) {
+            if (callPhase)
+                matcher.uncross(product);
+        } else if (product.equals("C")) {
+            matcher.closeBook("C");
+        }
+    }
+
+    /**
+     * @return depth, auction state and resting orders of all books of the engine, equal for engines in the same state
+     */
+    String state(MatchingEngine matcher) {
+        List<String> state = new ArrayList<>();
+        for (String product : new TreeSet<>(matcher.instruments.products())) {
+            state.add(product + " bids " + matcher.getDepth(product, OrderType.BUY, 1_000)
+                    + " asks " + matcher.getDepth(product, OrderType.SELL, 1_000)
+                    + (matcher.isCallPhase(product) ? " call phase " + matcher.getIndicativePrice(product) : ""));
+        }
+        for (int orderID = 1; orderID < nextOrderID; orderID++) {
+            Order order = matcher.orderIndex.get(orderID);
+            if (order != null) {
+                state.add(orderID + " " + order.getClass().getSimpleName() + " " + order.getProduct() + " " + order.getSide()
+                        + " " + order.getVolume() + "@" + order.getLimit()
+                        + (order instanceof IcebergOrder ? " hidden " + ((IcebergOrder) order).getHiddenVolume() : "")
+                        + (order instanceof StopOrder ? " stop " + ((StopOrder) order).getStopPrice() : ""));
+            }
+        }
+        return String.join("\n", state);
+    }
+}
@@ -0,0 +1,125 @@
+package MatchingEngine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Straightforward price/time priority book of limit and iceberg orders which the tests compare the engine with.
+ * Fills are recorded as <code>taker/maker@price x volume</code>, like <code>FillRecorder</code> records the fills of the engine
+ */
+final class ReferenceBook {
+    // queued orders are {orderID, displayed volume, hidden volume, peak}
+    private final TreeMap<Long, ArrayDeque<long[]>> bids = new TreeMap<>(Comparator.reverseOrder());
+    private final TreeMap<Long, ArrayDeque<long[]>> asks = new TreeMap<>();
+    // orderID -> {side, limit}
+    private final Map<Integer, long[]> resting = new HashMap<>();
+    final List<String> fills = new ArrayList<>();
+
+    /**
+     * Matches a limit order against the opposite side and rests the remaining volume
+     */
+    void add(int orderID, long limit, long volume, OrderType side) {
+        add(orderID, limit, volume, Long.MAX_VALUE, side);
+    }
+
+    /**
+     * Matches an iceberg order with its total volume and rests the remaining volume, of which at most peak is displayed.
+     * A resting iceberg whose displayed slice was executed is refilled from its hidden volume and queued at the back
+     * of its level
+     */
+    void add(int orderID, long limit, long volume, long peak, OrderType side) {
+        TreeMap<Long, ArrayDeque<long[]>> opposite = side == OrderType.BUY ? asks : bids;
+        while (volume > 0 && !opposite.isEmpty()) {
+            long best = opposite.firstKey();
+            if (side == OrderType.BUY ? best > limit : best < limit)
+                break;
+            ArrayDeque<long[]> queue = opposite.get(best);
+            long[] maker = queue.peekFirst();
+            long filled = Math.min(volume, maker[1]);
+            fills.add(FillRecorder.fill(orderID, (int) maker[0], best, filled));
+            maker[1] -= filled;
+            volume -= filled;
+            if (maker[1] == 0) {
+                queue.pollFirst();
+                if (maker[2] > 0) {
+                    maker[1] = Math.min(maker[3], maker[2]);
+                    maker[2] -= maker[1];
+                    queue.addLast(maker);
+                    continue;
+                }
+                resting.remove((int) maker[0]);
+                if (queue.isEmpty())
+                    opposite.remove(best);
+            }
+        }
+        if (volume > 0) {
+            long displayed = Math.min(volume, peak);
+            (side == OrderType.BUY ? bids : asks).computeIfAbsent(limit, price -> new ArrayDeque<>())
+                    .addLast(new long[]{orderID, displayed, volume - displayed, peak});
+            resting.put(orderID, new long[]{side.ordinal(), limit});
+        }
+    }
+
+    boolean cancel(int orderID) {
+        long[] order = resting.remove(orderID);
+        if (order == null)
+            return false;
+        TreeMap<Long, ArrayDeque<long[]>> book = order[0] == OrderType.BUY.ordinal() ? bids : asks;
+        ArrayDeque<long[]> queue = book.get(order[1]);
+        for (Iterator<long[]> it = queue.iterator(); it.hasNext(); ) {
+            if (it.next()[0] == orderID)
+                it.remove();
+        }
+        if (queue.isEmpty())
+            book.remove(order[1]);
+        return true;
+    }
+
+    /**
+     * Reduces the volume of a limit order in place if the limit is unchanged, otherwise the order loses its priority
+     */
+    boolean amend(int orderID, long volume, long limit) {
+        long[] order = resting.get(orderID);
+        if (order == null)
+            return false;
+        OrderType side = OrderType.values()[(int) order[0]];
+        if (order[1] == limit) {
+            for (long[] queued : (side == OrderType.BUY ? bids : asks).get(limit)) {
+                if (queued[0] == orderID && volume <= queued[1]) {
+                    queued[1] = volume;
+                    return true;
+                }
+            }
+        }
+        cancel(orderID);
+        add(orderID, limit, volume, side);
+        return true;
+    }
+
+    /**
+     * @return side and limit of a resting order or null
+     */
+    long[] resting(int orderID) {
+        return resting.get(orderID);
+    }
+
+    /**
+     * @return displayed volume per price level
+     */
+    List<PriceLevel> depth(OrderType side) {
+        List<PriceLevel> depth = new ArrayList<>();
+        for (Map.Entry<Long, ArrayDeque<long[]>> level : (side == OrderType.BUY ? bids : asks).entrySet()) {
+            long volume = 0;
+            for (long[] order : level.getValue())
+                volume += order[1];
+            depth.add(new PriceLevel(level.getKey(), volume));
+        }
+        return depth;
+    }
+}
@@ -0,0 +1,85 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.LimitOrder;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Commands of the sharded engine are applied by the shard of their product, which keeps draining its queue
+ * when a command fails
+ */
+public class ShardedMatchingEngineTest {
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    // submits the commands on another thread, which would be parked forever once the queue of a stopped shard is full
+    private static void submitWithTimeout(Runnable commands) throws InterruptedException {
+        Thread producer = new Thread(commands, "producer");
+        producer.setDaemon(true);
+        producer.start();
+        producer.join(TIMEOUT_MILLIS);
+        assertFalse(producer.isAlive(), "producer is parked on the queue of a stopped shard");
+    }
+
+    public void testFailingCommandDoesNotStopTheShard() throws Exception {
+        FillRecorder listener = new FillRecorder() {
+            @Override
+            public void onCancel(int orderID, boolean cancelled) {
+                if (orderID == 2)
+                    throw new IllegalStateException("listener failed");
+                super.onCancel(orderID, cancelled);
+            }
+        };
+        ShardedMatchingEngine matcher = new ShardedMatchingEngine(1, 4, listener);
+        submitWithTimeout(() -> {
+            matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+            matcher.addOrder(new LimitOrder("A", 2, 101, 10, OrderType.SELL, false));
+            matcher.cancel("A", 2);
+            // more commands than the queue holds, which are only accepted while the shard keeps draining it
+            for (int id = 3; id < 100; id++) {
+                matcher.addOrder(new LimitOrder("A", id, 90, 1, OrderType.BUY, false));
+                matcher.cancel("A", id);
+            }
+            matcher.addOrder(new LimitOrder("A", 100, 100, 4, OrderType.BUY, false));
+        });
+        matcher.shutdown();
+
+        assertTrue(listener.events.contains("reject 2"), "failed command is reported as rejected");
+        assertTrue(listener.events.contains("cancel 99 true"), "commands after the failed command are applied");
+        assertEquals(FillRecorder.fill(100, 1, 100, 4), listener.fills.get(0));
+        assertEquals(1, listener.fills.size());
+    }
+
+    public void testCancelAndAmendOnlyApplyToTheBookOfTheProduct() throws Exception {
+        FillRecorder listener = new FillRecorder();
+        ShardedMatchingEngine matcher = new ShardedMatchingEngine(1, 16, listener);
+        matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+        matcher.openBook("B", FixedPoint.INTEGER);
+        matcher.cancel("B", 1);
+        matcher.amend("B", 1, 5, 100);
+        matcher.cancel("C", 1);
+        matcher.amend("A", 1, 5, 100);
+        matcher.cancel("A", 1);
+        matcher.shutdown();
+
+        assertEquals(java.util.Arrays.asList("cancel 1 false", "amend 1 false", "cancel 1 false", "amend 1 true", "cancel 1 true"),
+                listener.events);
+    }
+
+    public void testInstrumentsAreMatchedByTheirShard() throws Exception {
+        FillRecorder listener = new FillRecorder();
+        ShardedMatchingEngine matcher = new ShardedMatchingEngine(4, 16, listener);
+        String[] products = {"A", "B", "C", "D", "E", "F", "G", "H"};
+        int id = 0;
+        for (String product : products) {
+            matcher.addOrder(new LimitOrder(product, ++id, 100, 10, OrderType.SELL, false));
+            matcher.addOrder(new LimitOrder(product, ++id, 100, 10, OrderType.BUY, false));
+        }
+        matcher.shutdown();
+
+        assertEquals(products.length, listener.fills.size());
+        for (int i = 0; i < products.length; i++)
+            assertTrue(listener.fills.contains(FillRecorder.fill(2 * i + 2, 2 * i + 1, 100, 10)), "fill of " + products[i]);
+        for (String product : products)
+            assertTrue(matcher.getShard(product) >= 0 && matcher.getShard(product) < 4, "shard of " + product);
+    }
+}
@@ -0,0 +1,133 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.*;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Restoring a snapshot and replaying the journal after it rebuilds the books, including the configuration of each book
+ */
+public class SnapshotTest {
+    private static final int SEGMENT_SIZE = 1 << 16;
+
+    private static void assertSameConfiguration(OrderTree expected, OrderTree actual, String side) {
+        assertEquals(expected.tracksCumulativeVolume(), actual.tracksCumulativeVolume(), side + " tracks volume");
+        RetentionPolicy retention = expected.getRetentionPolicy();
+        if (retention == null) {
+            assertNull(actual.getRetentionPolicy(), side + " retention");
+            return;
+        }
+        assertEquals(retention.getMaxEmptyLevels(), actual.getRetentionPolicy().getMaxEmptyLevels(), side + " empty levels");
+        assertEquals(retention.getMaxDistance(), actual.getRetentionPolicy().getMaxDistance(), side + " distance");
+        assertEquals(retention.getMaxIdleNanos(), actual.getRetentionPolicy().getMaxIdleNanos(), side + " idle time");
+    }
+
+    private static void assertRecovered(RandomFlow flow, MatchingEngine expected, MatchingEngine actual) {
+        assertEquals(flow.state(expected), flow.state(actual));
+        for (String product : expected.instruments.products()) {
+            OrderBook book = expected.instruments.get(product);
+            OrderBook recovered = actual.instruments.get(product);
+            assertSameConfiguration(book.getBidSide(), recovered.getBidSide(), product + " bids");
+            assertSameConfiguration(book.getAskSide(), recovered.getAskSide(), product + " asks");
+        }
+        CommandJournalTest.assertSamePriorities(flow, expected, actual);
+    }
+
+    public void testRestoreAndReplayRebuildTheBooks() throws Exception {
+        try (TempDirectory directory = new TempDirectory()) {
+            MatchingEngine matcher = new MatchingEngine();
+            CommandJournal journal = new CommandJournal(directory.file("journal"), SEGMENT_SIZE);
+            matcher.setCommandJournal(journal);
+            RandomFlow.openBooks(matcher);
+            matcher.setRetentionPolicy("A", new RetentionPolicy(4, 10, Long.MAX_VALUE));
+            RandomFlow flow = new RandomFlow(3);
+            flow.run(matcher, 20_000);
+            matcher.snapshot(directory.file("books.snapshot")).join();
+            flow.run(matcher, 10_000);
+            matcher.setCommandJournal(null);
+            journal.close();
+
+            MatchingEngine recovered = new MatchingEngine();
+            long position = recovered.restore(directory.file("books.snapshot"));
+            assertTrue(position > 0, "journal position of the snapshot");
+            CommandJournal.replay(directory.file("journal"), recovered, position);
+            assertRecovered(flow, matcher, recovered);
+        }
+    }
+
+    public void testRestoreKeepsRetentionAndVolumeTracking() throws Exception {
+        try (TempDirectory directory = new TempDirectory()) {
+            MatchingEngine matcher = new MatchingEngine();
+            matcher.openBook("A", FixedPoint.INTEGER);
+            matcher.setRetentionPolicy("A", new RetentionPolicy(16, 50, 3_600_000_000_000L));
+            matcher.addOrder(new LimitOrder("A", 1, 100, 10, OrderType.SELL, false));
+            matcher.addOrder(new LimitOrder("A", 2, 101, 10, OrderType.SELL, false));
+            matcher.addOrder(new LimitOrder("A", 3, 95, 10, OrderType.BUY, false));
+            // the fill-or-kill order is killed, it only makes the ask side track its cumulative volume
+            matcher.addOrder(new KillOrFillOrder("A", 101, 4, 30, OrderType.BUY, false));
+            assertTrue(matcher.instruments.get("A").getAskSide().tracksCumulativeVolume(), "asks track volume");
+            assertFalse(matcher.instruments.get("A").getBidSide().tracksCumulativeVolume(), "bids track volume");
+            matcher.snapshot(directory.file("books.snapshot")).join();
+
+            MatchingEngine recovered = new MatchingEngine();
+            recovered.restore(directory.file("books.snapshot"));
+            OrderBook book = recovered.instruments.get("A");
+            assertSameConfiguration(matcher.instruments.get("A").getBidSide(), book.getBidSide(), "bids");
+            assertSameConfiguration(matcher.instruments.get("A").getAskSide(), book.getAskSide(), "asks");
+            // the restored cumulative volume is used by the next fill-or-kill order
+            assertEquals(20, book.getAskSide().volumeUpTo(101));
+            FillRecorder fills = new FillRecorder();
+            recovered.setExecutionListener(fills);
+            recovered.addOrder(new KillOrFillOrder("A", 101, 5, 20, OrderType.BUY, false));
+            assertEquals(20, fills.filledVolume);
+            // the emptied levels were retained by the restored policy and are evicted by a stricter one
+            recovered.setRetentionPolicy("A", new RetentionPolicy(16, 0, 0));
+            assertEquals(2, recovered.compact());
+        }
+    }
+
+    public void testBuffersAreReused() throws Exception {
+        try (TempDirectory directory = new TempDirectory()) {
+            MatchingEngine matcher = new MatchingEngine();
+            RandomFlow.openBooks(matcher);
+            new RandomFlow(4).run(matcher, 5_000);
+
+            EngineSnapshot snapshots = new EngineSnapshot();
+            snapshots.take(matcher, -1, directory.file("first.snapshot"), true).join();
+            snapshots.take(matcher, -1, directory.file("second.snapshot"), true).join();
+            java.nio.ByteBuffer first = snapshots.buffers[0];
+            java.nio.ByteBuffer second = snapshots.buffers[1];
+            assertTrue(first != null && second != null && first != second, "pair of buffers");
+
+            for (int i = 0; i < 4; i++)
+                snapshots.take(matcher, -1, directory.file("books.snapshot"), true).join();
+            assertTrue(snapshots.buffers[0] == first && snapshots.buffers[1] == second, "buffers are reused");
+        }
+    }
+
+    public void testScheduledSnapshotsAreTaken() throws Exception {
+        try (TempDirectory directory = new TempDirectory()) {
+            MatchingEngine matcher = new MatchingEngine();
+            CommandJournal journal = new CommandJournal(directory.file("journal"), SEGMENT_SIZE);
+            matcher.setCommandJournal(journal);
+            RandomFlow.openBooks(matcher);
+            matcher.scheduleSnapshots(directory.file("books.snapshot"), 1);
+            RandomFlow flow = new RandomFlow(5);
+            flow.run(matcher, MatchingEngine.SNAPSHOT_CHECK_COMMANDS - 1);
+            assertNull(matcher.scheduledSnapshot, "snapshot before the first check");
+
+            flow.run(matcher, 3 * MatchingEngine.SNAPSHOT_CHECK_COMMANDS);
+            assertTrue(matcher.scheduledSnapshot != null, "scheduled snapshot");
+            matcher.scheduledSnapshot.join();
+            matcher.scheduleSnapshots(null, 0);
+            assertNull(matcher.snapshotIfDue(), "snapshot after the schedule was stopped");
+            matcher.setCommandJournal(null);
+            journal.close();
+
+            MatchingEngine recovered = new MatchingEngine();
+            long position = recovered.restore(directory.file("books.snapshot"));
+            CommandJournal.replay(directory.file("journal"), recovered, position);
+            assertRecovered(flow, matcher, recovered);
+        }
+    }
+}
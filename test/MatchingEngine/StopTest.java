@@ -0,0 +1,134 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Stop orders stay dormant until the last traded price reaches their stop price and are then executed in price/time
+ * order, including the stops triggered by the trades of released stops
+ */
+public class StopTest {
+
+    private static MatchingEngine bookWithAsks(FillRecorder listener, long... prices) {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.setExecutionListener(listener);
+        for (int i = 0; i < prices.length; i++)
+            matcher.addOrder(new LimitOrder("A", 1 + i, prices[i], 5, OrderType.SELL, false));
+        return matcher;
+    }
+
+    public void testBuyStopIsTriggeredByTheLastTradedPrice() {
+        FillRecorder listener = new FillRecorder();
+        MatchingEngine matcher = bookWithAsks(listener, 100, 101, 102, 103);
+        matcher.addOrder(new StopOrder("A", 10, 102, 5, OrderType.BUY, false));
+        assertEquals(1, matcher.instruments.get("A").getStops().size());
+        assertEquals(5, matcher.getDepth("A", OrderType.SELL, 1).get(0).getVolume());
+
+        matcher.addOrder(new LimitOrder("A", 11, 101, 10, OrderType.BUY, false));
+        assertTrue(listener.events.isEmpty(), "stop triggered below its stop price");
+
+        matcher.addOrder(new LimitOrder("A", 12, 102, 1, OrderType.BUY, false));
+        assertEquals(Arrays.asList("trigger 10 102"), listener.events);
+        assertEquals(Arrays.asList(FillRecorder.fill(11, 1, 100, 5), FillRecorder.fill(11, 2, 101, 5),
+                FillRecorder.fill(12, 3, 102, 1), FillRecorder.fill(10, 3, 102, 4), FillRecorder.fill(10, 4, 103, 1)),
+                listener.fills);
+        assertEquals(0, matcher.instruments.get("A").getStops().size());
+        assertNull(matcher.orderIndex.get(10), "executed stop in the index");
+    }
+
+    public void testReleasedStopsTriggerFurtherStops() {
+        FillRecorder listener = new FillRecorder();
+        MatchingEngine matcher = bookWithAsks(listener, 100, 101, 102, 103, 104);
+        matcher.addOrder(new StopOrder("A", 10, 102, 5, OrderType.BUY, false));
+        matcher.addOrder(new StopOrder("A", 11, 101, 5, OrderType.BUY, false));
+        matcher.addOrder(new StopOrder("A", 12, 101, 5, OrderType.BUY, false));
+        matcher.addOrder(new StopOrder("A", 13, 110, 5, OrderType.BUY, false));
+
+        matcher.addOrder(new LimitOrder("A", 14, 100, 5, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("A", 15, 101, 1, OrderType.BUY, false));
+        // the stops at 101 in their order of arrival, then the stop at 102 triggered by their trades
+        assertEquals(Arrays.asList("trigger 11 101", "trigger 12 102", "trigger 10 103"), listener.events);
+        assertEquals(Arrays.asList(FillRecorder.fill(14, 1, 100, 5), FillRecorder.fill(15, 2, 101, 1),
+                FillRecorder.fill(11, 2, 101, 4), FillRecorder.fill(11, 3, 102, 1), FillRecorder.fill(12, 3, 102, 4),
+                FillRecorder.fill(12, 4, 103, 1), FillRecorder.fill(10, 4, 103, 4), FillRecorder.fill(10, 5, 104, 1)),
+                listener.fills);
+        assertEquals(1, matcher.instruments.get("A").getStops().size());
+    }
+
+    public void testStopLimitRestsAtItsLimit() {
+        FillRecorder listener = new FillRecorder();
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.setExecutionListener(listener);
+        matcher.addOrder(new LimitOrder("A", 1, 96, 5, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("A", 2, 95, 5, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("A", 3, 94, 5, OrderType.BUY, false));
+        matcher.addOrder(new LimitOrder("A", 4, 93, 5, OrderType.BUY, false));
+        matcher.addOrder(new StopOrder("A", 10, 95, 94, 20, OrderType.SELL, false));
+
+        matcher.addOrder(new LimitOrder("A", 11, 96, 5, OrderType.SELL, false));
+        assertTrue(listener.events.isEmpty(), "stop triggered above its stop price");
+        matcher.addOrder(new LimitOrder("A", 12, 95, 5, OrderType.SELL, false));
+        assertEquals(Arrays.asList("trigger 10 95"), listener.events);
+        assertEquals(FillRecorder.fill(10, 3, 94, 5), listener.fills.get(listener.fills.size() - 1));
+        assertEquals(Arrays.asList(new PriceLevel(94, 15)), matcher.getDepth("A", OrderType.SELL, 5));
+        assertEquals(Arrays.asList(new PriceLevel(93, 5)), matcher.getDepth("A", OrderType.BUY, 5));
+        assertTrue(((StopOrder) matcher.orderIndex.get(10)).isTriggered(), "resting stop-limit is triggered");
+    }
+
+    public void testStopIsTriggeredOnArrivalIfItsPriceWasReached() {
+        FillRecorder listener = new FillRecorder();
+        MatchingEngine matcher = bookWithAsks(listener, 100, 101);
+        matcher.addOrder(new LimitOrder("A", 10, 100, 5, OrderType.BUY, false));
+        matcher.addOrder(new StopOrder("A", 11, 99, 2, OrderType.BUY, false));
+        assertEquals(Arrays.asList("trigger 11 100"), listener.events);
+        assertEquals(FillRecorder.fill(11, 2, 101, 2), listener.fills.get(1));
+        assertEquals(0, matcher.instruments.get("A").getStops().size());
+    }
+
+    public void testDormantStopsAreCancelledAndAmendedByID() {
+        FillRecorder listener = new FillRecorder();
+        MatchingEngine matcher = bookWithAsks(listener, 100, 101);
+        matcher.addOrder(new StopOrder("A", 10, 100, 5, OrderType.BUY, false));
+        matcher.addOrder(new StopOrder("A", 11, 100, 100, 5, OrderType.BUY, false));
+        assertTrue(matcher.cancel(10), "dormant stop cancelled");
+        assertFalse(matcher.cancel(10), "cancelled stop cancelled again");
+        assertTrue(matcher.amend(11, 2, 101), "dormant stop amended");
+        assertEquals(1, matcher.instruments.get("A").getStops().size());
+
+        matcher.addOrder(new LimitOrder("A", 12, 100, 1, OrderType.BUY, false));
+        assertEquals(Arrays.asList("trigger 11 100"), listener.events);
+        assertEquals(Arrays.asList(FillRecorder.fill(12, 1, 100, 1), FillRecorder.fill(11, 1, 100, 2)), listener.fills);
+    }
+
+    public void testNoDormantStopIsCrossedByTheLastTradedPrice() {
+        MatchingEngine matcher = new MatchingEngine();
+        matcher.openBook("A", FixedPoint.INTEGER);
+        Random random = new Random(8);
+        for (int id = 1; id <= 50_000; id++) {
+            OrderType side = random.nextBoolean() ? OrderType.BUY : OrderType.SELL;
+            long price = 90 + random.nextInt(21);
+            long volume = 1 + random.nextInt(10);
+            int kind = random.nextInt(10);
+            if (kind < 2)
+                matcher.addOrder(new StopOrder("A", id, price, volume, side, false));
+            else if (kind < 3)
+                matcher.addOrder(new StopOrder("A", id, price, price, volume, side, false));
+            else if (kind < 4 && id > 10)
+                matcher.cancel(id - 1 - random.nextInt(10));
+            else
+                matcher.addOrder(new LimitOrder("A", id, price, volume, side, false));
+
+            OrderBook book = matcher.instruments.get("A");
+            long last = book.getLastTradePrice();
+            if (last == 0)
+                continue;
+            book.getStops().forEach(stop -> assertTrue(
+                    stop.getSide() == OrderType.BUY ? stop.getStopPrice() > last : stop.getStopPrice() < last,
+                    "stop " + stop.getOrderID() + " at " + stop.getStopPrice() + " is dormant after a trade at " + last));
+        }
+    }
+}
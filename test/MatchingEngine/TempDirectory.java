@@ -0,0 +1,35 @@
+package MatchingEngine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Temporary directory of a test which is deleted with its files once it is closed
+ */
+final class TempDirectory implements AutoCloseable {
+    final Path path;
+
+    TempDirectory() throws IOException {
+        path = Files.createTempDirectory("matching-engine-test");
+    }
+
+    String file(String name) {
+        return path.resolve(name).toString();
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(file);
+        }
+    }
+}
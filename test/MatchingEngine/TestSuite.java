@@ -0,0 +1,75 @@
+package MatchingEngine;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Runs the tests of the engine without a test framework, such that they only need the JDK.
+ * <br>
+ * Every public method of a test class whose name starts with <code>test</code> is called on a new instance of the class.
+ * A test fails if it throws, failures are printed and make the suite exit with status 1. The names of test classes
+ * can be passed as arguments to only run them
+ * <pre>{@code
+ * javac -d out $(find src test -name '*.java')
+ * java -cp out MatchingEngine.TestSuite
+ * java -cp out MatchingEngine.TestSuite PriceLadderTest}</pre>
+ */
+public class TestSuite {
+    private static final Class<?>[] TESTS = {
+            PriceLadderTest.class,
+            PrimitiveMapTest.class,
+            OrderIndexTest.class,
+            OrderPoolTest.class,
+            TradeJournalTest.class,
+            CommandJournalTest.class,
+            SnapshotTest.class,
+            ShardedMatchingEngineTest.class,
+            BatchTest.class,
+            KillOrFillTest.class,
+            MetricsTest.class,
+            AmendTest.class,
+            StopTest.class,
+            IcebergTest.class,
+            AuctionTest.class,
+            DepthTest.class,
+            MessageTest.class,
+            MarketDataTest.class,
+            Benchmarks.EngineBenchmarkTest.class,
+    };
+
+    public static void main(String[] args) throws Exception {
+        List<String> selected = Arrays.asList(args);
+        int passed = 0;
+        List<String> failures = new ArrayList<>();
+        for (Class<?> test : TESTS) {
+            if (!selected.isEmpty() && !selected.contains(test.getSimpleName()))
+                continue;
+            Method[] methods = test.getMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::getName));
+            for (Method method : methods) {
+                if (!method.getName().startsWith("test") || method.getParameterCount() != 0 || Modifier.isStatic(method.getModifiers()))
+                    continue;
+                String name = test.getSimpleName() + "." + method.getName();
+                try {
+                    method.invoke(test.getDeclaredConstructor().newInstance());
+                    passed++;
+                    System.out.println("ok      " + name);
+                } catch (InvocationTargetException e) {
+                    failures.add(name);
+                    System.out.println("FAILED  " + name);
+                    e.getCause().printStackTrace(System.out);
+                }
+            }
+        }
+        System.out.println(passed + " passed, " + failures.size() + " failed");
+        if (!failures.isEmpty()) {
+            System.out.println("failed: " + failures);
+            System.exit(1);
+        }
+    }
+}
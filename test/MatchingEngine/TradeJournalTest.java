@@ -0,0 +1,111 @@
+package MatchingEngine;
+
+import MatchingEngine.OrderTypes.LimitOrder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static MatchingEngine.Assertions.*;
+
+/**
+ * Fills written to the trade journal are read back in order, also across segments and restarts of the journal
+ */
+public class TradeJournalTest {
+    private static final int TWO_RECORDS = 2 * TradeJournal.RECORD_SIZE;
+
+    // taker/maker@price x volume #sequence of all fills of the journal
+    private static List<String> read(TempDirectory directory) throws Exception {
+        List<String> fills = new ArrayList<>();
+        try (TradeJournalReader reader = new TradeJournalReader(directory.toString())) {
+            while (reader.next())
+                fills.add(FillRecorder.fill(reader.getTakerOrderID(), reader.getMakerOrderID(), reader.getPrice(), reader.getVolume())
+                        + " #" + reader.getSequence());
+        }
+        return fills;
+    }
+
+    private static void append(TradeJournal journal, int first, int count) {
+        for (int i = first; i < first + count; i++)
+            journal.append(1, i, 1_000 + i, OrderType.BUY, 100 + i, 1);
+    }
+
+    private static List<String> expected(int count) {
+        List<String> fills = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            fills.add(FillRecorder.fill(i, 1_000 + i, 100 + i, 1) + " #" + (i + 1));
+        return fills;
+    }
+
+    public void testFillsOfTheEngineAreJournaled() throws Exception {
+        try (TempDirectory directory = new TempDirectory()) {
+            TradeJournal journal = new TradeJournal(directory.toString(), 1 << 16);
+            MatchingEngine matcher = new MatchingEngine();
+            matcher.setTradeJournal(journal);
+            matcher.addOrder(new LimitOrder("A", 1, 100, 5, OrderType.SELL, false));
+            matcher.addOrder(new LimitOrder("A", 2, 101, 5, OrderType.SELL, false));
+            matcher.addOrder(new LimitOrder("A", 3, 101, 8, OrderType.BUY, false));
+            journal.close();
+
+            assertEquals(List.of("3/1@100x5 #1", "3/2@101x3 #2"), read(directory));
+            try (TradeJournalReader reader = new TradeJournalReader(directory.toString())) {
+                assertTrue(reader.next(), "first fill");
+                assertEquals(matcher.getProductID("A"), reader.getProductID());
+                assertEquals(OrderType.BUY, reader.getTakerSide());
+                assertTrue(reader.getTimestamp() > 0, "timestamp");
+            }
+        }
+    }
+
+    public void testReopenedJournalContinuesAfterTheLastFill() throws Exception {
+        try (TempDirectory directory = new TempDirectory()) {
+            TradeJournal journal = new TradeJournal(directory.toString(), TWO_RECORDS);
+            append(journal, 0, 3);
+            journal.close();
+
+            journal = new TradeJournal(directory.toString(), TWO_RECORDS);
+            assertEquals(3, journal.getSequence());
+            append(journal, 3, 3);
+            journal.close();
+            assertEquals(expected(6), read(directory));
+        }
+    }
+
+    public void testReopenedJournalContinuesAfterAFullSegment() throws Exception {
+        try (TempDirectory directory = new TempDirectory()) {
+            TradeJournal journal = new TradeJournal(directory.toString(), TWO_RECORDS);
+            append(journal, 0, 4);
+            journal.close();
+
+            journal = new TradeJournal(directory.toString(), TWO_RECORDS);
+            append(journal, 4, 1);
+            journal.close();
+            assertEquals(expected(5), read(directory));
+            assertTrue(Files.exists(TradeJournal.segmentFile(directory.path, 2)), "new segment");
+        }
+    }
+
+    public void testIncompleteRecordIsOverwritten() throws Exception {
+        try (TempDirectory directory = new TempDirectory()) {
+            TradeJournal journal = new TradeJournal(directory.toString(), 4 * TradeJournal.RECORD_SIZE);
+            append(journal, 0, 1);
+            journal.close();
+            // a record whose fields were written but not its sequence, as left by a crash while appending
+            try (FileChannel channel = FileChannel.open(TradeJournal.segmentFile(directory.path, 0), StandardOpenOption.WRITE)) {
+                ByteBuffer record = ByteBuffer.allocate(TradeJournal.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                record.putLong(TradeJournal.PRICE_OFFSET, 999).putLong(TradeJournal.VOLUME_OFFSET, 999);
+                channel.write(record, TradeJournal.RECORD_SIZE);
+            }
+            assertEquals(expected(1), read(directory));
+
+            journal = new TradeJournal(directory.toString(), 4 * TradeJournal.RECORD_SIZE);
+            append(journal, 1, 1);
+            journal.close();
+            assertEquals(expected(2), read(directory));
+        }
+    }
+}